@@ -0,0 +1,69 @@
+package github.lightningcreations.lcjei.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import github.lightningcreations.lcjei.service.EngineLookup;
+import github.lightningcreations.lcjei.service.JEIServiceProvider;
+
+/**
+ * Measures {@link EngineLookup} against the {@link StubProviders}, by engine name and by game class.<br/>
+ * The hit and miss benchmarks measure lookups against the cached providers. The refresh benchmark measures discovering the providers again, 
+ *  which is the cost paid by the first lookup against a ClassLoader.
+ * @author chorm
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+	private ClassLoader loader;
+	
+	@Setup
+	public void setup() {
+		loader = LookupBenchmark.class.getClassLoader();
+		EngineLookup.refresh(loader);
+		if(!EngineLookup.getByEngineName("Gamma",loader).isPresent())
+			throw new IllegalStateException("Stub providers are not registered");
+	}
+	
+	@Benchmark
+	public Optional<JEIServiceProvider<?>> byName() {
+		return EngineLookup.getByEngineName("Gamma", loader);
+	}
+	
+	@Benchmark
+	public Optional<JEIServiceProvider<StubProviders.GammaGame>> byClass() {
+		return EngineLookup.getByEngineClass(StubProviders.GammaGame.class, loader);
+	}
+	
+	@Benchmark
+	public Optional<JEIServiceProvider<?>> byNameMissing() {
+		return EngineLookup.getByEngineName("Delta", loader);
+	}
+	
+	@Benchmark
+	public Optional<JEIServiceProvider<String>> byClassMissing() {
+		return EngineLookup.getByEngineClass(String.class, loader);
+	}
+	
+	@Benchmark
+	public Optional<JEIServiceProvider<?>> refreshAndLookup() {
+		EngineLookup.refresh(loader);
+		return EngineLookup.getByEngineName("Gamma", loader);
+	}
+}
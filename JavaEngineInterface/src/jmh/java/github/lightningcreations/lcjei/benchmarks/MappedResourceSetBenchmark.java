@@ -0,0 +1,76 @@
+package github.lightningcreations.lcjei.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import github.lightningcreations.lcjei.resources.MappedResourceSet;
+import github.lightningcreations.lcjei.resources.MemoryResourceSet;
+import github.lightningcreations.lcjei.resources.Resource;
+import github.lightningcreations.lcjei.resources.ResourceKeyMapper;
+import github.lightningcreations.lcjei.resources.ResourceSet;
+
+/**
+ * Measures {@link ResourceSet#getResource(Object)} through 0 to 3 levels of {@link MappedResourceSet} over a {@link MemoryResourceSet}, 
+ *  with and without memoization.<br/>
+ * Each level maps its keys with {@link ResourceKeyMapper#prefixed(String)}. Lookups cycle through every key of the set.
+ * @author chorm
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedResourceSetBenchmark {
+	private static final int KEYS = 1024;
+	private static final String LEVEL_PREFIX = "level/";
+	
+	@Param({"0","1","2","3"})
+	public int depth;
+	
+	@Param({"0","4096"})
+	public int memoCapacity;
+	
+	private ResourceSet<String> set;
+	private String[] keys;
+	private int next;
+	
+	@Setup
+	public void setup() {
+		StringBuilder hostPrefix = new StringBuilder();
+		for(int i = 0;i<depth;i++)
+			hostPrefix.append(LEVEL_PREFIX);
+		MemoryResourceSet memory = new MemoryResourceSet();
+		keys = new String[KEYS];
+		for(int i = 0;i<KEYS;i++) {
+			keys[i] = "key"+i;
+			memory.put(hostPrefix+keys[i], new byte[16]);
+		}
+		ResourceSet<String> set = memory;
+		for(int i = 0;i<depth;i++)
+			set = new MappedResourceSet<>(set,ResourceKeyMapper.prefixed(LEVEL_PREFIX),memoCapacity);
+		this.set = set;
+		if(!set.getResource(keys[0]).isPresent())
+			throw new IllegalStateException("Mapped set does not contain "+keys[0]);
+	}
+	
+	@Benchmark
+	public Optional<Resource<String>> getResource() {
+		String key = keys[next];
+		next = (next+1)&(KEYS-1);
+		return set.getResource(key);
+	}
+}
@@ -0,0 +1,120 @@
+package github.lightningcreations.lcjei.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import github.lightningcreations.lcjei.resources.DirectoryResourceSet;
+import github.lightningcreations.lcjei.resources.MemoryResourceSet;
+import github.lightningcreations.lcjei.resources.Resource;
+
+/**
+ * Measures reading a whole resource through {@link Resource#getReadStream()}, {@link Resource#getReadChannel()}, 
+ *  and {@link Resource#asReadOnlyByteBuffer()}, from a temporary file in a {@link DirectoryResourceSet}, 
+ *  and from memory in a {@link MemoryResourceSet}.<br/>
+ * Each benchmark consumes every byte of the resource. The bandwidth is the throughput multiplied by the size parameter.
+ * @author chorm
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceReadBenchmark {
+	private static final String KEY = "resource.bin";
+	
+	@Param({"4096","65536","1048576"})
+	public int size;
+	
+	@Param({"file","memory"})
+	public String source;
+	
+	private Path directory;
+	private Resource<String> resource;
+	private byte[] array;
+	private ByteBuffer buffer;
+	
+	@Setup
+	public void setup() throws IOException {
+		byte[] contents = new byte[size];
+		new Random(size).nextBytes(contents);
+		if(source.equals("file")) {
+			directory = Files.createTempDirectory("lcjei-bench");
+			Files.write(directory.resolve(KEY), contents);
+			resource = new DirectoryResourceSet(directory).getResource(KEY).get();
+		}else {
+			MemoryResourceSet memory = new MemoryResourceSet();
+			memory.put(KEY, contents);
+			resource = memory.getResource(KEY).get();
+		}
+		array = new byte[8192];
+		buffer = ByteBuffer.allocateDirect(8192);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		if(directory!=null) {
+			Files.deleteIfExists(directory.resolve(KEY));
+			Files.deleteIfExists(directory);
+		}
+	}
+	
+	@Benchmark
+	public long readStream() {
+		long total = 0;
+		try(InputStream stream = resource.getReadStream()){
+			int n;
+			while((n = stream.read(array))>=0)
+				total += n;
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return total;
+	}
+	
+	@Benchmark
+	public long readChannel() {
+		long total = 0;
+		try(SeekableByteChannel channel = resource.getReadChannel()){
+			int n;
+			while((n = channel.read(buffer))>=0) {
+				total += n;
+				buffer.clear();
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return total;
+	}
+	
+	@Benchmark
+	public long readBuffer() {
+		ByteBuffer contents = resource.asReadOnlyByteBuffer();
+		long total = 0;
+		while(contents.remaining()>=8) {
+			total += contents.getLong();
+		}
+		return total+contents.remaining();
+	}
+}
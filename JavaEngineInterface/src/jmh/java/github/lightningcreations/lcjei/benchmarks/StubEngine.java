@@ -0,0 +1,67 @@
+package github.lightningcreations.lcjei.benchmarks;
+
+import java.awt.Container;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+/**
+ * An Engine which does nothing, so that benchmarks only measure the code which calls it.
+ * @author chorm
+ *
+ */
+public final class StubEngine<GameType> implements IEngineInterface<GameType> {
+	private final GameType game;
+	private int calls;
+	
+	public StubEngine(GameType game) {
+		this.game = game;
+	}
+
+	@Override
+	public boolean initialize(Container c) throws IllegalStateException {
+		calls++;
+		return false;
+	}
+
+	@Override
+	public void initialize() throws IllegalStateException {
+		calls++;
+	}
+
+	@Override
+	public void destroy() throws IllegalStateException {
+		calls++;
+	}
+
+	@Override
+	public void run() throws IllegalStateException {
+		calls++;
+	}
+
+	@Override
+	public Container getCurrentDrawContainer() {
+		return null;
+	}
+
+	@Override
+	public GameType getGameObject() {
+		return game;
+	}
+
+	@Override
+	public void suspend() throws IllegalStateException {
+		calls++;
+	}
+
+	@Override
+	public void resume() throws IllegalStateException {
+		calls++;
+	}
+	
+	/**
+	 * Returns the number of lifecycle methods which have been called.
+	 */
+	public int getCalls() {
+		return calls;
+	}
+}
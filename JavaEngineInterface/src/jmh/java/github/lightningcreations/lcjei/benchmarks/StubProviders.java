@@ -0,0 +1,69 @@
+package github.lightningcreations.lcjei.benchmarks;
+
+import java.util.Optional;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.service.JEIServiceProvider;
+
+/**
+ * Providers of {@link StubEngine}s, which are registered in META-INF/services of the benchmarks, so that lookups have several providers to search.
+ * @author chorm
+ *
+ */
+public final class StubProviders {
+	
+	private StubProviders() {
+	}
+	
+	public static final class AlphaGame {}
+	public static final class BetaGame {}
+	public static final class GammaGame {}
+	
+	private static abstract class StubProvider<GameType> implements JEIServiceProvider<GameType> {
+		private final Class<GameType> gameClass;
+		private final String engineName;
+		
+		StubProvider(Class<GameType> gameClass,String engineName){
+			this.gameClass = gameClass;
+			this.engineName = engineName;
+		}
+
+		@Override
+		public Class<GameType> getGameClass() {
+			return gameClass;
+		}
+
+		@Override
+		public String getEngineName() {
+			return engineName;
+		}
+
+		@Override
+		public IEngineInterface<GameType> newEngine(GameType game) {
+			return new StubEngine<>(game);
+		}
+
+		@Override
+		public Optional<IEngineInterface<GameType>> getActiveEngineInterface() {
+			return Optional.empty();
+		}
+	}
+	
+	public static final class Alpha extends StubProvider<AlphaGame> {
+		public Alpha() {
+			super(AlphaGame.class,"Alpha");
+		}
+	}
+	
+	public static final class Beta extends StubProvider<BetaGame> {
+		public Beta() {
+			super(BetaGame.class,"Beta");
+		}
+	}
+	
+	public static final class Gamma extends StubProvider<GammaGame> {
+		public Gamma() {
+			super(GammaGame.class,"Gamma");
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package github.lightningcreations.lcjei.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.wrapper.WrappedEngine;
+
+/**
+ * Measures the overhead of forwarding lifecycle methods through a {@link WrappedEngine}, compared to calling a {@link StubEngine} directly.<br/>
+ * The lifecycle benchmarks perform a whole lifecycle (initialize, run, suspend, resume, destroy), and the suspendResume benchmarks suspend and resume an executing engine.
+ * @author chorm
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrappedEngineBenchmark {
+	private StubEngine<Object> direct;
+	private WrappedEngine<Object,Object> wrapped;
+	private StubEngine<Object> executingDirect;
+	private WrappedEngine<Object,Object> executingWrapped;
+	
+	@Setup
+	public void setup() {
+		Object game = new Object();
+		direct = new StubEngine<>(game);
+		wrapped = new WrappedEngine<>(new StubEngine<>(game),new StubEngine<>(game),game);
+		executingDirect = new StubEngine<>(game);
+		executingWrapped = new WrappedEngine<>(new StubEngine<>(game),new StubEngine<>(game),game);
+		executingDirect.initialize();
+		executingDirect.run();
+		executingWrapped.initialize();
+		executingWrapped.run();
+	}
+	
+	private static void lifecycle(IEngineInterface<?> engine) {
+		engine.initialize();
+		engine.run();
+		engine.suspend();
+		engine.resume();
+		engine.destroy();
+	}
+	
+	@Benchmark
+	public int lifecycleDirect() {
+		lifecycle(direct);
+		return direct.getCalls();
+	}
+	
+	@Benchmark
+	public Object lifecycleWrapped() {
+		lifecycle(wrapped);
+		return wrapped.getState();
+	}
+	
+	@Benchmark
+	public int suspendResumeDirect() {
+		executingDirect.suspend();
+		executingDirect.resume();
+		return executingDirect.getCalls();
+	}
+	
+	@Benchmark
+	public Object suspendResumeWrapped() {
+		executingWrapped.suspend();
+		executingWrapped.resume();
+		return executingWrapped.getState();
+	}
+}
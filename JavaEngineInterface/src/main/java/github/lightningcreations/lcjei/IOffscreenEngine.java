@@ -0,0 +1,34 @@
+package github.lightningcreations.lcjei;
+
+import github.lightningcreations.lcjei.render.FrameBuffer;
+
+/**
+ * An {@link IEngineInterface} for an Engine which can render to an off-screen {@link FrameBuffer} instead of an AWT Container.<br/>
+ * An Engine initialized with a FrameBuffer does not need a display, so it can be used when java.awt.headless is true, 
+ *  and a Host which embeds it can composite its frames directly, rather than through AWT painting.<br/>
+ * 
+ * Implementing this interface is optional. 
+ * @author chorm
+ *
+ * @param <GameType> The type of the Game which is used by the Engine.
+ */
+public interface IOffscreenEngine<GameType> extends IEngineInterface<GameType> {
+	
+	/**
+	 * Initializes the Engine, requesting that it render to target.<br/>
+	 * This is subject to the same requirements as {@link #initialize(java.awt.Container)}. 
+	 *  If target is null, or the Engine cannot render to it, this has the same effect as {@link #initialize()}, and false is returned.
+	 *  Otherwise, the Engine publishes each frame it renders to target, as its producer, and does not create any window.
+	 * @param target The FrameBuffer to render to. This may be null.
+	 * @return true iff target is not null, and the engine renders to it.
+	 * @throws IllegalStateException if the Engine has already been initialized and not yet destroyed.
+	 */
+	public boolean initializeOffscreen(FrameBuffer target)throws IllegalStateException;
+	
+	/**
+	 * Returns the FrameBuffer the Engine is rendering to, or null if it was not initialized with {@link #initializeOffscreen(FrameBuffer)}, or that call returned false.<br/>
+	 * This method MUST be called between successful calls of initialize and destroy.
+	 * @throws IllegalStateException If the method is called before the Engine is initialized, or after it is destroyed but before it has been reininitialized.
+	 */
+	public FrameBuffer getCurrentFrameBuffer();
+}
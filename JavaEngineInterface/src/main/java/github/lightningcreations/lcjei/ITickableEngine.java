@@ -0,0 +1,42 @@
+package github.lightningcreations.lcjei;
+
+/**
+ * An {@link IEngineInterface} for an Engine which can be driven by another Engine, rather than running its own game loop.<br/>
+ * Normally, {@link #run()} starts the threads of the Engine, which update and render the game on their own schedule. 
+ *  When a Host Engine embeds many Guest Engines, each running its own game loop, the loops compete for processors and their frames are not aligned.
+ *  Instead, a Host can start a tickable Guest with {@link #runDriven()}, and then advance it from its own frame loop by calling {@link #update(long)} and {@link #render(float)},
+ *  such as through a {@link github.lightningcreations.lcjei.tick.TickScheduler}.<br/>
+ * 
+ * Implementing this interface is optional. Engines which do not implement it are run with {@link #run()}.
+ * @author chorm
+ *
+ * @param <GameType> The type of the Game which is used by the Engine.
+ */
+public interface ITickableEngine<GameType> extends IEngineInterface<GameType> {
+	
+	/**
+	 * Executes the game without starting a game loop. This method returns immediately.<br/>
+	 * This is subject to the same requirements as {@link #run()}, and may be called instead of it. 
+	 *  After a successful call to this method, the engine shall be executing, but only advances the game when {@link #update(long)} and {@link #render(float)} are called.
+	 *  Suspending and resuming the engine does not start a game loop.
+	 * @throws IllegalStateException If the method is called before the Engine is initialized, or after it is destroyed but before it has been reinitialized, or after run or runDriven has been called since it was initialized. 
+	 */
+	public void runDriven()throws IllegalStateException;
+	
+	/**
+	 * Advances the game by stepNanos nanoseconds.<br/>
+	 * This method is not called concurrently with itself or {@link #render(float)}. Successive calls may be made from different threads, but each call happens-before the next.
+	 *  Calls to this method while the engine is not executing, or was not run with {@link #runDriven()}, have no effect.
+	 * @param stepNanos The amount of time to advance the game by. This is not negative.
+	 */
+	public void update(long stepNanos);
+	
+	/**
+	 * Renders a frame of the game.<br/>
+	 * This method is not called concurrently with itself or {@link #update(long)}. Successive calls may be made from different threads, but each call happens-before the next.
+	 *  Calls to this method while the engine is not executing, or was not run with {@link #runDriven()}, have no effect.
+	 * @param interpolation How far between the last and next update the frame is, in the range [0,1). 
+	 *  Engines which are updated with a fixed step may use this to interpolate the state they render. Engines updated with a variable step are passed 0.
+	 */
+	public void render(float interpolation);
+}
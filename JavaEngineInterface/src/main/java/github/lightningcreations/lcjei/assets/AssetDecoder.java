@@ -0,0 +1,31 @@
+package github.lightningcreations.lcjei.assets;
+
+import java.io.IOException;
+
+import github.lightningcreations.lcjei.resources.Resource;
+
+/**
+ * Decodes the contents of a resource into an asset of type T, such as an image, sound, or mesh.<br/>
+ * Decoders are registered with an {@link AssetLoader} for the type of asset they produce. A decoder may be called concurrently, from several threads of the decode pool.
+ * @author chorm
+ *
+ * @param <T> The type of the decoded asset
+ */
+@FunctionalInterface
+public interface AssetDecoder<T> {
+	/**
+	 * Decodes an asset from resource. The contents of resource have already been read into memory by the read pool, 
+	 *  so it can be read through any of its methods without blocking on I/O.
+	 * @throws IOException if resource is not a valid encoding of the asset.
+	 */
+	public T decode(Resource<?> resource) throws IOException;
+	
+	/**
+	 * Returns the weight of asset, which is its approximate size in memory, in bytes, for bounding the cache of an {@link AssetLoader}.<br/>
+	 * By default, this returns encodedSize, the number of bytes the asset was decoded from. 
+	 *  Decoders of assets which are much larger once decoded, such as compressed images, should override this method.
+	 */
+	public default long weigh(T asset,long encodedSize) {
+		return encodedSize;
+	}
+}
@@ -0,0 +1,59 @@
+package github.lightningcreations.lcjei.assets;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import javax.imageio.ImageIO;
+
+import github.lightningcreations.lcjei.resources.Resource;
+
+/**
+ * Decoders for common types of assets.
+ * @author chorm
+ *
+ */
+public final class AssetDecoders {
+	
+	private AssetDecoders() {
+	}
+	
+	private static final AssetDecoder<BufferedImage> IMAGE = new AssetDecoder<BufferedImage>() {
+		@Override
+		public BufferedImage decode(Resource<?> resource) throws IOException {
+			BufferedImage image = ImageIO.read(resource.getReadStream());
+			if(image==null)
+				throw new IOException("Unsupported image format");
+			return image;
+		}
+		
+		@Override
+		public long weigh(BufferedImage asset,long encodedSize) {
+			return (long)asset.getWidth()*asset.getHeight()*4;
+		}
+	};
+	
+	/**
+	 * Returns a decoder of images in any format supported by {@link ImageIO}, which weighs each image as 4 bytes per pixel.
+	 */
+	public static AssetDecoder<BufferedImage> image(){
+		return IMAGE;
+	}
+	
+	/**
+	 * Returns a decoder of text in the given charset, which weighs each String as 2 bytes per char.
+	 */
+	public static AssetDecoder<String> text(Charset charset){
+		return new AssetDecoder<String>() {
+			@Override
+			public String decode(Resource<?> resource) {
+				return charset.decode(resource.asReadOnlyByteBuffer()).toString();
+			}
+			
+			@Override
+			public long weigh(String asset,long encodedSize) {
+				return (long)asset.length()*2;
+			}
+		};
+	}
+}
@@ -0,0 +1,460 @@
+package github.lightningcreations.lcjei.assets;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import github.lightningcreations.lcjei.resources.BufferResource;
+import github.lightningcreations.lcjei.resources.Resource;
+import github.lightningcreations.lcjei.resources.ResourceExecutors;
+import github.lightningcreations.lcjei.resources.ResourceKeyMapper;
+import github.lightningcreations.lcjei.resources.ResourceSet;
+
+/**
+ * Loads assets, such as images, sounds, or meshes, from the resources of a ResourceSet, and caches them once decoded.<br/>
+ * An asset is identified by the key of its resource and the type it is decoded to, and is decoded by the {@link AssetDecoder} registered for that type.
+ *  Loading happens in two stages: the resource is read into memory on the read pool, and is then decoded on the decode pool, 
+ *  so that neither I/O or decoding runs on the thread which requests the asset, such as a render thread.<br/>
+ * 
+ * Concurrent requests for the same asset are coalesced, so that the asset is only read and decoded once, and each request receives the same object.
+ *  Decoded assets are cached, bounded by the total weight of the cached assets, as given by {@link AssetDecoder#weigh(Object, long)}.
+ *  When the weight exceeds the maximum weight, the least recently used assets are evicted until the weight is at most 7/8 of the maximum.
+ *  Assets heavier than a quarter of the maximum weight, and resources which do not exist, are not cached. Failed loads are not cached either, so they are retried by the next request.<br/>
+ * 
+ * {@link #reload()} reloads the ResourceSet, and then discards every cached asset. As with {@link github.lightningcreations.lcjei.resources.CachingResourceSet}, 
+ *  the ResourceSet should be reloaded through the loader, as the cache is not discarded when the set is reloaded directly.<br/>
+ * 
+ * A Host and the Guest of a {@link github.lightningcreations.lcjei.wrapper.WrappedEngine} can share decoded assets: 
+ *  {@link #map(ResourceKeyMapper)} returns a loader for the Guest's keys, which shares the cache, pools, and decoders of this loader.<br/>
+ * This class is thread-safe. Requests for cached assets do not lock.
+ * @author chorm
+ *
+ * @param <ResourceKey> The type of keys of the resource set
+ */
+public final class AssetLoader<ResourceKey> {
+	
+	private static final class DecodeHolder {
+		static final Executor DEFAULT = createDefault();
+		
+		private static Executor createDefault() {
+			int threads = Runtime.getRuntime().availableProcessors();
+			AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = r->{
+				Thread t = new Thread(r,"lcjei-asset-decode-"+count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,threads,30,TimeUnit.SECONDS,new LinkedBlockingQueue<>(),factory);
+			pool.allowCoreThreadTimeOut(true);
+			return pool;
+		}
+	}
+	
+	/**
+	 * The key of a resource in the underlying set, and the type it is decoded to.
+	 */
+	private static final class AssetKey {
+		private final Object key;
+		private final Class<?> type;
+		
+		AssetKey(Object key,Class<?> type){
+			this.key = key;
+			this.type = type;
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode()*31+type.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof AssetKey))
+				return false;
+			AssetKey other = (AssetKey)obj;
+			return type==other.type&&key.equals(other.key);
+		}
+	}
+	
+	private static final class CachedAsset {
+		private final AssetKey key;
+		private final Object asset;
+		private final long weight;
+		private volatile long lastAccess;
+		
+		CachedAsset(AssetKey key,Object asset,long weight){
+			this.key = key;
+			this.asset = asset;
+			this.weight = weight;
+			this.lastAccess = System.nanoTime();
+		}
+	}
+	
+	/**
+	 * A decoded asset, and its weight.
+	 */
+	private static final class Decoded {
+		private final Object asset;
+		private final long weight;
+		
+		Decoded(Object asset,long weight){
+			this.asset = asset;
+			this.weight = weight;
+		}
+	}
+	
+	/**
+	 * The state shared by a loader, and the loaders returned by {@link AssetLoader#map(ResourceKeyMapper)}.
+	 */
+	private static final class Shared {
+		private final ResourceSet<Object> set;
+		private final long maximumWeight;
+		private final Executor readExecutor;
+		private final Executor decodeExecutor;
+		private final ConcurrentHashMap<Class<?>,AssetDecoder<?>> decoders = new ConcurrentHashMap<>();
+		private final ConcurrentHashMap<AssetKey,CachedAsset> cache = new ConcurrentHashMap<>();
+		private final ConcurrentHashMap<AssetKey,CompletableFuture<Optional<Object>>> inFlight = new ConcurrentHashMap<>();
+		private final AtomicLong weight = new AtomicLong();
+		private final AtomicLong generation = new AtomicLong();
+		private final ReentrantLock evictionLock = new ReentrantLock();
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private final LongAdder decodes = new LongAdder();
+		private final LongAdder evictions = new LongAdder();
+		
+		Shared(ResourceSet<Object> set,long maximumWeight,Executor readExecutor,Executor decodeExecutor){
+			this.set = set;
+			this.maximumWeight = maximumWeight;
+			this.readExecutor = readExecutor;
+			this.decodeExecutor = decodeExecutor;
+		}
+		
+		private boolean remove(AssetKey key,CachedAsset cached) {
+			if(cache.remove(key, cached)) {
+				weight.addAndGet(-cached.weight);
+				return true;
+			}
+			return false;
+		}
+		
+		private void evictIfNeeded() {
+			if(weight.get()<=maximumWeight||!evictionLock.tryLock())
+				return;
+			try {
+				long target = maximumWeight-maximumWeight/8;
+				List<CachedAsset> entries = new ArrayList<>(cache.values());
+				entries.sort(Comparator.comparingLong(c->c.lastAccess));
+				for(CachedAsset cached:entries) {
+					if(weight.get()<=target)
+						break;
+					if(remove(cached.key,cached))
+						evictions.increment();
+				}
+			}finally {
+				evictionLock.unlock();
+			}
+		}
+		
+		/**
+		 * Returns true if the load of key, which started in generation gen, has not been invalidated since, either by a reload, or by invalidating key.
+		 */
+		private boolean isCurrent(AssetKey key,long gen,CompletableFuture<Optional<Object>> load) {
+			return generation.get()==gen&&inFlight.get(key)==load;
+		}
+		
+		private void store(AssetKey key,Decoded decoded,long gen,CompletableFuture<Optional<Object>> load) {
+			long weight = decoded.weight;
+			if(weight>maximumWeight/4)
+				return;
+			CachedAsset cached = new CachedAsset(key,decoded.asset,weight);
+			// An invalidated load must not replace an asset stored by a later load
+			cache.compute(key, (k,previous)->{
+				if(!isCurrent(key,gen,load))
+					return previous;
+				this.weight.addAndGet(previous!=null?weight-previous.weight:weight);
+				return cached;
+			});
+			// Discard the entry if the load was invalidated while it was being stored
+			if(!isCurrent(key,gen,load))
+				remove(key,cached);
+			else
+				evictIfNeeded();
+		}
+		
+		Optional<Object> getIfLoaded(AssetKey key) {
+			CachedAsset cached = cache.get(key);
+			if(cached==null)
+				return Optional.empty();
+			cached.lastAccess = System.nanoTime();
+			return Optional.of(cached.asset);
+		}
+		
+		@SuppressWarnings("unchecked")
+		CompletableFuture<Optional<Object>> load(AssetKey key){
+			AssetDecoder<Object> decoder = (AssetDecoder<Object>)decoders.get(key.type);
+			if(decoder==null)
+				throw new IllegalArgumentException("No decoder is registered for "+key.type.getName());
+			CachedAsset cached = cache.get(key);
+			if(cached!=null) {
+				cached.lastAccess = System.nanoTime();
+				hits.increment();
+				return CompletableFuture.completedFuture(Optional.of(cached.asset));
+			}
+			CompletableFuture<Optional<Object>> existing = inFlight.get(key);
+			if(existing!=null)
+				return existing;
+			CompletableFuture<Optional<Object>> future = new CompletableFuture<>();
+			existing = inFlight.putIfAbsent(key, future);
+			if(existing!=null)
+				return existing;
+			// The asset may have been cached since it was looked up, by a load which completed in the meantime
+			cached = cache.get(key);
+			if(cached!=null) {
+				inFlight.remove(key, future);
+				hits.increment();
+				future.complete(Optional.of(cached.asset));
+				return future;
+			}
+			misses.increment();
+			long gen = generation.get();
+			try {
+				CompletableFuture.supplyAsync(()->read(key.key), readExecutor)
+					.thenApplyAsync(resource->resource.map(r->decode(decoder,r)), decodeExecutor)
+					.whenComplete((decoded,t)->{
+						try {
+							if(t==null&&decoded.isPresent())
+								store(key,decoded.get(),gen,future);
+						}finally {
+							inFlight.remove(key, future);
+							if(t!=null)
+								future.completeExceptionally(t);
+							else
+								future.complete(decoded.map(d->d.asset));
+						}
+					});
+			}catch(RuntimeException e) {
+				inFlight.remove(key, future);
+				future.completeExceptionally(e);
+			}
+			return future;
+		}
+		
+		/**
+		 * Reads the resource named by key into memory.
+		 */
+		private Optional<Resource<?>> read(Object key){
+			return set.getResource(key).map(resource->{
+				ByteBuffer contents = resource.asReadOnlyByteBuffer();
+				return new BufferResource<>(resource.getKey(),contents);
+			});
+		}
+		
+		/**
+		 * Decodes resource, and returns the asset and its weight.
+		 */
+		private Decoded decode(AssetDecoder<Object> decoder,Resource<?> resource) {
+			Object asset;
+			try {
+				asset = Objects.requireNonNull(decoder.decode(resource),"Decoder returned null");
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			decodes.increment();
+			return new Decoded(asset,decoder.weigh(asset, resource.size()));
+		}
+		
+		void invalidateAll() {
+			inFlight.clear();
+			cache.forEach(this::remove);
+		}
+	}
+	
+	private final Shared shared;
+	private final ResourceKeyMapper<ResourceKey,Object> mapper;
+	
+	private AssetLoader(Shared shared,ResourceKeyMapper<ResourceKey,Object> mapper) {
+		this.shared = shared;
+		this.mapper = mapper;
+	}
+	
+	/**
+	 * Constructs a new AssetLoader over set, which caches at most maximumWeight bytes of decoded assets. 
+	 *  Resources are read on the default executor given by {@link ResourceExecutors#getDefaultExecutor()}, 
+	 *  and are decoded on a shared pool of daemon threads, with as many threads as available processors.
+	 * @throws NullPointerException if set is null.
+	 * @throws IllegalArgumentException if maximumWeight is negative.
+	 */
+	public AssetLoader(ResourceSet<ResourceKey> set,long maximumWeight) {
+		this(set,maximumWeight,ResourceExecutors.getDefaultExecutor(),DecodeHolder.DEFAULT);
+	}
+	
+	/**
+	 * Constructs a new AssetLoader over set, which caches at most maximumWeight bytes of decoded assets, and reads resources with readExecutor and decodes them with decodeExecutor.
+	 * @param set The resource set to load assets from.
+	 * @param maximumWeight The maximum total weight of cached assets, in bytes.
+	 * @param readExecutor The executor which reads resources into memory.
+	 * @param decodeExecutor The executor which decodes resources into assets.
+	 * @throws NullPointerException if set, readExecutor, or decodeExecutor is null.
+	 * @throws IllegalArgumentException if maximumWeight is negative.
+	 */
+	@SuppressWarnings("unchecked")
+	public AssetLoader(ResourceSet<ResourceKey> set,long maximumWeight,Executor readExecutor,Executor decodeExecutor) {
+		if(maximumWeight<0)
+			throw new IllegalArgumentException("Negative maximum weight");
+		this.shared = new Shared((ResourceSet<Object>)Objects.requireNonNull(set),maximumWeight,Objects.requireNonNull(readExecutor),Objects.requireNonNull(decodeExecutor));
+		this.mapper = null;
+	}
+	
+	private AssetKey assetKey(ResourceKey key,Class<?> type) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(type);
+		return new AssetKey(mapper!=null?mapper.mapToHost(key):key,type);
+	}
+	
+	/**
+	 * Registers decoder to decode assets of the given type, replacing any decoder previously registered for it. 
+	 *  Assets which were already decoded are not affected.<br/>
+	 * Decoders are shared with every loader returned by {@link #map(ResourceKeyMapper)}.
+	 */
+	public <T> void register(Class<T> type,AssetDecoder<? extends T> decoder) {
+		shared.decoders.put(Objects.requireNonNull(type), Objects.requireNonNull(decoder));
+	}
+	
+	/**
+	 * Asynchronously loads the asset of the given type from the resource named by key. 
+	 *  Returns a future which completes with the asset, or an empty Optional if there is no such resource. 
+	 *  If the asset is cached, the returned future is already complete. If the asset is already being loaded, the returned future is that of the existing load.<br/>
+	 * If the resource cannot be read or decoded, the returned future completes exceptionally.
+	 * @throws IllegalArgumentException if no decoder is registered for type.
+	 */
+	public <T> CompletableFuture<Optional<T>> load(ResourceKey key,Class<T> type){
+		return shared.load(assetKey(key,type)).thenApply(asset->asset.map(type::cast));
+	}
+	
+	/**
+	 * Loads the asset of the given type from the resource named by key, and waits for it to be loaded. 
+	 *  Returns an empty Optional if there is no such resource.
+	 * @throws IllegalArgumentException if no decoder is registered for type.
+	 * @throws UncheckedIOException if the resource cannot be read or decoded.
+	 */
+	public <T> Optional<T> get(ResourceKey key,Class<T> type){
+		try {
+			return load(key,type).join();
+		}catch(CompletionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			else if(cause instanceof Error)
+				throw (Error)cause;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the asset of the given type from the resource named by key, if it is cached. Never waits, or starts loading the asset.
+	 */
+	public <T> Optional<T> getIfLoaded(ResourceKey key,Class<T> type){
+		return shared.getIfLoaded(assetKey(key,type)).map(type::cast);
+	}
+	
+	/**
+	 * Returns a loader of the same assets, named by keys of another type, which are mapped to the keys of this loader by mapper. 
+	 *  The returned loader shares the cache, executors, and decoders of this loader, so an asset requested through either is only decoded once.
+	 */
+	@SuppressWarnings("unchecked")
+	public <GuestKeyType> AssetLoader<GuestKeyType> map(ResourceKeyMapper<GuestKeyType,ResourceKey> mapper){
+		ResourceKeyMapper<GuestKeyType,Object> composed = this.mapper!=null?mapper.andThen(this.mapper):(ResourceKeyMapper<GuestKeyType,Object>)Objects.requireNonNull(mapper);
+		return new AssetLoader<>(shared,composed);
+	}
+	
+	/**
+	 * Reloads the underlying set, and discards every cached asset, for this loader and every loader which shares its cache. 
+	 *  Loads which are in progress complete, but their assets are not cached, and later requests start new loads.
+	 */
+	public void reload() {
+		shared.set.reload();
+		shared.generation.incrementAndGet();
+		shared.invalidateAll();
+	}
+	
+	/**
+	 * Discards the cached asset of the given type from the resource named by key, if any, without reloading the underlying set.
+	 *  A load of the asset which is in progress completes, but its asset is not cached, and later requests start a new load.
+	 */
+	public void invalidate(ResourceKey key,Class<?> type) {
+		AssetKey assetKey = assetKey(key,type);
+		// Detach the load in progress first, so that it either sees that it was invalidated, or has already stored its asset
+		shared.inFlight.remove(assetKey);
+		CachedAsset cached = shared.cache.get(assetKey);
+		if(cached!=null)
+			shared.remove(assetKey,cached);
+	}
+	
+	/**
+	 * Discards every cached asset, without reloading the underlying set.
+	 */
+	public void invalidateAll() {
+		shared.generation.incrementAndGet();
+		shared.invalidateAll();
+	}
+	
+	/**
+	 * Returns the number of loads which were answered from the cache.
+	 */
+	public long getHitCount() {
+		return shared.hits.sum();
+	}
+	
+	/**
+	 * Returns the number of loads which started reading a resource. Loads which were coalesced with a load in progress are not counted.
+	 */
+	public long getMissCount() {
+		return shared.misses.sum();
+	}
+	
+	/**
+	 * Returns the number of assets which have been decoded.
+	 */
+	public long getDecodeCount() {
+		return shared.decodes.sum();
+	}
+	
+	/**
+	 * Returns the number of assets which were evicted to keep the cache within its maximum weight.
+	 *  Assets discarded by a reload or invalidation are not counted.
+	 */
+	public long getEvictionCount() {
+		return shared.evictions.sum();
+	}
+	
+	/**
+	 * Returns the total weight, in bytes, of the currently cached assets.
+	 */
+	public long getWeight() {
+		return shared.weight.get();
+	}
+	
+	/**
+	 * Returns the maximum total weight, in bytes, of cached assets.
+	 */
+	public long getMaximumWeight() {
+		return shared.maximumWeight;
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for loading and caching decoded assets, such as images, from resources.
+ */
+package github.lightningcreations.lcjei.assets;
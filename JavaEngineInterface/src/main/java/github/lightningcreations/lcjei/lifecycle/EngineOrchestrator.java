@@ -0,0 +1,308 @@
+package github.lightningcreations.lcjei.lifecycle;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+/**
+ * Performs lifecycle transitions on many Engines in parallel, such as a Host Engine and the Guest Engines embedded in it, or every game hosted by a server.<br/>
+ * Engines may declare that they depend on other Engines with {@link #addDependency(IEngineInterface, IEngineInterface)}. 
+ *  An Engine is only initialized, run, or resumed once the Engines it depends on (such as its Host) have been, 
+ *  and an Engine is only suspended or destroyed once the Engines which depend on it (such as its Guests) have been.
+ *  Engines which do not depend on each other make their transitions concurrently, so a transition of every Engine takes about as long as the slowest chain of dependencies, 
+ *  rather than the sum of every Engine.<br/>
+ * 
+ * Each Engine has a timeout for its transition. An Engine which does not complete its transition in time is considered to have failed, 
+ *  though the call to the Engine cannot be interrupted and keeps running in the background.
+ *  Engines which depend on an Engine which failed are skipped. The failures of every Engine are reported together in an {@link OrchestrationException}.<br/>
+ * This class is thread-safe. Engines should not be added or removed while a transition is in progress, but doing so does not affect that transition.
+ * @author chorm
+ *
+ */
+public final class EngineOrchestrator {
+	
+	private static final class DefaultHolder {
+		static final Executor EXECUTOR;
+		static final ScheduledExecutorService TIMER;
+		
+		static {
+			AtomicInteger count = new AtomicInteger();
+			EXECUTOR = new ThreadPoolExecutor(0,Integer.MAX_VALUE,30,TimeUnit.SECONDS,new SynchronousQueue<>(),r->{
+				Thread t = new Thread(r,"lcjei-orchestrator-"+count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+			TIMER = Executors.newSingleThreadScheduledExecutor(r->{
+				Thread t = new Thread(r,"lcjei-orchestrator-timer");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+	
+	private static final class Node {
+		private final IEngineInterface<?> engine;
+		private final Set<Node> hosts = new LinkedHashSet<>();
+		private final Set<Node> guests = new LinkedHashSet<>();
+		
+		Node(IEngineInterface<?> engine){
+			this.engine = engine;
+		}
+	}
+	
+	private final Executor executor;
+	private final ScheduledExecutorService timer;
+	private final Map<IEngineInterface<?>,Node> nodes = new IdentityHashMap<>();
+	private final List<Node> order = new ArrayList<>();
+	
+	/**
+	 * Constructs a new EngineOrchestrator, which calls Engines on a shared pool of daemon threads.
+	 */
+	public EngineOrchestrator() {
+		this(DefaultHolder.EXECUTOR,DefaultHolder.TIMER);
+	}
+	
+	/**
+	 * Constructs a new EngineOrchestrator, which calls Engines with executor, and schedules timeouts with timer.<br/>
+	 * Lifecycle methods may block, so executor should be able to run as many tasks at once as there are Engines that can make a transition concurrently.
+	 * @throws NullPointerException if executor or timer is null.
+	 */
+	public EngineOrchestrator(Executor executor,ScheduledExecutorService timer) {
+		this.executor = Objects.requireNonNull(executor);
+		this.timer = Objects.requireNonNull(timer);
+	}
+	
+	private Node node(IEngineInterface<?> engine) {
+		return nodes.computeIfAbsent(Objects.requireNonNull(engine), e->{
+			Node node = new Node(e);
+			order.add(node);
+			return node;
+		});
+	}
+	
+	/**
+	 * Adds engine to the Engines managed by this orchestrator, if it is not already managed. Engines are identified by identity.
+	 */
+	public synchronized void add(IEngineInterface<?> engine) {
+		node(engine);
+	}
+	
+	/**
+	 * Declares that guest depends on host, adding either Engine if it is not already managed.
+	 * @throws IllegalArgumentException if host already depends on guest, directly or indirectly, or guest and host are the same Engine.
+	 */
+	public synchronized void addDependency(IEngineInterface<?> guest,IEngineInterface<?> host) {
+		Node g = node(guest);
+		Node h = node(host);
+		if(g==h||dependsOn(h,g))
+			throw new IllegalArgumentException("Dependency would form a cycle");
+		g.hosts.add(h);
+		h.guests.add(g);
+	}
+	
+	private static boolean dependsOn(Node guest,Node host) {
+		for(Node n:guest.hosts)
+			if(n==host||dependsOn(n,host))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Removes engine, and every dependency on or of it.
+	 */
+	public synchronized void remove(IEngineInterface<?> engine) {
+		Node node = nodes.remove(engine);
+		if(node==null)
+			return;
+		order.remove(node);
+		for(Node h:node.hosts)
+			h.guests.remove(node);
+		for(Node g:node.guests)
+			g.hosts.remove(node);
+	}
+	
+	/**
+	 * Returns the Engines managed by this orchestrator, in the order they were added.
+	 */
+	public synchronized List<IEngineInterface<?>> getEngines(){
+		List<IEngineInterface<?>> engines = new ArrayList<>(order.size());
+		for(Node node:order)
+			engines.add(node.engine);
+		return engines;
+	}
+	
+	private static boolean hostsFirst(Transition transition) {
+		return transition!=Transition.SUSPEND&&transition!=Transition.DESTROY;
+	}
+	
+	private static void call(IEngineInterface<?> engine,Transition transition) {
+		switch(transition) {
+		case INITIALIZE:
+			engine.initialize();
+			break;
+		case RUN:
+			engine.run();
+			break;
+		case SUSPEND:
+			engine.suspend();
+			break;
+		case RESUME:
+			engine.resume();
+			break;
+		case DESTROY:
+			engine.destroy();
+			break;
+		}
+	}
+	
+	private CompletableFuture<Void> start(Node node,Transition transition,long timeout,TimeUnit unit,Map<Node,CompletableFuture<Void>> started){
+		CompletableFuture<Void> result = started.get(node);
+		if(result!=null)
+			return result;
+		Set<Node> prerequisites = hostsFirst(transition)?node.hosts:node.guests;
+		List<CompletableFuture<Void>> waits = new ArrayList<>(prerequisites.size());
+		for(Node prerequisite:prerequisites)
+			waits.add(start(prerequisite,transition,timeout,unit,started));
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		started.put(node, done);
+		CompletableFuture.allOf(waits.toArray(new CompletableFuture<?>[0])).whenComplete((v,failure)->{
+			if(failure!=null) {
+				done.completeExceptionally(new OrchestrationException.DependencyFailedException("Not performed, because an Engine it depends on failed to "+transition.name().toLowerCase()));
+				return;
+			}
+			ScheduledFuture<?> timeoutTask = timeout>0?timer.schedule(()->done.completeExceptionally(new TimeoutException("Engine did not "+transition.name().toLowerCase()+" within "+timeout+" "+unit.name().toLowerCase())), timeout, unit):null;
+			try {
+				executor.execute(()->{
+					try {
+						call(node.engine,transition);
+						done.complete(null);
+					}catch(Throwable t) {
+						done.completeExceptionally(t);
+					}finally {
+						if(timeoutTask!=null)
+							timeoutTask.cancel(false);
+					}
+				});
+			}catch(RuntimeException e) {
+				if(timeoutTask!=null)
+					timeoutTask.cancel(false);
+				done.completeExceptionally(e);
+			}
+		});
+		return done;
+	}
+	
+	/**
+	 * Asynchronously performs transition on every managed Engine, respecting their dependencies, and allowing each Engine at most timeout to complete its transition.
+	 *  If timeout is not positive, Engines are not timed out.<br/>
+	 * The result completes once every Engine has completed its transition, failed, timed out, or been skipped. 
+	 *  If any Engine did not complete its transition, it completes exceptionally with an {@link OrchestrationException}.
+	 * @throws NullPointerException if transition or unit is null.
+	 */
+	public CompletableFuture<Void> performAsync(Transition transition,long timeout,TimeUnit unit){
+		Objects.requireNonNull(transition);
+		Objects.requireNonNull(unit);
+		Map<Node,CompletableFuture<Void>> started = new IdentityHashMap<>();
+		List<Node> nodes;
+		synchronized(this) {
+			nodes = new ArrayList<>(order);
+			// Dependencies are only read while starting, so they are read under the same lock as they are modified
+			for(Node node:nodes)
+				start(node,transition,timeout,unit,started);
+		}
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		CompletableFuture.allOf(started.values().toArray(new CompletableFuture<?>[0])).whenComplete((v,failure)->{
+			if(failure==null) {
+				result.complete(null);
+				return;
+			}
+			Map<IEngineInterface<?>,Throwable> failures = new IdentityHashMap<>();
+			for(Node node:nodes) {
+				CompletableFuture<Void> done = started.get(node);
+				if(done.isCompletedExceptionally())
+					try {
+						done.join();
+					}catch(CompletionException e) {
+						failures.put(node.engine, e.getCause());
+					}
+			}
+			result.completeExceptionally(new OrchestrationException(transition,failures));
+		});
+		return result;
+	}
+	
+	/**
+	 * Performs transition on every managed Engine as though by {@link #performAsync(Transition, long, TimeUnit)}, and waits for it to complete.
+	 * @throws OrchestrationException if any Engine did not complete its transition.
+	 * @throws NullPointerException if transition or unit is null.
+	 */
+	public void perform(Transition transition,long timeout,TimeUnit unit) {
+		try {
+			performAsync(transition,timeout,unit).join();
+		}catch(CompletionException e) {
+			throw (OrchestrationException)e.getCause();
+		}
+	}
+	
+	/**
+	 * Initializes every managed Engine, initializing Hosts before the Guests which depend on them.
+	 * @throws OrchestrationException if any Engine was not initialized.
+	 * @see #perform(Transition, long, TimeUnit)
+	 */
+	public void initializeAll(long timeout,TimeUnit unit) {
+		perform(Transition.INITIALIZE,timeout,unit);
+	}
+	
+	/**
+	 * Runs every managed Engine, running Hosts before the Guests which depend on them.
+	 * @throws OrchestrationException if any Engine was not run.
+	 * @see #perform(Transition, long, TimeUnit)
+	 */
+	public void runAll(long timeout,TimeUnit unit) {
+		perform(Transition.RUN,timeout,unit);
+	}
+	
+	/**
+	 * Suspends every managed Engine, suspending Guests before the Hosts they depend on.
+	 * @throws OrchestrationException if any Engine was not suspended.
+	 * @see #perform(Transition, long, TimeUnit)
+	 */
+	public void suspendAll(long timeout,TimeUnit unit) {
+		perform(Transition.SUSPEND,timeout,unit);
+	}
+	
+	/**
+	 * Resumes every managed Engine, resuming Hosts before the Guests which depend on them.
+	 * @throws OrchestrationException if any Engine was not resumed.
+	 * @see #perform(Transition, long, TimeUnit)
+	 */
+	public void resumeAll(long timeout,TimeUnit unit) {
+		perform(Transition.RESUME,timeout,unit);
+	}
+	
+	/**
+	 * Destroys every managed Engine, destroying Guests before the Hosts they depend on.
+	 * @throws OrchestrationException if any Engine was not destroyed.
+	 * @see #perform(Transition, long, TimeUnit)
+	 */
+	public void destroyAll(long timeout,TimeUnit unit) {
+		perform(Transition.DESTROY,timeout,unit);
+	}
+}
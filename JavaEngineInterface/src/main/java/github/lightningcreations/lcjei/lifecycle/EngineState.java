@@ -0,0 +1,89 @@
+package github.lightningcreations.lcjei.lifecycle;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+/**
+ * The states of an Engine, as specified by {@link IEngineInterface}.<br/>
+ * In addition to the states of the specification, there is a transitional state for each lifecycle method, 
+ *  which an Engine is in while that method is being called. 
+ *  An Engine in a transitional state rejects every other lifecycle call, as the state it will end up in is not yet known.
+ *  An executing Engine is {@link #TICKING} while it is being updated or rendered by its Host. It is still executing, so lifecycle calls which are legal while executing wait until it returns to executing,
+ *  and others are rejected.<br/>
+ * A destroyed Engine returns to the {@link #UNINITIALIZED} state, from which it can be initialized again.
+ * @author chorm
+ *
+ */
+public enum EngineState {
+	/**
+	 * The Engine has not been initialized, or has been destroyed.
+	 */
+	UNINITIALIZED,
+	/**
+	 * The Engine is being initialized.
+	 */
+	INITIALIZING,
+	/**
+	 * The Engine has been initialized, but is not yet executing.
+	 */
+	INITIALIZED,
+	/**
+	 * The Engine is starting execution.
+	 */
+	STARTING,
+	/**
+	 * The Engine is executing.
+	 */
+	EXECUTING,
+	/**
+	 * The Engine is being suspended.
+	 */
+	SUSPENDING,
+	/**
+	 * The Engine is suspended.
+	 */
+	SUSPENDED,
+	/**
+	 * The Engine is being resumed.
+	 */
+	RESUMING,
+	/**
+	 * The Engine is being destroyed.
+	 */
+	DESTROYING,
+	/**
+	 * The Engine is executing, and is being updated or rendered by its Host.
+	 */
+	TICKING;
+	
+	/**
+	 * Returns true if this is the state of an Engine while one of its lifecycle methods is being called, or while it is being ticked.
+	 */
+	public boolean isTransitional() {
+		switch(this) {
+		case INITIALIZING:
+		case STARTING:
+		case SUSPENDING:
+		case RESUMING:
+		case DESTROYING:
+		case TICKING:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns true if an Engine in this state is between successful calls to initialize and destroy, 
+	 *  that is, it is legal to call {@link IEngineInterface#getCurrentDrawContainer()}.
+	 */
+	public boolean isInitialized() {
+		switch(this) {
+		case UNINITIALIZED:
+		case INITIALIZING:
+		case DESTROYING:
+			return false;
+		default:
+			return true;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package github.lightningcreations.lcjei.lifecycle;
+
+import java.awt.Container;
+import java.util.Objects;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.IGameInfo;
+
+/**
+ * An {@link IEngineInterface} which enforces the lifecycle of another IEngineInterface with a {@link LifecycleGuard}.<br/>
+ * Calls which violate the contract of IEngineInterface throw an {@link IllegalStateException} without reaching the underlying Engine,
+ *  so the underlying Engine need not check its own state, or synchronize its methods to do so. 
+ *  Lifecycle calls made while another lifecycle call is in progress are rejected rather than waiting for it.<br/>
+ * {@link #getCurrentDrawContainer()} only reads the state before forwarding, and {@link #getGameObject()} and {@link #getGameInfo()} are forwarded as-is.
+ * @author chorm
+ *
+ * @param <GameType> The type of the Game which is used by the Engine.
+ */
+public final class GuardedEngineInterface<GameType> implements IEngineInterface<GameType> {
+	private final IEngineInterface<GameType> engine;
+	private final LifecycleGuard guard;
+	
+	/**
+	 * Constructs a new GuardedEngineInterface over an uninitialized engine.
+	 * @throws NullPointerException if engine is null.
+	 */
+	public GuardedEngineInterface(IEngineInterface<GameType> engine) {
+		this(engine,EngineState.UNINITIALIZED);
+	}
+	
+	/**
+	 * Constructs a new GuardedEngineInterface over an engine which is already in the state initial, such as an active Engine which was wrapped by its implementation.
+	 * @throws NullPointerException if engine or initial is null.
+	 * @throws IllegalArgumentException if initial is a transitional state.
+	 */
+	public GuardedEngineInterface(IEngineInterface<GameType> engine,EngineState initial) {
+		this.engine = Objects.requireNonNull(engine);
+		this.guard = new LifecycleGuard(initial);
+	}
+	
+	/**
+	 * Returns the current state of the Engine.
+	 */
+	public EngineState getState() {
+		return guard.getState();
+	}
+	
+	/**
+	 * Returns the underlying Engine.
+	 */
+	public IEngineInterface<GameType> getEngine(){
+		return engine;
+	}
+
+	@Override
+	public boolean initialize(Container c) throws IllegalStateException {
+		return guard.perform(Transition.INITIALIZE, ()->engine.initialize(c));
+	}
+
+	@Override
+	public void initialize() throws IllegalStateException {
+		guard.perform(Transition.INITIALIZE, ()->engine.initialize());
+	}
+
+	@Override
+	public void destroy() throws IllegalStateException {
+		guard.perform(Transition.DESTROY, ()->engine.destroy());
+	}
+
+	@Override
+	public void run() throws IllegalStateException {
+		guard.perform(Transition.RUN, ()->engine.run());
+	}
+
+	@Override
+	public Container getCurrentDrawContainer() {
+		guard.requireInitialized();
+		return engine.getCurrentDrawContainer();
+	}
+
+	@Override
+	public GameType getGameObject() {
+		return engine.getGameObject();
+	}
+
+	@Override
+	public IGameInfo<GameType> getGameInfo() throws UnsupportedOperationException {
+		return engine.getGameInfo();
+	}
+
+	@Override
+	public void suspend() throws IllegalStateException {
+		guard.perform(Transition.SUSPEND, ()->engine.suspend());
+	}
+
+	@Override
+	public void resume() throws IllegalStateException {
+		guard.perform(Transition.RESUME, ()->engine.resume());
+	}
+
+}
@@ -0,0 +1,200 @@
+package github.lightningcreations.lcjei.lifecycle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+/**
+ * Tracks the {@link EngineState} of an Engine, and enforces the state machine specified by {@link IEngineInterface}.<br/>
+ * The state is held in a single atomic field. Each lifecycle call atomically moves the Engine from a legal source state to the transitional state of the call,
+ *  performs the call, and then publishes the target state, or restores the source state if the call threw.
+ *  Calls which are illegal in the current state, including calls made while another lifecycle call is in progress, throw an {@link IllegalStateException} immediately.<br/>
+ * The guard never locks, so it can be used from any number of threads. It does not serialize calls which are legal at the same time, 
+ *  but as every transition passes through a transitional state, no two lifecycle calls can be in progress at once.
+ *  The only call which waits is a lifecycle call made while the Engine is being {@link #tick(Runnable) ticked}, which waits for the tick to finish, as the Engine is still executing.<br/>
+ * Implementations of {@link IEngineInterface} can use a LifecycleGuard directly, or be wrapped in a {@link GuardedEngineInterface}.
+ * @author chorm
+ *
+ */
+public final class LifecycleGuard {
+	private final AtomicReference<EngineState> state;
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final Object tickDone = new Object();
+	private volatile Thread ticker;
+	
+	/**
+	 * Constructs a new LifecycleGuard for an uninitialized Engine.
+	 */
+	public LifecycleGuard() {
+		this(EngineState.UNINITIALIZED);
+	}
+	
+	/**
+	 * Constructs a new LifecycleGuard for an Engine which is already in the state initial, such as when an active Engine is wrapped.
+	 * @throws IllegalArgumentException if initial is a transitional state.
+	 * @throws NullPointerException if initial is null.
+	 */
+	public LifecycleGuard(EngineState initial) {
+		if(initial.isTransitional())
+			throw new IllegalArgumentException("Cannot start in transitional state "+initial);
+		this.state = new AtomicReference<>(initial);
+	}
+	
+	/**
+	 * Returns the current state. This is a single volatile read.
+	 */
+	public EngineState getState() {
+		return state.get();
+	}
+	
+	/**
+	 * Atomically moves the Engine into the transitional state of transition, and returns the state it was in.<br/>
+	 * If the Engine is being ticked, and transition is legal from {@link EngineState#EXECUTING}, waits for the tick to finish.<br/>
+	 * Each successful call must be followed by a call to either {@link #complete(Transition)} or {@link #abort(Transition, EngineState)}.
+	 * @throws IllegalStateException if transition is not legal in the current state, or it is made by the action of a tick.
+	 */
+	public EngineState begin(Transition transition) {
+		EngineState current;
+		do {
+			current = state.get();
+			if(current==EngineState.TICKING&&transition.isLegalFrom(EngineState.EXECUTING)&&ticker!=Thread.currentThread()) {
+				awaitTick();
+				current = null;
+				continue;
+			}
+			if(!transition.isLegalFrom(current))
+				throw new IllegalStateException("Cannot "+transition.name().toLowerCase()+" an Engine which is "+describe(current));
+		}while(current==null||!state.compareAndSet(current, transition.getTransitionalState()));
+		return current;
+	}
+	
+	private static String describe(EngineState state) {
+		return state==EngineState.TICKING?"being ticked":state.name().toLowerCase();
+	}
+	
+	/**
+	 * Waits until the Engine is not ticking. New ticks are skipped while any thread waits, so that a Host which ticks continuously cannot starve a lifecycle call.
+	 *  Interrupts are deferred until the wait ends, as lifecycle calls cannot be interrupted.
+	 */
+	private void awaitTick() {
+		boolean interrupted = false;
+		waiting.incrementAndGet();
+		try {
+			synchronized(tickDone) {
+				while(state.get()==EngineState.TICKING) {
+					try {
+						tickDone.wait();
+					}catch(InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+		}finally {
+			waiting.decrementAndGet();
+			if(interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Completes transition, which was begun by {@link #begin(Transition)}, moving the Engine into its target state.
+	 * @throws IllegalStateException if the Engine is not making transition.
+	 */
+	public void complete(Transition transition) {
+		move(transition.getTransitionalState(),transition.getTargetState());
+	}
+	
+	/**
+	 * Abandons transition, which was begun by {@link #begin(Transition)}, returning the Engine to previous, the state returned by begin.
+	 * @throws IllegalStateException if the Engine is not making transition.
+	 */
+	public void abort(Transition transition,EngineState previous) {
+		move(transition.getTransitionalState(),previous);
+	}
+	
+	private void move(EngineState from,EngineState to) {
+		if(!state.compareAndSet(from, to))
+			throw new IllegalStateException("Engine is not "+from.name().toLowerCase()+", it is "+describe(state.get()));
+	}
+	
+	/**
+	 * Performs action as transition. If action completes normally, the Engine moves to the target state of transition.
+	 *  Otherwise, it returns to the state it was in, and the exception thrown by action is rethrown.
+	 * @throws IllegalStateException if transition is not legal in the current state.
+	 */
+	public void perform(Transition transition,Runnable action) {
+		EngineState previous = begin(transition);
+		try {
+			action.run();
+		}catch(RuntimeException|Error e) {
+			abort(transition,previous);
+			throw e;
+		}
+		complete(transition);
+	}
+	
+	/**
+	 * As {@link #perform(Transition, Runnable)}, but returns the result of action.
+	 */
+	public <T> T perform(Transition transition,Supplier<T> action) {
+		EngineState previous = begin(transition);
+		T result;
+		try {
+			result = action.get();
+		}catch(RuntimeException|Error e) {
+			abort(transition,previous);
+			throw e;
+		}
+		complete(transition);
+		return result;
+	}
+	
+	/**
+	 * Performs action if the Engine is executing, and returns true. Otherwise, or if a lifecycle call is waiting for a previous tick to finish, returns false without performing action.<br/>
+	 * While action is performed, the Engine is {@link EngineState#TICKING ticking}. Lifecycle calls which are legal while executing, such as suspend and destroy, 
+	 *  wait for action to finish, so the Engine is never suspended or destroyed while it is being updated or rendered. Lifecycle calls made by action itself throw an IllegalStateException.
+	 *  The Engine returns to executing afterwards, whether or not action completes normally.
+	 */
+	public boolean tick(Runnable action) {
+		if(waiting.get()>0||!state.compareAndSet(EngineState.EXECUTING, EngineState.TICKING))
+			return false;
+		ticker = Thread.currentThread();
+		try {
+			action.run();
+		}finally {
+			ticker = null;
+			state.compareAndSet(EngineState.TICKING, EngineState.EXECUTING);
+			if(waiting.get()>0)
+				synchronized(tickDone) {
+					tickDone.notifyAll();
+				}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks that the Engine is between successful calls to initialize and destroy, as required by {@link IEngineInterface#getCurrentDrawContainer()}.
+	 * @throws IllegalStateException if it is not.
+	 */
+	public void requireInitialized() {
+		EngineState current = state.get();
+		if(!current.isInitialized())
+			throw new IllegalStateException("Engine is not initialized, it is "+current.name().toLowerCase());
+	}
+	
+	/**
+	 * Forcibly sets the current state, such as after an Engine is reset outside of its lifecycle methods.
+	 */
+	public void reset(EngineState state) {
+		if(state.isTransitional())
+			throw new IllegalArgumentException("Cannot reset to transitional state "+state);
+		this.state.set(state);
+	}
+
+	@Override
+	public String toString() {
+		return "LifecycleGuard["+state.get()+"]";
+	}
+}
@@ -0,0 +1,63 @@
+package github.lightningcreations.lcjei.lifecycle;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+/**
+ * Thrown when a transition performed by an {@link EngineOrchestrator} fails for one or more Engines.<br/>
+ * The failure of each Engine is available from {@link #getFailures()}, and is also added as a suppressed exception. 
+ *  Engines which were skipped because an Engine they depend on failed are included, with a cause of {@link DependencyFailedException}.
+ * @author chorm
+ *
+ */
+public class OrchestrationException extends RuntimeException {
+
+	private static final long serialVersionUID = -1720346452806637510L;
+	
+	/**
+	 * Thrown in place of a transition of an Engine, which was not performed because an Engine it depends on failed to make the transition.
+	 */
+	public static class DependencyFailedException extends RuntimeException {
+
+		private static final long serialVersionUID = 8101829713302740567L;
+		
+		/**
+		 * Constructs a new DependencyFailedException with the given message.
+		 */
+		public DependencyFailedException(String message) {
+			super(message);
+		}
+	}
+	
+	private final Transition transition;
+	private final transient Map<IEngineInterface<?>,Throwable> failures;
+	
+	/**
+	 * Constructs a new OrchestrationException for transition, with the failure of each Engine which failed.
+	 */
+	public OrchestrationException(Transition transition,Map<IEngineInterface<?>,Throwable> failures) {
+		super(failures.size()+" engine(s) failed to "+transition.name().toLowerCase());
+		this.transition = transition;
+		Map<IEngineInterface<?>,Throwable> copy = new IdentityHashMap<>(failures);
+		this.failures = Collections.unmodifiableMap(copy);
+		for(Throwable t:copy.values())
+			addSuppressed(t);
+	}
+	
+	/**
+	 * Returns the transition which failed.
+	 */
+	public Transition getTransition() {
+		return transition;
+	}
+	
+	/**
+	 * Returns the Engines which failed to make the transition, and the exception thrown by or in place of each.
+	 */
+	public Map<IEngineInterface<?>,Throwable> getFailures(){
+		return failures;
+	}
+}
@@ -0,0 +1,65 @@
+package github.lightningcreations.lcjei.lifecycle;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+/**
+ * The transitions between {@link EngineState}s made by the lifecycle methods of {@link IEngineInterface}.
+ * @author chorm
+ *
+ */
+public enum Transition {
+	/**
+	 * {@link IEngineInterface#initialize()} or {@link IEngineInterface#initialize(java.awt.Container)}.
+	 */
+	INITIALIZE(EngineState.INITIALIZING,EngineState.INITIALIZED,EngineState.UNINITIALIZED),
+	/**
+	 * {@link IEngineInterface#run()}.
+	 */
+	RUN(EngineState.STARTING,EngineState.EXECUTING,EngineState.INITIALIZED),
+	/**
+	 * {@link IEngineInterface#suspend()}.
+	 */
+	SUSPEND(EngineState.SUSPENDING,EngineState.SUSPENDED,EngineState.EXECUTING),
+	/**
+	 * {@link IEngineInterface#resume()}.
+	 */
+	RESUME(EngineState.RESUMING,EngineState.EXECUTING,EngineState.SUSPENDED),
+	/**
+	 * {@link IEngineInterface#destroy()}.
+	 */
+	DESTROY(EngineState.DESTROYING,EngineState.UNINITIALIZED,EngineState.INITIALIZED,EngineState.EXECUTING,EngineState.SUSPENDED);
+	
+	private final EngineState transitional;
+	private final EngineState target;
+	private final int sources;
+	
+	private Transition(EngineState transitional,EngineState target,EngineState... sources) {
+		this.transitional = transitional;
+		this.target = target;
+		int mask = 0;
+		for(EngineState source:sources)
+			mask |= 1<<source.ordinal();
+		this.sources = mask;
+	}
+	
+	/**
+	 * Returns true if this transition can be made from state.
+	 */
+	public boolean isLegalFrom(EngineState state) {
+		return (sources&(1<<state.ordinal()))!=0;
+	}
+	
+	/**
+	 * Returns the state of an Engine while it is making this transition.
+	 */
+	public EngineState getTransitionalState() {
+		return transitional;
+	}
+	
+	/**
+	 * Returns the state of an Engine after it successfully makes this transition.
+	 */
+	public EngineState getTargetState() {
+		return target;
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for tracking and enforcing the lifecycle of Engines.
+ */
+package github.lightningcreations.lcjei.lifecycle;
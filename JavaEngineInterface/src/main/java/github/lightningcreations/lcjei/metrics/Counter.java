@@ -0,0 +1,58 @@
+package github.lightningcreations.lcjei.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named count, such as of bytes read or lookups which missed.<br/>
+ * Counters are updated without contention from any number of threads.
+ * @author chorm
+ *
+ */
+public final class Counter {
+	private final String name;
+	private final LongAdder value = new LongAdder();
+	
+	Counter(String name){
+		this.name = name;
+	}
+	
+	/**
+	 * Returns the name of the counter.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Adds one to the counter.
+	 */
+	public void increment() {
+		value.increment();
+	}
+	
+	/**
+	 * Adds n to the counter.
+	 */
+	public void add(long n) {
+		value.add(n);
+	}
+	
+	/**
+	 * Returns the current count.
+	 */
+	public long get() {
+		return value.sum();
+	}
+	
+	/**
+	 * Resets the count to 0.
+	 */
+	public void reset() {
+		value.reset();
+	}
+
+	@Override
+	public String toString() {
+		return name+"="+get();
+	}
+}
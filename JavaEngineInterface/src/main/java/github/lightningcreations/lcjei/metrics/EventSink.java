@@ -0,0 +1,42 @@
+package github.lightningcreations.lcjei.metrics;
+
+/**
+ * Emits timed events, such as to JDK Flight Recorder.<br/>
+ * The Flight Recorder implementation is compiled for Java 11, and is only loaded on a Java Runtime which has the jdk.jfr module. 
+ *  Otherwise, events are discarded.
+ * @author chorm
+ *
+ */
+interface EventSink {
+	
+	/**
+	 * The kinds of events.
+	 */
+	enum Kind {
+		LIFECYCLE,
+		ENGINE_LOOKUP,
+		RESOURCE_LOOKUP,
+		RESOURCE_READ
+	}
+	
+	/**
+	 * An event which is in progress.
+	 */
+	interface Span {
+		/**
+		 * Ends the event, and emits it if it is enabled.
+		 * @param subject What the event is about, such as the class of an Engine, or the name of a ResourceSet.
+		 * @param detail Further detail, such as the transition, or the key of a resource.
+		 * @param bytes The number of bytes read, for resource reads.
+		 * @param success Whether the operation succeeded, or found what was looked up.
+		 */
+		void end(String subject,String detail,long bytes,boolean success);
+	}
+	
+	Span NONE = (subject,detail,bytes,success)->{};
+	
+	/**
+	 * Starts an event of the given kind. If events of that kind are not being recorded, returns {@link #NONE}.
+	 */
+	Span begin(Kind kind);
+}
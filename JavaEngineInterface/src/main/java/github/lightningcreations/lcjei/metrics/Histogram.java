@@ -0,0 +1,114 @@
+package github.lightningcreations.lcjei.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named distribution of non-negative values, such as durations in nanoseconds or sizes in bytes.<br/>
+ * Values are counted in 64 buckets, one for each power of two, so recording a value is a few additions without contention, 
+ *  and percentiles are estimated to within a factor of two. The count, sum and maximum are exact.
+ * @author chorm
+ *
+ */
+public final class Histogram {
+	private final String name;
+	private final LongAdder[] buckets = new LongAdder[64];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	Histogram(String name){
+		this.name = name;
+		for(int i = 0;i<buckets.length;i++)
+			buckets[i] = new LongAdder();
+	}
+	
+	/**
+	 * Returns the name of the histogram.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Records value. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if(value<0)
+			value = 0;
+		buckets[63-Long.numberOfLeadingZeros(value|1)].increment();
+		count.increment();
+		sum.add(value);
+		long current;
+		while(value>(current = max.get())&&!max.compareAndSet(current, value));
+	}
+	
+	/**
+	 * Returns the number of recorded values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * Returns the sum of recorded values.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	/**
+	 * Returns the largest recorded value, or 0 if none were recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Returns the mean of recorded values, or 0 if none were recorded.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count==0?0:(double)getSum()/count;
+	}
+	
+	/**
+	 * Returns an estimate of the given percentile of recorded values, as the upper bound of the bucket which contains it, or 0 if none were recorded.
+	 * @param percentile The percentile, between 0 and 100.
+	 * @throws IllegalArgumentException if percentile is not between 0 and 100.
+	 */
+	public long getPercentile(double percentile) {
+		if(!(percentile>=0&&percentile<=100))
+			throw new IllegalArgumentException("Percentile must be between 0 and 100");
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for(int i = 0;i<counts.length;i++)
+			total += counts[i] = buckets[i].sum();
+		if(total==0)
+			return 0;
+		long rank = Math.max(1, (long)Math.ceil(total*percentile/100));
+		long seen = 0;
+		for(int i = 0;i<counts.length;i++) {
+			seen += counts[i];
+			if(seen>=rank)
+				return Math.min(getMax(), i==63?Long.MAX_VALUE:(2L<<i)-1);
+		}
+		return getMax();
+	}
+	
+	/**
+	 * Discards all recorded values.
+	 */
+	public void reset() {
+		for(LongAdder bucket:buckets)
+			bucket.reset();
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return name+"[count="+getCount()+", mean="+getMean()+", p99="+getPercentile(99)+", max="+getMax()+"]";
+	}
+}
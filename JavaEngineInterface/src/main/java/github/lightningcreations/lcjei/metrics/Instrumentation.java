@@ -0,0 +1,488 @@
+package github.lightningcreations.lcjei.metrics;
+
+import java.awt.Container;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.IGameInfo;
+import github.lightningcreations.lcjei.resources.Resource;
+import github.lightningcreations.lcjei.resources.ResourceSet;
+
+/**
+ * Wraps Engines and ResourceSets so that their operations are measured.<br/>
+ * If {@link Metrics#isEnabled()} is false when an object is instrumented, it is returned without being wrapped, so it has no overhead.<br/>
+ * For an Engine, the duration of each lifecycle method is recorded in the histogram engine.&lt;class&gt;.&lt;method&gt; (in nanoseconds), 
+ *  and exceptions are counted in engine.&lt;class&gt;.failures.<br/>
+ * For a ResourceSet with a given name, the duration of each lookup is recorded in resources.&lt;name&gt;.lookup, 
+ *  and found and missing resources are counted in resources.&lt;name&gt;.hits and resources.&lt;name&gt;.misses. Lookups which throw are measured, but are counted as neither.
+ *  Asynchronous lookups are forwarded to the set, so that it can coalesce or batch them, and are measured from the call until they complete. 
+ *  The resources it returns record the time taken to open them in resources.&lt;name&gt;.open, and, when each stream or channel is closed, 
+ *  the number of bytes read in resources.&lt;name&gt;.readSize and the time it was open in resources.&lt;name&gt;.read. 
+ *  The total number of bytes read is counted in resources.&lt;name&gt;.bytes.<br/>
+ * Each of these operations is also emitted as a Flight Recorder event, if Flight Recorder is available and recording it.
+ * @author chorm
+ *
+ */
+public final class Instrumentation {
+
+	private Instrumentation() {
+	}
+	
+	/**
+	 * Returns an Engine which measures the lifecycle methods of engine, or engine itself if instrumentation is disabled.<br/>
+	 * The returned Engine only implements {@link IEngineInterface}, so extensions such as {@link github.lightningcreations.lcjei.ITickableEngine} 
+	 *  should be used through engine directly.
+	 */
+	public static <GameType> IEngineInterface<GameType> instrument(IEngineInterface<GameType> engine){
+		Objects.requireNonNull(engine);
+		if(!Metrics.isEnabled()||engine instanceof InstrumentedEngine)
+			return engine;
+		return new InstrumentedEngine<>(engine);
+	}
+	
+	/**
+	 * Returns a ResourceSet which measures lookups in set, and reads of its resources, under the given name, 
+	 *  or set itself if instrumentation is disabled.
+	 */
+	public static <ResourceKey> ResourceSet<ResourceKey> instrument(ResourceSet<ResourceKey> set,String name){
+		Objects.requireNonNull(set);
+		Objects.requireNonNull(name);
+		if(!Metrics.isEnabled()||set instanceof InstrumentedResourceSet)
+			return set;
+		return new InstrumentedResourceSet<>(set,name);
+	}
+	
+	private static final class InstrumentedEngine<GameType> implements IEngineInterface<GameType> {
+		private final IEngineInterface<GameType> engine;
+		private final String subject;
+		private final Histogram initialize;
+		private final Histogram run;
+		private final Histogram suspend;
+		private final Histogram resume;
+		private final Histogram destroy;
+		private final Counter failures;
+		
+		InstrumentedEngine(IEngineInterface<GameType> engine){
+			this.engine = engine;
+			this.subject = engine.getClass().getName();
+			String prefix = "engine."+subject+".";
+			this.initialize = Metrics.histogram(prefix+"initialize");
+			this.run = Metrics.histogram(prefix+"run");
+			this.suspend = Metrics.histogram(prefix+"suspend");
+			this.resume = Metrics.histogram(prefix+"resume");
+			this.destroy = Metrics.histogram(prefix+"destroy");
+			this.failures = Metrics.counter(prefix+"failures");
+		}
+		
+		private <T> T measure(String method,Histogram histogram,Supplier<T> action) {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.LIFECYCLE);
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				T result = action.get();
+				success = true;
+				return result;
+			}finally {
+				histogram.record(System.nanoTime()-start);
+				if(!success)
+					failures.increment();
+				span.end(subject, method, 0, success);
+			}
+		}
+		
+		private void measure(String method,Histogram histogram,Runnable action) {
+			measure(method,histogram,()->{
+				action.run();
+				return null;
+			});
+		}
+
+		@Override
+		public boolean initialize(Container c) throws IllegalStateException {
+			return measure("initialize",initialize,()->engine.initialize(c));
+		}
+
+		@Override
+		public void initialize() throws IllegalStateException {
+			measure("initialize",initialize,()->engine.initialize());
+		}
+
+		@Override
+		public void destroy() throws IllegalStateException {
+			measure("destroy",destroy,()->engine.destroy());
+		}
+
+		@Override
+		public void run() throws IllegalStateException {
+			measure("run",run,()->engine.run());
+		}
+
+		@Override
+		public Container getCurrentDrawContainer() {
+			return engine.getCurrentDrawContainer();
+		}
+
+		@Override
+		public GameType getGameObject() {
+			return engine.getGameObject();
+		}
+
+		@Override
+		public IGameInfo<GameType> getGameInfo() throws UnsupportedOperationException {
+			return engine.getGameInfo();
+		}
+
+		@Override
+		public void suspend() throws IllegalStateException {
+			measure("suspend",suspend,()->engine.suspend());
+		}
+
+		@Override
+		public void resume() throws IllegalStateException {
+			measure("resume",resume,()->engine.resume());
+		}
+	}
+	
+	/**
+	 * The metrics of an instrumented ResourceSet, which are shared with its resources.
+	 */
+	private static final class ResourceMetrics {
+		final String name;
+		final Histogram lookup;
+		final Counter hits;
+		final Counter misses;
+		final Histogram open;
+		final Histogram read;
+		final Histogram readSize;
+		final Counter bytes;
+		
+		ResourceMetrics(String name){
+			this.name = name;
+			String prefix = "resources."+name+".";
+			this.lookup = Metrics.histogram(prefix+"lookup");
+			this.hits = Metrics.counter(prefix+"hits");
+			this.misses = Metrics.counter(prefix+"misses");
+			this.open = Metrics.histogram(prefix+"open");
+			this.read = Metrics.histogram(prefix+"read");
+			this.readSize = Metrics.histogram(prefix+"readSize");
+			this.bytes = Metrics.counter(prefix+"bytes");
+		}
+		
+		void recordRead(EventSink.Span span,Object key,long start,long count) {
+			read.record(System.nanoTime()-start);
+			readSize.record(count);
+			bytes.add(count);
+			span.end(name, String.valueOf(key), count, true);
+		}
+	}
+	
+	private static final class InstrumentedResourceSet<ResourceKey> implements ResourceSet<ResourceKey> {
+		private final ResourceSet<ResourceKey> set;
+		private final ResourceMetrics metrics;
+		
+		InstrumentedResourceSet(ResourceSet<ResourceKey> set,String name){
+			this.set = set;
+			this.metrics = new ResourceMetrics(name);
+		}
+
+		private Resource<ResourceKey> wrap(Resource<ResourceKey> resource){
+			return new InstrumentedResource<>(resource,metrics);
+		}
+		
+		/**
+		 * Records a lookup of key, which started at start, and found hits resources and did not find misses. A lookup which failed finds neither.
+		 */
+		private void recordLookup(EventSink.Span span,String key,long start,long hits,long misses) {
+			metrics.lookup.record(System.nanoTime()-start);
+			metrics.hits.add(hits);
+			metrics.misses.add(misses);
+			span.end(metrics.name, key, 0, hits>0);
+		}
+		
+		private void recordLookup(EventSink.Span span,Object key,long start,Optional<?> result) {
+			if(result==null)
+				recordLookup(span,String.valueOf(key),start,0,0);
+			else
+				recordLookup(span,String.valueOf(key),start,result.isPresent()?1:0,result.isPresent()?0:1);
+		}
+
+		@Override
+		public Optional<Resource<ResourceKey>> getResource(ResourceKey key) {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.RESOURCE_LOOKUP);
+			long start = System.nanoTime();
+			Optional<Resource<ResourceKey>> result = null;
+			try {
+				result = set.getResource(key);
+			}finally {
+				recordLookup(span,key,start,result);
+			}
+			return result.map(this::wrap);
+		}
+
+		@Override
+		public CompletableFuture<Optional<Resource<ResourceKey>>> getResourceAsync(ResourceKey key, Executor executor) {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.RESOURCE_LOOKUP);
+			long start = System.nanoTime();
+			CompletableFuture<Optional<Resource<ResourceKey>>> lookup = null;
+			try {
+				lookup = set.getResourceAsync(key, executor);
+			}finally {
+				if(lookup==null)
+					recordLookup(span,key,start,null);
+			}
+			return lookup.whenComplete((result,t)->recordLookup(span,key,start,result))
+					.thenApply(result->result.map(this::wrap));
+		}
+
+		@Override
+		public CompletableFuture<Map<ResourceKey, Resource<ResourceKey>>> getResources(Collection<? extends ResourceKey> keys, Executor executor) {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.RESOURCE_LOOKUP);
+			long start = System.nanoTime();
+			int requested = keys.size();
+			String detail = requested+" keys";
+			CompletableFuture<Map<ResourceKey,Resource<ResourceKey>>> lookup = null;
+			try {
+				lookup = set.getResources(keys, executor);
+			}finally {
+				if(lookup==null)
+					recordLookup(span,detail,start,0,0);
+			}
+			return lookup.whenComplete((result,t)->{
+				if(result==null)
+					recordLookup(span,detail,start,0,0);
+				else
+					recordLookup(span,detail,start,result.size(),requested-result.size());
+			}).thenApply(result->{
+				Map<ResourceKey,Resource<ResourceKey>> wrapped = new HashMap<>();
+				result.forEach((key,resource)->wrapped.put(key, wrap(resource)));
+				return wrapped;
+			});
+		}
+
+		@Override
+		public Stream<ResourceKey> keys() {
+			return set.keys();
+		}
+
+		@Override
+		public void reload() {
+			set.reload();
+		}
+
+		@Override
+		public Stream<ResourceKey> keys(ResourceKey fromKey, ResourceKey toKey) {
+			return set.keys(fromKey, toKey);
+		}
+
+		@Override
+		public Stream<ResourceKey> keysWithPrefix(String prefix) {
+			return set.keysWithPrefix(prefix);
+		}
+
+		@Override
+		public CompletableFuture<Void> prefetch(Collection<? extends ResourceKey> keys, Executor executor) {
+			return set.prefetch(keys, executor);
+		}
+	}
+	
+	private static final class InstrumentedResource<ResourceKey> implements Resource<ResourceKey> {
+		private final Resource<ResourceKey> resource;
+		private final ResourceMetrics metrics;
+		
+		InstrumentedResource(Resource<ResourceKey> resource,ResourceMetrics metrics){
+			this.resource = resource;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public InputStream getReadStream() {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.RESOURCE_READ);
+			long start = System.nanoTime();
+			InputStream stream = resource.getReadStream();
+			metrics.open.record(System.nanoTime()-start);
+			return new CountingInputStream(stream,span,start);
+		}
+
+		@Override
+		public SeekableByteChannel getReadChannel() {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.RESOURCE_READ);
+			long start = System.nanoTime();
+			SeekableByteChannel channel = resource.getReadChannel();
+			metrics.open.record(System.nanoTime()-start);
+			return new CountingChannel(channel,span,start);
+		}
+
+		@Override
+		public ResourceKey getKey() {
+			return resource.getKey();
+		}
+
+		@Override
+		public long size() {
+			return resource.size();
+		}
+
+		@Override
+		public long lastModified() {
+			return resource.lastModified();
+		}
+
+		@Override
+		public ByteBuffer asReadOnlyByteBuffer() {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.RESOURCE_READ);
+			long start = System.nanoTime();
+			ByteBuffer buffer = resource.asReadOnlyByteBuffer();
+			metrics.recordRead(span, getKey(), start, buffer.remaining());
+			return buffer;
+		}
+
+		@Override
+		public long transferTo(WritableByteChannel target) {
+			EventSink.Span span = Metrics.events().begin(EventSink.Kind.RESOURCE_READ);
+			long start = System.nanoTime();
+			long transferred = resource.transferTo(target);
+			metrics.recordRead(span, getKey(), start, transferred);
+			return transferred;
+		}
+		
+		private final class CountingInputStream extends FilterInputStream {
+			private final EventSink.Span span;
+			private final long start;
+			private long count;
+			private boolean closed;
+			
+			CountingInputStream(InputStream in,EventSink.Span span,long start){
+				super(in);
+				this.span = span;
+				this.start = start;
+			}
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if(b>=0)
+					count++;
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if(n>0)
+					count += n;
+				return n;
+			}
+
+			@Override
+			public synchronized void mark(int readlimit) {
+				// Marking would cause bytes to be counted twice
+			}
+
+			@Override
+			public synchronized void reset() throws IOException {
+				throw new IOException("mark/reset not supported");
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				}finally {
+					if(!closed) {
+						closed = true;
+						metrics.recordRead(span, getKey(), start, count);
+					}
+				}
+			}
+		}
+		
+		private final class CountingChannel implements SeekableByteChannel {
+			private final SeekableByteChannel channel;
+			private final EventSink.Span span;
+			private final long start;
+			private long count;
+			private boolean closed;
+			
+			CountingChannel(SeekableByteChannel channel,EventSink.Span span,long start){
+				this.channel = channel;
+				this.span = span;
+				this.start = start;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return channel.isOpen();
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					channel.close();
+				}finally {
+					synchronized(this) {
+						if(closed)
+							return;
+						closed = true;
+					}
+					metrics.recordRead(span, getKey(), start, count);
+				}
+			}
+
+			@Override
+			public int read(ByteBuffer dst) throws IOException {
+				int n = channel.read(dst);
+				if(n>0)
+					synchronized(this) {
+						count += n;
+					}
+				return n;
+			}
+
+			@Override
+			public int write(ByteBuffer src) throws IOException {
+				return channel.write(src);
+			}
+
+			@Override
+			public long position() throws IOException {
+				return channel.position();
+			}
+
+			@Override
+			public SeekableByteChannel position(long newPosition) throws IOException {
+				channel.position(newPosition);
+				return this;
+			}
+
+			@Override
+			public long size() throws IOException {
+				return channel.size();
+			}
+
+			@Override
+			public SeekableByteChannel truncate(long size) throws IOException {
+				channel.truncate(size);
+				return this;
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package github.lightningcreations.lcjei.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The registry of {@link Counter}s and {@link Histogram}s, and the switch which enables instrumentation.<br/>
+ * Instrumentation is disabled unless the system property lcjei.metrics is true, or it is enabled with {@link #setEnabled(boolean)}.
+ *  While it is disabled, {@link Instrumentation} returns objects without wrapping them, so instrumented code paths have no overhead, 
+ *  and the only cost elsewhere is a volatile read.<br/>
+ * Metrics can be read directly, or through JMX once {@link #registerMBean()} is called. 
+ *  Timed operations are also emitted as JDK Flight Recorder events, on a Java Runtime which supports them (Java 11 or later).
+ * @author chorm
+ *
+ */
+public final class Metrics {
+	
+	/**
+	 * The name under which the MXBean is registered.
+	 */
+	public static final String OBJECT_NAME = "github.lightningcreations.lcjei:type=Metrics";
+	
+	private static volatile boolean enabled = Boolean.getBoolean("lcjei.metrics");
+	private static final ConcurrentHashMap<String,Counter> counters = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String,Histogram> histograms = new ConcurrentHashMap<>();
+	
+	private Metrics() {
+	}
+	
+	private static final class EventsHolder {
+		static final EventSink EVENTS = load();
+		
+		private static EventSink load() {
+			try {
+				Class.forName("jdk.jfr.Event");
+				return (EventSink)Class.forName(Metrics.class.getPackage().getName()+".JfrEventSink").newInstance();
+			}catch(ReflectiveOperationException|LinkageError|RuntimeException e) {
+				// Flight Recorder is not available
+				return kind->EventSink.NONE;
+			}
+		}
+	}
+	
+	static EventSink events() {
+		return EventsHolder.EVENTS;
+	}
+	
+	/**
+	 * Returns true if instrumentation is enabled.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Enables or disables instrumentation. Objects which were already instrumented keep recording metrics while disabled, 
+	 *  but objects instrumented afterwards are not.
+	 */
+	public static void setEnabled(boolean enabled) {
+		Metrics.enabled = enabled;
+	}
+	
+	/**
+	 * Returns the counter named name, creating it if it does not exist.
+	 */
+	public static Counter counter(String name) {
+		return counters.computeIfAbsent(name, Counter::new);
+	}
+	
+	/**
+	 * Returns the histogram named name, creating it if it does not exist.
+	 */
+	public static Histogram histogram(String name) {
+		return histograms.computeIfAbsent(name, Histogram::new);
+	}
+	
+	/**
+	 * Returns every counter, by name, in order of name.
+	 */
+	public static Map<String,Counter> getCounters(){
+		return Collections.unmodifiableMap(new TreeMap<>(counters));
+	}
+	
+	/**
+	 * Returns every histogram, by name, in order of name.
+	 */
+	public static Map<String,Histogram> getHistograms(){
+		return Collections.unmodifiableMap(new TreeMap<>(histograms));
+	}
+	
+	/**
+	 * Resets every counter and histogram.
+	 */
+	public static void reset() {
+		counters.values().forEach(Counter::reset);
+		histograms.values().forEach(Histogram::reset);
+	}
+	
+	/**
+	 * Performs an Engine lookup for key, recording its duration in the named histogram, and counting it in lookup.misses if it returns null.
+	 *  This is used by {@link github.lightningcreations.lcjei.service.EngineLookup} while instrumentation is enabled.
+	 */
+	public static <T> T measureLookup(String histogram,String key,Supplier<T> lookup) {
+		EventSink.Span span = events().begin(EventSink.Kind.ENGINE_LOOKUP);
+		long start = System.nanoTime();
+		T result = lookup.get();
+		histogram(histogram).record(System.nanoTime()-start);
+		if(result==null)
+			counter("lookup.misses").increment();
+		span.end(histogram, key, 0, result!=null);
+		return result;
+	}
+	
+	/**
+	 * Registers the {@link MetricsMXBean} with the platform MBeanServer, if it is not already registered.
+	 * @throws IllegalStateException if it cannot be registered.
+	 */
+	public static void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if(!server.isRegistered(name))
+				server.registerMBean(new MXBean(), name);
+		}catch(InstanceAlreadyExistsException e) {
+			// Registered concurrently
+		}catch(JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static final class MXBean implements MetricsMXBean {
+		
+		private static <T> Map<String,Long> collect(Map<String,T> metrics,ToLongFunction<T> value){
+			Map<String,Long> result = new TreeMap<>();
+			metrics.forEach((name,metric)->result.put(name, value.applyAsLong(metric)));
+			return result;
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return Metrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			Metrics.setEnabled(enabled);
+		}
+
+		@Override
+		public Map<String,Long> getCounters() {
+			return collect(counters,Counter::get);
+		}
+
+		@Override
+		public Map<String,Long> getHistogramCounts() {
+			return collect(histograms,Histogram::getCount);
+		}
+
+		@Override
+		public Map<String,Double> getHistogramMeans() {
+			Map<String,Double> result = new TreeMap<>();
+			histograms.forEach((name,histogram)->result.put(name, histogram.getMean()));
+			return result;
+		}
+
+		@Override
+		public Map<String,Long> getHistogramP99s() {
+			return collect(histograms,h->h.getPercentile(99));
+		}
+
+		@Override
+		public Map<String,Long> getHistogramMaxima() {
+			return collect(histograms,Histogram::getMax);
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package github.lightningcreations.lcjei.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link Metrics}, registered by {@link Metrics#registerMBean()} as {@value Metrics#OBJECT_NAME}.
+ * @author chorm
+ *
+ */
+public interface MetricsMXBean {
+	/**
+	 * Returns whether instrumentation is enabled.
+	 */
+	public boolean isEnabled();
+	/**
+	 * Enables or disables instrumentation.
+	 */
+	public void setEnabled(boolean enabled);
+	/**
+	 * Returns the value of each counter, by name.
+	 */
+	public Map<String,Long> getCounters();
+	/**
+	 * Returns the number of values recorded by each histogram, by name.
+	 */
+	public Map<String,Long> getHistogramCounts();
+	/**
+	 * Returns the mean of each histogram, by name.
+	 */
+	public Map<String,Double> getHistogramMeans();
+	/**
+	 * Returns the estimated 99th percentile of each histogram, by name.
+	 */
+	public Map<String,Long> getHistogramP99s();
+	/**
+	 * Returns the maximum of each histogram, by name.
+	 */
+	public Map<String,Long> getHistogramMaxima();
+	/**
+	 * Resets every counter and histogram.
+	 */
+	public void reset();
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for measuring Engines and Resources, with counters, histograms, JMX, and Flight Recorder events.
+ */
+package github.lightningcreations.lcjei.metrics;
@@ -0,0 +1,69 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Memory fences for memory which is shared with another process, such as a mapped file, where plain ByteBuffer accesses cannot be ordered by volatile fields.<br/>
+ * Java 8 has no public fences, so this version uses the fences of sun.misc.Unsafe, which HotSpot compiles to the barriers of the processor.
+ *  On Java 9 and later, the multi-release jar replaces it with a version which uses the fences of {@link java.lang.invoke.VarHandle}.
+ * @author chorm
+ *
+ */
+final class Fences {
+	private static final MethodHandle LOAD_FENCE;
+	private static final MethodHandle STORE_FENCE;
+	private static final MethodHandle FULL_FENCE;
+	
+	static {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodType type = MethodType.methodType(void.class);
+			LOAD_FENCE = lookup.findVirtual(unsafeClass, "loadFence", type).bindTo(unsafe);
+			STORE_FENCE = lookup.findVirtual(unsafeClass, "storeFence", type).bindTo(unsafe);
+			FULL_FENCE = lookup.findVirtual(unsafeClass, "fullFence", type).bindTo(unsafe);
+		}catch(ReflectiveOperationException|RuntimeException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	private Fences() {
+	}
+	
+	private static void invoke(MethodHandle fence) {
+		try {
+			fence.invokeExact();
+		}catch(RuntimeException|Error e) {
+			throw e;
+		}catch(Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+	
+	/**
+	 * Prevents reads which precede the fence from being reordered with reads and writes which follow it.
+	 */
+	static void acquire() {
+		invoke(LOAD_FENCE);
+	}
+	
+	/**
+	 * Prevents reads and writes which precede the fence from being reordered with writes which follow it.
+	 */
+	static void release() {
+		invoke(STORE_FENCE);
+	}
+	
+	/**
+	 * Prevents reads and writes which precede the fence from being reordered with reads and writes which follow it.
+	 */
+	static void full() {
+		invoke(FULL_FENCE);
+	}
+}
@@ -0,0 +1,197 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A single-producer, single-consumer ring buffer of messages, in a region of a file which is mapped by two processes.<br/>
+ * The region starts with a control block, which holds the total number of bytes written (the head) and read (the tail), each in its own cache line,
+ *  followed by the data area. Each message is a 16 byte header, holding the length of its payload, its type, and an id, followed by the payload, padded to a multiple of 16 bytes.
+ *  A message which does not fit before the end of the data area is preceded by a padding message, which fills the rest of it.<br/>
+ * 
+ * The writer only writes the head, and the reader only writes the tail, so neither locks. 
+ *  The writer publishes a message by writing its contents, and then the head, and the reader releases it by reading its contents, and then writing the tail.
+ *  The order of these accesses is enforced with {@link Fences}, as volatile fields cannot order plain accesses to memory shared with another process.<br/>
+ * 
+ * When the ring is full, the writer waits for the reader (spinning, then yielding, then parking for increasing times), which applies backpressure to the writer.
+ *  Writes are synchronized, so that any number of threads of the writing process can write messages. Only one thread may read.
+ * @author chorm
+ *
+ */
+final class MappedRing {
+	
+	/**
+	 * Receives the messages read from a ring. The payload is only valid until handle returns.
+	 */
+	interface Handler {
+		void handle(int type,long id,ByteBuffer payload);
+	}
+	
+	static final int CONTROL_SIZE = 128;
+	static final int RECORD_HEADER = 16;
+	private static final int HEAD = 0;
+	private static final int TAIL = 64;
+	private static final int PADDING = -1;
+	
+	private final ByteBuffer control;
+	private final ByteBuffer data;
+	private final int capacity;
+	private final int mask;
+	private final BooleanSupplier peerAlive;
+	private final TransportMetrics metrics;
+	private long head;
+	private long tail;
+	private int idle;
+	
+	/**
+	 * Constructs a ring over the region of shared starting at offset, which is {@link #regionSize(int)} bytes long.
+	 * @param peerAlive Checked while waiting for space, so that writes do not wait forever for a process that has exited.
+	 * @param metrics Receives the backpressure and traffic of writes and reads, or null.
+	 */
+	MappedRing(ByteBuffer shared,int offset,int capacity,BooleanSupplier peerAlive,TransportMetrics metrics){
+		if(capacity<4096||Integer.bitCount(capacity)!=1)
+			throw new IllegalArgumentException("Ring capacity must be a power of two, and at least 4096");
+		ByteBuffer region = shared.duplicate();
+		region.position(offset).limit(offset+regionSize(capacity));
+		region = region.slice();
+		region.limit(CONTROL_SIZE);
+		this.control = region.slice();
+		region.limit(CONTROL_SIZE+capacity).position(CONTROL_SIZE);
+		this.data = region.slice();
+		this.capacity = capacity;
+		this.mask = capacity-1;
+		this.peerAlive = peerAlive;
+		this.metrics = metrics;
+		this.head = control.getLong(HEAD);
+		this.tail = control.getLong(TAIL);
+	}
+	
+	static int regionSize(int capacity) {
+		return CONTROL_SIZE+capacity;
+	}
+	
+	private static int align(int size) {
+		return (size+15)&~15;
+	}
+	
+	/**
+	 * Returns the largest payload of a single message.
+	 */
+	int maximumPayload() {
+		return capacity/2-RECORD_HEADER;
+	}
+	
+	/**
+	 * Writes a message, whose payload is the concatenation of the remaining bytes of parts, waiting for space if the ring is full. The positions of parts are not modified.
+	 * @throws IllegalArgumentException if the payload is larger than {@link #maximumPayload()}.
+	 * @throws IllegalStateException if the peer exits while waiting for space.
+	 */
+	synchronized void write(int type,long id,ByteBuffer... parts) {
+		int length = 0;
+		for(ByteBuffer part:parts)
+			length += part.remaining();
+		if(length>maximumPayload())
+			throw new IllegalArgumentException("Message too large");
+		int record = align(RECORD_HEADER+length);
+		int offset = (int)(head&mask);
+		int toEnd = capacity-offset;
+		awaitSpace(record<=toEnd?record:toEnd+record);
+		if(record>toEnd) {
+			data.putInt(offset, 0);
+			data.putInt(offset+4, PADDING);
+			head += toEnd;
+			offset = 0;
+		}
+		data.putInt(offset, length);
+		data.putInt(offset+4, type);
+		data.putLong(offset+8, id);
+		ByteBuffer target = data.duplicate();
+		target.position(offset+RECORD_HEADER);
+		for(ByteBuffer part:parts)
+			target.put(part.duplicate());
+		head += record;
+		Fences.release();
+		control.putLong(HEAD, head);
+		if(metrics!=null)
+			metrics.sent(record);
+	}
+	
+	private void awaitSpace(int needed) {
+		if(capacity-(head-readTail())>=needed)
+			return;
+		long start = System.nanoTime();
+		int spins = 0;
+		while(capacity-(head-readTail())<needed) {
+			if((++spins&1023)==0&&!peerAlive.getAsBoolean())
+				throw new IllegalStateException("Peer process exited");
+			backoff(spins);
+		}
+		if(metrics!=null)
+			metrics.stalled(System.nanoTime()-start);
+	}
+	
+	private long readTail() {
+		long tail = control.getLong(TAIL);
+		Fences.acquire();
+		return tail;
+	}
+	
+	private long readHead() {
+		long head = control.getLong(HEAD);
+		Fences.acquire();
+		return head;
+	}
+	
+	static void backoff(int spins) {
+		if(spins<100)
+			return;
+		else if(spins<200)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(Math.min(1_000_000L, 10_000L<<Math.min(7, (spins-200)>>6)));
+	}
+	
+	/**
+	 * Reads the next message, if there is one, and passes it to handler. Returns true if a message was read.
+	 */
+	boolean poll(Handler handler) {
+		long head = readHead();
+		while(tail!=head) {
+			int offset = (int)(tail&mask);
+			int length = data.getInt(offset);
+			int type = data.getInt(offset+4);
+			if(type==PADDING) {
+				tail += capacity-offset;
+				continue;
+			}
+			long id = data.getLong(offset+8);
+			ByteBuffer payload = data.duplicate();
+			payload.limit(offset+RECORD_HEADER+length).position(offset+RECORD_HEADER);
+			int record = align(RECORD_HEADER+length);
+			try {
+				handler.handle(type, id, payload.slice().asReadOnlyBuffer());
+			}finally {
+				tail += record;
+				Fences.release();
+				control.putLong(TAIL, tail);
+				if(metrics!=null)
+					metrics.received(record);
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Reads messages and passes them to handler until running returns false, waiting for messages when there are none.
+	 */
+	void readLoop(Handler handler,BooleanSupplier running) {
+		while(running.getAsBoolean()) {
+			if(poll(handler))
+				idle = 0;
+			else
+				backoff(++idle);
+		}
+	}
+}
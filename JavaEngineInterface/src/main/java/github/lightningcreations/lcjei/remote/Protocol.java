@@ -0,0 +1,182 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The layout of the shared file and the messages exchanged between a {@link RemoteEngine} and a {@link RemoteGuest}.<br/>
+ * The file consists of a header page, the ring from the host to the child, the ring from the child to the host, and the frames, each starting on a page boundary.
+ *  The header holds a magic number, the version of the protocol, the capacity of the rings, and the size of frames.
+ * @author chorm
+ *
+ */
+final class Protocol {
+	private Protocol() {
+	}
+	
+	static final int MAGIC = 0x4C434A52; // LCJR
+	static final int VERSION = 1;
+	static final int PAGE = 4096;
+	
+	// Messages from the host to the child
+	/**
+	 * A lifecycle call. The payload is the operation, as a byte.
+	 */
+	static final int CALL = 1;
+	/**
+	 * A chunk of the contents of a resource. The payload is a byte which is 1 for the last chunk, then for the first chunk only the total size as a long, then the bytes of the chunk.
+	 */
+	static final int RESOURCE_DATA = 2;
+	/**
+	 * The requested resource does not exist. No payload.
+	 */
+	static final int RESOURCE_MISSING = 3;
+	/**
+	 * A chunk of the keys of the resource set. The payload is a byte which is 1 for the last chunk, the number of keys as an int, and each key.
+	 */
+	static final int RESOURCE_KEYS = 4;
+	/**
+	 * The child should exit. No payload.
+	 */
+	static final int SHUTDOWN = 5;
+	
+	// Messages from the child to the host
+	/**
+	 * The result of a call or request. The payload is a status byte, then a boolean result byte, then a message string.
+	 */
+	static final int RESULT = 16;
+	/**
+	 * A request for a resource. The payload is its key.
+	 */
+	static final int GET_RESOURCE = 17;
+	/**
+	 * A request for the keys of the resource set. No payload.
+	 */
+	static final int GET_KEYS = 18;
+	/**
+	 * A request to reload the resource set. No payload.
+	 */
+	static final int RELOAD = 19;
+	/**
+	 * The child has started. The id is 0, and there is no payload.
+	 */
+	static final int READY = 20;
+	
+	// Lifecycle operations
+	static final byte OP_INITIALIZE = 0;
+	static final byte OP_RUN = 1;
+	static final byte OP_SUSPEND = 2;
+	static final byte OP_RESUME = 3;
+	static final byte OP_DESTROY = 4;
+	
+	// Result statuses
+	static final byte OK = 0;
+	static final byte ILLEGAL_STATE = 1;
+	static final byte ILLEGAL_ARGUMENT = 2;
+	static final byte FAILED = 3;
+	
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_CAPACITY = 8;
+	private static final int HEADER_WIDTH = 12;
+	private static final int HEADER_HEIGHT = 16;
+	
+	private static long pageAlign(long offset) {
+		return (offset+PAGE-1)&~(long)(PAGE-1);
+	}
+	
+	/**
+	 * The shared file, mapped, and its rings and frames.
+	 */
+	static final class Mapping {
+		final MappedByteBuffer buffer;
+		final MappedRing toChild;
+		final MappedRing toHost;
+		final SharedFrames frames;
+		final int width;
+		final int height;
+		
+		private Mapping(MappedByteBuffer buffer,int capacity,int width,int height,boolean host,BooleanSupplier peerAlive,TransportMetrics metrics) {
+			this.buffer = buffer;
+			this.width = width;
+			this.height = height;
+			int toChildOffset = PAGE;
+			int toHostOffset = (int)pageAlign(toChildOffset+MappedRing.regionSize(capacity));
+			int framesOffset = (int)pageAlign(toHostOffset+MappedRing.regionSize(capacity));
+			this.toChild = new MappedRing(buffer,toChildOffset,capacity,peerAlive,host?metrics:null);
+			this.toHost = new MappedRing(buffer,toHostOffset,capacity,peerAlive,host?metrics:null);
+			this.frames = new SharedFrames(buffer,framesOffset,width,height);
+		}
+		
+		private static long size(int capacity,int width,int height) {
+			long size = pageAlign(pageAlign(PAGE+(long)MappedRing.regionSize(capacity))+MappedRing.regionSize(capacity))+SharedFrames.regionSize(width, height);
+			if(size>Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Shared file would be too large");
+			return size;
+		}
+		
+		/**
+		 * Creates and maps a new shared file, as the host.
+		 */
+		static Mapping create(Path file,int capacity,int width,int height,BooleanSupplier peerAlive,TransportMetrics metrics) {
+			long size = size(capacity,width,height);
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				buffer.putInt(HEADER_VERSION, VERSION);
+				buffer.putInt(HEADER_CAPACITY, capacity);
+				buffer.putInt(HEADER_WIDTH, width);
+				buffer.putInt(HEADER_HEIGHT, height);
+				Mapping mapping = new Mapping(buffer,capacity,width,height,true,peerAlive,metrics);
+				mapping.frames.reset();
+				buffer.putInt(HEADER_MAGIC, MAGIC);
+				return mapping;
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Maps an existing shared file, as the child.
+		 */
+		static Mapping open(Path file,BooleanSupplier peerAlive) {
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+				if(buffer.getInt(HEADER_MAGIC)!=MAGIC)
+					throw new IOException(file+" is not a remote engine transport");
+				if(buffer.getInt(HEADER_VERSION)!=VERSION)
+					throw new IOException(file+": Unsupported transport version "+buffer.getInt(HEADER_VERSION));
+				return new Mapping(buffer,buffer.getInt(HEADER_CAPACITY),buffer.getInt(HEADER_WIDTH),buffer.getInt(HEADER_HEIGHT),false,peerAlive,null);
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	static ByteBuffer encode(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(4+bytes.length);
+		buffer.putInt(bytes.length).put(bytes).flip();
+		return buffer;
+	}
+	
+	static String decode(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes,StandardCharsets.UTF_8);
+	}
+	
+	static ByteBuffer result(byte status,boolean value,String message) {
+		ByteBuffer text = encode(message!=null?message:"");
+		ByteBuffer buffer = ByteBuffer.allocate(2+text.remaining());
+		buffer.put(status).put((byte)(value?1:0)).put(text).flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,505 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.awt.Container;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.IOffscreenEngine;
+import github.lightningcreations.lcjei.lifecycle.EngineState;
+import github.lightningcreations.lcjei.lifecycle.LifecycleGuard;
+import github.lightningcreations.lcjei.lifecycle.Transition;
+import github.lightningcreations.lcjei.resources.Resource;
+import github.lightningcreations.lcjei.resources.ResourceExecutors;
+import github.lightningcreations.lcjei.resources.ResourceSet;
+
+/**
+ * An {@link IEngineInterface} to an Engine which runs in a separate JVM, so that a Guest which crashes, exhausts its heap, or pauses for garbage collection does not affect the Host.<br/>
+ * The child JVM is started when the RemoteEngine is constructed, with the same class path as the current JVM. It finds the Engine with {@link github.lightningcreations.lcjei.service.EngineLookup},
+ *  and creates it with a new game, which is created by a given factory class (a {@link java.util.function.Supplier} with a public no-args constructor), 
+ *  or otherwise by the public no-args constructor of the game class of the Engine.<br/>
+ * 
+ * The host and the child communicate through a file which both map into memory, rather than sockets, so messages are never serialized or copied through the kernel.
+ *  The file holds a ring buffer of messages in each direction, and three frame buffers.
+ *  Lifecycle calls are forwarded to the child, and wait for its result. The child can request resources from a ResourceSet of the host, 
+ *  which the child obtains with {@link RemoteGuest#getHostResources()}, and which are read from {@link Resource#getReadChannel()} in chunks of at most half of its capacity.
+ *  Each chunk is read before it is written into the ring buffer, so that lifecycle calls are not delayed while a slow resource is read.
+ *  If the Engine is an {@link IOffscreenEngine}, it is initialized to render to frames of a fixed size, which the host reads in place with {@link #getLatestFrame()}. 
+ *  Otherwise it is initialized with {@link IEngineInterface#initialize()}, and renders to its own window.<br/>
+ * 
+ * When a ring buffer is full, the writer waits for the reader to catch up, which applies backpressure to a producer which is faster than its consumer. 
+ *  This, and the latency of calls and requests, is reported by {@link #getMetrics()}.<br/>
+ * The lifecycle of the RemoteEngine is enforced locally with a {@link LifecycleGuard}. If the child process exits, pending and future calls throw an {@link IllegalStateException}.
+ *  A call which times out also throws an IllegalStateException, and the state of the Engine is then unknown, so the RemoteEngine should be closed.
+ *  The child process is terminated by {@link #close()}, and exits by itself if the host JVM exits.
+ * @author chorm
+ *
+ */
+public final class RemoteEngine implements IEngineInterface<RemoteGame>, AutoCloseable {
+	
+	/**
+	 * The default capacity of each ring buffer, in bytes.
+	 */
+	public static final int DEFAULT_RING_CAPACITY = 1<<20;
+	/**
+	 * The default time to wait for the child to start, or to complete a lifecycle call, in milliseconds.
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+	
+	private final ResourceSet<String> resources;
+	private final Executor resourceExecutor;
+	private final TransportMetrics metrics = new TransportMetrics();
+	private final LifecycleGuard state = new LifecycleGuard();
+	private final ConcurrentHashMap<Long,CompletableFuture<ByteBuffer>> pending = new ConcurrentHashMap<>();
+	private final AtomicLong ids = new AtomicLong();
+	private final CompletableFuture<Void> ready = new CompletableFuture<>();
+	private final Path file;
+	private final Process process;
+	private final Protocol.Mapping mapping;
+	private final RemoteGame game;
+	private final Thread dispatcher;
+	private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+	private volatile boolean closed;
+	private long lastFrame;
+	
+	/**
+	 * Starts a child JVM running the Engine named engineName, with a game created by the no-args constructor of its game class, which renders to frames of 640 by 480 pixels.
+	 * @param engineName The name of the Engine, as given by {@link github.lightningcreations.lcjei.service.JEIServiceProvider#getEngineName()}.
+	 * @param resources The resources served to the child, or null to serve no resources.
+	 * @throws UncheckedIOException if the shared file cannot be created, or the child JVM cannot be started.
+	 * @throws IllegalStateException if the child does not start in time, or exits while starting.
+	 */
+	public RemoteEngine(String engineName,ResourceSet<String> resources) {
+		this(engineName,null,resources,640,480,Collections.emptyList());
+	}
+	
+	/**
+	 * Starts a child JVM running the Engine named engineName.
+	 * @param engineName The name of the Engine, as given by {@link github.lightningcreations.lcjei.service.JEIServiceProvider#getEngineName()}.
+	 * @param gameFactory The name of a class which implements {@link java.util.function.Supplier}, and creates the game, or null to create the game with the no-args constructor of the game class of the Engine.
+	 * @param resources The resources served to the child, or null to serve no resources.
+	 * @param frameWidth The width of frames, if the Engine renders off-screen.
+	 * @param frameHeight The height of frames, if the Engine renders off-screen.
+	 * @param jvmArguments Additional arguments to the child JVM, such as its heap size and garbage collector.
+	 * @throws UncheckedIOException if the shared file cannot be created, or the child JVM cannot be started.
+	 * @throws IllegalStateException if the child does not start in time, or exits while starting.
+	 * @throws IllegalArgumentException if frameWidth or frameHeight is not positive.
+	 */
+	public RemoteEngine(String engineName,String gameFactory,ResourceSet<String> resources,int frameWidth,int frameHeight,List<String> jvmArguments) {
+		Objects.requireNonNull(engineName);
+		if(frameWidth<=0||frameHeight<=0)
+			throw new IllegalArgumentException("Frame size must be positive");
+		this.resources = resources;
+		this.resourceExecutor = ResourceExecutors.getDefaultExecutor();
+		try {
+			this.file = createSharedFile();
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		Process child = null;
+		try {
+			List<String> command = new ArrayList<>();
+			command.add(Paths.get(System.getProperty("java.home"),"bin","java").toString());
+			command.addAll(jvmArguments);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(RemoteGuest.class.getName());
+			command.add(file.toString());
+			command.add(engineName);
+			if(gameFactory!=null)
+				command.add(gameFactory);
+			// The file is complete before the child starts, and the child is only waited for once it exists
+			AtomicReference<Process> started = new AtomicReference<>();
+			this.mapping = Protocol.Mapping.create(file, DEFAULT_RING_CAPACITY, frameWidth, frameHeight, ()->started.get().isAlive(), metrics);
+			started.set(child = startChild(command));
+			this.process = child;
+			this.game = new RemoteGame(engineName,gameFactory,child);
+			this.dispatcher = new Thread(this::dispatch,"lcjei-remote-"+engineName);
+			this.dispatcher.setDaemon(true);
+			this.dispatcher.start();
+			await(ready);
+		}catch(RuntimeException|Error e) {
+			if(child!=null)
+				child.destroyForcibly();
+			closed = true;
+			try {
+				Files.deleteIfExists(file);
+			}catch(IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+	
+	private static Path createSharedFile() throws IOException {
+		// Prefer a memory-backed filesystem, so the shared pages are never written back to disk
+		Path shm = Paths.get("/dev/shm");
+		if(Files.isDirectory(shm)&&Files.isWritable(shm))
+			return Files.createTempFile(shm, "lcjei-remote", ".shm");
+		return Files.createTempFile("lcjei-remote", ".shm");
+	}
+	
+	private static Process startChild(List<String> command) {
+		try {
+			// The child exits when its standard input is closed, which happens when this JVM exits
+			return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void dispatch() {
+		try {
+			mapping.toHost.readLoop(this::handle, ()->!closed&&(process.isAlive()||hasMessages()));
+		}finally {
+			String reason = closed?"Remote engine was closed":"Remote engine process exited"+(process.isAlive()?"":" with code "+process.exitValue());
+			ready.completeExceptionally(new IllegalStateException(reason));
+			for(Iterator<CompletableFuture<ByteBuffer>> it = pending.values().iterator();it.hasNext();) {
+				it.next().completeExceptionally(new IllegalStateException(reason));
+				it.remove();
+			}
+		}
+	}
+	
+	private boolean hasMessages() {
+		return mapping.toHost.poll(this::handle);
+	}
+	
+	private void handle(int type,long id,ByteBuffer payload) {
+		switch(type) {
+		case Protocol.READY:
+			ready.complete(null);
+			break;
+		case Protocol.RESULT:{
+			CompletableFuture<ByteBuffer> future = pending.remove(id);
+			if(future!=null) {
+				ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+				copy.put(payload).flip();
+				future.complete(copy);
+			}
+			break;
+		}
+		case Protocol.GET_RESOURCE:{
+			String key = Protocol.decode(payload);
+			resourceExecutor.execute(()->serveResource(id,key));
+			break;
+		}
+		case Protocol.GET_KEYS:
+			resourceExecutor.execute(()->serveKeys(id));
+			break;
+		case Protocol.RELOAD:
+			resourceExecutor.execute(()->reloadResources(id));
+			break;
+		}
+	}
+	
+	private void reply(long id,byte status,String message) {
+		mapping.toChild.write(Protocol.RESULT, id, Protocol.result(status, false, message));
+	}
+	
+	private void serveResource(long id,String key) {
+		try {
+			Optional<Resource<String>> resource = resources!=null?resources.getResource(key):Optional.empty();
+			if(!resource.isPresent()) {
+				mapping.toChild.write(Protocol.RESOURCE_MISSING, id);
+				return;
+			}
+			try(SeekableByteChannel channel = resource.get().getReadChannel()){
+				if(channel.size()>Integer.MAX_VALUE) {
+					reply(id,Protocol.FAILED,"Resource "+key+" is too large to transfer");
+					return;
+				}
+				int total = (int)channel.size();
+				int chunk = mapping.toChild.maximumPayload()-9;
+				ByteBuffer header = ByteBuffer.allocate(9);
+				header.put((byte)(total<=chunk?1:0)).putLong(total).flip();
+				// Each chunk is read before it is written, so that a slow resource does not hold the ring while other messages wait to be written
+				ByteBuffer part = ByteBuffer.allocate(Math.min(chunk, total));
+				int position = 0;
+				do {
+					part.clear().limit(Math.min(chunk, total-position));
+					while(part.hasRemaining())
+						if(channel.read(part)<0)
+							throw new EOFException("Resource "+key+" ended before its size");
+					part.flip();
+					mapping.toChild.write(Protocol.RESOURCE_DATA, id, header, part);
+					position += part.remaining();
+					header = ByteBuffer.allocate(1);
+					header.put((byte)(position+chunk>=total?1:0)).flip();
+				}while(position<total);
+				metrics.served(total);
+			}
+		}catch(IOException e) {
+			reply(id,Protocol.FAILED,e.toString());
+		}catch(IllegalStateException e) {
+			// The child exited
+		}catch(RuntimeException e) {
+			reply(id,Protocol.FAILED,e.toString());
+		}
+	}
+	
+	private void serveKeys(long id) {
+		try {
+			List<ByteBuffer> chunk = new ArrayList<>();
+			int limit = mapping.toChild.maximumPayload()-5;
+			int size = 0;
+			Iterator<String> keys = resources!=null?resources.keys().iterator():Collections.<String>emptyIterator();
+			while(keys.hasNext()) {
+				ByteBuffer key = Protocol.encode(keys.next());
+				if(key.remaining()>limit)
+					continue;
+				if(size+key.remaining()>limit) {
+					writeKeys(id,chunk,false);
+					chunk.clear();
+					size = 0;
+				}
+				chunk.add(key);
+				size += key.remaining();
+			}
+			writeKeys(id,chunk,true);
+		}catch(IllegalStateException e) {
+			// The child exited
+		}catch(RuntimeException e) {
+			reply(id,Protocol.FAILED,e.toString());
+		}
+	}
+	
+	private void writeKeys(long id,List<ByteBuffer> keys,boolean last) {
+		ByteBuffer header = ByteBuffer.allocate(5);
+		header.put((byte)(last?1:0)).putInt(keys.size()).flip();
+		List<ByteBuffer> parts = new ArrayList<>(keys.size()+1);
+		parts.add(header);
+		parts.addAll(keys);
+		mapping.toChild.write(Protocol.RESOURCE_KEYS, id, parts.toArray(new ByteBuffer[0]));
+	}
+	
+	private void reloadResources(long id) {
+		try {
+			if(resources!=null)
+				resources.reload();
+			reply(id,Protocol.OK,null);
+		}catch(IllegalStateException e) {
+			// The child exited
+		}catch(RuntimeException e) {
+			reply(id,Protocol.FAILED,e.toString());
+		}
+	}
+	
+	private <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for remote engine",e);
+		}catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new IllegalStateException(cause);
+		}catch(TimeoutException e) {
+			throw new IllegalStateException("Remote engine did not respond in time",e);
+		}
+	}
+	
+	private boolean call(byte operation) {
+		if(closed)
+			throw new IllegalStateException("Remote engine was closed");
+		long id = ids.incrementAndGet();
+		CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+		pending.put(id, future);
+		long start = System.nanoTime();
+		ByteBuffer result;
+		try {
+			mapping.toChild.write(Protocol.CALL, id, ByteBuffer.wrap(new byte[] {operation}));
+			if(!dispatcher.isAlive())
+				future.completeExceptionally(new IllegalStateException("Remote engine process exited"));
+			result = await(future);
+		}finally {
+			pending.remove(id);
+			metrics.call(System.nanoTime()-start);
+		}
+		byte status = result.get();
+		boolean value = result.get()!=0;
+		String message = Protocol.decode(result);
+		switch(status) {
+		case Protocol.OK:
+			return value;
+		case Protocol.ILLEGAL_STATE:
+			throw new IllegalStateException(message);
+		case Protocol.ILLEGAL_ARGUMENT:
+			throw new IllegalArgumentException(message);
+		default:
+			throw new RemoteEngineException(message);
+		}
+	}
+	
+	/**
+	 * Initializes the Engine, as though by {@link #initialize()}. The child cannot draw to c, which is in another process, so false is always returned.
+	 */
+	@Override
+	public boolean initialize(Container c) throws IllegalStateException {
+		initialize();
+		return false;
+	}
+
+	/**
+	 * Initializes the Engine in the child. If it is an {@link IOffscreenEngine}, it renders to the shared frames. Otherwise, it is initialized with {@link IEngineInterface#initialize()}.
+	 */
+	@Override
+	public void initialize() throws IllegalStateException {
+		state.perform(Transition.INITIALIZE, ()->call(Protocol.OP_INITIALIZE));
+	}
+
+	@Override
+	public void destroy() throws IllegalStateException {
+		state.perform(Transition.DESTROY, ()->call(Protocol.OP_DESTROY));
+	}
+
+	@Override
+	public void run() throws IllegalStateException {
+		state.perform(Transition.RUN, ()->call(Protocol.OP_RUN));
+	}
+
+	/**
+	 * Returns null, as the Engine draws in another process.
+	 */
+	@Override
+	public Container getCurrentDrawContainer() {
+		state.requireInitialized();
+		return null;
+	}
+
+	@Override
+	public RemoteGame getGameObject() {
+		return game;
+	}
+
+	@Override
+	public void suspend() throws IllegalStateException {
+		state.perform(Transition.SUSPEND, ()->call(Protocol.OP_SUSPEND));
+	}
+
+	@Override
+	public void resume() throws IllegalStateException {
+		state.perform(Transition.RESUME, ()->call(Protocol.OP_RESUME));
+	}
+	
+	/**
+	 * Returns the current state of the Engine, as tracked by the host.
+	 */
+	public EngineState getState() {
+		return state.getState();
+	}
+	
+	/**
+	 * Returns a read-only view of the latest frame rendered by the Engine, if it renders off-screen, and has rendered a frame.<br/>
+	 * The view is of the shared memory itself, so it is not copied. It remains valid until the next call to this method, 
+	 *  so this method must only be called by a single thread (such as the frame loop of the Host) at a time.
+	 *  Pixels are 32-bit premultiplied ARGB values in native byte order, row by row from the top left.
+	 */
+	public synchronized Optional<ByteBuffer> getLatestFrame(){
+		ByteBuffer frame = mapping.frames.latest();
+		if(frame!=null&&mapping.frames.getSequence()!=lastFrame) {
+			lastFrame = mapping.frames.getSequence();
+			metrics.frame();
+		}
+		return Optional.ofNullable(frame);
+	}
+	
+	/**
+	 * Returns the sequence number of the frame last returned by {@link #getLatestFrame()}, counting from 1.
+	 */
+	public synchronized long getFrameSequence() {
+		return lastFrame;
+	}
+	
+	/**
+	 * Returns the width of frames, in pixels.
+	 */
+	public int getFrameWidth() {
+		return mapping.width;
+	}
+	
+	/**
+	 * Returns the height of frames, in pixels.
+	 */
+	public int getFrameHeight() {
+		return mapping.height;
+	}
+	
+	/**
+	 * Returns the metrics of the transport to the child.
+	 */
+	public TransportMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets the time to wait for a lifecycle call to complete.
+	 * @throws IllegalArgumentException if timeout is not positive.
+	 */
+	public void setCallTimeout(long timeout,TimeUnit unit) {
+		if(timeout<=0)
+			throw new IllegalArgumentException("Timeout must be positive");
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+	
+	/**
+	 * Returns true if the child process is running.
+	 */
+	public boolean isAlive() {
+		return process.isAlive();
+	}
+	
+	/**
+	 * Terminates the child process, without destroying the Engine, and deletes the shared file. Subsequent lifecycle calls throw an {@link IllegalStateException}.
+	 */
+	@Override
+	public void close() {
+		if(closed)
+			return;
+		if(process.isAlive()) {
+			try {
+				mapping.toChild.write(Protocol.SHUTDOWN, 0);
+			}catch(IllegalStateException e) {
+				// The child already exited
+			}
+		}
+		closed = true;
+		try {
+			if(!process.waitFor(5, TimeUnit.SECONDS))
+				process.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+			dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}finally {
+			try {
+				Files.deleteIfExists(file);
+			}catch(IOException e) {
+				// The file is in a temporary directory, and is removed eventually
+				file.toFile().deleteOnExit();
+			}
+		}
+	}
+}
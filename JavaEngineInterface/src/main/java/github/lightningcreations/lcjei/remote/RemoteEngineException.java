@@ -0,0 +1,19 @@
+package github.lightningcreations.lcjei.remote;
+
+/**
+ * Thrown by a {@link RemoteEngine} when an exception, other than an {@link IllegalStateException} or {@link IllegalArgumentException}, is thrown by the Engine in the child process.
+ *  The exception itself cannot be transferred, so its class and message are used as the message of this exception.
+ * @author chorm
+ *
+ */
+public class RemoteEngineException extends RuntimeException {
+
+	private static final long serialVersionUID = 3371804687913520473L;
+
+	/**
+	 * Constructs a new RemoteEngineException with the given message.
+	 */
+	public RemoteEngineException(String message) {
+		super(message);
+	}
+}
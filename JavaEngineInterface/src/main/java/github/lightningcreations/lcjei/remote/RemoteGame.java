@@ -0,0 +1,39 @@
+package github.lightningcreations.lcjei.remote;
+
+/**
+ * The Game object of a {@link RemoteEngine}. The actual game lives in the child process, so this only describes it.
+ * @author chorm
+ *
+ */
+public final class RemoteGame {
+	private final String engineName;
+	private final String gameFactory;
+	private final Process process;
+	
+	RemoteGame(String engineName,String gameFactory,Process process){
+		this.engineName = engineName;
+		this.gameFactory = gameFactory;
+		this.process = process;
+	}
+	
+	/**
+	 * Returns the name of the Engine which runs the game in the child process.
+	 */
+	public String getEngineName() {
+		return engineName;
+	}
+	
+	/**
+	 * Returns the name of the class which creates the game in the child process, or null if the game is created with the no-args constructor of the game class of the Engine.
+	 */
+	public String getGameFactory() {
+		return gameFactory;
+	}
+	
+	/**
+	 * Returns the child process.
+	 */
+	public Process getProcess() {
+		return process;
+	}
+}
@@ -0,0 +1,206 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.IOffscreenEngine;
+import github.lightningcreations.lcjei.render.Frame;
+import github.lightningcreations.lcjei.render.FrameBuffer;
+import github.lightningcreations.lcjei.resources.ResourceSet;
+import github.lightningcreations.lcjei.service.EngineLookup;
+import github.lightningcreations.lcjei.service.JEIServiceProvider;
+
+/**
+ * The entry point of the child process of a {@link RemoteEngine}.<br/>
+ * The child is started with the path of the shared file, the name of the Engine, and optionally the name of the game factory class. 
+ *  It creates the Engine, and then performs the lifecycle calls of the host, one at a time, until it is shut down, or its standard input is closed by the exit of the host.<br/>
+ * Code running in the child, such as the Engine itself, can obtain the resources of the host with {@link #getHostResources()}.
+ * @author chorm
+ *
+ */
+public final class RemoteGuest {
+	
+	private static volatile ResourceSet<String> hostResources;
+	
+	private final Protocol.Mapping mapping;
+	private final IEngineInterface<?> engine;
+	private final RemoteResourceSet resources;
+	private final ExecutorService lifecycle;
+	private volatile boolean running = true;
+	private volatile boolean hostAlive = true;
+	private volatile FrameBuffer frames;
+	private Thread pump;
+	
+	private RemoteGuest(String file,String engineName,String gameFactory) {
+		this.mapping = Protocol.Mapping.open(Paths.get(file), ()->hostAlive);
+		JEIServiceProvider<?> provider = EngineLookup.getByEngineName(engineName).orElseThrow(()->new IllegalArgumentException("No engine named "+engineName));
+		this.engine = newEngine(provider,gameFactory);
+		this.resources = new RemoteResourceSet(mapping.toHost,TimeUnit.MILLISECONDS.toNanos(RemoteEngine.DEFAULT_TIMEOUT_MILLIS));
+		this.lifecycle = Executors.newSingleThreadExecutor(r->{
+			Thread t = new Thread(r,"lcjei-remote-lifecycle");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	private static <GameType> IEngineInterface<GameType> newEngine(JEIServiceProvider<GameType> provider,String gameFactory){
+		try {
+			Object game;
+			if(gameFactory!=null)
+				game = ((Supplier<?>)Class.forName(gameFactory).newInstance()).get();
+			else
+				game = provider.getGameClass().newInstance();
+			return provider.newEngine(provider.getGameClass().cast(game));
+		}catch(ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Cannot create the game",e);
+		}
+	}
+	
+	/**
+	 * Returns the resources served by the host, if the current process is the child of a {@link RemoteEngine}.
+	 */
+	public static Optional<ResourceSet<String>> getHostResources(){
+		return Optional.ofNullable(hostResources);
+	}
+	
+	private void handle(int type,long id,ByteBuffer payload) {
+		switch(type) {
+		case Protocol.CALL:{
+			byte operation = payload.get();
+			lifecycle.execute(()->perform(id,operation));
+			break;
+		}
+		case Protocol.SHUTDOWN:
+			running = false;
+			break;
+		default:
+			resources.handle(type, id, payload);
+		}
+	}
+	
+	private void perform(long id,byte operation) {
+		ByteBuffer result;
+		try {
+			boolean value = false;
+			switch(operation) {
+			case Protocol.OP_INITIALIZE:
+				value = initialize();
+				break;
+			case Protocol.OP_RUN:
+				engine.run();
+				break;
+			case Protocol.OP_SUSPEND:
+				engine.suspend();
+				break;
+			case Protocol.OP_RESUME:
+				engine.resume();
+				break;
+			case Protocol.OP_DESTROY:
+				stopPump();
+				engine.destroy();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown operation "+operation);
+			}
+			result = Protocol.result(Protocol.OK, value, null);
+		}catch(IllegalStateException e) {
+			result = Protocol.result(Protocol.ILLEGAL_STATE, false, e.getMessage());
+		}catch(IllegalArgumentException e) {
+			result = Protocol.result(Protocol.ILLEGAL_ARGUMENT, false, e.getMessage());
+		}catch(RuntimeException|Error e) {
+			result = Protocol.result(Protocol.FAILED, false, e.toString());
+		}
+		mapping.toHost.write(Protocol.RESULT, id, result);
+	}
+	
+	private boolean initialize() {
+		if(engine instanceof IOffscreenEngine) {
+			FrameBuffer target = new FrameBuffer(mapping.width,mapping.height,FrameBuffer.Storage.DIRECT);
+			if(((IOffscreenEngine<?>)engine).initializeOffscreen(target)) {
+				startPump(target);
+				return true;
+			}
+			return false;
+		}
+		engine.initialize();
+		return false;
+	}
+	
+	/**
+	 * Copies each frame the Engine publishes into the shared frames. The Engine only publishes to a FrameBuffer in this process, 
+	 *  so each frame is copied once, here, and read by the host in place.
+	 */
+	private void startPump(FrameBuffer target) {
+		frames = target;
+		pump = new Thread(()->{
+			long last = 0;
+			FrameBuffer current;
+			while((current = frames)==target) {
+				Optional<Frame> frame = current.getLatestFrame();
+				if(frame.isPresent()&&frame.get().getSequence()!=last) {
+					last = frame.get().getSequence();
+					mapping.frames.publish(frame.get().getByteBuffer().get());
+				}else
+					LockSupport.parkNanos(250_000L);
+			}
+		},"lcjei-remote-frames");
+		pump.setDaemon(true);
+		pump.start();
+	}
+	
+	private void stopPump() {
+		frames = null;
+		if(pump!=null)
+			try {
+				pump.join();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		pump = null;
+	}
+	
+	private void watchHost() {
+		Thread watcher = new Thread(()->{
+			try {
+				while(System.in.read()>=0);
+			}catch(IOException e) {
+				// Treated as the exit of the host
+			}
+			hostAlive = false;
+			running = false;
+		},"lcjei-remote-watchdog");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+	
+	private void serve() {
+		watchHost();
+		hostResources = resources;
+		mapping.toHost.write(Protocol.READY, 0);
+		mapping.toChild.readLoop(this::handle, ()->running);
+		resources.failAll("Host exited");
+		stopPump();
+		lifecycle.shutdownNow();
+	}
+	
+	/**
+	 * Runs the child process of a {@link RemoteEngine}. This is not intended to be called directly.
+	 * @param args The path of the shared file, the name of the Engine, and optionally the name of the game factory class.
+	 */
+	public static void main(String[] args) {
+		if(args.length<2||args.length>3) {
+			System.err.println("Usage: RemoteGuest <shared file> <engine name> [game factory]");
+			System.exit(2);
+		}
+		new RemoteGuest(args[0],args[1],args.length>2?args[2]:null).serve();
+		System.exit(0);
+	}
+}
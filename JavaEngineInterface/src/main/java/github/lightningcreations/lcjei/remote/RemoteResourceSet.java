@@ -0,0 +1,147 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import github.lightningcreations.lcjei.resources.BufferResource;
+import github.lightningcreations.lcjei.resources.Resource;
+import github.lightningcreations.lcjei.resources.ResourceSet;
+
+/**
+ * The ResourceSet of the host, as seen by the child process of a {@link RemoteEngine}.<br/>
+ * Each lookup requests the resource from the host, which writes its contents into the ring buffer to the child, 
+ *  from which they are copied once, into the buffer of the returned Resource. Resources are not cached, so this set should be wrapped in a cache if resources are read repeatedly.<br/>
+ * Lookups may be made from any thread. Methods throw an {@link IllegalStateException} if the host does not respond in time, and a {@link RemoteEngineException} if the host failed to read the resource.
+ * @author chorm
+ *
+ */
+final class RemoteResourceSet implements ResourceSet<String> {
+	
+	private static final class Request {
+		final CompletableFuture<Object> result = new CompletableFuture<>();
+		ByteBuffer data;
+		List<String> keys;
+	}
+	
+	private final MappedRing toHost;
+	private final long timeoutNanos;
+	private final ConcurrentHashMap<Long,Request> pending = new ConcurrentHashMap<>();
+	private final AtomicLong ids = new AtomicLong();
+	
+	RemoteResourceSet(MappedRing toHost,long timeoutNanos){
+		this.toHost = toHost;
+		this.timeoutNanos = timeoutNanos;
+	}
+	
+	/**
+	 * Handles a response from the host. Called by the dispatching thread of the child.
+	 */
+	void handle(int type,long id,ByteBuffer payload) {
+		Request request = pending.get(id);
+		if(request==null)
+			return;
+		switch(type) {
+		case Protocol.RESOURCE_MISSING:
+			request.result.complete(Optional.empty());
+			break;
+		case Protocol.RESOURCE_DATA:{
+			boolean last = payload.get()!=0;
+			if(request.data==null)
+				request.data = ByteBuffer.allocate((int)payload.getLong());
+			request.data.put(payload);
+			if(last) {
+				request.data.flip();
+				request.result.complete(request.data);
+			}
+			break;
+		}
+		case Protocol.RESOURCE_KEYS:{
+			boolean last = payload.get()!=0;
+			int count = payload.getInt();
+			if(request.keys==null)
+				request.keys = new ArrayList<>();
+			for(int i = 0;i<count;i++)
+				request.keys.add(Protocol.decode(payload));
+			if(last)
+				request.result.complete(request.keys);
+			break;
+		}
+		case Protocol.RESULT:{
+			byte status = payload.get();
+			payload.get();
+			String message = Protocol.decode(payload);
+			if(status==Protocol.OK)
+				request.result.complete(null);
+			else
+				request.result.completeExceptionally(new RemoteEngineException(message));
+			break;
+		}
+		}
+	}
+	
+	/**
+	 * Fails every pending request, as the host is gone.
+	 */
+	void failAll(String reason) {
+		for(Request request:pending.values())
+			request.result.completeExceptionally(new IllegalStateException(reason));
+	}
+	
+	private Object request(int type,ByteBuffer... payload) {
+		long id = ids.incrementAndGet();
+		Request request = new Request();
+		pending.put(id, request);
+		try {
+			toHost.write(type, id, payload);
+			return request.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the host",e);
+		}catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new IllegalStateException(cause);
+		}catch(TimeoutException e) {
+			throw new IllegalStateException("Host did not respond in time",e);
+		}finally {
+			pending.remove(id);
+		}
+	}
+
+	@Override
+	public Optional<Resource<String>> getResource(String key) {
+		Object result = request(Protocol.GET_RESOURCE,Protocol.encode(Objects.requireNonNull(key)));
+		if(!(result instanceof ByteBuffer))
+			return Optional.empty();
+		return Optional.of(new BufferResource<>(key,(ByteBuffer)result));
+	}
+
+	/**
+	 * Returns the keys of the host set, as they were when this method was called.
+	 */
+	@Override
+	public Stream<String> keys() {
+		@SuppressWarnings("unchecked")
+		List<String> keys = (List<String>)request(Protocol.GET_KEYS);
+		return keys.stream();
+	}
+
+	/**
+	 * Reloads the host set.
+	 */
+	@Override
+	public void reload() {
+		request(Protocol.RELOAD);
+	}
+}
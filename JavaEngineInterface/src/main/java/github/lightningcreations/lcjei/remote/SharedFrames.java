@@ -0,0 +1,110 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Three frames in a region of a file which is mapped by two processes, through which the child publishes frames to the host.<br/>
+ * The control block holds the latest frame, as its sequence number and slot, in a single 8 byte word, written only by the producer,
+ *  and the slot the consumer is reading, written only by the consumer. The producer copies each frame into a slot which is neither latest nor being read, 
+ *  and then publishes it as the latest. The consumer announces the slot it reads, and then checks that it is still the latest, 
+ *  so the producer never overwrites a frame while the consumer is reading it.
+ *  Both sides make a full fence between announcing and checking, as in Dekker's algorithm, using {@link Fences}. 
+ *  The consumer treats the slot it announced as its own from then on, even if the check fails, as it is the slot the producer avoids.<br/>
+ * Pixels are 32-bit premultiplied ARGB values in native byte order, as in a {@link github.lightningcreations.lcjei.render.Frame}.
+ * @author chorm
+ *
+ */
+final class SharedFrames {
+	static final int CONTROL_SIZE = 128;
+	private static final int LATEST = 0;
+	private static final int READING = 64;
+	private static final int NONE = 3;
+	
+	private final ByteBuffer control;
+	private final ByteBuffer[] slots = new ByteBuffer[3];
+	private final int frameSize;
+	private long published;
+	private int reading = NONE;
+	private long readSequence;
+	
+	SharedFrames(ByteBuffer shared,int offset,int width,int height){
+		this.frameSize = frameSize(width,height);
+		ByteBuffer region = shared.duplicate();
+		region.position(offset).limit(offset+CONTROL_SIZE);
+		this.control = region.slice();
+		for(int i = 0;i<slots.length;i++) {
+			int start = offset+CONTROL_SIZE+i*frameSize;
+			region = shared.duplicate();
+			region.limit(start+frameSize).position(start);
+			slots[i] = region.slice().order(ByteOrder.nativeOrder());
+		}
+	}
+	
+	static int frameSize(int width,int height) {
+		return Math.multiplyExact(Math.multiplyExact(width, height), 4);
+	}
+	
+	static long regionSize(int width,int height) {
+		return CONTROL_SIZE+3L*frameSize(width,height);
+	}
+	
+	/**
+	 * Initializes the control block of a new region.
+	 */
+	void reset() {
+		control.putLong(LATEST, NONE);
+		control.putInt(READING, NONE);
+		Fences.full();
+	}
+	
+	/**
+	 * Copies the remaining bytes of frame (which must be the size of a frame) into a free slot, and publishes it. Only called by the producer.
+	 */
+	void publish(ByteBuffer frame) {
+		if(frame.remaining()!=frameSize)
+			throw new IllegalArgumentException("Frame has the wrong size");
+		int latest = (int)(control.getLong(LATEST)&3);
+		int reading = control.getInt(READING);
+		Fences.acquire();
+		int slot = 0;
+		while(slot==latest||slot==reading)
+			slot++;
+		ByteBuffer target = slots[slot].duplicate();
+		target.put(frame.duplicate());
+		Fences.release();
+		control.putLong(LATEST, (++published<<2)|slot);
+		// Orders the publication before the next read of the reading slot
+		Fences.full();
+	}
+	
+	/**
+	 * Returns a read-only view of the latest frame, or null if no frame has been published. 
+	 *  The frame remains valid until the next call. Only called by the consumer.
+	 */
+	ByteBuffer latest() {
+		while(true) {
+			long latest = control.getLong(LATEST);
+			Fences.acquire();
+			int slot = (int)(latest&3);
+			if(slot==NONE)
+				return null;
+			if(slot==reading) {
+				readSequence = latest>>>2;
+				return slots[slot].asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+			}
+			// Once announced, the producer may skip over the slot that was being read, so it is no longer protected
+			control.putInt(READING, slot);
+			reading = slot;
+			// Orders the announcement before the check that slot is still the latest, which the next iteration makes
+			Fences.full();
+		}
+	}
+	
+	/**
+	 * Returns the sequence number of the frame last returned by {@link #latest()}.
+	 */
+	long getSequence() {
+		return readSequence;
+	}
+}
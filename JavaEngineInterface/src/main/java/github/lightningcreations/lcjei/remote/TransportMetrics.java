@@ -0,0 +1,144 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the shared-memory transport between a {@link RemoteEngine} and its child process, as observed by the host.<br/>
+ * Backpressure is measured as the number of times, and the total time, that the host waited for the child to consume messages before it could send another.
+ *  Latency is measured as the round trip time of lifecycle calls and resource requests.
+ * @author chorm
+ *
+ */
+public final class TransportMetrics {
+	private final LongAdder messagesSent = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder messagesReceived = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder stalls = new LongAdder();
+	private final LongAdder stallNanos = new LongAdder();
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder callNanos = new LongAdder();
+	private final AtomicLong maxCallNanos = new AtomicLong();
+	private final LongAdder resourcesServed = new LongAdder();
+	private final LongAdder resourceBytesServed = new LongAdder();
+	private final LongAdder framesReceived = new LongAdder();
+	
+	TransportMetrics() {
+	}
+	
+	void sent(int bytes) {
+		messagesSent.increment();
+		bytesSent.add(bytes);
+	}
+	
+	void received(int bytes) {
+		messagesReceived.increment();
+		bytesReceived.add(bytes);
+	}
+	
+	void stalled(long nanos) {
+		stalls.increment();
+		stallNanos.add(nanos);
+	}
+	
+	void call(long nanos) {
+		calls.increment();
+		callNanos.add(nanos);
+		long max;
+		while(nanos>(max = maxCallNanos.get())&&!maxCallNanos.compareAndSet(max, nanos));
+	}
+	
+	void served(long bytes) {
+		resourcesServed.increment();
+		resourceBytesServed.add(bytes);
+	}
+	
+	void frame() {
+		framesReceived.increment();
+	}
+	
+	/**
+	 * Returns the number of messages sent to the child.
+	 */
+	public long getMessagesSent() {
+		return messagesSent.sum();
+	}
+	
+	/**
+	 * Returns the number of bytes of messages sent to the child, including their headers.
+	 */
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+	
+	/**
+	 * Returns the number of messages received from the child.
+	 */
+	public long getMessagesReceived() {
+		return messagesReceived.sum();
+	}
+	
+	/**
+	 * Returns the number of bytes of messages received from the child, including their headers.
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+	
+	/**
+	 * Returns the number of times a message could not be sent immediately, because the ring buffer to the child was full.
+	 */
+	public long getBackpressureStalls() {
+		return stalls.sum();
+	}
+	
+	/**
+	 * Returns the total time spent waiting for space in the ring buffer to the child, in nanoseconds.
+	 */
+	public long getBackpressureNanos() {
+		return stallNanos.sum();
+	}
+	
+	/**
+	 * Returns the number of lifecycle calls which completed, successfully or not.
+	 */
+	public long getCallCount() {
+		return calls.sum();
+	}
+	
+	/**
+	 * Returns the total round trip time of lifecycle calls, in nanoseconds.
+	 */
+	public long getTotalCallNanos() {
+		return callNanos.sum();
+	}
+	
+	/**
+	 * Returns the longest round trip time of a lifecycle call, in nanoseconds.
+	 */
+	public long getMaximumCallNanos() {
+		return maxCallNanos.get();
+	}
+	
+	/**
+	 * Returns the number of resources served to the child.
+	 */
+	public long getResourcesServed() {
+		return resourcesServed.sum();
+	}
+	
+	/**
+	 * Returns the total size of the resources served to the child, in bytes.
+	 */
+	public long getResourceBytesServed() {
+		return resourceBytesServed.sum();
+	}
+	
+	/**
+	 * Returns the number of distinct frames obtained by the host.
+	 */
+	public long getFramesReceived() {
+		return framesReceived.sum();
+	}
+}
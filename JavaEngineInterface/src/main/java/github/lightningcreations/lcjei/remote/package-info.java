@@ -0,0 +1,4 @@
+/**
+ * Package for hosting Engines in a separate process, connected through shared memory.
+ */
+package github.lightningcreations.lcjei.remote;
@@ -0,0 +1,98 @@
+package github.lightningcreations.lcjei.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Optional;
+
+/**
+ * A single frame of a {@link FrameBuffer}.<br/>
+ * Pixels are 32-bit premultiplied ARGB values, stored row by row from the top left, with no padding between rows.
+ *  Depending on the storage of the FrameBuffer, the pixels are held in a direct ByteBuffer, in native byte order, or in a {@link BufferedImage} of type {@link BufferedImage#TYPE_INT_ARGB_PRE}.
+ *  Either way, they can be accessed as an IntBuffer with {@link #getPixels()}.<br/>
+ * A Frame is only accessed by one thread at a time, as arbitrated by its FrameBuffer.
+ * @author chorm
+ *
+ */
+public final class Frame {
+	private final int width;
+	private final int height;
+	private final ByteBuffer bytes;
+	private final BufferedImage image;
+	private final IntBuffer pixels;
+	private long sequence;
+	private long timestamp;
+	
+	Frame(int width,int height,FrameBuffer.Storage storage){
+		this.width = width;
+		this.height = height;
+		if(storage==FrameBuffer.Storage.DIRECT) {
+			this.bytes = ByteBuffer.allocateDirect(Math.multiplyExact(Math.multiplyExact(width, height), 4)).order(ByteOrder.nativeOrder());
+			this.image = null;
+			this.pixels = bytes.asIntBuffer();
+		}else {
+			this.bytes = null;
+			this.image = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB_PRE);
+			this.pixels = IntBuffer.wrap(((DataBufferInt)image.getRaster().getDataBuffer()).getData());
+		}
+	}
+	
+	void stamp(long sequence,long timestamp) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	 * Returns the width of the frame, in pixels.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Returns the height of the frame, in pixels.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns a view of the pixels of the frame. The pixel at (x,y) is at index y*width+x. Each call returns a distinct buffer.
+	 */
+	public IntBuffer getPixels() {
+		return pixels.duplicate();
+	}
+	
+	/**
+	 * Returns a view of the direct buffer which holds the pixels of the frame, in native byte order, if the frame is stored in a direct buffer.
+	 */
+	public Optional<ByteBuffer> getByteBuffer(){
+		return bytes!=null?Optional.of(bytes.duplicate().order(ByteOrder.nativeOrder())):Optional.empty();
+	}
+	
+	/**
+	 * Returns the image which holds the pixels of the frame, if the frame is stored in an image. 
+	 *  The image can be drawn to or from with Java2D, including in a headless environment.
+	 */
+	public Optional<BufferedImage> getImage(){
+		return Optional.ofNullable(image);
+	}
+	
+	/**
+	 * Returns the sequence number of the frame, which counts the frames published to its FrameBuffer starting from 1.
+	 *  This is only meaningful for a frame obtained with {@link FrameBuffer#getLatestFrame()}.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	/**
+	 * Returns the time the frame was published, as given by {@link System#nanoTime()}.
+	 *  This is only meaningful for a frame obtained with {@link FrameBuffer#getLatestFrame()}.
+	 */
+	public long getTimestampNanos() {
+		return timestamp;
+	}
+}
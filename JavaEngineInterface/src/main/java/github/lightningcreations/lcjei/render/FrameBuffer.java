@@ -0,0 +1,130 @@
+package github.lightningcreations.lcjei.render;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An off-screen, triple-buffered framebuffer, which an Engine can render to instead of an AWT Container.<br/>
+ * A FrameBuffer holds three {@link Frame}s. The producer (the Engine which renders, such as a Guest) draws to the back frame, and publishes it when it is complete.
+ *  The consumer (such as a Host which composites the output of a Guest) obtains the latest published frame, and reads it in place.
+ *  Publishing exchanges the back frame with the pending frame, and obtaining the latest frame exchanges the pending frame with the front frame, each with a single atomic operation,
+ *  so neither side copies pixels, and neither ever waits for the other. 
+ *  If the producer publishes frames faster than the consumer obtains them, frames which were never obtained are dropped.<br/>
+ * 
+ * A FrameBuffer has a single producer and a single consumer. The back frame may only be accessed by the producer, until it publishes it, 
+ *  and a frame obtained with {@link #getLatestFrame()} may only be accessed by the consumer, until it next calls getLatestFrame.<br/>
+ * FrameBuffers do not use any display resources, so they can be used when java.awt.headless is true.
+ * @author chorm
+ *
+ */
+public final class FrameBuffer {
+	
+	/**
+	 * Where the pixels of frames are stored.
+	 */
+	public enum Storage {
+		/**
+		 * Pixels are stored in direct buffers, outside of the heap, which can be shared with native code or written to a channel.
+		 */
+		DIRECT,
+		/**
+		 * Pixels are stored in {@link java.awt.image.BufferedImage}s, which can be drawn with Java2D.
+		 */
+		IMAGE
+	}
+	
+	private static final int INDEX = 3;
+	private static final int FRESH = 4;
+	
+	private final int width;
+	private final int height;
+	private final Storage storage;
+	private final Frame[] frames = new Frame[3];
+	/**
+	 * The index of the pending frame, and whether it was published since the consumer last obtained a frame.
+	 */
+	private final AtomicInteger pending = new AtomicInteger(1);
+	private int back = 0;
+	private int front = 2;
+	private long published;
+	private volatile long dropped;
+	private boolean obtained;
+	
+	/**
+	 * Constructs a new FrameBuffer with frames of the given size and storage. Every pixel is initially transparent.
+	 * @throws IllegalArgumentException if width or height is not positive, or frames would have more than {@link Integer#MAX_VALUE} bytes.
+	 * @throws NullPointerException if storage is null.
+	 */
+	public FrameBuffer(int width,int height,Storage storage) {
+		if(width<=0||height<=0)
+			throw new IllegalArgumentException("Frame size must be positive");
+		if((long)width*height*4>Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Frame size too large");
+		this.width = width;
+		this.height = height;
+		this.storage = Objects.requireNonNull(storage);
+		for(int i = 0;i<frames.length;i++)
+			frames[i] = new Frame(width,height,storage);
+	}
+	
+	/**
+	 * Returns the back frame, which the producer draws the next frame to. This is the same frame until {@link #publish()} is called.
+	 */
+	public Frame getBackFrame() {
+		return frames[back];
+	}
+	
+	/**
+	 * Publishes the back frame, making it the latest frame, and makes another frame the back frame. 
+	 *  The new back frame holds an older frame, which the producer should fully redraw.
+	 */
+	public void publish() {
+		Frame frame = frames[back];
+		frame.stamp(++published, System.nanoTime());
+		int previous = pending.getAndSet(back|FRESH);
+		if((previous&FRESH)!=0)
+			dropped++;
+		back = previous&INDEX;
+	}
+	
+	/**
+	 * Returns the latest published frame, or an empty optional if no frame has been published yet. 
+	 *  If no frame was published since the last call, returns the same frame as the last call.
+	 */
+	public Optional<Frame> getLatestFrame(){
+		if((pending.get()&FRESH)!=0) {
+			front = pending.getAndSet(front)&INDEX;
+			obtained = true;
+		}
+		return obtained?Optional.of(frames[front]):Optional.empty();
+	}
+	
+	/**
+	 * Returns the width of frames, in pixels.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Returns the height of frames, in pixels.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns where the pixels of frames are stored.
+	 */
+	public Storage getStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Returns the number of frames that were published, but replaced by a later frame before the consumer obtained them.
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for rendering Engines to off-screen framebuffers, without an AWT Container.
+ */
+package github.lightningcreations.lcjei.render;
@@ -0,0 +1,65 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * A Resource whose contents are held in a ByteBuffer, such as contents received from another process, or generated in memory.<br/>
+ * The Resource reads directly from a read-only view of the buffer, which may be a heap, direct, or mapped buffer, and never copies it. 
+ *  The contents of the buffer must not be modified while the Resource is in use.
+ * @author chorm
+ *
+ * @param <ResourceKey> The type of the key of the resource
+ */
+public final class BufferResource<ResourceKey> implements Resource<ResourceKey> {
+	private final ResourceKey key;
+	private final ByteBuffer contents;
+	
+	/**
+	 * Constructs a new BufferResource named by key, with the remaining bytes of contents. The position and limit of contents are not modified.
+	 * @throws NullPointerException if key or contents is null.
+	 */
+	public BufferResource(ResourceKey key,ByteBuffer contents) {
+		this.key = Objects.requireNonNull(key);
+		this.contents = contents.slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public InputStream getReadStream() {
+		return new ByteBufferInputStream(contents);
+	}
+
+	@Override
+	public SeekableByteChannel getReadChannel() {
+		return new ByteBufferChannel(contents);
+	}
+
+	@Override
+	public ResourceKey getKey() {
+		return key;
+	}
+
+	@Override
+	public long size() {
+		return contents.capacity();
+	}
+
+	/**
+	 * Returns a view of the contents.
+	 */
+	@Override
+	public ByteBuffer asReadOnlyByteBuffer() {
+		return contents.duplicate();
+	}
+
+	/**
+	 * Writes the contents to target.
+	 */
+	@Override
+	public long transferTo(WritableByteChannel target) {
+		return Transfers.write(contents, target);
+	}
+}
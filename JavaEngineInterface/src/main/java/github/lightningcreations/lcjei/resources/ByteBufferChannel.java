@@ -0,0 +1,95 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only SeekableByteChannel over the contents of a ByteBuffer.<br/>
+ * The channel reads directly from the buffer (which may be a mapped or direct buffer), and never copies it, except into the buffers passed to {@link #read(ByteBuffer)}.
+ * @author chorm
+ *
+ */
+final class ByteBufferChannel implements SeekableByteChannel {
+	
+	private final ByteBuffer buffer;
+	private volatile boolean open = true;
+	
+	/**
+	 * Constructs a new channel over the remaining bytes of buffer. The position and limit of buffer are not modified.
+	 */
+	ByteBufferChannel(ByteBuffer buffer){
+		this.buffer = buffer.slice();
+	}
+	
+	private void ensureOpen() throws ClosedChannelException {
+		if(!open)
+			throw new ClosedChannelException();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public void close() {
+		open = false;
+	}
+
+	@Override
+	public synchronized int read(ByteBuffer dst) throws IOException {
+		ensureOpen();
+		if(!buffer.hasRemaining())
+			return -1;
+		int n = Math.min(dst.remaining(), buffer.remaining());
+		if(n==buffer.remaining())
+			dst.put(buffer);
+		else {
+			ByteBuffer src = buffer.duplicate();
+			src.limit(src.position()+n);
+			dst.put(src);
+			buffer.position(buffer.position()+n);
+		}
+		return n;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		ensureOpen();
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public synchronized long position() throws IOException {
+		ensureOpen();
+		return buffer.position();
+	}
+
+	/**
+	 * Sets the position of this channel. Setting the position past the end of the channel is permitted, and causes subsequent reads to indicate end-of-stream.
+	 */
+	@Override
+	public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+		ensureOpen();
+		if(newPosition<0)
+			throw new IllegalArgumentException("Negative position");
+		buffer.position((int)Math.min(newPosition, buffer.limit()));
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		ensureOpen();
+		return buffer.limit();
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) throws IOException {
+		ensureOpen();
+		throw new NonWritableChannelException();
+	}
+
+}
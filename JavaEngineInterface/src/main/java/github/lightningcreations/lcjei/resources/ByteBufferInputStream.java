@@ -0,0 +1,72 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream which reads the contents of a ByteBuffer.<br/>
+ * The stream reads directly from the buffer (which may be a mapped or direct buffer), and never copies it, except into the arrays passed to {@link #read(byte[], int, int)}.
+ *  Mark and Reset are supported, and the mark limit is ignored. The stream is initially marked at its start.
+ * @author chorm
+ *
+ */
+final class ByteBufferInputStream extends InputStream {
+	
+	private final ByteBuffer buffer;
+	
+	/**
+	 * Constructs a new stream over the remaining bytes of buffer. The position and limit of buffer are not modified.
+	 */
+	ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+		this.buffer.mark();
+	}
+
+	@Override
+	public synchronized int read() {
+		return buffer.hasRemaining()?buffer.get()&0xff:-1;
+	}
+
+	@Override
+	public synchronized int read(byte[] b, int off, int len) {
+		if(off<0||len<0||len>b.length-off)
+			throw new IndexOutOfBoundsException();
+		else if(len==0)
+			return 0;
+		else if(!buffer.hasRemaining())
+			return -1;
+		len = Math.min(len, buffer.remaining());
+		buffer.get(b, off, len);
+		return len;
+	}
+
+	@Override
+	public synchronized long skip(long n) {
+		if(n<=0)
+			return 0;
+		int skipped = (int)Math.min(n, buffer.remaining());
+		buffer.position(buffer.position()+skipped);
+		return skipped;
+	}
+
+	@Override
+	public synchronized int available() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		buffer.mark();
+	}
+
+	@Override
+	public synchronized void reset() {
+		buffer.reset();
+	}
+
+}
@@ -0,0 +1,307 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * A ResourceSet which caches the contents of resources of another ResourceSet in memory.<br/>
+ * The first time a resource is obtained, its contents are read in full from the underlying set, and stored in a heap or direct buffer.
+ *  Subsequent calls to {@link #getResource(Object)} for the same key return a Resource over the cached contents, without accessing the underlying set.
+ *  Resources which do not exist are not cached.<br/>
+ * 
+ * The cache is bounded by the total size of the cached contents (its weight). 
+ *  When the weight exceeds the maximum weight, the least recently used resources are evicted until the weight is at most 7/8 of the maximum.
+ *  Resources larger than a quarter of the maximum weight are not cached, and are returned from the underlying set as-is.
+ *  Resources which were evicted remain readable by anyone who already obtained them.<br/>
+ * 
+ * Lookups which hit the cache do not lock. Only one thread evicts at a time, and other threads do not wait for it.<br/>
+ * {@link #reload()} reloads the underlying set, and then discards the cache. Resources which were being cached concurrently with a reload are discarded.<br/>
+ * Methods of Resources which were not yet cached throw an {@link UncheckedIOException} if an I/O error occurs reading the underlying resource.
+ * @author chorm
+ *
+ * @param <ResourceKey> The type of keys of the resource set
+ */
+public final class CachingResourceSet<ResourceKey> implements ResourceSet<ResourceKey> {
+	
+	/**
+	 * Where cached resource contents are stored.
+	 */
+	public enum Storage {
+		/**
+		 * Contents are stored in heap byte arrays.
+		 */
+		HEAP,
+		/**
+		 * Contents are stored in direct buffers, outside of the heap.
+		 */
+		DIRECT
+	}
+	
+	private static final class CachedResource<ResourceKey> implements Resource<ResourceKey>{
+		private final ResourceKey key;
+		private final ByteBuffer contents;
+		private final long lastModified;
+		private volatile long lastAccess;
+		
+		CachedResource(ResourceKey key,ByteBuffer contents,long lastModified){
+			this.key = key;
+			this.contents = contents;
+			this.lastModified = lastModified;
+			this.lastAccess = System.nanoTime();
+		}
+
+		@Override
+		public InputStream getReadStream() {
+			return new ByteBufferInputStream(contents);
+		}
+
+		@Override
+		public SeekableByteChannel getReadChannel() {
+			return new ByteBufferChannel(contents);
+		}
+
+		@Override
+		public ResourceKey getKey() {
+			return key;
+		}
+		
+		@Override
+		public long size() {
+			return contents.capacity();
+		}
+		
+		/**
+		 * Returns the modification time of the underlying resource, from before its contents were read.
+		 */
+		@Override
+		public long lastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Returns a view of the cached contents.
+		 */
+		@Override
+		public ByteBuffer asReadOnlyByteBuffer() {
+			return contents.duplicate();
+		}
+
+		/**
+		 * Writes the cached contents to target.
+		 */
+		@Override
+		public long transferTo(WritableByteChannel target) {
+			return Transfers.write(contents, target);
+		}
+		
+		long weight() {
+			return contents.capacity();
+		}
+	}
+	
+	private final ResourceSet<ResourceKey> delegate;
+	private final long maximumWeight;
+	private final Storage storage;
+	private final ConcurrentHashMap<ResourceKey,CachedResource<ResourceKey>> cache = new ConcurrentHashMap<>();
+	private final AtomicLong weight = new AtomicLong();
+	private final AtomicLong generation = new AtomicLong();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	/**
+	 * Constructs a new CachingResourceSet over delegate, which caches at most maximumWeight bytes in heap buffers.
+	 * @param delegate The underlying set.
+	 * @param maximumWeight The maximum total size of cached resources, in bytes.
+	 * @throws NullPointerException if delegate is null.
+	 * @throws IllegalArgumentException if maximumWeight is negative.
+	 */
+	public CachingResourceSet(ResourceSet<ResourceKey> delegate,long maximumWeight) {
+		this(delegate,maximumWeight,Storage.HEAP);
+	}
+	
+	/**
+	 * Constructs a new CachingResourceSet over delegate, which caches at most maximumWeight bytes in buffers given by storage.
+	 * @param delegate The underlying set.
+	 * @param maximumWeight The maximum total size of cached resources, in bytes.
+	 * @param storage Where cached resource contents are stored.
+	 * @throws NullPointerException if delegate or storage is null.
+	 * @throws IllegalArgumentException if maximumWeight is negative.
+	 */
+	public CachingResourceSet(ResourceSet<ResourceKey> delegate,long maximumWeight,Storage storage) {
+		this.delegate = Objects.requireNonNull(delegate);
+		this.storage = Objects.requireNonNull(storage);
+		if(maximumWeight<0)
+			throw new IllegalArgumentException("Negative maximum weight");
+		this.maximumWeight = maximumWeight;
+	}
+	
+	private ByteBuffer readContents(Resource<ResourceKey> resource) {
+		if(resource.size()>maximumWeight/4)
+			return null;
+		try(SeekableByteChannel channel = resource.getReadChannel()){
+			long size = channel.size();
+			if(size>maximumWeight/4)
+				return null;
+			ByteBuffer contents = storage==Storage.DIRECT?ByteBuffer.allocateDirect((int)size):ByteBuffer.allocate((int)size);
+			while(contents.hasRemaining()&&channel.read(contents)>=0);
+			contents.flip();
+			return contents.asReadOnlyBuffer();
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private boolean remove(ResourceKey key,CachedResource<ResourceKey> cached) {
+		if(cache.remove(key, cached)) {
+			weight.addAndGet(-cached.weight());
+			return true;
+		}
+		return false;
+	}
+	
+	private void evictIfNeeded() {
+		if(weight.get()<=maximumWeight||!evictionLock.tryLock())
+			return;
+		try {
+			long target = maximumWeight-maximumWeight/8;
+			List<CachedResource<ResourceKey>> entries = new ArrayList<>(cache.values());
+			entries.sort(Comparator.comparingLong(c->c.lastAccess));
+			for(CachedResource<ResourceKey> cached:entries) {
+				if(weight.get()<=target)
+					break;
+				if(remove(cached.key,cached))
+					evictions.increment();
+			}
+		}finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the cached resource for key if there is one. Otherwise, obtains the resource from the underlying set, and caches it if it is not too large.
+	 * @throws UncheckedIOException if an I/O error occurs while reading the resource to cache it.
+	 */
+	@Override
+	public Optional<Resource<ResourceKey>> getResource(ResourceKey key) {
+		CachedResource<ResourceKey> cached = cache.get(Objects.requireNonNull(key));
+		if(cached!=null) {
+			cached.lastAccess = System.nanoTime();
+			hits.increment();
+			return Optional.of(cached);
+		}
+		misses.increment();
+		long gen = generation.get();
+		Optional<Resource<ResourceKey>> resource = delegate.getResource(key);
+		if(!resource.isPresent())
+			return resource;
+		long lastModified = resource.get().lastModified();
+		ByteBuffer contents = readContents(resource.get());
+		if(contents==null)
+			return resource;
+		cached = new CachedResource<>(key,contents,lastModified);
+		CachedResource<ResourceKey> existing = cache.putIfAbsent(key, cached);
+		if(existing!=null)
+			return Optional.of(existing);
+		weight.addAndGet(cached.weight());
+		// Discard the entry if the set was reloaded while it was being read
+		if(generation.get()!=gen)
+			remove(key,cached);
+		else
+			evictIfNeeded();
+		return Optional.of(cached);
+	}
+
+	@Override
+	public Stream<ResourceKey> keys() {
+		return delegate.keys();
+	}
+
+	@Override
+	public Stream<ResourceKey> keys(ResourceKey fromKey, ResourceKey toKey) {
+		return delegate.keys(fromKey, toKey);
+	}
+
+	@Override
+	public Stream<ResourceKey> keysWithPrefix(String prefix) {
+		return delegate.keysWithPrefix(prefix);
+	}
+
+	/**
+	 * Reloads the underlying set, and discards all cached resources.
+	 */
+	@Override
+	public void reload() {
+		delegate.reload();
+		generation.incrementAndGet();
+		invalidateAll();
+	}
+	
+	/**
+	 * Discards the cached resource for key, if any, without reloading the underlying set.
+	 */
+	public void invalidate(ResourceKey key) {
+		CachedResource<ResourceKey> cached = cache.get(Objects.requireNonNull(key));
+		if(cached!=null)
+			remove(key,cached);
+	}
+	
+	/**
+	 * Discards all cached resources, without reloading the underlying set.
+	 */
+	public void invalidateAll() {
+		cache.forEach(this::remove);
+	}
+	
+	/**
+	 * Returns the number of calls to {@link #getResource(Object)} which were answered from the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * Returns the number of calls to {@link #getResource(Object)} which were not answered from the cache, including calls for resources that do not exist.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Returns the number of resources which were evicted to keep the cache within its maximum weight.
+	 *  Resources discarded by a reload or invalidation are not counted.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * Returns the total size, in bytes, of the currently cached resources.
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+	
+	/**
+	 * Returns the maximum total size, in bytes, of cached resources.
+	 */
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+
+}
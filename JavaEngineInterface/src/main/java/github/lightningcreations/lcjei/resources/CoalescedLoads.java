@@ -0,0 +1,74 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent asynchronous lookups of the same key in the same ResourceSet, so that only one of them calls {@link ResourceSet#getResource(Object)}.<br/>
+ * A lookup is only shared while it is in progress. Once it completes, the next lookup of the same key calls getResource again.<br/>
+ * Each caller receives its own dependent future, so completing or cancelling it does not affect the other callers.<br/>
+ * Only the lookup is coalesced. Reading the contents of the resulting Resource is done by each caller, and is only shared if the Resource itself shares its contents
+ *  (such as the Resources of a {@link DeduplicatingResourceSet}).
+ * @author chorm
+ *
+ */
+final class CoalescedLoads {
+	private CoalescedLoads() {
+	}
+	
+	private static final class LoadKey {
+		private final ResourceSet<?> set;
+		private final Object key;
+		
+		LoadKey(ResourceSet<?> set,Object key){
+			this.set = set;
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(set)*31+key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof LoadKey))
+				return false;
+			LoadKey other = (LoadKey)obj;
+			return set==other.set&&key.equals(other.key);
+		}
+	}
+	
+	private static final ConcurrentHashMap<LoadKey,CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+	
+	@SuppressWarnings("unchecked")
+	static <ResourceKey> CompletableFuture<Optional<Resource<ResourceKey>>> load(ResourceSet<ResourceKey> set,ResourceKey key,Executor executor){
+		LoadKey loadKey = new LoadKey(set,Objects.requireNonNull(key));
+		CompletableFuture<Optional<Resource<ResourceKey>>> existing = (CompletableFuture<Optional<Resource<ResourceKey>>>)inFlight.get(loadKey);
+		if(existing!=null)
+			return existing.thenApply(Function.identity());
+		CompletableFuture<Optional<Resource<ResourceKey>>> future = new CompletableFuture<>();
+		existing = (CompletableFuture<Optional<Resource<ResourceKey>>>)inFlight.putIfAbsent(loadKey, future);
+		if(existing!=null)
+			return existing.thenApply(Function.identity());
+		try {
+			executor.execute(()->{
+				try {
+					future.complete(set.getResource(key));
+				}catch(Throwable t) {
+					future.completeExceptionally(t);
+				}finally {
+					inFlight.remove(loadKey, future);
+				}
+			});
+		}catch(RuntimeException e) {
+			inFlight.remove(loadKey, future);
+			future.completeExceptionally(e);
+		}
+		return future.thenApply(Function.identity());
+	}
+}
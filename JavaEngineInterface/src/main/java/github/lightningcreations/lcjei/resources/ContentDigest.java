@@ -0,0 +1,108 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Identifies the contents of a resource, by their size, their 64-bit xxHash, and their SHA-256 digest.<br/>
+ * ContentDigests are compared by value. Two resources with equal ContentDigests are considered to have the same contents.
+ * @author chorm
+ *
+ */
+public final class ContentDigest {
+	
+	/**
+	 * The length of the SHA-256 digest, in bytes.
+	 */
+	public static final int SHA256_LENGTH = 32;
+	
+	private final long size;
+	private final long fastHash;
+	private final byte[] sha256;
+	
+	/**
+	 * Constructs a ContentDigest from its components, such as when reading a persisted manifest.
+	 * @param size The size of the contents, in bytes.
+	 * @param fastHash The 64-bit xxHash of the contents, with a seed of 0.
+	 * @param sha256 The SHA-256 digest of the contents. The array is copied.
+	 * @throws IllegalArgumentException if size is negative, or sha256 is not 32 bytes long.
+	 * @throws NullPointerException if sha256 is null.
+	 */
+	public ContentDigest(long size,long fastHash,byte[] sha256) {
+		if(size<0)
+			throw new IllegalArgumentException("Negative size");
+		if(sha256.length!=SHA256_LENGTH)
+			throw new IllegalArgumentException("SHA-256 digest must be 32 bytes");
+		this.size = size;
+		this.fastHash = fastHash;
+		this.sha256 = sha256.clone();
+	}
+	
+	/**
+	 * Computes the ContentDigest of the remaining bytes of data. The position of data is not modified.
+	 */
+	public static ContentDigest of(ByteBuffer data) {
+		return new ContentDigest(data.remaining(),XXHash64.hash(data),sha256(data));
+	}
+	
+	static byte[] sha256(ByteBuffer data) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(data.duplicate());
+			return digest.digest();
+		}catch(NoSuchAlgorithmException e) {
+			// Every Java Platform is required to support SHA-256
+			throw new AssertionError(e);
+		}
+	}
+	
+	/**
+	 * Returns the size of the contents, in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Returns the 64-bit xxHash of the contents.
+	 */
+	public long getFastHash() {
+		return fastHash;
+	}
+	
+	/**
+	 * Returns a copy of the SHA-256 digest of the contents.
+	 */
+	public byte[] getSha256() {
+		return sha256.clone();
+	}
+	
+	boolean sha256Equals(byte[] other) {
+		return MessageDigest.isEqual(sha256, other);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(fastHash);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj==this)
+			return true;
+		else if(!(obj instanceof ContentDigest))
+			return false;
+		ContentDigest other = (ContentDigest)obj;
+		return size==other.size&&fastHash==other.fastHash&&Arrays.equals(sha256, other.sha256);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("ContentDigest[size=").append(size).append(", sha256=");
+		for(byte b:sha256)
+			sb.append(Character.forDigit((b>>4)&0xf, 16)).append(Character.forDigit(b&0xf, 16));
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,174 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Records the {@link ContentDigest} of each resource of a ResourceSet, so that a {@link DeduplicatingResourceSet} can share identical contents without reading and hashing them again.<br/>
+ * A manifest can be built once, such as when assets are packaged, and saved alongside them. 
+ *  Each entry records the {@link Resource#lastModified() modification time} of the resource it was computed from, and a digest is only used for a resource with the same modification time and size,
+ *  so that a resource which changes, such as a file of a watched {@link DirectoryResourceSet}, is read again rather than given the previous contents.
+ *  Resources which have no modification time, such as the entries of a {@link PackResourceSet}, are only checked by size, so a manifest for them should describe the same build of the assets as the set it is used with.
+ *  Contents are always hashed when they are added to the store, so a stale manifest never causes contents to be filed under the wrong digest.<br/>
+ * 
+ * Manifests are saved in a compact binary format, which consists of the magic "LCJM", a version (2), and the number of entries, 
+ *  followed by each entry as its key (in modified UTF-8), its modification time, the xxHash and size of its contents, and their 32 byte SHA-256 digest. All numbers are big-endian.
+ *  Manifests of version 1, which have no modification times, can be loaded, and their entries are only used for resources which have no modification time.<br/>
+ * This class is thread-safe.
+ * @author chorm
+ *
+ * @param <ResourceKey> The type of keys of the resource set
+ */
+public final class ContentManifest<ResourceKey> {
+	private static final int MAGIC = 0x4C434A4D; // LCJM
+	private static final int VERSION = 2;
+	
+	private static final class Entry {
+		private final ContentDigest digest;
+		private final long lastModified;
+		
+		Entry(ContentDigest digest,long lastModified){
+			this.digest = digest;
+			this.lastModified = lastModified;
+		}
+	}
+	
+	private final ConcurrentHashMap<ResourceKey,Entry> entries = new ConcurrentHashMap<>();
+	
+	/**
+	 * Constructs a new, empty manifest.
+	 */
+	public ContentManifest() {
+	}
+	
+	/**
+	 * Returns the digest recorded for key, if any, regardless of the modification time it was recorded with.
+	 */
+	public Optional<ContentDigest> get(ResourceKey key){
+		Entry entry = entries.get(Objects.requireNonNull(key));
+		return entry!=null?Optional.of(entry.digest):Optional.empty();
+	}
+	
+	/**
+	 * Returns the digest recorded for key, if there is one, and it was recorded with the modification time lastModified.
+	 */
+	public Optional<ContentDigest> get(ResourceKey key,long lastModified){
+		Entry entry = entries.get(Objects.requireNonNull(key));
+		return entry!=null&&entry.lastModified==lastModified?Optional.of(entry.digest):Optional.empty();
+	}
+	
+	/**
+	 * Records digest as the digest of the resource named by key, which has no modification time, replacing any existing entry.
+	 * @throws NullPointerException if key or digest is null.
+	 */
+	public void put(ResourceKey key,ContentDigest digest) {
+		put(key,digest,0);
+	}
+	
+	/**
+	 * Records digest as the digest of the resource named by key, as of the modification time lastModified, replacing any existing entry.
+	 * @throws NullPointerException if key or digest is null.
+	 */
+	public void put(ResourceKey key,ContentDigest digest,long lastModified) {
+		entries.put(Objects.requireNonNull(key), new Entry(Objects.requireNonNull(digest),lastModified));
+	}
+	
+	/**
+	 * Removes the entry for key, if any.
+	 */
+	public void remove(ResourceKey key) {
+		entries.remove(Objects.requireNonNull(key));
+	}
+	
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+	
+	/**
+	 * Returns the number of entries in the manifest.
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Saves the manifest to file, naming keys with keyToString. The manifest is written to a temporary file in the same directory, which then replaces file,
+	 *  so that readers never see a partially written manifest.
+	 * @throws UncheckedIOException if an I/O error occurs.
+	 */
+	public void save(Path file,Function<? super ResourceKey,String> keyToString) {
+		Path dir = file.toAbsolutePath().getParent();
+		try {
+			Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+			try {
+				try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))){
+					Map<ResourceKey,Entry> snapshot = new HashMap<>(entries);
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(snapshot.size());
+					for(Map.Entry<ResourceKey,Entry> entry:snapshot.entrySet()) {
+						ContentDigest digest = entry.getValue().digest;
+						out.writeUTF(keyToString.apply(entry.getKey()));
+						out.writeLong(entry.getValue().lastModified);
+						out.writeLong(digest.getFastHash());
+						out.writeLong(digest.getSize());
+						out.write(digest.getSha256());
+					}
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}finally {
+				Files.deleteIfExists(tmp);
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Loads a manifest previously saved by {@link #save(Path, Function)}, obtaining keys from their names with stringToKey.
+	 * @throws UncheckedIOException if an I/O error occurs, or file is not a valid manifest.
+	 */
+	public static <ResourceKey> ContentManifest<ResourceKey> load(Path file,Function<String,? extends ResourceKey> stringToKey){
+		ContentManifest<ResourceKey> manifest = new ContentManifest<>();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+			if(in.readInt()!=MAGIC)
+				throw new IOException(file+" is not a content manifest");
+			int version = in.readInt();
+			if(version!=1&&version!=VERSION)
+				throw new IOException(file+": Unsupported content manifest version "+version);
+			int count = in.readInt();
+			if(count<0)
+				throw new IOException(file+": Malformed content manifest");
+			byte[] sha256 = new byte[ContentDigest.SHA256_LENGTH];
+			for(int i = 0;i<count;i++) {
+				String key = in.readUTF();
+				long lastModified = version>1?in.readLong():0;
+				long fastHash = in.readLong();
+				long size = in.readLong();
+				in.readFully(sha256);
+				if(size<0)
+					throw new IOException(file+": Malformed content manifest");
+				manifest.put(stringToKey.apply(key), new ContentDigest(size,fastHash,sha256), lastModified);
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return manifest;
+	}
+}
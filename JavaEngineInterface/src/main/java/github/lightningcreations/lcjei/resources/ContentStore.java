@@ -0,0 +1,204 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A content-addressed store, which keeps a single copy in memory of each distinct content interned into it.<br/>
+ * Contents are hashed with the 64-bit xxHash. Contents with equal hashes and sizes are verified to be identical by their SHA-256 digests before they are shared,
+ *  so the SHA-256 digest is only computed when the fast hash of new contents matches existing contents (or when a digest is requested).<br/>
+ * 
+ * The store only weakly references its contents. A Content stays in the store as long as something, such as a Resource of a {@link DeduplicatingResourceSet}, refers to it,
+ *  so a store can be shared between any number of ResourceSets, such as the sets of a host engine and the guest engines embedded in it, without pinning contents that none of them use.<br/>
+ * This class is thread-safe. Lookups do not lock.
+ * @author chorm
+ *
+ */
+public final class ContentStore {
+	
+	/**
+	 * Contents held by a ContentStore.
+	 */
+	public static final class Content {
+		private final ByteBuffer data;
+		private final long fastHash;
+		private volatile byte[] sha256;
+		
+		Content(ByteBuffer data,long fastHash,byte[] sha256){
+			this.data = data;
+			this.fastHash = fastHash;
+			this.sha256 = sha256;
+		}
+		
+		long fastHash() {
+			return fastHash;
+		}
+		
+		byte[] sha256() {
+			byte[] sha256 = this.sha256;
+			if(sha256==null)
+				this.sha256 = sha256 = ContentDigest.sha256(data);
+			return sha256;
+		}
+		
+		/**
+		 * Returns a read-only view of the contents. Each call returns a distinct buffer.
+		 */
+		public ByteBuffer getData() {
+			return data.duplicate();
+		}
+		
+		/**
+		 * Returns the size of the contents, in bytes.
+		 */
+		public long getSize() {
+			return data.remaining();
+		}
+		
+		/**
+		 * Returns the digest of the contents, computing the SHA-256 digest if it has not yet been computed.
+		 */
+		public ContentDigest getDigest() {
+			return new ContentDigest(data.remaining(),fastHash,sha256());
+		}
+	}
+	
+	private static final class ContentRef extends WeakReference<Content> {
+		private final long fastHash;
+		private final long size;
+		
+		ContentRef(Content content,ReferenceQueue<Content> queue){
+			super(content,queue);
+			this.fastHash = content.fastHash;
+			this.size = content.getSize();
+		}
+	}
+	
+	private static final ContentRef[] EMPTY = new ContentRef[0];
+	
+	private final ConcurrentHashMap<Long,ContentRef[]> buckets = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Content> collected = new ReferenceQueue<>();
+	private final LongAdder shared = new LongAdder();
+	private final LongAdder sharedBytes = new LongAdder();
+	
+	/**
+	 * Constructs a new, empty ContentStore.
+	 */
+	public ContentStore() {
+	}
+	
+	private void expungeCollected() {
+		ContentRef ref;
+		while((ref = (ContentRef)collected.poll())!=null) {
+			ContentRef stale = ref;
+			buckets.computeIfPresent(stale.fastHash, (hash,bucket)->{
+				int i = Arrays.asList(bucket).indexOf(stale);
+				if(i<0)
+					return bucket;
+				else if(bucket.length==1)
+					return null;
+				ContentRef[] result = new ContentRef[bucket.length-1];
+				System.arraycopy(bucket, 0, result, 0, i);
+				System.arraycopy(bucket, i+1, result, i, bucket.length-i-1);
+				return result;
+			});
+		}
+	}
+	
+	private static Content match(ContentRef[] bucket,long size,byte[] sha256) {
+		if(bucket!=null)
+			for(ContentRef ref:bucket) {
+				Content content;
+				if(ref.size==size&&(content = ref.get())!=null&&MessageDigest.isEqual(content.sha256(), sha256))
+					return content;
+			}
+		return null;
+	}
+	
+	private static boolean hasCandidate(ContentRef[] bucket,long size) {
+		if(bucket!=null)
+			for(ContentRef ref:bucket)
+				if(ref.size==size&&ref.get()!=null)
+					return true;
+		return false;
+	}
+	
+	/**
+	 * Returns the Content in this store with digest, if there is one.
+	 * @throws NullPointerException if digest is null.
+	 */
+	public Optional<Content> find(ContentDigest digest) {
+		return Optional.ofNullable(match(buckets.get(digest.getFastHash()),digest.getSize(),digest.getSha256()));
+	}
+	
+	/**
+	 * Returns the Content in this store which is identical to the remaining bytes of data. If there is none, adds data to the store, and returns its Content.<br/>
+	 * If data is added, the store keeps a read-only view of data rather than a copy, so data must not be modified after it is interned. 
+	 *  data may be a heap, direct, or mapped buffer. The position of data is not modified.
+	 * @throws NullPointerException if data is null.
+	 */
+	public Content intern(ByteBuffer data) {
+		expungeCollected();
+		data = data.slice().asReadOnlyBuffer();
+		long size = data.remaining();
+		long fastHash = XXHash64.hash(data);
+		byte[] sha256 = null;
+		// The strong digest is only needed to verify a possible match
+		if(hasCandidate(buckets.get(fastHash),size))
+			sha256 = ContentDigest.sha256(data);
+		Content candidate = new Content(data,fastHash,sha256);
+		Content[] result = new Content[1];
+		buckets.compute(fastHash, (hash,bucket)->{
+			if(bucket!=null&&hasCandidate(bucket,size)) {
+				Content existing = match(bucket,size,candidate.sha256());
+				if(existing!=null) {
+					result[0] = existing;
+					return bucket;
+				}
+			}
+			if(bucket==null)
+				bucket = EMPTY;
+			ContentRef[] next = Arrays.copyOf(bucket, bucket.length+1);
+			next[bucket.length] = new ContentRef(candidate,collected);
+			result[0] = candidate;
+			return next;
+		});
+		if(result[0]!=candidate) {
+			shared.increment();
+			sharedBytes.add(size);
+		}
+		return result[0];
+	}
+	
+	/**
+	 * Returns the number of times interned contents were found to be identical to contents already in the store, and were shared.
+	 */
+	public long getSharedCount() {
+		return shared.sum();
+	}
+	
+	/**
+	 * Returns the total size of the contents which were shared rather than added to the store. This is the memory saved by deduplication, 
+	 *  if all of the shared contents were otherwise held in memory.
+	 */
+	public long getSharedBytes() {
+		return sharedBytes.sum();
+	}
+	
+	/**
+	 * Returns the number of distinct contents in the store, including contents which are no longer referenced but have not yet been removed.
+	 */
+	public int getContentCount() {
+		expungeCollected();
+		int count = 0;
+		for(ContentRef[] bucket:buckets.values())
+			count += bucket.length;
+		return count;
+	}
+}
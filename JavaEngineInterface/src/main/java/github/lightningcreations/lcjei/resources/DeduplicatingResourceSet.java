@@ -0,0 +1,231 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A ResourceSet which holds the contents of the resources of another ResourceSet in a {@link ContentStore}, so that identical contents are only held in memory once.<br/>
+ * Sets which share a ContentStore share identical contents with each other. 
+ *  For example, a host engine and the guest engines embedded in it often ship the same shaders, fonts or textures, 
+ *  and wrapping each of their sets in a DeduplicatingResourceSet over the same store keeps only one copy of each.<br/>
+ * 
+ * The first time a resource is obtained, its contents are obtained with {@link Resource#asReadOnlyByteBuffer()} and interned into the store. 
+ *  Contents which the underlying set maps from a file, such as those of a {@link DirectoryResourceSet} or stored entries of a {@link PackResourceSet}, are interned without copying them.
+ *  If a {@link ContentManifest} is given, and it records a digest for the resource, with the same {@link Resource#lastModified() modification time} and size as the resource has, 
+ *  contents already in the store with that digest are shared without reading the resource.
+ *  Otherwise, the contents are read and hashed as they are interned, and if the manifest has no entry for the resource, or its entry is stale, the digest of the contents is recorded in it. 
+ *  A manifest never causes contents to be added to the store under a digest which was not computed from them.<br/>
+ * Resources larger than 2GB are not deduplicated, and are returned from the underlying set as-is.<br/>
+ * 
+ * Resources are only weakly referenced by the set, so resources (and their contents) which nothing else refers to can be collected, and are read again if they are obtained again. 
+ *  Lookups of resources that are still referenced do not lock. {@link #reload()} reloads the underlying set, and discards the resources that were obtained. 
+ *  It does not modify the manifest, which should be replaced if the contents of the underlying set change.<br/>
+ * {@link #getResource(Object)} throws an {@link UncheckedIOException} if an I/O error occurs reading the underlying resource.
+ * @author chorm
+ *
+ * @param <ResourceKey> The type of keys of the resource set
+ */
+public final class DeduplicatingResourceSet<ResourceKey> implements ResourceSet<ResourceKey> {
+	
+	private static final class SharedResource<ResourceKey> implements Resource<ResourceKey> {
+		private final ResourceKey key;
+		private final ContentStore.Content content;
+		private final long lastModified;
+		
+		SharedResource(ResourceKey key,ContentStore.Content content,long lastModified){
+			this.key = key;
+			this.content = content;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public InputStream getReadStream() {
+			return new ByteBufferInputStream(content.getData());
+		}
+
+		@Override
+		public SeekableByteChannel getReadChannel() {
+			return new ByteBufferChannel(content.getData());
+		}
+
+		@Override
+		public ResourceKey getKey() {
+			return key;
+		}
+
+		@Override
+		public long size() {
+			return content.getSize();
+		}
+
+		/**
+		 * Returns the modification time of the underlying resource, from before its contents were read.
+		 */
+		@Override
+		public long lastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Returns a view of the shared contents.
+		 */
+		@Override
+		public ByteBuffer asReadOnlyByteBuffer() {
+			return content.getData();
+		}
+
+		/**
+		 * Writes the shared contents to target.
+		 */
+		@Override
+		public long transferTo(WritableByteChannel target) {
+			return Transfers.write(content.getData(), target);
+		}
+	}
+	
+	private final ResourceSet<ResourceKey> delegate;
+	private final ContentStore store;
+	private final ContentManifest<ResourceKey> manifest;
+	/**
+	 * Weak reference to a resource, which remembers its key, so that it can be removed once collected.
+	 */
+	private static final class ResourceRef<ResourceKey> extends WeakReference<SharedResource<ResourceKey>> {
+		private final ResourceKey key;
+		
+		ResourceRef(SharedResource<ResourceKey> resource,ReferenceQueue<SharedResource<ResourceKey>> queue){
+			super(resource,queue);
+			this.key = resource.key;
+		}
+	}
+	
+	private final ConcurrentHashMap<ResourceKey,ResourceRef<ResourceKey>> resources = new ConcurrentHashMap<>();
+	private final ReferenceQueue<SharedResource<ResourceKey>> collected = new ReferenceQueue<>();
+	private final AtomicLong generation = new AtomicLong();
+	
+	/**
+	 * Constructs a new DeduplicatingResourceSet over delegate, which holds contents in store.
+	 * @throws NullPointerException if delegate or store is null.
+	 */
+	public DeduplicatingResourceSet(ResourceSet<ResourceKey> delegate,ContentStore store) {
+		this.delegate = Objects.requireNonNull(delegate);
+		this.store = Objects.requireNonNull(store);
+		this.manifest = null;
+	}
+	
+	/**
+	 * Constructs a new DeduplicatingResourceSet over delegate, which holds contents in store, and looks up and records the digests of resources in manifest.
+	 * @throws NullPointerException if delegate, store, or manifest is null.
+	 */
+	public DeduplicatingResourceSet(ResourceSet<ResourceKey> delegate,ContentStore store,ContentManifest<ResourceKey> manifest) {
+		this.delegate = Objects.requireNonNull(delegate);
+		this.store = Objects.requireNonNull(store);
+		this.manifest = Objects.requireNonNull(manifest);
+	}
+	
+	private ContentStore.Content intern(ResourceKey key,Resource<ResourceKey> resource,long size,long lastModified) {
+		ContentDigest known = null;
+		if(manifest!=null) {
+			known = manifest.get(key,lastModified).orElse(null);
+			if(known!=null&&known.getSize()==size) {
+				Optional<ContentStore.Content> existing = store.find(known);
+				if(existing.isPresent())
+					return existing.get();
+			}
+		}
+		// The contents are hashed rather than filed under the manifest's digest, which may be stale
+		ContentStore.Content content = store.intern(resource.asReadOnlyByteBuffer());
+		// Only a missing or stale entry is recorded, so the SHA-256 digest is not computed for a matching entry
+		if(manifest!=null&&(known==null||known.getSize()!=content.getSize()||known.getFastHash()!=content.fastHash()))
+			manifest.put(key, content.getDigest(), lastModified);
+		return content;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void expungeCollected() {
+		ResourceRef<ResourceKey> ref;
+		while((ref = (ResourceRef<ResourceKey>)collected.poll())!=null)
+			resources.remove(ref.key, ref);
+	}
+
+	/**
+	 * Returns the resource named by key, with its contents shared through the store.
+	 * @throws UncheckedIOException if an I/O error occurs while reading the resource.
+	 */
+	@Override
+	public Optional<Resource<ResourceKey>> getResource(ResourceKey key) {
+		ResourceRef<ResourceKey> ref = resources.get(Objects.requireNonNull(key));
+		SharedResource<ResourceKey> shared = ref!=null?ref.get():null;
+		if(shared!=null)
+			return Optional.of(shared);
+		expungeCollected();
+		long gen = generation.get();
+		Optional<Resource<ResourceKey>> resource = delegate.getResource(key);
+		if(!resource.isPresent())
+			return resource;
+		long size = resource.get().size();
+		if(size>Integer.MAX_VALUE)
+			return resource;
+		// The modification time is obtained before the contents, so that a change while they are read makes the recorded entry stale, rather than wrong
+		long lastModified = resource.get().lastModified();
+		SharedResource<ResourceKey> created = new SharedResource<>(key,intern(key,resource.get(),size,lastModified),lastModified);
+		ResourceRef<ResourceKey> createdRef = new ResourceRef<>(created,collected);
+		while(true) {
+			ResourceRef<ResourceKey> existing = resources.putIfAbsent(key, createdRef);
+			if(existing==null)
+				break;
+			SharedResource<ResourceKey> current = existing.get();
+			if(current!=null)
+				return Optional.of(current);
+			// The existing entry was collected, but not yet expunged
+			if(resources.replace(key, existing, createdRef))
+				break;
+		}
+		// Discard the entry if the set was reloaded while it was being read
+		if(generation.get()!=gen)
+			resources.remove(key, createdRef);
+		return Optional.of(created);
+	}
+
+	@Override
+	public Stream<ResourceKey> keys() {
+		return delegate.keys();
+	}
+
+	@Override
+	public Stream<ResourceKey> keys(ResourceKey fromKey, ResourceKey toKey) {
+		return delegate.keys(fromKey, toKey);
+	}
+
+	@Override
+	public Stream<ResourceKey> keysWithPrefix(String prefix) {
+		return delegate.keysWithPrefix(prefix);
+	}
+
+	/**
+	 * Reloads the underlying set, and discards the resources which were obtained. Contents remain in the store while anything else refers to them.
+	 */
+	@Override
+	public void reload() {
+		delegate.reload();
+		generation.incrementAndGet();
+		resources.clear();
+	}
+	
+	/**
+	 * Returns the store which holds the contents of this set.
+	 */
+	public ContentStore getStore() {
+		return store;
+	}
+
+}
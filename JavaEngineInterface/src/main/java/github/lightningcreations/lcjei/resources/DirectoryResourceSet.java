@@ -0,0 +1,502 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A ResourceSet backed by the regular files in a directory tree, which are served from memory-mapped regions.<br/>
+ * Resource Keys are the paths of files relative to the root directory, with each name separated by a single '/', regardless of the platform separator.
+ *  For example, the file <code>textures/ui/atlas.png</code> in the root directory has the key "textures/ui/atlas.png".<br/>
+ * 
+ * Each file is mapped the first time it is read, and the mapping is shared by all channels and streams opened for that file, until it is changed and the set is reloaded.
+ *  Reads through {@link Resource#getReadChannel()} and {@link Resource#getReadStream()} copy directly from the mapping into the caller's buffer, without intermediate heap copies.
+ *  Files which are too large to be mapped in a single region are read through a {@link FileChannel} instead.<br/>
+ * 
+ * The contents of a file must not be modified in place while this set has it mapped, as the results of reading a mapped file while it is modified are platform-specific.
+ *  Replacing files (such as by moving a new file over an existing one) is safe: a file which is already mapped keeps the contents it was mapped with until the set is reloaded,
+ *  and a file which is replaced before it is first read is mapped with the contents and size it has when it is read.
+ *  Methods of the returned Resources throw an {@link UncheckedIOException} if an I/O error occurs.
+ * @author chorm
+ *
+ */
+public final class DirectoryResourceSet extends SnapshotResourceSet<String,DirectoryResourceSet.FileResource> {
+	
+	/**
+	 * A file in a DirectoryResourceSet.
+	 */
+	static final class FileResource implements Resource<String>{
+		private final String key;
+		private final Path path;
+		private final long size;
+		private final long lastModified;
+		private volatile MappedByteBuffer mapped;
+		
+		FileResource(String key,Path path,BasicFileAttributes attrs){
+			this.key = key;
+			this.path = path;
+			this.size = attrs.size();
+			this.lastModified = attrs.lastModifiedTime().toMillis();
+		}
+		
+		boolean isUnchanged(BasicFileAttributes attrs) {
+			return size==attrs.size()&&lastModified==attrs.lastModifiedTime().toMillis();
+		}
+		
+		/**
+		 * Returns a view of the mapping of this file, or null if the file is too large to be mapped.<br/>
+		 * The whole file is mapped, at the size it has when it is mapped, which may differ from the size it had when the set was scanned.
+		 */
+		ByteBuffer map() {
+			if(size>Integer.MAX_VALUE)
+				return null;
+			MappedByteBuffer mapped = this.mapped;
+			if(mapped==null)
+				synchronized(this) {
+					if((mapped = this.mapped)==null)
+						try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+							long size = channel.size();
+							if(size>Integer.MAX_VALUE)
+								return null;
+							this.mapped = mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+						}catch(IOException e) {
+							throw new UncheckedIOException(e);
+						}
+				}
+			return mapped.duplicate();
+		}
+		
+		void load() {
+			ByteBuffer mapped = map();
+			if(mapped!=null)
+				this.mapped.load();
+		}
+		
+		private FileChannel openChannel() {
+			try {
+				return FileChannel.open(path, StandardOpenOption.READ);
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		@Override
+		public InputStream getReadStream() {
+			ByteBuffer buffer = map();
+			if(buffer!=null)
+				return new ByteBufferInputStream(buffer);
+			else
+				return Channels.newInputStream(openChannel());
+		}
+
+		@Override
+		public SeekableByteChannel getReadChannel() {
+			ByteBuffer buffer = map();
+			if(buffer!=null)
+				return new ByteBufferChannel(buffer);
+			else
+				return openChannel();
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the size of the mapping of the file, if it has been mapped. Otherwise returns the size of the file when the set was scanned.
+		 */
+		@Override
+		public long size() {
+			MappedByteBuffer mapped = this.mapped;
+			return mapped!=null?mapped.capacity():size;
+		}
+
+		/**
+		 * Returns the modification time of the file when the set was scanned.
+		 */
+		@Override
+		public long lastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Returns a read-only view of the mapping of the file.
+		 */
+		@Override
+		public ByteBuffer asReadOnlyByteBuffer() {
+			ByteBuffer buffer = map();
+			if(buffer==null)
+				throw new UnsupportedOperationException("File is too large for a ByteBuffer: "+size+" bytes");
+			return buffer;
+		}
+
+		/**
+		 * Writes the mapping of the file to target, if it has been mapped, so that the contents agree with the other methods of this Resource.
+		 *  Otherwise transfers the file to target with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, 
+		 *  which allows the Operating System to copy it without reading it into the Java process.
+		 */
+		@Override
+		public long transferTo(WritableByteChannel target) {
+			MappedByteBuffer mapped = this.mapped;
+			if(mapped!=null)
+				return Transfers.write(mapped, target);
+			try(FileChannel channel = openChannel()){
+				return Transfers.transfer(channel, 0, channel.size(), target);
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	/**
+	 * The keys of a snapshot, in sorted order
+	 */
+	private static final class SortedIndex {
+		private final Map<String,FileResource> snapshot;
+		private final String[] keys;
+		
+		SortedIndex(Map<String,FileResource> snapshot){
+			this.snapshot = snapshot;
+			this.keys = snapshot.keySet().toArray(new String[0]);
+			Arrays.sort(keys);
+		}
+	}
+	
+	private final Path root;
+	private volatile SortedIndex sorted;
+	private final Object watchLock = new Object();
+	private Watcher watcher;
+	
+	/**
+	 * Constructs a new DirectoryResourceSet over the files in root and its subdirectories.
+	 * @param root The root directory of the set.
+	 * @throws NullPointerException if root is null.
+	 * @throws UncheckedIOException if root is not a directory, or an I/O error occurs while scanning it.
+	 */
+	public DirectoryResourceSet(Path root) {
+		this.root = Objects.requireNonNull(root);
+		if(!Files.isDirectory(root))
+			throw new UncheckedIOException(new NotDirectoryException(root.toString()));
+		reload();
+	}
+	
+	/**
+	 * Returns the root directory of this set.
+	 */
+	public Path getRoot() {
+		return root;
+	}
+	
+	private String toKey(Path file) {
+		StringBuilder key = new StringBuilder();
+		for(Path name:root.relativize(file)) {
+			if(key.length()!=0)
+				key.append('/');
+			key.append(name.toString());
+		}
+		return key.toString();
+	}
+	
+	private void scanTree(Path start,Map<String,FileResource> previous,Map<String,FileResource> scanned,Consumer<Path> directories) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				directories.accept(dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if(attrs.isRegularFile()) {
+					String key = toKey(file);
+					FileResource existing = previous.get(key);
+					// Keep the existing mapping of files that have not changed
+					scanned.put(key, existing!=null&&existing.isUnchanged(attrs)?existing:new FileResource(key,file,attrs));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+				// Files may be removed during an incremental scan
+				if(exc instanceof NoSuchFileException&&!file.equals(start))
+					return FileVisitResult.CONTINUE;
+				throw exc;
+			}
+		});
+	}
+	
+	/**
+	 * Returns the keys of the current snapshot in sorted order. The sorted keys are computed on the first range or prefix query against each snapshot.
+	 */
+	private String[] sortedKeys() {
+		Map<String,FileResource> snapshot = snapshot();
+		SortedIndex sorted = this.sorted;
+		if(sorted==null||sorted.snapshot!=snapshot)
+			this.sorted = sorted = new SortedIndex(snapshot);
+		return sorted.keys;
+	}
+	
+	/**
+	 * Streams the keys in the given range, in sorted order, by searching the sorted keys of the snapshot.
+	 */
+	@Override
+	public Stream<String> keys(String fromKey, String toKey) {
+		return SortedKeys.range(this::sortedKeys, fromKey, toKey);
+	}
+	
+	/**
+	 * Streams the keys which start with prefix, such as every file in a directory and its subdirectories, in sorted order, by searching the sorted keys of the snapshot.
+	 */
+	@Override
+	public Stream<String> keysWithPrefix(String prefix) {
+		return SortedKeys.prefix(this::sortedKeys, Objects.requireNonNull(prefix));
+	}
+	
+	/**
+	 * Maps each file named by keys, and loads its contents into physical memory on executor, so that subsequent reads of the file do not wait for I/O.<br/>
+	 * Files are loaded in parallel, one per task. Loading is only a hint, as the Operating System may still evict the contents of a file before it is read.
+	 */
+	@Override
+	public CompletableFuture<Void> prefetch(Collection<? extends String> keys, Executor executor) {
+		Map<String,FileResource> snapshot = snapshot();
+		List<CompletableFuture<Void>> loads = new ArrayList<>();
+		for(String key:keys) {
+			FileResource resource = snapshot.get(Objects.requireNonNull(key));
+			if(resource!=null)
+				loads.add(CompletableFuture.runAsync(resource::load, executor));
+		}
+		return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]));
+	}
+	
+	/**
+	 * Rescans the directory tree. Files whose size and modification time are unchanged keep their existing mapping.
+	 * @throws UncheckedIOException if an I/O error occurs while scanning the directory.
+	 */
+	@Override
+	protected Map<String,FileResource> scan(Map<String,FileResource> previous){
+		Map<String,FileResource> scanned = new HashMap<>();
+		try {
+			scanTree(root,previous,scanned,dir->{});
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return scanned;
+	}
+	
+	/**
+	 * Applies the changes to the directory tree reported by the watch service
+	 */
+	private final class Watcher implements Runnable {
+		private final WatchService service;
+		private final Map<WatchKey,Path> directories = new HashMap<>();
+		private final Thread thread;
+		
+		Watcher() throws IOException {
+			service = root.getFileSystem().newWatchService();
+			try {
+				register(root);
+			}catch(IOException|RuntimeException e) {
+				service.close();
+				throw e;
+			}
+			thread = new Thread(this,"DirectoryResourceSet Watcher: "+root);
+			thread.setDaemon(true);
+		}
+		
+		private void register(Path start) throws IOException {
+			Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+					registerDirectory(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		
+		private void registerDirectory(Path dir) {
+			try {
+				directories.put(dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,StandardWatchEventKinds.ENTRY_DELETE,StandardWatchEventKinds.ENTRY_MODIFY), dir);
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		@Override
+		public void run() {
+			// Set when a rescan failed, so that it is retried on the next event
+			boolean rescan = false;
+			try {
+				while(!directories.isEmpty()) {
+					WatchKey key = service.take();
+					Map<String,FileResource> changed = new HashMap<>();
+					Set<String> removed = new HashSet<>();
+					boolean overflow = rescan;
+					// Apply every pending event as a single update
+					do {
+						Path dir = directories.get(key);
+						for(WatchEvent<?> event:key.pollEvents()) {
+							if(event.kind()==StandardWatchEventKinds.OVERFLOW) {
+								overflow = true;
+								continue;
+							}
+							if(dir!=null)
+								overflow |= !apply(dir.resolve((Path)event.context()),changed,removed);
+						}
+						if(!key.reset())
+							directories.remove(key);
+					}while((key = service.poll())!=null);
+					if(overflow)
+						try {
+							reload();
+							rescan = false;
+						}catch(UncheckedIOException e) {
+							rescan = true;
+						}
+					else
+						update(changed,removed);
+				}
+				// The root directory is no longer accessible, so there is nothing left to watch
+			}catch(InterruptedException|ClosedWatchServiceException e) {
+				// Stopped
+			}finally {
+				synchronized(watchLock) {
+					if(watcher==this)
+						watcher = null;
+				}
+				close();
+			}
+		}
+		
+		/**
+		 * Computes the changes to the snapshot for a changed path. Returns false if a full rescan is required.
+		 */
+		private boolean apply(Path path,Map<String,FileResource> changed,Set<String> removed) {
+			String key = toKey(path);
+			Map<String,FileResource> current = snapshot();
+			BasicFileAttributes attrs;
+			try {
+				attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			}catch(NoSuchFileException e) {
+				// Removed. If it was a directory, all of the files in it are removed as well
+				String prefix = key+'/';
+				changed.remove(key);
+				removed.add(key);
+				for(String existing:current.keySet())
+					if(existing.startsWith(prefix))
+						removed.add(existing);
+				changed.keySet().removeIf(k->k.startsWith(prefix));
+				return true;
+			}catch(IOException e) {
+				return false;
+			}
+			try {
+				if(attrs.isDirectory())
+					scanTree(path,current,changed,this::registerDirectory);
+				else if(attrs.isRegularFile()) {
+					FileResource existing = current.get(key);
+					if(existing==null||!existing.isUnchanged(attrs))
+						changed.put(key, new FileResource(key,path,attrs));
+				}
+				removed.remove(key);
+				return true;
+			}catch(IOException|UncheckedIOException e) {
+				return false;
+			}
+		}
+		
+		private void close() {
+			try {
+				service.close();
+			}catch(IOException e) {
+				// Nothing more can be done
+			}
+		}
+		
+		void stop() {
+			close();
+			thread.interrupt();
+		}
+	}
+	
+	/**
+	 * Starts watching the directory tree for changes, if it is not already being watched.<br/>
+	 * While watching, a daemon thread applies the changes reported by the file system's {@link WatchService} to the set, 
+	 *  adding, replacing, or removing only the affected resources without rescanning the tree.
+	 *  All changes which are pending when the thread wakes are published as a single snapshot.
+	 *  If the watch service reports that events were lost, the whole tree is rescanned as though by {@link #reload()}.
+	 *  If the rescan fails, it is retried on the next reported change.<br/>
+	 * Watching stops by itself if the root directory is removed, after which {@link #isWatching()} returns false.<br/>
+	 * Changes are applied asynchronously, so a change to the directory tree is not guaranteed to be visible immediately.
+	 *  How promptly changes are reported is dependent on the platform.
+	 * @throws UncheckedIOException if the directory tree cannot be watched.
+	 */
+	public void startWatching() {
+		synchronized(watchLock) {
+			if(watcher!=null)
+				return;
+			try {
+				watcher = new Watcher();
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			watcher.thread.start();
+			// Catch up with anything that changed before the directories were registered
+			reload();
+		}
+	}
+	
+	/**
+	 * Stops watching the directory tree for changes, if it is being watched.
+	 */
+	public void stopWatching() {
+		synchronized(watchLock) {
+			if(watcher!=null)
+				watcher.stop();
+			watcher = null;
+		}
+	}
+	
+	/**
+	 * Returns true if the directory tree is being watched for changes.
+	 */
+	public boolean isWatching() {
+		synchronized(watchLock) {
+			return watcher!=null;
+		}
+	}
+
+}
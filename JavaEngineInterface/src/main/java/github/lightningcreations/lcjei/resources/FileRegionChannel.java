@@ -0,0 +1,97 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only SeekableByteChannel over a region of a FileChannel, which uses positional reads.<br/>
+ * Positional reads do not modify the position of the underlying channel, so any number of region channels can share one FileChannel.
+ *  Closing a region channel does not close the underlying channel.
+ * @author chorm
+ *
+ */
+final class FileRegionChannel implements SeekableByteChannel {
+	
+	private final FileChannel file;
+	private final long offset;
+	private final long size;
+	private long position;
+	private volatile boolean open = true;
+	
+	FileRegionChannel(FileChannel file,long offset,long size){
+		this.file = file;
+		this.offset = offset;
+		this.size = size;
+	}
+	
+	private void ensureOpen() throws ClosedChannelException {
+		if(!open)
+			throw new ClosedChannelException();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public void close() {
+		open = false;
+	}
+
+	@Override
+	public synchronized int read(ByteBuffer dst) throws IOException {
+		ensureOpen();
+		if(position>=size)
+			return -1;
+		int limit = dst.limit();
+		if(dst.remaining()>size-position)
+			dst.limit(dst.position()+(int)(size-position));
+		try {
+			int n = file.read(dst, offset+position);
+			if(n>0)
+				position += n;
+			return n;
+		}finally {
+			dst.limit(limit);
+		}
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		ensureOpen();
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public synchronized long position() throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	@Override
+	public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+		ensureOpen();
+		if(newPosition<0)
+			throw new IllegalArgumentException("Negative position");
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		ensureOpen();
+		return size;
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) throws IOException {
+		ensureOpen();
+		throw new NonWritableChannelException();
+	}
+
+}
@@ -0,0 +1,129 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.function.Supplier;
+
+/**
+ * A read-only SeekableByteChannel over a stream of inflated data.<br/>
+ * Sequential reads inflate the data as it is read. Seeking forward skips over inflated data, and seeking backwards restarts inflation from the beginning.
+ * @author chorm
+ *
+ */
+final class InflatingChannel implements SeekableByteChannel {
+	
+	private final Supplier<InputStream> source;
+	private final long size;
+	private InputStream stream;
+	private long streamPosition;
+	private long position;
+	private byte[] transfer;
+	private volatile boolean open = true;
+	
+	/**
+	 * @param source Opens a new stream of the inflated data
+	 * @param size The number of bytes in the inflated data
+	 */
+	InflatingChannel(Supplier<InputStream> source,long size){
+		this.source = source;
+		this.size = size;
+	}
+	
+	private void ensureOpen() throws ClosedChannelException {
+		if(!open)
+			throw new ClosedChannelException();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		open = false;
+		if(stream!=null)
+			stream.close();
+		stream = null;
+	}
+
+	@Override
+	public synchronized int read(ByteBuffer dst) throws IOException {
+		ensureOpen();
+		if(position>=size)
+			return -1;
+		if(stream==null||position<streamPosition) {
+			if(stream!=null)
+				stream.close();
+			stream = source.get();
+			streamPosition = 0;
+		}
+		while(streamPosition<position) {
+			long skipped = stream.skip(position-streamPosition);
+			if(skipped<=0) {
+				if(stream.read()<0)
+					return -1;
+				skipped = 1;
+			}
+			streamPosition += skipped;
+		}
+		int len = (int)Math.min(dst.remaining(), size-position);
+		if(len==0)
+			return 0;
+		int n;
+		if(dst.hasArray()) {
+			n = stream.read(dst.array(), dst.arrayOffset()+dst.position(), len);
+			if(n>0)
+				dst.position(dst.position()+n);
+		}else {
+			if(transfer==null)
+				transfer = new byte[8192];
+			n = stream.read(transfer, 0, Math.min(len, transfer.length));
+			if(n>0)
+				dst.put(transfer, 0, n);
+		}
+		if(n>0) {
+			streamPosition += n;
+			position += n;
+		}
+		return n;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		ensureOpen();
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public synchronized long position() throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	@Override
+	public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+		ensureOpen();
+		if(newPosition<0)
+			throw new IllegalArgumentException("Negative position");
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		ensureOpen();
+		return size;
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) throws IOException {
+		ensureOpen();
+		throw new NonWritableChannelException();
+	}
+
+}
@@ -1,13 +1,38 @@
 package github.lightningcreations.lcjei.resources;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
 /**
- * Defines a set of resources mapped from one key type, to annother.
+ * Defines a set of resources mapped from one key type, to annother.<br/>
+ * 
+ * A MappedResourceSet may optionally memoize its key mapping. A memoizing set remembers the result of each key mapping, in both directions,
+ *  so that repeated lookups of the same keys do not call the key mapper. Resources are never memoized, and each lookup is made against the host set,
+ *  so lookups always observe the current contents of the host set, even if it is reloaded directly.
+ *  The memoized mappings are discarded by {@link #reload()}. When the number of memoized keys exceeds the capacity of the set,
+ *  the least recently used mappings are discarded.<br/>
+ * 
+ * When the host set is itself a MappedResourceSet, lookups are fused: the key mappers of both sets are composed with {@link ResourceKeyMapper#andThen(ResourceKeyMapper)},
+ *  and lookups are made directly against the innermost host set, without creating the intermediate Resources. 
+ *  Reloading still goes through the host set as given.<br/>
+ * 
+ * The Resources of a MappedResourceSet forward every method to the host Resource, so that its size, buffer, and transfer implementations are preserved.<br/>
+ * Asynchronous lookups and prefetches are forwarded to the host set, with their keys mapped, so that they benefit from any asynchronous support of the host set.
  * @author chorm
  *
  * @param <GuestKeyType> The type of keys for the resource set being exposed
@@ -15,8 +40,17 @@ import java.util.stream.Stream;
  */
 public final class MappedResourceSet<GuestKeyType, HostKeyType> implements ResourceSet<GuestKeyType> {
 	
+	/**
+	 * Marks host keys which do not map to any guest key, in the memoized mapping.
+	 */
+	private static final Object UNMAPPED = new Object();
+	
 	private final ResourceSet<HostKeyType> hostSet;
 	private final ResourceKeyMapper<GuestKeyType,HostKeyType> keyMapper;
+	private final ResourceSet<Object> lookupSet;
+	private final ResourceKeyMapper<GuestKeyType,Object> lookupMapper;
+	private final KeyMemo<GuestKeyType,Object> hostKeyMemo;
+	private final KeyMemo<Object,Object> guestKeyMemo;
 	
 	/**
 	 * Constructs a new MappedResourceSet with a given hostSet and a bidirectional key mapping function.<br/>
@@ -26,15 +60,96 @@ public final class MappedResourceSet<GuestKeyType, HostKeyType> implements Resou
 	 * @throws NullPointerException if either hostSet or keyMapper are null.
 	 */
 	public MappedResourceSet(ResourceSet<HostKeyType> hostSet,ResourceKeyMapper<GuestKeyType,HostKeyType> keyMapper) {
+		this(hostSet,keyMapper,0);
+	}
+	
+	/**
+	 * Constructs a new MappedResourceSet with a given hostSet and a bidirectional key mapping function, which memoizes the mappings of up to memoCapacity keys.<br/>
+	 * Neither hostSet or keyMapper may be null.
+	 * @param hostSet The resource set used by the Host Engine.
+	 * @param keyMapper The mapping function between the Host Key Set and the Guest Key Set.
+	 * @param memoCapacity The maximum number of guest keys, and separately host keys, for which mappings are memoized. If 0, mappings are not memoized.
+	 * @throws NullPointerException if either hostSet or keyMapper are null.
+	 * @throws IllegalArgumentException if memoCapacity is negative.
+	 */
+	@SuppressWarnings("unchecked")
+	public MappedResourceSet(ResourceSet<HostKeyType> hostSet,ResourceKeyMapper<GuestKeyType,HostKeyType> keyMapper,int memoCapacity) {
 		this.hostSet = Objects.requireNonNull(hostSet);
 		this.keyMapper = Objects.requireNonNull(keyMapper);
+		if(memoCapacity<0)
+			throw new IllegalArgumentException("Negative memo capacity");
+		if(hostSet instanceof MappedResourceSet) {
+			MappedResourceSet<HostKeyType,?> inner = (MappedResourceSet<HostKeyType,?>)hostSet;
+			this.lookupSet = inner.lookupSet;
+			this.lookupMapper = keyMapper.andThen(inner.lookupMapper);
+		}else {
+			this.lookupSet = (ResourceSet<Object>)hostSet;
+			this.lookupMapper = (ResourceKeyMapper<GuestKeyType,Object>)keyMapper;
+		}
+		this.hostKeyMemo = memoCapacity>0?new KeyMemo<>(memoCapacity):null;
+		this.guestKeyMemo = memoCapacity>0?new KeyMemo<>(memoCapacity):null;
+	}
+	
+	/**
+	 * A bounded memo of key mappings.<br/>
+	 * When the memo exceeds its capacity, the least recently used mappings are discarded until it is at most 7/8 full.
+	 */
+	private static final class KeyMemo<K,V> {
+		private static final class Entry<K,V> {
+			private final K key;
+			private final V value;
+			private volatile long lastAccess = System.nanoTime();
+			
+			Entry(K key,V value){
+				this.key = key;
+				this.value = value;
+			}
+		}
+		
+		private final int capacity;
+		private final ConcurrentHashMap<K,Entry<K,V>> entries = new ConcurrentHashMap<>();
+		private final ReentrantLock evictionLock = new ReentrantLock();
+		
+		KeyMemo(int capacity){
+			this.capacity = capacity;
+		}
+		
+		V get(K key) {
+			Entry<K,V> entry = entries.get(key);
+			if(entry==null)
+				return null;
+			entry.lastAccess = System.nanoTime();
+			return entry.value;
+		}
+		
+		void put(K key,V value) {
+			entries.put(key, new Entry<>(key,value));
+			if(entries.size()<=capacity||!evictionLock.tryLock())
+				return;
+			try {
+				int target = capacity-capacity/8;
+				List<Entry<K,V>> eldest = new ArrayList<>(entries.values());
+				eldest.sort(Comparator.comparingLong(e->e.lastAccess));
+				for(Entry<K,V> entry:eldest) {
+					if(entries.size()<=target)
+						break;
+					entries.remove(entry.key, entry);
+				}
+			}finally {
+				evictionLock.unlock();
+			}
+		}
+		
+		void clear() {
+			entries.clear();
+		}
 	}
 	
 	
 	
 	private static final class MappedResource<GuestKeyType,HostKeyType> implements Resource<GuestKeyType>{
-		private Resource<HostKeyType> hostResource;
-		private GuestKeyType key;
+		private final Resource<HostKeyType> hostResource;
+		private final GuestKeyType key;
 		
 		MappedResource(Resource<HostKeyType> hostResource,GuestKeyType key){
 			this.hostResource = hostResource;
@@ -58,18 +173,100 @@ public final class MappedResourceSet<GuestKeyType, HostKeyType> implements Resou
 			// TODO Auto-generated method stub
 			return key;
 		}
+
+		@Override
+		public long size() {
+			return hostResource.size();
+		}
+
+		@Override
+		public long lastModified() {
+			return hostResource.lastModified();
+		}
+
+		@Override
+		public ByteBuffer asReadOnlyByteBuffer() {
+			return hostResource.asReadOnlyByteBuffer();
+		}
+
+		@Override
+		public long transferTo(WritableByteChannel target) {
+			return hostResource.transferTo(target);
+		}
 		
 	}
 	
+	private Object mapToHost(GuestKeyType guestKey) {
+		Objects.requireNonNull(guestKey);
+		if(hostKeyMemo==null)
+			return lookupMapper.mapToHost(guestKey);
+		Object hostKey = hostKeyMemo.get(guestKey);
+		if(hostKey==null) {
+			hostKey = lookupMapper.mapToHost(guestKey);
+			hostKeyMemo.put(guestKey, hostKey);
+		}
+		return hostKey;
+	}
+	
 	/**
 	 * If the guest key maps to a key which is present on the host, then returns a Resource for that guest key, that is backed by the resource on the host set for the equivalent host key.<br/>
-	 * Otherwise returns an empty optional.<br/>
+	 * Otherwise returns an empty optional.
 	 */
 	@Override
 	public Optional<Resource<GuestKeyType>> getResource(GuestKeyType key) {
-		Objects.requireNonNull(key);
-		return hostSet.getResource(keyMapper.mapToHost(key))
-				.map(host->new MappedResource<GuestKeyType,HostKeyType>(host,key));
+		return lookupSet.getResource(mapToHost(key)).map(host->new MappedResource<>(host,key));
+	}
+	
+	/**
+	 * Asynchronously looks up the host key that key maps to in the host set, and returns a Resource for key backed by the result, as though by {@link #getResource(Object)}.<br/>
+	 * Concurrent lookups are coalesced by the host set, by host key.
+	 */
+	@Override
+	public CompletableFuture<Optional<Resource<GuestKeyType>>> getResourceAsync(GuestKeyType key, Executor executor) {
+		Objects.requireNonNull(executor);
+		return lookupSet.getResourceAsync(mapToHost(key), executor)
+				.thenApply(host->host.map(h->new MappedResource<GuestKeyType,Object>(h,key)));
+	}
+	
+	/**
+	 * Asynchronously obtains the resources named by keys, as one call to {@link ResourceSet#getResources(Collection, Executor)} on the host set with the mapped keys.
+	 */
+	@Override
+	public CompletableFuture<Map<GuestKeyType, Resource<GuestKeyType>>> getResources(Collection<? extends GuestKeyType> keys, Executor executor) {
+		Map<Object,GuestKeyType> hostKeys = new HashMap<>();
+		for(GuestKeyType key:keys)
+			hostKeys.put(mapToHost(key), key);
+		return lookupSet.getResources(hostKeys.keySet(), executor).thenApply(hostResources->{
+			Map<GuestKeyType,Resource<GuestKeyType>> resources = new HashMap<>();
+			hostResources.forEach((hostKey,host)->{
+				GuestKeyType key = hostKeys.get(hostKey);
+				resources.put(key, new MappedResource<>(host,key));
+			});
+			return resources;
+		});
+	}
+	
+	/**
+	 * Prefetches the host resources that keys map to from the host set.
+	 */
+	@Override
+	public CompletableFuture<Void> prefetch(Collection<? extends GuestKeyType> keys, Executor executor) {
+		List<Object> hostKeys = new ArrayList<>(keys.size());
+		for(GuestKeyType key:keys)
+			hostKeys.add(mapToHost(key));
+		return lookupSet.prefetch(hostKeys, executor);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private GuestKeyType mapToGuest(Object hostKey) {
+		if(guestKeyMemo==null)
+			return lookupMapper.mapToGuest(hostKey);
+		Object guestKey = guestKeyMemo.get(hostKey);
+		if(guestKey==null) {
+			guestKey = lookupMapper.mapToGuest(hostKey);
+			guestKeyMemo.put(hostKey, guestKey!=null?guestKey:UNMAPPED);
+		}
+		return guestKey!=UNMAPPED?(GuestKeyType)guestKey:null;
 	}
 	
 	/**
@@ -78,16 +275,30 @@ public final class MappedResourceSet<GuestKeyType, HostKeyType> implements Resou
 	 */
 	@Override
 	public Stream<GuestKeyType> keys() {
-		// TODO Auto-generated method stub
-		return hostSet.keys().map(keyMapper::mapToGuest).filter(k->k!=null);
+		return lookupSet.keys().map(this::mapToGuest).filter(k->k!=null);
+	}
+	
+	/**
+	 * If the key mapper is prefix preserving (see {@link ResourceKeyMapper#isPrefixPreserving()}), maps prefix to the host, and returns the guest keys for the result of {@link ResourceSet#keysWithPrefix(String)} on the host set.
+	 *  Otherwise filters {@link #keys()}.
+	 */
+	@Override
+	public Stream<GuestKeyType> keysWithPrefix(String prefix) {
+		if(!lookupMapper.isPrefixPreserving())
+			return ResourceSet.super.keysWithPrefix(prefix);
+		return lookupSet.keysWithPrefix(lookupMapper.mapPrefixToHost(Objects.requireNonNull(prefix))).map(this::mapToGuest).filter(k->k!=null);
 	}
 	
 	/**
-	 * Causes the hostSet to be reloaded.
+	 * Causes the hostSet to be reloaded, and discards any memoized mappings.
 	 */
 	@Override
 	public void reload() {
 		hostSet.reload();
+		if(hostKeyMemo!=null) {
+			hostKeyMemo.clear();
+			guestKeyMemo.clear();
+		}
 	}
 
 }
@@ -0,0 +1,209 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A ResourceSet which overlays an ordered list of layers, each of which is a ResourceSet.<br/>
+ * Layers are ordered from lowest to highest priority. A key names the resource of the highest priority layer which contains that key,
+ *  so for example, a list of a base game set, followed by DLC sets, followed by mod sets, lets DLC override the base game, and mods override both.<br/>
+ * 
+ * The overlay keeps a merged index from each key to the layer which owns it, so that {@link #getResource(Object)} is a single lookup in the index, followed by a lookup in the owning layer.
+ *  The index is immutable, and replaced atomically when it is rebuilt, so lookups do not lock, and {@link #keys()} streams the deduplicated keys of one version of the index.
+ *  The index reflects the keys of the layers when the overlay was constructed or last reloaded.
+ *  {@link #reload()} reloads every layer and rebuilds the whole index, while {@link #reloadLayer(int)} reloads a single layer and only updates the keys that layer contributes.<br/>
+ * 
+ * Layers may be any ResourceSet, including MappedResourceSets, and an OverlayResourceSet may itself be the host set of a MappedResourceSet.
+ * @author chorm
+ *
+ * @param <ResourceKey> The type of keys of the resource set
+ */
+public final class OverlayResourceSet<ResourceKey> implements ResourceSet<ResourceKey> {
+	
+	/**
+	 * An immutable version of the merged index.
+	 */
+	private static final class View<ResourceKey> {
+		private final Map<ResourceKey,Integer> owners;
+		private final List<Set<ResourceKey>> layerKeys;
+		
+		View(Map<ResourceKey,Integer> owners,List<Set<ResourceKey>> layerKeys){
+			this.owners = Collections.unmodifiableMap(owners);
+			this.layerKeys = Collections.unmodifiableList(layerKeys);
+		}
+	}
+	
+	private final List<ResourceSet<ResourceKey>> layers;
+	private final Object updateLock = new Object();
+	private volatile View<ResourceKey> view;
+	
+	/**
+	 * Constructs a new OverlayResourceSet over layers, which are ordered from lowest to highest priority, and builds its index.
+	 * @param layers The layers of the overlay. The list is copied.
+	 * @throws NullPointerException if layers is null or contains null.
+	 */
+	public OverlayResourceSet(List<? extends ResourceSet<ResourceKey>> layers) {
+		this.layers = Collections.unmodifiableList(new ArrayList<>(layers));
+		for(ResourceSet<ResourceKey> layer:this.layers)
+			Objects.requireNonNull(layer);
+		this.view = buildView();
+	}
+	
+	/**
+	 * Returns the layers of this overlay, from lowest to highest priority.
+	 */
+	public List<ResourceSet<ResourceKey>> getLayers(){
+		return layers;
+	}
+	
+	private View<ResourceKey> buildView(){
+		Map<ResourceKey,Integer> owners = new HashMap<>();
+		List<Set<ResourceKey>> layerKeys = new ArrayList<>(layers.size());
+		for(int i = 0;i<layers.size();i++) {
+			Set<ResourceKey> keys = layers.get(i).keys().collect(Collectors.toSet());
+			layerKeys.add(keys);
+			for(ResourceKey key:keys)
+				owners.put(key, i);
+		}
+		return new View<>(owners,layerKeys);
+	}
+	
+	/**
+	 * Returns the index of the layer which owns key, or -1 if no layer contains key.
+	 */
+	public int getOwningLayer(ResourceKey key) {
+		Integer owner = view.owners.get(Objects.requireNonNull(key));
+		return owner!=null?owner:-1;
+	}
+
+	/**
+	 * If key is contained in any layer, returns the resource for key from the highest priority layer which contains it. Otherwise returns an empty optional.
+	 *  If the owning layer no longer contains key, as it was changed without being reloaded through this overlay, the lower priority layers which contained key are searched.
+	 */
+	@Override
+	public Optional<Resource<ResourceKey>> getResource(ResourceKey key) {
+		View<ResourceKey> view = this.view;
+		Integer owner = view.owners.get(Objects.requireNonNull(key));
+		if(owner==null)
+			return Optional.empty();
+		for(int i = owner;i>=0;i--)
+			if(i==owner||view.layerKeys.get(i).contains(key)) {
+				Optional<Resource<ResourceKey>> resource = layers.get(i).getResource(key);
+				if(resource.isPresent())
+					return resource;
+			}
+		return Optional.empty();
+	}
+	
+	/**
+	 * Asynchronously obtains the resource for key, as though by {@link #getResource(Object)}, with {@link ResourceSet#getResourceAsync(Object, Executor)} of the owning layer.
+	 *  If the owning layer no longer contains key, the lower priority layers which contained key are searched in turn, asynchronously.
+	 */
+	@Override
+	public CompletableFuture<Optional<Resource<ResourceKey>>> getResourceAsync(ResourceKey key, Executor executor) {
+		Objects.requireNonNull(executor);
+		View<ResourceKey> view = this.view;
+		Integer owner = view.owners.get(Objects.requireNonNull(key));
+		if(owner==null)
+			return CompletableFuture.completedFuture(Optional.empty());
+		return getResourceAsync(view,key,owner,executor);
+	}
+	
+	private CompletableFuture<Optional<Resource<ResourceKey>>> getResourceAsync(View<ResourceKey> view,ResourceKey key,int layer,Executor executor){
+		return layers.get(layer).getResourceAsync(key, executor).thenCompose(resource->{
+			if(resource.isPresent())
+				return CompletableFuture.completedFuture(resource);
+			for(int i = layer-1;i>=0;i--)
+				if(view.layerKeys.get(i).contains(key))
+					return getResourceAsync(view,key,i,executor);
+			return CompletableFuture.completedFuture(Optional.empty());
+		});
+	}
+	
+	/**
+	 * Prefetches each key from its owning layer, with one call to {@link ResourceSet#prefetch(Collection, Executor)} for each layer.
+	 */
+	@Override
+	public CompletableFuture<Void> prefetch(Collection<? extends ResourceKey> keys, Executor executor) {
+		Objects.requireNonNull(executor);
+		View<ResourceKey> view = this.view;
+		Map<Integer,List<ResourceKey>> byLayer = new HashMap<>();
+		for(ResourceKey key:keys) {
+			Integer owner = view.owners.get(Objects.requireNonNull(key));
+			if(owner!=null)
+				byLayer.computeIfAbsent(owner, i->new ArrayList<>()).add(key);
+		}
+		List<CompletableFuture<Void>> prefetches = new ArrayList<>();
+		byLayer.forEach((layer,layerKeys)->prefetches.add(layers.get(layer).prefetch(layerKeys, executor)));
+		return CompletableFuture.allOf(prefetches.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * Streams the keys of the merged index which is current when the terminal operation of the stream begins. Each key appears once, regardless of how many layers contain it.
+	 */
+	@Override
+	public Stream<ResourceKey> keys() {
+		return StreamSupport.stream(()->view.owners.keySet().spliterator(), Spliterator.SIZED|Spliterator.DISTINCT, false);
+	}
+
+	/**
+	 * Reloads every layer, and then rebuilds the merged index.
+	 */
+	@Override
+	public void reload() {
+		synchronized(updateLock) {
+			for(ResourceSet<ResourceKey> layer:layers)
+				layer.reload();
+			view = buildView();
+		}
+	}
+	
+	/**
+	 * Reloads the layer at index layer, and then updates the merged index for the keys that the layer added or removed.
+	 *  The keys of the other layers are not enumerated again.
+	 * @throws IndexOutOfBoundsException if layer is not the index of a layer.
+	 */
+	public void reloadLayer(int layer) {
+		ResourceSet<ResourceKey> set = layers.get(layer);
+		synchronized(updateLock) {
+			set.reload();
+			View<ResourceKey> previous = view;
+			Set<ResourceKey> oldKeys = previous.layerKeys.get(layer);
+			Set<ResourceKey> newKeys = set.keys().collect(Collectors.toSet());
+			Map<ResourceKey,Integer> owners = new HashMap<>(previous.owners);
+			for(ResourceKey key:oldKeys)
+				if(!newKeys.contains(key)&&owners.get(key)==layer) {
+					// Ownership falls to the next lower layer which has the key, if any
+					owners.remove(key);
+					for(int i = layer-1;i>=0;i--)
+						if(previous.layerKeys.get(i).contains(key)) {
+							owners.put(key, i);
+							break;
+						}
+				}
+			for(ResourceKey key:newKeys) {
+				Integer owner = owners.get(key);
+				if(owner==null||owner<layer)
+					owners.put(key, layer);
+			}
+			List<Set<ResourceKey>> layerKeys = new ArrayList<>(previous.layerKeys);
+			layerKeys.set(layer, new HashSet<>(newKeys));
+			view = new View<>(owners,layerKeys);
+		}
+	}
+
+}
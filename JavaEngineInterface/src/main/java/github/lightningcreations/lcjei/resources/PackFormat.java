@@ -0,0 +1,47 @@
+package github.lightningcreations.lcjei.resources;
+
+/**
+ * Constants of the zip file format, as used by {@link PackResourceSet} and {@link PackWriter}.
+ * @author chorm
+ *
+ */
+final class PackFormat {
+	private PackFormat() {
+	}
+	
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int END_SIGNATURE = 0x06054b50;
+	static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int END_SIZE = 22;
+	static final int ZIP64_END_SIZE = 56;
+	static final int ZIP64_LOCATOR_SIZE = 20;
+	
+	static final int METHOD_STORED = 0;
+	static final int METHOD_DEFLATED = 8;
+	
+	static final int FLAG_ENCRYPTED = 0x0001;
+	static final int FLAG_UTF8 = 0x0800;
+	
+	static final int ZIP64_EXTRA_ID = 0x0001;
+	/**
+	 * Extra field used to pad local headers so that entry data is aligned. This is the same field used by Android's zipalign.
+	 */
+	static final int ALIGNMENT_EXTRA_ID = 0xD935;
+	
+	static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	
+	/**
+	 * The version needed to extract entries which do not use zip64 extensions
+	 */
+	static final int VERSION_DEFAULT = 20;
+	/**
+	 * The version needed to extract entries which use zip64 extensions
+	 */
+	static final int VERSION_ZIP64 = 45;
+}
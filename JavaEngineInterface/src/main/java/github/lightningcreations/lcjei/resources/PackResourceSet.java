@@ -0,0 +1,496 @@
+package github.lightningcreations.lcjei.resources;
+
+import static github.lightningcreations.lcjei.resources.PackFormat.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A ResourceSet backed by a zip-compatible pack file, such as one written by {@link PackWriter}.<br/>
+ * Resource Keys are the names of the entries in the pack. Directory entries (those with names ending in '/') are not resources.<br/>
+ * 
+ * The central directory of the pack is parsed once (and again on each reload) into a compact index of sorted names and entry locations,
+ *  so {@link #keys()} and {@link #getResource(String)} do not read any entry data.
+ *  Entries which are stored without compression are read directly from the file, through a memory mapping of the pack if it is small enough to be mapped in one region, or through positional reads otherwise.
+ *  Deflated entries are inflated as they are read. Seeking backwards in the channel of a deflated entry restarts inflation from the beginning of the entry.
+ *  Other compression methods, and encrypted entries, are not supported, and throw an {@link UncheckedIOException} when they are opened.<br/>
+ * 
+ * The pack file is kept open until the set is closed. Reloading the set reopens the pack file, and closes the previous one,
+ *  so Channels and Streams which are still open on resources obtained before the reload will fail.
+ *  Methods of the returned Resources throw an {@link UncheckedIOException} if an I/O error occurs.<br/>
+ * Zip64 packs are supported. Entry names are decoded as UTF-8.
+ * @author chorm
+ *
+ */
+public final class PackResourceSet implements ResourceSet<String>, Closeable {
+	
+	private static final byte STORED = 0;
+	private static final byte DEFLATED = 1;
+	private static final byte UNSUPPORTED = 2;
+	
+	/**
+	 * Immutable index of an open pack file.
+	 */
+	private static final class Index {
+		private final FileChannel channel;
+		private final ByteBuffer mapped;
+		private final long fileSize;
+		private final String[] names;
+		private final long[] headerOffsets;
+		private final long[] compressedSizes;
+		private final long[] sizes;
+		private final byte[] methods;
+		private final AtomicLongArray dataOffsets;
+		
+		Index(FileChannel channel,ByteBuffer mapped,long fileSize,String[] names,long[] headerOffsets,long[] compressedSizes,long[] sizes,byte[] methods){
+			this.channel = channel;
+			this.mapped = mapped;
+			this.fileSize = fileSize;
+			this.names = names;
+			this.headerOffsets = headerOffsets;
+			this.compressedSizes = compressedSizes;
+			this.sizes = sizes;
+			this.methods = methods;
+			this.dataOffsets = new AtomicLongArray(names.length);
+		}
+		
+		int find(String key) {
+			int i = Arrays.binarySearch(names, key);
+			return i>=0?i:-1;
+		}
+		
+		/**
+		 * Returns the offset of the data of entry i, reading its local header the first time it is needed.
+		 * @throws ZipException if the local header is invalid, or the data of the entry extends past the end of the pack file
+		 */
+		long dataOffset(int i) throws IOException {
+			long offset = dataOffsets.get(i);
+			if(offset==0) {
+				ByteBuffer header = read(headerOffsets[i],LOCAL_HEADER_SIZE);
+				if(header.getInt(0)!=LOCAL_HEADER_SIGNATURE)
+					throw new ZipException("Invalid local header for "+names[i]);
+				offset = headerOffsets[i]+LOCAL_HEADER_SIZE+(header.getShort(26)&0xffff)+(header.getShort(28)&0xffff);
+				if(compressedSizes[i]>fileSize-offset)
+					throw new ZipException("Truncated entry "+names[i]);
+				dataOffsets.set(i, offset);
+			}
+			return offset;
+		}
+		
+		ByteBuffer read(long position,int len) throws IOException {
+			ByteBuffer buffer;
+			if(mapped!=null) {
+				if(position+len>mapped.limit())
+					throw new EOFException();
+				buffer = mapped.duplicate();
+				buffer.position((int)position).limit((int)position+len);
+				buffer = buffer.slice();
+			}else {
+				buffer = ByteBuffer.allocate(len);
+				while(buffer.hasRemaining())
+					if(channel.read(buffer, position+buffer.position())<0)
+						throw new EOFException();
+				buffer.flip();
+			}
+			return buffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		/**
+		 * Opens a stream over the raw (possibly compressed) data of entry i.
+		 */
+		InputStream openRaw(int i) throws IOException {
+			long offset = dataOffset(i);
+			if(mapped!=null) {
+				ByteBuffer data = mapped.duplicate();
+				data.position((int)offset).limit((int)(offset+compressedSizes[i]));
+				return new ByteBufferInputStream(data);
+			}else
+				return Channels.newInputStream(new FileRegionChannel(channel,offset,compressedSizes[i]));
+		}
+		
+		InputStream openInflated(int i) throws IOException {
+			Inflater inflater = new Inflater(true);
+			// The extra byte is required by the inflater in nowrap mode
+			InputStream raw = new SequenceInputStream(openRaw(i),new ByteArrayInputStream(new byte[1]));
+			return new InflaterInputStream(raw,inflater,(int)Math.max(512, Math.min(8192, compressedSizes[i]))) {
+				private boolean closed;
+				@Override
+				public void close() throws IOException {
+					if(!closed) {
+						closed = true;
+						inflater.end();
+						super.close();
+					}
+				}
+			};
+		}
+		
+		void checkSupported(int i) throws ZipException {
+			if(methods[i]==UNSUPPORTED)
+				throw new ZipException("Unsupported compression method or encrypted entry: "+names[i]);
+		}
+	}
+	
+	private final class PackResource implements Resource<String>{
+		private final Index index;
+		private final int entry;
+		
+		PackResource(Index index,int entry){
+			this.index = index;
+			this.entry = entry;
+		}
+
+		@Override
+		public InputStream getReadStream() {
+			try {
+				index.checkSupported(entry);
+				if(index.methods[entry]==STORED)
+					return index.openRaw(entry);
+				else
+					return index.openInflated(entry);
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public SeekableByteChannel getReadChannel() {
+			try {
+				index.checkSupported(entry);
+				if(index.methods[entry]==STORED) {
+					long offset = index.dataOffset(entry);
+					if(index.mapped!=null) {
+						ByteBuffer data = index.mapped.duplicate();
+						data.position((int)offset).limit((int)(offset+index.sizes[entry]));
+						return new ByteBufferChannel(data);
+					}else
+						return new FileRegionChannel(index.channel,offset,index.sizes[entry]);
+				}else
+					return new InflatingChannel(()->{
+						try {
+							return index.openInflated(entry);
+						}catch(IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					},index.sizes[entry]);
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public String getKey() {
+			return index.names[entry];
+		}
+
+		/**
+		 * Returns the uncompressed size of the entry, from the central directory.
+		 */
+		@Override
+		public long size() {
+			return index.sizes[entry];
+		}
+
+		/**
+		 * Returns a read-only view of the entry in the mapping of the pack, if the entry is stored and the pack is mapped.
+		 *  Otherwise reads the entry into a new buffer.
+		 */
+		@Override
+		public ByteBuffer asReadOnlyByteBuffer() {
+			if(index.methods[entry]==STORED&&index.mapped!=null)
+				try {
+					long offset = index.dataOffset(entry);
+					ByteBuffer data = index.mapped.duplicate();
+					data.position((int)offset).limit((int)(offset+index.sizes[entry]));
+					return data.slice();
+				}catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			return Resource.super.asReadOnlyByteBuffer();
+		}
+
+		/**
+		 * Transfers stored entries directly from the pack file with {@link FileChannel#transferTo(long, long, WritableByteChannel)}. 
+		 *  Deflated entries are inflated and written through a temporary buffer.
+		 */
+		@Override
+		public long transferTo(WritableByteChannel target) {
+			if(index.methods[entry]==STORED)
+				try {
+					return Transfers.transfer(index.channel, index.dataOffset(entry), index.sizes[entry], target);
+				}catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			return Resource.super.transferTo(target);
+		}
+	}
+	
+	private final Path file;
+	private final Object reloadLock = new Object();
+	private volatile Index index;
+	
+	/**
+	 * Opens the pack file at file, and reads its central directory.
+	 * @param file The pack file
+	 * @throws NullPointerException if file is null
+	 * @throws UncheckedIOException if the file cannot be opened, or is not a valid pack file.
+	 */
+	public PackResourceSet(Path file) {
+		this.file = Objects.requireNonNull(file);
+		this.index = open(file);
+	}
+	
+	/**
+	 * Returns the pack file of this set.
+	 */
+	public Path getFile() {
+		return file;
+	}
+	
+	private static Index open(Path file) {
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			Index index = readIndex(channel);
+			channel = null;
+			return index;
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}finally {
+			if(channel!=null)
+				try {
+					channel.close();
+				}catch(IOException e) {
+					// Already failing
+				}
+		}
+	}
+	
+	private static final class RawEntry {
+		final String name;
+		final long headerOffset;
+		final long compressedSize;
+		final long size;
+		final byte method;
+		
+		RawEntry(String name,long headerOffset,long compressedSize,long size,byte method){
+			this.name = name;
+			this.headerOffset = headerOffset;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.method = method;
+		}
+	}
+	
+	private static Index readIndex(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		ByteBuffer mapped = fileSize<=Integer.MAX_VALUE?channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize):null;
+		Index reader = new Index(channel,mapped,fileSize,new String[0],null,null,null,null);
+		
+		// Find the End of Central Directory record, which is followed by a comment of at most 65535 bytes
+		int tailLength = (int)Math.min(fileSize, END_SIZE+0xffff);
+		ByteBuffer tail = reader.read(fileSize-tailLength, tailLength);
+		int end = -1;
+		for(int i = tailLength-END_SIZE;i>=0;i--)
+			if(tail.getInt(i)==END_SIGNATURE) {
+				end = i;
+				break;
+			}
+		if(end<0)
+			throw new ZipException("Not a pack file: End of Central Directory not found");
+		long endOffset = fileSize-tailLength+end;
+		long count = tail.getShort(end+10)&0xffff;
+		long directorySize = tail.getInt(end+12)&0xffffffffL;
+		long directoryOffset = tail.getInt(end+16)&0xffffffffL;
+		if((count==ZIP64_MAGIC_COUNT||directorySize==ZIP64_MAGIC||directoryOffset==ZIP64_MAGIC)&&endOffset>=ZIP64_LOCATOR_SIZE) {
+			ByteBuffer locator = reader.read(endOffset-ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+			if(locator.getInt(0)==ZIP64_LOCATOR_SIGNATURE) {
+				ByteBuffer end64 = reader.read(locator.getLong(8), ZIP64_END_SIZE);
+				if(end64.getInt(0)!=ZIP64_END_SIGNATURE)
+					throw new ZipException("Invalid Zip64 End of Central Directory");
+				count = end64.getLong(32);
+				directorySize = end64.getLong(40);
+				directoryOffset = end64.getLong(48);
+			}
+		}
+		if(directoryOffset<0||directorySize<0||directorySize>Integer.MAX_VALUE||directoryOffset+directorySize>fileSize)
+			throw new ZipException("Invalid Central Directory");
+		
+		ByteBuffer directory = reader.read(directoryOffset, (int)directorySize);
+		List<RawEntry> entries = new ArrayList<>((int)Math.min(count, directorySize/CENTRAL_HEADER_SIZE));
+		int pos = 0;
+		for(long n = 0;n<count;n++) {
+			if(pos+CENTRAL_HEADER_SIZE>directory.limit()||directory.getInt(pos)!=CENTRAL_HEADER_SIGNATURE)
+				throw new ZipException("Invalid Central Directory entry");
+			int flags = directory.getShort(pos+8)&0xffff;
+			int method = directory.getShort(pos+10)&0xffff;
+			long compressedSize = directory.getInt(pos+20)&0xffffffffL;
+			long size = directory.getInt(pos+24)&0xffffffffL;
+			int nameLength = directory.getShort(pos+28)&0xffff;
+			int extraLength = directory.getShort(pos+30)&0xffff;
+			int commentLength = directory.getShort(pos+32)&0xffff;
+			long headerOffset = directory.getInt(pos+42)&0xffffffffL;
+			int next = pos+CENTRAL_HEADER_SIZE+nameLength+extraLength+commentLength;
+			if(next>directory.limit())
+				throw new ZipException("Invalid Central Directory entry");
+			byte[] nameBytes = new byte[nameLength];
+			ByteBuffer name = directory.duplicate();
+			name.position(pos+CENTRAL_HEADER_SIZE);
+			name.get(nameBytes);
+			
+			// Values which do not fit are stored in the Zip64 extra field, in this order
+			int extra = pos+CENTRAL_HEADER_SIZE+nameLength;
+			int extraEnd = extra+extraLength;
+			while(extra+4<=extraEnd) {
+				int id = directory.getShort(extra)&0xffff;
+				int length = directory.getShort(extra+2)&0xffff;
+				if(id==ZIP64_EXTRA_ID) {
+					int field = extra+4;
+					if(size==ZIP64_MAGIC&&field+8<=extraEnd) {
+						size = directory.getLong(field);
+						field += 8;
+					}
+					if(compressedSize==ZIP64_MAGIC&&field+8<=extraEnd) {
+						compressedSize = directory.getLong(field);
+						field += 8;
+					}
+					if(headerOffset==ZIP64_MAGIC&&field+8<=extraEnd)
+						headerOffset = directory.getLong(field);
+					break;
+				}
+				extra += 4+length;
+			}
+			pos = next;
+			
+			String key = new String(nameBytes,StandardCharsets.UTF_8);
+			if(key.endsWith("/"))
+				continue;
+			byte kind;
+			if((flags&FLAG_ENCRYPTED)!=0)
+				kind = UNSUPPORTED;
+			else if(method==METHOD_STORED)
+				kind = STORED;
+			else if(method==METHOD_DEFLATED)
+				kind = DEFLATED;
+			else
+				kind = UNSUPPORTED;
+			if(kind==STORED&&compressedSize!=size)
+				throw new ZipException("Invalid size for stored entry "+key);
+			if(headerOffset<0||headerOffset+LOCAL_HEADER_SIZE>directoryOffset)
+				throw new ZipException("Invalid local header offset for "+key);
+			// The data follows the local header, and precedes the central directory. Compare by subtraction, as Zip64 sizes may overflow a sum
+			if(compressedSize<0||size<0||compressedSize>directoryOffset-headerOffset-LOCAL_HEADER_SIZE)
+				throw new ZipException("Invalid compressed size for "+key);
+			entries.add(new RawEntry(key,headerOffset,compressedSize,size,kind));
+		}
+		
+		// Stable sort, so that the first of any duplicate names is kept
+		entries.sort(Comparator.comparing(e->e.name));
+		int unique = 0;
+		for(int i = 0;i<entries.size();i++)
+			if(unique==0||!entries.get(unique-1).name.equals(entries.get(i).name))
+				entries.set(unique++, entries.get(i));
+		String[] names = new String[unique];
+		long[] headerOffsets = new long[unique];
+		long[] compressedSizes = new long[unique];
+		long[] sizes = new long[unique];
+		byte[] methods = new byte[unique];
+		for(int i = 0;i<unique;i++) {
+			RawEntry e = entries.get(i);
+			names[i] = e.name;
+			headerOffsets[i] = e.headerOffset;
+			compressedSizes[i] = e.compressedSize;
+			sizes[i] = e.size;
+			methods[i] = e.method;
+		}
+		return new Index(channel,mapped,fileSize,names,headerOffsets,compressedSizes,sizes,methods);
+	}
+
+	/**
+	 * If the pack contains an entry named key, returns a Resource for that entry. Otherwise returns an empty optional.<br/>
+	 * This does not read from the pack file.
+	 */
+	@Override
+	public Optional<Resource<String>> getResource(String key) {
+		Index index = this.index;
+		int entry = index.find(Objects.requireNonNull(key));
+		return entry<0?Optional.empty():Optional.of(new PackResource(index,entry));
+	}
+
+	/**
+	 * Streams the names of the entries in the pack, in sorted order.
+	 */
+	@Override
+	public Stream<String> keys() {
+		return SortedKeys.range(()->index.names, null, null);
+	}
+
+	/**
+	 * Streams the names of the entries in the given range, in sorted order, by searching the sorted index.
+	 */
+	@Override
+	public Stream<String> keys(String fromKey, String toKey) {
+		return SortedKeys.range(()->index.names, fromKey, toKey);
+	}
+
+	/**
+	 * Streams the names of the entries which start with prefix, in sorted order, by searching the sorted index.
+	 */
+	@Override
+	public Stream<String> keysWithPrefix(String prefix) {
+		return SortedKeys.prefix(()->index.names, Objects.requireNonNull(prefix));
+	}
+
+	/**
+	 * Reopens the pack file and rereads its central directory, then closes the previously open pack file.
+	 * @throws UncheckedIOException if the pack file cannot be reopened, or is not a valid pack file. The set is unchanged in this case.
+	 */
+	@Override
+	public void reload() {
+		synchronized(reloadLock) {
+			Index previous = index;
+			index = open(file);
+			try {
+				previous.channel.close();
+			}catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Closes the pack file. Resources of this set can no longer be read after it is closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(reloadLock) {
+			index.channel.close();
+		}
+	}
+
+}
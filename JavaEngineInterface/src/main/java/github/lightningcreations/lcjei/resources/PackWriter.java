@@ -0,0 +1,313 @@
+package github.lightningcreations.lcjei.resources;
+
+import static github.lightningcreations.lcjei.resources.PackFormat.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes pack files which can be read by {@link PackResourceSet}.<br/>
+ * Pack files are zip files, and can also be read by any zip tool. 
+ *  The data of each stored (uncompressed) entry is aligned to the alignment given at construction, by padding its local header with an extra field (the same field used by Android's zipalign).
+ *  With a page-sized alignment, a stored entry can be mapped directly at its offset in the pack.
+ *  Zip64 extensions are written as needed for large packs.<br/>
+ * All entries have a fixed modification time (the start of 1980), so that writing the same entries in the same order produces an identical pack.<br/>
+ * Instances of this class are not thread-safe.
+ * @author chorm
+ *
+ */
+public final class PackWriter implements Closeable {
+	
+	/**
+	 * The default alignment of stored entries, which is the page size of most platforms.
+	 */
+	public static final int DEFAULT_ALIGNMENT = 4096;
+	
+	/**
+	 * DOS date of 1980-01-01 at 00:00
+	 */
+	private static final int FIXED_DOS_TIME = (1<<21)|(1<<16);
+	
+	private static final class Entry {
+		final byte[] name;
+		final int method;
+		final long crc;
+		final long compressedSize;
+		final long size;
+		final long headerOffset;
+		
+		Entry(byte[] name,int method,long crc,long compressedSize,long size,long headerOffset){
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.headerOffset = headerOffset;
+		}
+		
+		boolean needsZip64() {
+			return compressedSize>=ZIP64_MAGIC||size>=ZIP64_MAGIC||headerOffset>=ZIP64_MAGIC;
+		}
+	}
+	
+	private final FileChannel out;
+	private final int alignment;
+	private final List<Entry> entries = new ArrayList<>();
+	private final Set<String> names = new HashSet<>();
+	private long position;
+	private boolean closed;
+	
+	/**
+	 * Creates a new pack file at file with the default alignment, replacing any existing file.
+	 * @throws IOException if the file cannot be created.
+	 */
+	public PackWriter(Path file) throws IOException {
+		this(file,DEFAULT_ALIGNMENT);
+	}
+	
+	/**
+	 * Creates a new pack file at file, replacing any existing file.
+	 * @param file The pack file to write.
+	 * @param alignment The alignment of the data of stored entries, which must be a power of two no greater than 32768. An alignment of 1 disables alignment.
+	 * @throws IllegalArgumentException if alignment is not a power of two, or is greater than 32768
+	 * @throws IOException if the file cannot be created.
+	 */
+	public PackWriter(Path file,int alignment) throws IOException {
+		if(alignment<=0||Integer.bitCount(alignment)!=1||alignment>32768)
+			throw new IllegalArgumentException("Invalid alignment: "+alignment);
+		this.alignment = alignment;
+		this.out = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.CREATE,StandardOpenOption.TRUNCATE_EXISTING,StandardOpenOption.WRITE);
+	}
+	
+	private byte[] checkName(String name) {
+		if(closed)
+			throw new IllegalStateException("PackWriter is closed");
+		if(name.isEmpty()||name.startsWith("/")||name.endsWith("/")||name.indexOf('\\')>=0)
+			throw new IllegalArgumentException("Invalid entry name: "+name);
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length>0xffff)
+			throw new IllegalArgumentException("Entry name too long: "+name);
+		if(!names.add(name))
+			throw new IllegalArgumentException("Duplicate entry: "+name);
+		return bytes;
+	}
+	
+	private void write(ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			position += out.write(buffer);
+	}
+	
+	private void writeLocalHeader(byte[] name,int method,long crc,long compressedSize,long size) throws IOException {
+		boolean zip64 = compressedSize>=ZIP64_MAGIC||size>=ZIP64_MAGIC;
+		int extraLength = zip64?20:0;
+		if(method==METHOD_STORED&&alignment>1) {
+			long dataOffset = position+LOCAL_HEADER_SIZE+name.length+extraLength;
+			int padding = (int)((alignment-(dataOffset+6)%alignment)%alignment);
+			extraLength += 6+padding;
+		}
+		ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE+name.length+extraLength).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER_SIGNATURE)
+			.putShort((short)(zip64?VERSION_ZIP64:VERSION_DEFAULT))
+			.putShort((short)FLAG_UTF8)
+			.putShort((short)method)
+			.putInt(FIXED_DOS_TIME)
+			.putInt((int)crc)
+			.putInt((int)(zip64?ZIP64_MAGIC:compressedSize))
+			.putInt((int)(zip64?ZIP64_MAGIC:size))
+			.putShort((short)name.length)
+			.putShort((short)extraLength)
+			.put(name);
+		if(zip64)
+			header.putShort((short)ZIP64_EXTRA_ID).putShort((short)16).putLong(size).putLong(compressedSize);
+		if(header.hasRemaining()) {
+			header.putShort((short)ALIGNMENT_EXTRA_ID).putShort((short)(header.remaining()-4)).putShort((short)alignment);
+			header.position(header.limit());
+		}
+		header.flip();
+		write(header);
+	}
+	
+	/**
+	 * Adds a stored (uncompressed) entry with the remaining bytes of data. The position of data is not modified.
+	 * @throws IllegalArgumentException if name is empty, begins or ends with '/', contains '\\', or is the name of an existing entry.
+	 * @throws IllegalStateException if this writer is closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void addStored(String name,ByteBuffer data) throws IOException {
+		byte[] bytes = checkName(name);
+		data = data.duplicate();
+		CRC32 crc = new CRC32();
+		crc.update(data.duplicate());
+		long offset = position;
+		writeLocalHeader(bytes,METHOD_STORED,crc.getValue(),data.remaining(),data.remaining());
+		long size = data.remaining();
+		write(data);
+		entries.add(new Entry(bytes,METHOD_STORED,crc.getValue(),size,size,offset));
+	}
+	
+	/**
+	 * Adds a stored (uncompressed) entry with the contents of file.<br/>
+	 * The file is read once to compute its checksum, and then transferred into the pack without being copied onto the heap.
+	 * @throws IllegalArgumentException if name is empty, begins or ends with '/', contains '\\', or is the name of an existing entry.
+	 * @throws IllegalStateException if this writer is closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void addStored(String name,Path file) throws IOException {
+		byte[] bytes = checkName(name);
+		try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = in.size();
+			CRC32 crc = new CRC32();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+			for(long read = 0;read<size;) {
+				buffer.clear();
+				int n = in.read(buffer, read);
+				if(n<0)
+					throw new IOException("File was truncated while it was added: "+file);
+				buffer.flip();
+				crc.update(buffer);
+				read += n;
+			}
+			long offset = position;
+			writeLocalHeader(bytes,METHOD_STORED,crc.getValue(),size,size);
+			for(long written = 0;written<size;) {
+				long n = in.transferTo(written, size-written, out);
+				if(n<=0)
+					throw new IOException("File was truncated while it was added: "+file);
+				written += n;
+			}
+			position += size;
+			out.position(position);
+			entries.add(new Entry(bytes,METHOD_STORED,crc.getValue(),size,size,offset));
+		}
+	}
+	
+	/**
+	 * Adds a deflated entry with the contents read from in, which is read until end of stream, but not closed.<br/>
+	 * The compressed data is buffered in memory until the entry is written.
+	 * @throws IllegalArgumentException if name is empty, begins or ends with '/', contains '\\', or is the name of an existing entry.
+	 * @throws IllegalStateException if this writer is closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void addDeflated(String name,InputStream in) throws IOException {
+		byte[] bytes = checkName(name);
+		CRC32 crc = new CRC32();
+		long size = 0;
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION,true);
+		try(DeflaterOutputStream deflate = new DeflaterOutputStream(compressed,deflater)){
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer))>0) {
+				crc.update(buffer, 0, n);
+				deflate.write(buffer, 0, n);
+				size += n;
+			}
+		}finally {
+			deflater.end();
+		}
+		long offset = position;
+		writeLocalHeader(bytes,METHOD_DEFLATED,crc.getValue(),compressed.size(),size);
+		write(ByteBuffer.wrap(compressed.toByteArray()));
+		entries.add(new Entry(bytes,METHOD_DEFLATED,crc.getValue(),compressed.size(),size,offset));
+	}
+	
+	/**
+	 * Adds a deflated entry with the contents of file.
+	 * @see #addDeflated(String, InputStream)
+	 */
+	public void addDeflated(String name,Path file) throws IOException {
+		try(InputStream in = Files.newInputStream(file)){
+			addDeflated(name,in);
+		}
+	}
+	
+	/**
+	 * Writes the central directory, and closes the pack file. Closing a closed writer has no effect.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed)
+			return;
+		closed = true;
+		try {
+			long directoryOffset = position;
+			for(Entry e:entries) {
+				boolean zip64 = e.needsZip64();
+				int extraLength = zip64?28:0;
+				ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE+e.name.length+extraLength).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(CENTRAL_HEADER_SIGNATURE)
+					.putShort((short)(zip64?VERSION_ZIP64:VERSION_DEFAULT))
+					.putShort((short)(zip64?VERSION_ZIP64:VERSION_DEFAULT))
+					.putShort((short)FLAG_UTF8)
+					.putShort((short)e.method)
+					.putInt(FIXED_DOS_TIME)
+					.putInt((int)e.crc)
+					.putInt((int)(zip64?ZIP64_MAGIC:e.compressedSize))
+					.putInt((int)(zip64?ZIP64_MAGIC:e.size))
+					.putShort((short)e.name.length)
+					.putShort((short)extraLength)
+					.putShort((short)0) // comment length
+					.putShort((short)0) // disk number
+					.putShort((short)0) // internal attributes
+					.putInt(0) // external attributes
+					.putInt((int)(zip64?ZIP64_MAGIC:e.headerOffset))
+					.put(e.name);
+				if(zip64)
+					header.putShort((short)ZIP64_EXTRA_ID).putShort((short)24).putLong(e.size).putLong(e.compressedSize).putLong(e.headerOffset);
+				header.flip();
+				write(header);
+			}
+			long directorySize = position-directoryOffset;
+			boolean zip64 = entries.size()>=ZIP64_MAGIC_COUNT||directorySize>=ZIP64_MAGIC||directoryOffset>=ZIP64_MAGIC;
+			ByteBuffer end = ByteBuffer.allocate((zip64?ZIP64_END_SIZE+ZIP64_LOCATOR_SIZE:0)+END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if(zip64) {
+				long end64Offset = position;
+				end.putInt(ZIP64_END_SIGNATURE)
+					.putLong(ZIP64_END_SIZE-12)
+					.putShort((short)VERSION_ZIP64)
+					.putShort((short)VERSION_ZIP64)
+					.putInt(0) // this disk
+					.putInt(0) // directory disk
+					.putLong(entries.size())
+					.putLong(entries.size())
+					.putLong(directorySize)
+					.putLong(directoryOffset);
+				end.putInt(ZIP64_LOCATOR_SIGNATURE)
+					.putInt(0)
+					.putLong(end64Offset)
+					.putInt(1);
+			}
+			end.putInt(END_SIGNATURE)
+				.putShort((short)0)
+				.putShort((short)0)
+				.putShort((short)(zip64?ZIP64_MAGIC_COUNT:entries.size()))
+				.putShort((short)(zip64?ZIP64_MAGIC_COUNT:entries.size()))
+				.putInt((int)(zip64?ZIP64_MAGIC:directorySize))
+				.putInt((int)(zip64?ZIP64_MAGIC:directoryOffset))
+				.putShort((short)0);
+			end.flip();
+			write(end);
+		}finally {
+			out.close();
+		}
+	}
+
+}
@@ -1,7 +1,11 @@
 package github.lightningcreations.lcjei.resources;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Optional;
 
 /**
@@ -23,4 +27,71 @@ public interface Resource<ResourceKey> {
 	 * Returns the name of the resource as a ResourceKey.
 	 */
 	public ResourceKey getKey();
+	
+	/**
+	 * Returns the number of bytes in the resource.<br/>
+	 * By default, this opens a channel with {@link #getReadChannel()} and returns its size.
+	 *  Implementations which know the size of the resource without opening it should override this method.
+	 * @throws UncheckedIOException if an I/O error occurs.
+	 */
+	public default long size() {
+		try(SeekableByteChannel channel = getReadChannel()){
+			return channel.size();
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Returns the time at which the contents of the resource were last modified, in milliseconds since the epoch, or 0 if it is not known.<br/>
+	 * Resources whose contents can change without changing their key, such as files, should return a time which changes whenever their contents do,
+	 *  so that information recorded about their contents, such as by a {@link ContentManifest}, can be recognized as stale. 
+	 *  By default, this returns 0.
+	 */
+	public default long lastModified() {
+		return 0;
+	}
+	
+	/**
+	 * Returns a read-only buffer which contains all bytes of the resource, from its position to its limit.<br/>
+	 * By default, this reads the resource into a new heap buffer. Implementations which hold the contents of the resource in memory, or can map it, 
+	 *  should override this method to return a view of those contents without copying them. Each call returns a distinct buffer, with independent position and limit.
+	 * @throws UnsupportedOperationException if the resource is too large to be held in a single buffer.
+	 * @throws UncheckedIOException if an I/O error occurs.
+	 */
+	public default ByteBuffer asReadOnlyByteBuffer() {
+		try(SeekableByteChannel channel = getReadChannel()){
+			long size = channel.size();
+			if(size>Integer.MAX_VALUE)
+				throw new UnsupportedOperationException("Resource is too large for a ByteBuffer: "+size+" bytes");
+			ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while(buffer.hasRemaining()&&channel.read(buffer)>=0);
+			buffer.flip();
+			return buffer.asReadOnlyBuffer();
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Writes all bytes of the resource to target, and returns the number of bytes written. target is not closed.<br/>
+	 * By default, this copies from {@link #getReadChannel()} to target through a temporary heap buffer, of at most 64 KiB. 
+	 *  File backed implementations should override this method to use {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}, 
+	 *  and implementations which hold the contents of the resource in memory should write them directly.
+	 * @throws UncheckedIOException if an I/O error occurs, or target accepts no bytes, as a non-blocking channel may not.
+	 */
+	public default long transferTo(WritableByteChannel target) {
+		try(SeekableByteChannel channel = getReadChannel()){
+			ByteBuffer buffer = ByteBuffer.allocate((int)Math.max(1, Math.min(channel.size(), 65536)));
+			long transferred = 0;
+			while(channel.read(buffer)>=0) {
+				buffer.flip();
+				transferred += Transfers.write(buffer, target);
+				buffer.clear();
+			}
+			return transferred;
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 }
@@ -0,0 +1,64 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the default Executor used by the asynchronous methods of {@link ResourceSet}.<br/>
+ * Unless replaced by {@link #setDefaultExecutor(Executor)}, the default Executor runs each task in a new virtual thread if the Java Runtime supports them.
+ *  Otherwise it is a bounded pool of daemon threads, with twice as many threads as available processors (but at least 4), which queues tasks when every thread is busy.
+ * @author chorm
+ *
+ */
+public final class ResourceExecutors {
+	
+	private ResourceExecutors() {
+	}
+	
+	private static final class DefaultHolder {
+		static final Executor DEFAULT = createDefault();
+		
+		private static Executor createDefault() {
+			try {
+				Method virtual = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService)virtual.invoke(null);
+			}catch(ReflectiveOperationException|RuntimeException e) {
+				// Virtual threads are not available
+			}
+			int threads = Math.max(4, Runtime.getRuntime().availableProcessors()*2);
+			AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = r->{
+				Thread t = new Thread(r,"lcjei-resource-io-"+count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,threads,30,TimeUnit.SECONDS,new LinkedBlockingQueue<>(),factory);
+			pool.allowCoreThreadTimeOut(true);
+			return pool;
+		}
+	}
+	
+	private static volatile Executor override;
+	
+	/**
+	 * Returns the Executor used by the asynchronous methods of {@link ResourceSet} which do not accept an Executor.
+	 */
+	public static Executor getDefaultExecutor() {
+		Executor executor = override;
+		return executor!=null?executor:DefaultHolder.DEFAULT;
+	}
+	
+	/**
+	 * Replaces the Executor used by the asynchronous methods of {@link ResourceSet} which do not accept an Executor.
+	 *  If executor is null, the built-in default is restored.
+	 */
+	public static void setDefaultExecutor(Executor executor) {
+		override = executor;
+	}
+}
@@ -1,5 +1,7 @@
 package github.lightningcreations.lcjei.resources;
 
+import java.util.Objects;
+
 /**
  * Represents a bi-directional function between the keys of a Host resource set and a Guest resource set.<br/>
  * This interface defines a strict contract that {@link #mapToGuest(Object)} and {@link #mapToHost(Object)} must be inverse operations. 
@@ -30,4 +32,93 @@ public interface ResourceKeyMapper<GuestKeyType, HostKeyType> {
 	 * @throws NullPointerExcept if hostKey is null.
 	 */
 	public GuestKeyType mapToGuest(HostKeyType hostKey);
+	
+	/**
+	 * Returns true if this mapper preserves String prefixes, so that {@link #mapPrefixToHost(String)} is supported.<br/>
+	 * A mapper is prefix preserving if, for every guest key g and every String p, the String form of g starts with p exactly when the String form of mapToHost(g) starts with mapPrefixToHost(p).
+	 *  A MappedResourceSet uses this to answer {@link ResourceSet#keysWithPrefix(String)} with a prefix query on the host set, rather than by filtering every key.<br/>
+	 * By default, returns false.
+	 */
+	public default boolean isPrefixPreserving() {
+		return false;
+	}
+	
+	/**
+	 * Maps a prefix of the String forms of guest keys to the equivalent prefix of the String forms of host keys, as described by {@link #isPrefixPreserving()}.<br/>
+	 * By default, this operation is not supported.
+	 * @throws UnsupportedOperationException if this mapper is not prefix preserving.
+	 * @throws NullPointerException if guestPrefix is null.
+	 */
+	public default String mapPrefixToHost(String guestPrefix) {
+		throw new UnsupportedOperationException("Mapper is not prefix preserving");
+	}
+	
+	/**
+	 * Returns a prefix preserving mapper between String keys, which maps each guest key to the host key formed by prepending hostPrefix to it.
+	 *  Host keys which do not start with hostPrefix are not in the range of the mapper.<br/>
+	 * For example, <code>ResourceKeyMapper.prefixed("mods/example/")</code> maps the guest key "textures/a.png" to the host key "mods/example/textures/a.png".
+	 * @throws NullPointerException if hostPrefix is null.
+	 */
+	public static ResourceKeyMapper<String, String> prefixed(String hostPrefix){
+		Objects.requireNonNull(hostPrefix);
+		return new ResourceKeyMapper<String, String>() {
+			@Override
+			public String mapToHost(String guestKey) {
+				return hostPrefix.concat(guestKey);
+			}
+
+			@Override
+			public String mapToGuest(String hostKey) {
+				return hostKey.startsWith(hostPrefix)?hostKey.substring(hostPrefix.length()):null;
+			}
+
+			@Override
+			public boolean isPrefixPreserving() {
+				return true;
+			}
+
+			@Override
+			public String mapPrefixToHost(String guestPrefix) {
+				return hostPrefix.concat(guestPrefix);
+			}
+		};
+	}
+	
+	/**
+	 * Returns a mapper which maps guest keys of this mapper to the host keys of next, through the host keys of this mapper.<br/>
+	 * The result is equivalent to mapping keys with this mapper and then with next, so that a MappedResourceSet using the result is equivalent to a MappedResourceSet using this mapper,
+	 *  over a MappedResourceSet using next.
+	 *  The composition is performed in a single call, without intermediate Resources or Optionals.<br/>
+	 * If next.mapToGuest returns null for a host key, the result maps that host key to null.
+	 *  The result is prefix preserving if both this mapper and next are.
+	 * @param <NextHostKeyType> The type of host keys of next
+	 * @param next The mapper applied after this mapper.
+	 * @throws NullPointerException if next is null.
+	 */
+	public default <NextHostKeyType> ResourceKeyMapper<GuestKeyType, NextHostKeyType> andThen(ResourceKeyMapper<HostKeyType, NextHostKeyType> next){
+		Objects.requireNonNull(next);
+		ResourceKeyMapper<GuestKeyType, HostKeyType> first = this;
+		return new ResourceKeyMapper<GuestKeyType, NextHostKeyType>() {
+			@Override
+			public NextHostKeyType mapToHost(GuestKeyType guestKey) {
+				return next.mapToHost(first.mapToHost(guestKey));
+			}
+
+			@Override
+			public GuestKeyType mapToGuest(NextHostKeyType hostKey) {
+				HostKeyType intermediate = next.mapToGuest(hostKey);
+				return intermediate!=null?first.mapToGuest(intermediate):null;
+			}
+
+			@Override
+			public boolean isPrefixPreserving() {
+				return first.isPrefixPreserving()&&next.isPrefixPreserving();
+			}
+
+			@Override
+			public String mapPrefixToHost(String guestPrefix) {
+				return next.mapPrefixToHost(first.mapPrefixToHost(guestPrefix));
+			}
+		};
+	}
 }
@@ -1,6 +1,12 @@
 package github.lightningcreations.lcjei.resources;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
 /**
@@ -29,4 +35,104 @@ public interface ResourceSet<ResourceKey> {
 	 * This method is thread-safe with {@link #getResource(Object)}.
 	 */
 	public void reload();
+	
+	/**
+	 * Streams the keys of this repository which are in the range from fromKey (inclusive) to toKey (exclusive), in the natural ordering of the keys.
+	 *  If fromKey is null, the range has no lower bound, and if toKey is null, the range has no upper bound.<br/>
+	 * The result is bound and atomic in the same way as {@link #keys()}.
+	 *  By default, this filters the result of {@link #keys()}, and requires the keys to be {@link Comparable}. 
+	 *  Implementations which keep their keys sorted should override this method to return only the range.
+	 * @throws ClassCastException if the keys are not Comparable with each other. This may be thrown by the terminal operation of the stream.
+	 */
+	@SuppressWarnings("unchecked")
+	public default Stream<ResourceKey> keys(ResourceKey fromKey,ResourceKey toKey){
+		return keys().filter(k->(fromKey==null||((Comparable<? super ResourceKey>)k).compareTo(fromKey)>=0)
+				&&(toKey==null||((Comparable<? super ResourceKey>)k).compareTo(toKey)<0));
+	}
+	
+	/**
+	 * Streams the keys of this repository whose String form (as given by {@link Object#toString()}) starts with prefix.
+	 *  For keys which are Strings, this is every key which starts with prefix, such as every key under "textures/ui/".<br/>
+	 * The result is bound and atomic in the same way as {@link #keys()}.
+	 *  By default, this filters the result of {@link #keys()}. Implementations which keep their keys sorted or in a trie should override this method to return only the matching keys.
+	 * @throws NullPointerException if prefix is null.
+	 */
+	public default Stream<ResourceKey> keysWithPrefix(String prefix){
+		Objects.requireNonNull(prefix);
+		return keys().filter(k->k.toString().startsWith(prefix));
+	}
+	
+	/**
+	 * Asynchronously obtains the resource named by key, as though by {@link #getResource(Object)}, using the default executor given by {@link ResourceExecutors#getDefaultExecutor()}.
+	 * @see #getResourceAsync(Object, Executor)
+	 */
+	public default CompletableFuture<Optional<Resource<ResourceKey>>> getResourceAsync(ResourceKey key){
+		return getResourceAsync(key,ResourceExecutors.getDefaultExecutor());
+	}
+	
+	/**
+	 * Asynchronously obtains the resource named by key, as though by {@link #getResource(Object)} called on executor.<br/>
+	 * If there is already an asynchronous lookup in progress for an equal key in this set, the returned future completes with the result of that lookup, and getResource is not called again.
+	 *  Each call returns a distinct future, so cancelling it does not affect other callers.
+	 *  Only the lookup is shared: the contents of the Resource are read by each caller.
+	 *  The future completes exceptionally if getResource throws an exception.
+	 * @throws NullPointerException if key or executor is null.
+	 */
+	public default CompletableFuture<Optional<Resource<ResourceKey>>> getResourceAsync(ResourceKey key,Executor executor){
+		return CoalescedLoads.load(this, key, Objects.requireNonNull(executor));
+	}
+	
+	/**
+	 * Asynchronously obtains the resources named by keys, using the default executor given by {@link ResourceExecutors#getDefaultExecutor()}.
+	 * @see #getResources(Collection, Executor)
+	 */
+	public default CompletableFuture<Map<ResourceKey,Resource<ResourceKey>>> getResources(Collection<? extends ResourceKey> keys){
+		return getResources(keys,ResourceExecutors.getDefaultExecutor());
+	}
+	
+	/**
+	 * Asynchronously obtains the resources named by keys, each as though by {@link #getResourceAsync(Object, Executor)}, so that the lookups may proceed in parallel.<br/>
+	 * The returned future completes with a map from each key which names a resource in this set, to that resource. Keys which do not name a resource are not in the map.
+	 *  If any lookup fails, the future completes exceptionally once all of the lookups have completed.
+	 * @throws NullPointerException if keys or executor is null, or keys contains null.
+	 */
+	public default CompletableFuture<Map<ResourceKey,Resource<ResourceKey>>> getResources(Collection<? extends ResourceKey> keys,Executor executor){
+		Objects.requireNonNull(executor);
+		Object[] requested = keys.toArray();
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		CompletableFuture<Optional<Resource<ResourceKey>>>[] lookups = new CompletableFuture[requested.length];
+		for(int i = 0;i<requested.length;i++) {
+			@SuppressWarnings("unchecked")
+			ResourceKey key = (ResourceKey)requested[i];
+			lookups[i] = getResourceAsync(key,executor);
+		}
+		return CompletableFuture.allOf(lookups).thenApply(ignored->{
+			Map<ResourceKey,Resource<ResourceKey>> resources = new HashMap<>();
+			for(int i = 0;i<requested.length;i++) {
+				@SuppressWarnings("unchecked")
+				ResourceKey key = (ResourceKey)requested[i];
+				lookups[i].join().ifPresent(r->resources.put(key, r));
+			}
+			return resources;
+		});
+	}
+	
+	/**
+	 * Hints that the resources named by keys will be read soon, using the default executor given by {@link ResourceExecutors#getDefaultExecutor()}.
+	 * @see #prefetch(Collection, Executor)
+	 */
+	public default CompletableFuture<Void> prefetch(Collection<? extends ResourceKey> keys){
+		return prefetch(keys,ResourceExecutors.getDefaultExecutor());
+	}
+	
+	/**
+	 * Hints that the resources named by keys will be read soon, so that the set may prepare them in the background on executor.<br/>
+	 * By default, this looks up each key as though by {@link #getResources(Collection, Executor)}, which warms any cache maintained by the set. 
+	 *  Implementations may do more, such as reading the contents of the resources into memory.
+	 *  The returned future completes when the prefetch is complete. Keys which do not name a resource are ignored.
+	 * @throws NullPointerException if keys or executor is null, or keys contains null.
+	 */
+	public default CompletableFuture<Void> prefetch(Collection<? extends ResourceKey> keys,Executor executor){
+		return getResources(keys,executor).thenApply(resources->null);
+	}
 }
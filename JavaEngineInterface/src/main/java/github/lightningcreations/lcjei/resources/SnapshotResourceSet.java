@@ -0,0 +1,118 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Base class for ResourceSets which index their resources in immutable snapshots.<br/>
+ * The current snapshot is published through a single volatile reference. 
+ *  {@link #getResource(Object)} reads that reference once and does not lock, and each terminal operation of a stream returned by {@link #keys()} operates on the snapshot that was current when it began.
+ *  Reloads and updates build the next snapshot without blocking readers, and publish it atomically once it is complete.
+ *  Reloads and updates are serialized with each other.<br/>
+ * 
+ * Subclasses build snapshots with {@link #scan(Map)}, and may apply incremental changes with {@link #update(Map, Collection)}.
+ *  Subclasses must call {@link #reload()} before the set is used, usually at the end of their constructor.
+ * @author chorm
+ *
+ * @param <ResourceKey> The type of keys of the resource set
+ * @param <ResourceType> The type of resources in the snapshot
+ */
+public abstract class SnapshotResourceSet<ResourceKey, ResourceType extends Resource<ResourceKey>> implements ResourceSet<ResourceKey> {
+	
+	private final Object updateLock = new Object();
+	private volatile Map<ResourceKey,ResourceType> snapshot = Collections.emptyMap();
+	private volatile long version;
+	
+	/**
+	 * Constructs a new SnapshotResourceSet with an empty snapshot.
+	 */
+	protected SnapshotResourceSet() {
+	}
+	
+	/**
+	 * Builds a complete snapshot of the underlying repository.<br/>
+	 * The resources in previous may be reused in the result if the resources they name are unchanged. previous must not be modified.
+	 *  The returned map is not modified after it is returned. 
+	 * @param previous The current snapshot.
+	 * @return The next snapshot.
+	 */
+	protected abstract Map<ResourceKey,ResourceType> scan(Map<ResourceKey,ResourceType> previous);
+	
+	/**
+	 * Returns the current snapshot, which is an unmodifiable map.
+	 */
+	protected final Map<ResourceKey,ResourceType> snapshot(){
+		return snapshot;
+	}
+	
+	/**
+	 * Applies changes to the current snapshot, and publishes the result as the next snapshot.<br/>
+	 * Keys in removed are removed first, and then the resources in changed are added or replace existing resources.
+	 */
+	protected final void update(Map<? extends ResourceKey,? extends ResourceType> changed,Collection<? extends ResourceKey> removed) {
+		if(changed.isEmpty()&&removed.isEmpty())
+			return;
+		synchronized(updateLock) {
+			Map<ResourceKey,ResourceType> next = new HashMap<>(snapshot);
+			next.keySet().removeAll(removed);
+			next.putAll(changed);
+			publish(next);
+		}
+	}
+	
+	private void publish(Map<ResourceKey,ResourceType> next) {
+		snapshot = Collections.unmodifiableMap(next);
+		version++;
+	}
+	
+	/**
+	 * Returns the version of the current snapshot. The version is incremented each time a snapshot is published.
+	 */
+	public final long getVersion() {
+		return version;
+	}
+
+	/**
+	 * If key names a resource in the current snapshot, returns that resource. Otherwise returns an empty optional.
+	 */
+	@Override
+	public Optional<Resource<ResourceKey>> getResource(ResourceKey key) {
+		return Optional.ofNullable(snapshot.get(Objects.requireNonNull(key)));
+	}
+
+	/**
+	 * Streams the keys of the snapshot which is current when the terminal operation of the stream begins.
+	 */
+	@Override
+	public Stream<ResourceKey> keys() {
+		return StreamSupport.stream(()->snapshot.keySet().spliterator(), Spliterator.SIZED|Spliterator.DISTINCT, false);
+	}
+
+	/**
+	 * Builds a new snapshot with {@link #scan(Map)} and publishes it. Readers continue to use the previous snapshot until it is published.
+	 */
+	@Override
+	public void reload() {
+		synchronized(updateLock) {
+			publish(scan(snapshot));
+		}
+	}
+	
+	/**
+	 * Reloads this set on executor, as though by {@link #reload()}.<br/>
+	 * The returned future completes when the new snapshot is published, or completes exceptionally if the reload fails.
+	 */
+	public CompletableFuture<Void> reloadAsync(Executor executor) {
+		return CompletableFuture.runAsync(this::reload, executor);
+	}
+
+}
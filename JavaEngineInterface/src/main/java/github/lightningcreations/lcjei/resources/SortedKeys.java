@@ -0,0 +1,60 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Range and prefix queries over sorted arrays of String keys, for the ResourceSets of this package which keep their keys sorted.<br/>
+ * The streams returned are late binding: the array is obtained from the supplier, and searched, when the terminal operation begins.
+ *  They are sized, and split evenly, as they are backed by a range of the array.
+ * @author chorm
+ *
+ */
+final class SortedKeys {
+	private SortedKeys() {
+	}
+	
+	private static final int CHARACTERISTICS = Spliterator.ORDERED|Spliterator.IMMUTABLE|Spliterator.SIZED|Spliterator.SUBSIZED;
+	
+	/**
+	 * Returns the index of the first key in sorted which is not less than key.
+	 */
+	private static int lowerBound(String[] sorted,String key) {
+		int i = Arrays.binarySearch(sorted, key);
+		return i>=0?i:-(i+1);
+	}
+	
+	/**
+	 * Streams the keys of sorted which are at least from (if not null), and less than to (if not null).
+	 */
+	static Stream<String> range(Supplier<String[]> sorted,String from,String to){
+		return StreamSupport.stream(()->{
+			String[] keys = sorted.get();
+			int lo = from!=null?lowerBound(keys,from):0;
+			int hi = to!=null?Math.max(lo, lowerBound(keys,to)):keys.length;
+			return Arrays.spliterator(keys, lo, hi);
+		}, CHARACTERISTICS, false);
+	}
+	
+	/**
+	 * Streams the keys of sorted which start with prefix.
+	 */
+	static Stream<String> prefix(Supplier<String[]> sorted,String prefix){
+		return range(sorted,prefix,successor(prefix));
+	}
+	
+	/**
+	 * Returns the least String which is greater than every String that starts with prefix, or null if there is no such String.
+	 */
+	private static String successor(String prefix) {
+		for(int i = prefix.length()-1;i>=0;i--) {
+			char c = prefix.charAt(i);
+			if(c!=Character.MAX_VALUE)
+				return prefix.substring(0, i)+(char)(c+1);
+		}
+		return null;
+	}
+}
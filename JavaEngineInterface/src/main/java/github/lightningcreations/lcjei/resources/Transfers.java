@@ -0,0 +1,64 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Helpers for the {@link Resource#transferTo(WritableByteChannel)} implementations of this package.
+ * @author chorm
+ *
+ */
+final class Transfers {
+	private Transfers() {
+	}
+	
+	private static UncheckedIOException stalled() {
+		return new UncheckedIOException(new IOException("Target channel accepted no bytes, it may be non-blocking"));
+	}
+	
+	/**
+	 * Writes the remaining bytes of buffer to target, without modifying the position of buffer.
+	 * @throws UncheckedIOException if an I/O error occurs, or a write makes no progress.
+	 */
+	static long write(ByteBuffer buffer,WritableByteChannel target) {
+		buffer = buffer.duplicate();
+		long transferred = 0;
+		try {
+			while(buffer.hasRemaining()) {
+				int n = target.write(buffer);
+				if(n<=0)
+					throw stalled();
+				transferred += n;
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return transferred;
+	}
+	
+	/**
+	 * Transfers size bytes of file, starting at offset, to target with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+	 *  Stops early if file ends before size bytes are transferred.
+	 * @throws UncheckedIOException if an I/O error occurs, or a transfer makes no progress before the end of file.
+	 */
+	static long transfer(FileChannel file,long offset,long size,WritableByteChannel target) {
+		long transferred = 0;
+		try {
+			while(transferred<size) {
+				long n = file.transferTo(offset+transferred, size-transferred, target);
+				if(n<=0) {
+					if(offset+transferred>=file.size())
+						break;
+					throw stalled();
+				}
+				transferred += n;
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return transferred;
+	}
+}
@@ -0,0 +1,80 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The 64-bit xxHash function (with a seed of 0), which is a fast non-cryptographic hash.
+ * @author chorm
+ *
+ */
+final class XXHash64 {
+	private XXHash64() {
+	}
+	
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+	
+	private static long round(long acc,long input) {
+		acc += input*PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc*PRIME1;
+	}
+	
+	private static long merge(long acc,long val) {
+		acc ^= round(0,val);
+		return acc*PRIME1+PRIME4;
+	}
+	
+	/**
+	 * Hashes the remaining bytes of data, without modifying its position.
+	 */
+	static long hash(ByteBuffer data) {
+		ByteBuffer buf = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int pos = buf.position();
+		int end = buf.limit();
+		long length = end-pos;
+		long h;
+		if(length>=32) {
+			long v1 = PRIME1+PRIME2;
+			long v2 = PRIME2;
+			long v3 = 0;
+			long v4 = -PRIME1;
+			for(;pos<=end-32;pos+=32) {
+				v1 = round(v1,buf.getLong(pos));
+				v2 = round(v2,buf.getLong(pos+8));
+				v3 = round(v3,buf.getLong(pos+16));
+				v4 = round(v4,buf.getLong(pos+24));
+			}
+			h = Long.rotateLeft(v1, 1)+Long.rotateLeft(v2, 7)+Long.rotateLeft(v3, 12)+Long.rotateLeft(v4, 18);
+			h = merge(h,v1);
+			h = merge(h,v2);
+			h = merge(h,v3);
+			h = merge(h,v4);
+		}else
+			h = PRIME5;
+		h += length;
+		for(;pos<=end-8;pos+=8) {
+			h ^= round(0,buf.getLong(pos));
+			h = Long.rotateLeft(h, 27)*PRIME1+PRIME4;
+		}
+		if(pos<=end-4) {
+			h ^= (buf.getInt(pos)&0xffffffffL)*PRIME1;
+			h = Long.rotateLeft(h, 23)*PRIME2+PRIME3;
+			pos += 4;
+		}
+		for(;pos<end;pos++) {
+			h ^= (buf.get(pos)&0xffL)*PRIME5;
+			h = Long.rotateLeft(h, 11)*PRIME1;
+		}
+		h ^= h>>>33;
+		h *= PRIME2;
+		h ^= h>>>29;
+		h *= PRIME3;
+		h ^= h>>>32;
+		return h;
+	}
+}
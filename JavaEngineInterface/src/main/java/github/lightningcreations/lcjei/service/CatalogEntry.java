@@ -0,0 +1,111 @@
+package github.lightningcreations.lcjei.service;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import github.lightningcreations.lcjei.IGameInfo;
+
+/**
+ * A game listed in a {@link GameCatalog}, as described by the {@link IGameInfo} from its provider.<br/>
+ * Classes are recorded by name, so that entries can be loaded from a saved catalog without loading any classes of the provider.
+ * @author chorm
+ *
+ */
+public final class CatalogEntry {
+	private final UUID gameId;
+	private final String name;
+	private final String version;
+	private final String gameClass;
+	private final String engineInterfaceClass;
+	private final String engineName;
+	private final String providerClass;
+	
+	CatalogEntry(UUID gameId,String name,String version,String gameClass,String engineInterfaceClass,String engineName,String providerClass){
+		this.gameId = Objects.requireNonNull(gameId);
+		this.name = Objects.requireNonNull(name);
+		this.version = version;
+		this.gameClass = gameClass;
+		this.engineInterfaceClass = engineInterfaceClass;
+		this.engineName = Objects.requireNonNull(engineName);
+		this.providerClass = Objects.requireNonNull(providerClass);
+	}
+	
+	/**
+	 * Returns the Unique Id of the game, as given by {@link IGameInfo#getGameId()}.
+	 */
+	public UUID getGameId() {
+		return gameId;
+	}
+	
+	/**
+	 * Returns the name of the game, as given by {@link IGameInfo#getName()}.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the version of the game, or null if the engine does not specify versioned games.
+	 */
+	public String getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns the name of the class of the game, as given by {@link IGameInfo#getGameClass()}, or null if the provider did not specify it.
+	 */
+	public String getGameClassName() {
+		return gameClass;
+	}
+	
+	/**
+	 * Returns the name of the class of the Engine Interface, as given by {@link IGameInfo#getEngineInterfaceClass()}, or null if the provider did not specify it.
+	 */
+	public String getEngineInterfaceClassName() {
+		return engineInterfaceClass;
+	}
+	
+	/**
+	 * Returns the name of the engine which runs the game, as given by {@link JEIServiceProvider#getEngineName()}.
+	 */
+	public String getEngineName() {
+		return engineName;
+	}
+	
+	/**
+	 * Returns the name of the class of the provider which listed the game.
+	 */
+	public String getProviderClassName() {
+		return providerClass;
+	}
+	
+	/**
+	 * Looks up the provider of the engine which runs the game, amongst the providers visible from loader, as though by {@link EngineLookup#getByEngineName(String, ClassLoader)}.
+	 */
+	public Optional<JEIServiceProvider<?>> getProvider(ClassLoader loader){
+		return EngineLookup.getByEngineName(engineName, loader);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(gameId,name,version,gameClass,engineInterfaceClass,engineName,providerClass);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj==this)
+			return true;
+		else if(!(obj instanceof CatalogEntry))
+			return false;
+		CatalogEntry other = (CatalogEntry)obj;
+		return gameId.equals(other.gameId)&&name.equals(other.name)&&Objects.equals(version, other.version)
+				&&Objects.equals(gameClass, other.gameClass)&&Objects.equals(engineInterfaceClass, other.engineInterfaceClass)
+				&&engineName.equals(other.engineName)&&providerClass.equals(other.providerClass);
+	}
+
+	@Override
+	public String toString() {
+		return name+(version!=null?" "+version:"")+" ["+gameId+"] ("+engineName+")";
+	}
+}
@@ -1,10 +1,19 @@
 package github.lightningcreations.lcjei.service;
 
+import java.util.List;
 import java.util.Optional;
-import java.util.ServiceLoader;
+import java.util.ServiceConfigurationError;
+import java.util.function.Supplier;
+
+import github.lightningcreations.lcjei.metrics.Metrics;
 
 /**
- * Class for looking up the provider for a particular engine type
+ * Class for looking up the provider for a particular engine type.<br/>
+ * The providers visible from a ClassLoader are discovered once, and cached until {@link #refresh(ClassLoader)} or {@link #invalidate(ClassLoader)} is called for that ClassLoader.
+ *  Lookups against a cached ClassLoader are thread-safe and do not lock.<br/>
+ * Methods which do not accept a ClassLoader use the context ClassLoader of the current Thread, as {@link java.util.ServiceLoader#load(Class)} does.<br/>
+ * While {@link Metrics#isEnabled()} is true, the duration of each lookup is recorded in the histograms lookup.byName and lookup.byClass, 
+ *  and lookups which find no provider are counted in lookup.misses.
  * @author chorm
  *
  */
@@ -13,18 +22,28 @@ public class EngineLookup {
 	private EngineLookup() {
 	}
 	
+	private static <T> Optional<T> lookup(String histogram,String key,Supplier<T> lookup){
+		if(!Metrics.isEnabled())
+			return Optional.ofNullable(lookup.get());
+		return Optional.ofNullable(Metrics.measureLookup(histogram, key, lookup));
+	}
+	
 	/**
 	 * Lookups the JEI Provider for a particular engine name.
 	 *  Returns an optional which contains an instance of JEIServiceProvider for which {@link JEIServiceProvider#getEngineName()} returns the same string as name (case-sensitive),
 	 *   if such a provider can be found. Otherwise returns an empty optional.
 	 */
 	public static Optional<JEIServiceProvider<?>> getByEngineName(String name){
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		ServiceLoader<JEIServiceProvider<?>> loader = ServiceLoader.load((Class<JEIServiceProvider<?>>)(Class<? extends JEIServiceProvider>)JEIServiceProvider.class);
-		for(JEIServiceProvider<?> provider:loader)
-			if(provider.getEngineName().equals(name))
-				return Optional.of(provider);
-		return Optional.empty();
+		return getByEngineName(name,Thread.currentThread().getContextClassLoader());
+	}
+	
+	/**
+	 * Lookups the JEI Provider for a particular engine name, amongst the providers visible from loader.<br/>
+	 * If loader is null, the System ClassLoader is used.
+	 * @see #getByEngineName(String)
+	 */
+	public static Optional<JEIServiceProvider<?>> getByEngineName(String name,ClassLoader loader){
+		return lookup("lookup.byName",name,()->ProviderRegistry.getByEngineName(name, loader));
 	}
 	
 	
@@ -34,14 +53,54 @@ public class EngineLookup {
 	 *  if such a provider can be found. Otherwise returns an empty Optional.
 	 * @param <GameType> The type of Games used by the engine
 	 */
-	@SuppressWarnings("unchecked")
 	public static <GameType> Optional<JEIServiceProvider<GameType>> getByEngineClass(Class<GameType> type) {
-		@SuppressWarnings("rawtypes")
-		ServiceLoader<JEIServiceProvider<?>> loader = ServiceLoader.load((Class<JEIServiceProvider<?>>)(Class<? extends JEIServiceProvider>)JEIServiceProvider.class);
-		for(JEIServiceProvider<?> provider:loader)
-			if(provider.getGameClass().equals(type))
-				return Optional.of((JEIServiceProvider<GameType>)provider);
-		return Optional.empty();
+		return getByEngineClass(type,Thread.currentThread().getContextClassLoader());
+	}
+	
+	/**
+	 * Looks up the Provider for a particular engine that uses games of the type GameType, amongst the providers visible from loader.<br/>
+	 * If loader is null, the System ClassLoader is used.
+	 * @param <GameType> The type of Games used by the engine
+	 * @see #getByEngineClass(Class)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <GameType> Optional<JEIServiceProvider<GameType>> getByEngineClass(Class<GameType> type,ClassLoader loader) {
+		return lookup("lookup.byClass",type.getName(),()->(JEIServiceProvider<GameType>)ProviderRegistry.getByGameClass(type, loader));
+	}
+	
+	/**
+	 * Returns the errors of the providers visible from loader which could not be instantiated.
+	 *  Such providers are skipped by lookups, rather than causing them to fail.<br/>
+	 * This instantiates every provider visible from loader which has not yet been instantiated.
+	 * If loader is null, the System ClassLoader is used.
+	 */
+	public static List<ServiceConfigurationError> getProviderFailures(ClassLoader loader){
+		return ProviderRegistry.getFailures(loader);
+	}
+	
+	/**
+	 * Rediscovers the providers visible from loader, replacing any cached result.
+	 *  This should be called after plugins are added to loader (or one of its parents) at runtime.<br/>
+	 * Lookups which are in progress on other threads may observe either the previous or the new set of providers.<br/>
+	 * If loader is null, the System ClassLoader is used.
+	 */
+	public static void refresh(ClassLoader loader) {
+		ProviderRegistry.refresh(loader);
+	}
+	
+	/**
+	 * Discards the cached providers for loader. The providers are rediscovered by the next lookup against loader.<br/>
+	 * If loader is null, the System ClassLoader is used.
+	 */
+	public static void invalidate(ClassLoader loader) {
+		ProviderRegistry.invalidate(loader);
+	}
+	
+	/**
+	 * Discards the cached providers for every ClassLoader.
+	 */
+	public static void invalidateAll() {
+		ProviderRegistry.invalidateAll();
 	}
 
 }
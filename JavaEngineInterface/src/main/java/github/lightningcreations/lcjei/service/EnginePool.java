@@ -0,0 +1,432 @@
+package github.lightningcreations.lcjei.service;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.lifecycle.EngineState;
+import github.lightningcreations.lcjei.lifecycle.GuardedEngineInterface;
+
+/**
+ * A pool of Engines of a single {@link JEIServiceProvider}, which reuses Engines that were destroyed instead of creating new ones.<br/>
+ * As specified by {@link IEngineInterface#destroy()}, a destroyed Engine returns to an uninitialized state and can be reused. 
+ *  Engines returned to the pool are kept, up to a maximum number of idle Engines, and handed out again by later acquisitions.
+ *  Additionally, the pool can keep a number of pre-warmed Engines, which are created and initialized in the background with {@link IEngineInterface#initialize()}, 
+ *  so that they can be handed out without paying for either.<br/>
+ * 
+ * New Engines are created with {@link JEIServiceProvider#newEngine(Object)}, and a game obtained from a game factory. 
+ *  A reused Engine keeps the game it was created with, so every game created by the factory should be interchangeable, such as fresh instances of the same game.<br/>
+ * 
+ * Engines are handed out wrapped in a {@link GuardedEngineInterface}, so that the pool knows the state of each Engine when it is released.
+ *  Every acquired Engine must be returned with {@link #release(GuardedEngineInterface)}, whether or not it was destroyed. 
+ *  The number of Engines handed out at once is bounded, and acquisitions wait, for at most a given time, for Engines to be released.<br/>
+ * This class is thread-safe. Acquiring an idle or pre-warmed Engine does not lock.
+ * @author chorm
+ *
+ * @param <GameType> The type of games used by the provider
+ */
+public final class EnginePool<GameType> implements AutoCloseable {
+	
+	private static final class WarmerHolder {
+		static final Executor DEFAULT = createDefault();
+		
+		private static Executor createDefault() {
+			AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(0,Integer.MAX_VALUE,30,TimeUnit.SECONDS,new SynchronousQueue<>(),r->{
+				Thread t = new Thread(r,"lcjei-engine-warmer-"+count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+			return pool;
+		}
+	}
+	
+	private final JEIServiceProvider<GameType> provider;
+	private final Supplier<? extends GameType> games;
+	private final int maximumActive;
+	private final int maximumIdle;
+	private final int prewarmed;
+	private final Executor warmer;
+	private final Semaphore permits;
+	private final ConcurrentLinkedDeque<GuardedEngineInterface<GameType>> idle = new ConcurrentLinkedDeque<>();
+	private final ConcurrentLinkedDeque<GuardedEngineInterface<GameType>> warm = new ConcurrentLinkedDeque<>();
+	private final Set<GuardedEngineInterface<GameType>> active = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final AtomicInteger warmCount = new AtomicInteger();
+	private volatile boolean closed;
+	
+	private final LongAdder acquisitions = new LongAdder();
+	private final LongAdder warmHits = new LongAdder();
+	private final LongAdder idleHits = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder creationNanos = new LongAdder();
+	private final LongAdder initializations = new LongAdder();
+	private final LongAdder initializationNanos = new LongAdder();
+	private final LongAdder discarded = new LongAdder();
+	private final LongAdder warmFailures = new LongAdder();
+	
+	/**
+	 * Constructs a new EnginePool for provider, which does not pre-warm Engines.
+	 * @param provider The provider of the Engines.
+	 * @param games The factory of the games of new Engines.
+	 * @param maximumActive The maximum number of Engines handed out at once.
+	 * @param maximumIdle The maximum number of destroyed Engines kept for reuse.
+	 * @throws NullPointerException if provider or games is null.
+	 * @throws IllegalArgumentException if maximumActive is not positive, or maximumIdle is negative.
+	 */
+	public EnginePool(JEIServiceProvider<GameType> provider,Supplier<? extends GameType> games,int maximumActive,int maximumIdle) {
+		this(provider,games,maximumActive,maximumIdle,0,WarmerHolder.DEFAULT);
+	}
+	
+	/**
+	 * Constructs a new EnginePool for provider, which keeps prewarmed initialized Engines ready, warming them in the background on a shared pool of daemon threads.
+	 * @param provider The provider of the Engines.
+	 * @param games The factory of the games of new Engines.
+	 * @param maximumActive The maximum number of Engines handed out at once.
+	 * @param maximumIdle The maximum number of destroyed Engines kept for reuse.
+	 * @param prewarmed The number of initialized Engines kept ready.
+	 * @throws NullPointerException if provider or games is null.
+	 * @throws IllegalArgumentException if maximumActive is not positive, or maximumIdle or prewarmed is negative.
+	 */
+	public EnginePool(JEIServiceProvider<GameType> provider,Supplier<? extends GameType> games,int maximumActive,int maximumIdle,int prewarmed) {
+		this(provider,games,maximumActive,maximumIdle,prewarmed,WarmerHolder.DEFAULT);
+	}
+	
+	/**
+	 * Constructs a new EnginePool for provider, which keeps prewarmed initialized Engines ready, warming them in the background with warmer.
+	 * @param provider The provider of the Engines.
+	 * @param games The factory of the games of new Engines.
+	 * @param maximumActive The maximum number of Engines handed out at once.
+	 * @param maximumIdle The maximum number of destroyed Engines kept for reuse.
+	 * @param prewarmed The number of initialized Engines kept ready.
+	 * @param warmer The Executor which creates and initializes pre-warmed Engines.
+	 * @throws NullPointerException if provider, games, or warmer is null.
+	 * @throws IllegalArgumentException if maximumActive is not positive, or maximumIdle or prewarmed is negative.
+	 */
+	public EnginePool(JEIServiceProvider<GameType> provider,Supplier<? extends GameType> games,int maximumActive,int maximumIdle,int prewarmed,Executor warmer) {
+		this.provider = Objects.requireNonNull(provider);
+		this.games = Objects.requireNonNull(games);
+		this.warmer = Objects.requireNonNull(warmer);
+		if(maximumActive<=0)
+			throw new IllegalArgumentException("Maximum active engines must be positive");
+		if(maximumIdle<0||prewarmed<0)
+			throw new IllegalArgumentException("Negative pool size");
+		this.maximumActive = maximumActive;
+		this.maximumIdle = maximumIdle;
+		this.prewarmed = prewarmed;
+		this.permits = new Semaphore(maximumActive);
+		refill();
+	}
+	
+	private GuardedEngineInterface<GameType> create(){
+		long start = System.nanoTime();
+		GuardedEngineInterface<GameType> engine = new GuardedEngineInterface<>(provider.newEngine(games.get()));
+		creationNanos.add(System.nanoTime()-start);
+		created.increment();
+		return engine;
+	}
+	
+	private GuardedEngineInterface<GameType> pollIdle(){
+		GuardedEngineInterface<GameType> engine = idle.pollFirst();
+		if(engine!=null)
+			idleCount.decrementAndGet();
+		return engine;
+	}
+	
+	private void initialize(GuardedEngineInterface<GameType> engine) {
+		long start = System.nanoTime();
+		engine.initialize();
+		initializationNanos.add(System.nanoTime()-start);
+		initializations.increment();
+	}
+	
+	private static void destroyQuietly(GuardedEngineInterface<?> engine) {
+		try {
+			if(engine.getState().isInitialized())
+				engine.destroy();
+		}catch(RuntimeException e) {
+			// The engine is being discarded regardless
+		}
+	}
+	
+	/**
+	 * Starts warming Engines until there are prewarmed Engines ready or being warmed. 
+	 *  warmCount counts both, so that concurrent refills never overshoot.
+	 */
+	private void refill() {
+		int count;
+		while(!closed&&(count = warmCount.get())<prewarmed) {
+			if(!warmCount.compareAndSet(count, count+1))
+				continue;
+			try {
+				warmer.execute(this::warmOne);
+			}catch(RuntimeException e) {
+				warmCount.decrementAndGet();
+				warmFailures.increment();
+				return;
+			}
+		}
+	}
+	
+	private void warmOne() {
+		GuardedEngineInterface<GameType> engine = null;
+		try {
+			engine = pollIdle();
+			if(engine==null)
+				engine = create();
+			initialize(engine);
+		}catch(RuntimeException|Error e) {
+			warmCount.decrementAndGet();
+			warmFailures.increment();
+			if(engine!=null)
+				discard(engine);
+			return;
+		}
+		warm.offerLast(engine);
+		// A close which raced with warming may have missed this engine
+		if(closed&&warm.remove(engine)) {
+			warmCount.decrementAndGet();
+			discard(engine);
+		}
+	}
+	
+	private void discard(GuardedEngineInterface<GameType> engine) {
+		destroyQuietly(engine);
+		discarded.increment();
+	}
+	
+	private Optional<GuardedEngineInterface<GameType>> acquire(long timeout,TimeUnit unit,boolean initialized) throws InterruptedException {
+		if(closed)
+			throw new IllegalStateException("EnginePool is closed");
+		acquisitions.increment();
+		if(!permits.tryAcquire(timeout, unit)) {
+			timeouts.increment();
+			return Optional.empty();
+		}
+		GuardedEngineInterface<GameType> engine;
+		try {
+			engine = initialized?warm.pollFirst():null;
+			if(engine!=null) {
+				warmCount.decrementAndGet();
+				warmHits.increment();
+				refill();
+			}else if((engine = pollIdle())!=null)
+				idleHits.increment();
+			else
+				engine = create();
+			if(initialized&&!engine.getState().isInitialized()) {
+				try {
+					initialize(engine);
+				}catch(RuntimeException|Error e) {
+					discard(engine);
+					throw e;
+				}
+			}
+		}catch(RuntimeException|Error e) {
+			permits.release();
+			throw e;
+		}
+		active.add(engine);
+		return Optional.of(engine);
+	}
+	
+	/**
+	 * Acquires an uninitialized Engine from the pool, waiting at most timeout for one to be released if the maximum number of Engines are already handed out.
+	 *  A destroyed Engine is reused if there is one, otherwise a new Engine is created.<br/>
+	 * Returns an empty optional if no Engine could be acquired in time.
+	 * @throws InterruptedException if the current thread is interrupted while waiting.
+	 * @throws IllegalStateException if the pool is closed.
+	 */
+	public Optional<GuardedEngineInterface<GameType>> acquire(long timeout,TimeUnit unit) throws InterruptedException {
+		return acquire(timeout,unit,false);
+	}
+	
+	/**
+	 * Acquires an initialized Engine from the pool, as though by {@link #acquire(long, TimeUnit)} followed by {@link IEngineInterface#initialize()}.
+	 *  A pre-warmed Engine is handed out if one is ready, otherwise the Engine is initialized on the current thread.<br/>
+	 * Returns an empty optional if no Engine could be acquired in time.
+	 * @throws InterruptedException if the current thread is interrupted while waiting.
+	 * @throws IllegalStateException if the pool is closed.
+	 */
+	public Optional<GuardedEngineInterface<GameType>> acquireInitialized(long timeout,TimeUnit unit) throws InterruptedException {
+		return acquire(timeout,unit,true);
+	}
+	
+	/**
+	 * Returns engine, which was acquired from this pool, to the pool. If engine was not destroyed, it is destroyed first.<br/>
+	 * Engine is kept for reuse if it is uninitialized afterwards, and fewer than the maximum number of idle Engines are kept. Otherwise it is discarded.
+	 *  Engines which are released while one of their lifecycle methods is in progress, or which fail to be destroyed, are discarded.
+	 *  engine must not be used after it is released.
+	 * @throws IllegalArgumentException if engine was not acquired from this pool, or was already released.
+	 */
+	public void release(GuardedEngineInterface<GameType> engine) {
+		if(!active.remove(engine))
+			throw new IllegalArgumentException("Engine was not acquired from this pool, or was already released");
+		try {
+			EngineState state = engine.getState();
+			if(state.isTransitional()) {
+				discarded.increment();
+				return;
+			}
+			if(state!=EngineState.UNINITIALIZED) {
+				try {
+					engine.destroy();
+				}catch(RuntimeException e) {
+					discarded.increment();
+					return;
+				}
+			}
+			if(closed||engine.getState()!=EngineState.UNINITIALIZED||!reserveIdle()) {
+				discarded.increment();
+				return;
+			}
+			idle.offerFirst(engine);
+		}finally {
+			permits.release();
+			refill();
+		}
+	}
+	
+	private boolean reserveIdle() {
+		int count;
+		do {
+			count = idleCount.get();
+			if(count>=maximumIdle)
+				return false;
+		}while(!idleCount.compareAndSet(count, count+1));
+		return true;
+	}
+	
+	/**
+	 * Closes the pool. Pre-warmed Engines are destroyed, and idle Engines are discarded. 
+	 *  Engines which are still handed out are destroyed and discarded when they are released.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		GuardedEngineInterface<GameType> engine;
+		while((engine = warm.pollFirst())!=null) {
+			warmCount.decrementAndGet();
+			discard(engine);
+		}
+		while((engine = pollIdle())!=null)
+			discarded.increment();
+	}
+	
+	/**
+	 * Returns the provider of the Engines of this pool.
+	 */
+	public JEIServiceProvider<GameType> getProvider(){
+		return provider;
+	}
+	
+	/**
+	 * Returns the maximum number of Engines handed out at once.
+	 */
+	public int getMaximumActive() {
+		return maximumActive;
+	}
+	
+	/**
+	 * Returns the number of Engines currently handed out.
+	 */
+	public int getActiveCount() {
+		return active.size();
+	}
+	
+	/**
+	 * Returns the number of destroyed Engines currently kept for reuse.
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+	
+	/**
+	 * Returns the number of pre-warmed Engines which are ready to be handed out.
+	 */
+	public int getWarmCount() {
+		return warm.size();
+	}
+	
+	/**
+	 * Returns the number of calls to acquire, including those which timed out.
+	 */
+	public long getAcquireCount() {
+		return acquisitions.sum();
+	}
+	
+	/**
+	 * Returns the number of acquisitions which were answered with a pre-warmed Engine.
+	 */
+	public long getWarmHitCount() {
+		return warmHits.sum();
+	}
+	
+	/**
+	 * Returns the number of acquisitions which were answered by reusing a destroyed Engine.
+	 */
+	public long getIdleHitCount() {
+		return idleHits.sum();
+	}
+	
+	/**
+	 * Returns the number of acquisitions which timed out.
+	 */
+	public long getTimeoutCount() {
+		return timeouts.sum();
+	}
+	
+	/**
+	 * Returns the number of Engines created by the provider, including pre-warmed Engines.
+	 */
+	public long getCreatedCount() {
+		return created.sum();
+	}
+	
+	/**
+	 * Returns the total time spent in {@link JEIServiceProvider#newEngine(Object)}, including obtaining the game, in nanoseconds.
+	 */
+	public long getTotalCreationNanos() {
+		return creationNanos.sum();
+	}
+	
+	/**
+	 * Returns the number of Engines initialized by the pool, including pre-warmed Engines.
+	 */
+	public long getInitializedCount() {
+		return initializations.sum();
+	}
+	
+	/**
+	 * Returns the total time spent initializing Engines, in nanoseconds.
+	 */
+	public long getTotalInitializationNanos() {
+		return initializationNanos.sum();
+	}
+	
+	/**
+	 * Returns the number of Engines which were discarded rather than kept for reuse.
+	 */
+	public long getDiscardedCount() {
+		return discarded.sum();
+	}
+	
+	/**
+	 * Returns the number of pre-warmed Engines which could not be created or initialized.
+	 */
+	public long getWarmFailureCount() {
+		return warmFailures.sum();
+	}
+}
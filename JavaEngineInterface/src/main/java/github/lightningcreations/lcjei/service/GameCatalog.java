@@ -0,0 +1,399 @@
+package github.lightningcreations.lcjei.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.UUID;
+
+import github.lightningcreations.lcjei.IGameInfo;
+
+/**
+ * A persistent catalog of the games installed for each provider visible from a ClassLoader, as given by {@link JEIServiceProvider#getInstalledGames()}, 
+ *  which resolves games by Unique Id or name without instantiating any engine.<br/>
+ * 
+ * Providers are cataloged by source: the jar file (or directory) which contains the META-INF/services file that lists them. 
+ *  Each source is recorded with its size and modification time. For a directory, these are the total size, and the latest modification time, of its services file and the class files of the providers it lists. 
+ *  When the catalog is opened or refreshed, only the providers of sources which are new, or whose size or modification time changed, are instantiated and asked for their games. 
+ *  The entries of unchanged sources are reused as-is, and the entries of sources which are no longer visible are dropped. 
+ *  Sources which are not files, such as remote jars, and directories which list providers whose class files they do not contain, are rescanned every time.<br/>
+ * 
+ * Providers which cannot be instantiated, or which throw while listing their games, are skipped, as are games which cannot be cataloged, such as those without a Unique Id or name.
+ *  Their errors are available from {@link #getFailures()}. A source with such a provider or game is cataloged without it, and is rescanned by every refresh until it scans cleanly.<br/>
+ * 
+ * The catalog is saved whenever a refresh changes it. It is saved in a compact binary format, which consists of the magic "LCJC", a version (1), and the number of sources, 
+ *  followed by each source as its location, size, modification time, and number of entries, followed by each entry as its Unique Id, name, version, game class, Engine Interface class, 
+ *  engine name, and provider class. Strings are in modified UTF-8, and those which may be null are preceded by a boolean. All numbers are big-endian. 
+ *  A catalog file which cannot be read is ignored, and rebuilt.<br/>
+ * This class is thread-safe. Lookups do not lock.
+ * @author chorm
+ *
+ */
+public final class GameCatalog {
+	private static final int MAGIC = 0x4C434A43; // LCJC
+	private static final int VERSION = 1;
+	/**
+	 * The size of a source which cannot be stamped, so that it is always rescanned.
+	 */
+	private static final long UNSTAMPED = -1;
+	
+	/**
+	 * A jar file or directory which provides engines, and the entries of its providers.
+	 */
+	private static final class Source {
+		final String location;
+		final long size;
+		final long modified;
+		final List<CatalogEntry> entries;
+		
+		Source(String location,long size,long modified,List<CatalogEntry> entries){
+			this.location = location;
+			this.size = size;
+			this.modified = modified;
+			this.entries = entries;
+		}
+		
+		boolean isCurrent(long size,long modified) {
+			return size!=UNSTAMPED&&this.size==size&&this.modified==modified;
+		}
+	}
+	
+	/**
+	 * The sources of the catalog, and the indexes over their entries, which are only published once fully built.
+	 */
+	private static final class Snapshot {
+		final Map<String,Source> sources;
+		final Map<UUID,CatalogEntry> byId = new HashMap<>();
+		final Map<String,List<CatalogEntry>> byName = new HashMap<>();
+		final List<CatalogEntry> entries = new ArrayList<>();
+		
+		Snapshot(Map<String,Source> sources){
+			this.sources = sources;
+			for(Source source:sources.values())
+				for(CatalogEntry entry:source.entries) {
+					if(byId.putIfAbsent(entry.getGameId(), entry)!=null)
+						continue;
+					byName.computeIfAbsent(entry.getName(), k->new ArrayList<>(1)).add(entry);
+					entries.add(entry);
+				}
+		}
+	}
+	
+	private final Path file;
+	private final ClassLoader loader;
+	private volatile Snapshot snapshot;
+	private volatile int rescanned;
+	private volatile List<ServiceConfigurationError> failures = Collections.emptyList();
+	
+	private GameCatalog(Path file,ClassLoader loader) {
+		this.file = file;
+		this.loader = loader;
+	}
+	
+	/**
+	 * Opens the catalog saved in file for the providers visible from loader, and refreshes it as though by {@link #refresh()}. 
+	 *  If file does not exist, or is not a valid catalog, every provider is scanned, and a new catalog is saved to file.<br/>
+	 * If loader is null, the System ClassLoader is used.
+	 * @throws UncheckedIOException if an I/O error occurs reading the providers, or saving the catalog.
+	 */
+	public static GameCatalog open(Path file,ClassLoader loader) {
+		GameCatalog catalog = new GameCatalog(file,loader!=null?loader:ClassLoader.getSystemClassLoader());
+		catalog.snapshot = new Snapshot(load(file));
+		catalog.refresh();
+		return catalog;
+	}
+	
+	/**
+	 * Rescans the providers of each source which is new or has changed since it was last scanned, drops the entries of sources which are no longer visible, 
+	 *  and saves the catalog if it changed.<br/>
+	 * Lookups which are in progress on other threads may observe either the previous or the refreshed catalog.
+	 * @throws UncheckedIOException if an I/O error occurs reading the providers, or saving the catalog.
+	 */
+	public synchronized void refresh() {
+		Map<String,Source> previous = snapshot.sources;
+		Map<String,Source> sources = new LinkedHashMap<>();
+		List<ServiceConfigurationError> failures = new ArrayList<>();
+		int rescanned = 0;
+		try {
+			Enumeration<URL> urls = loader.getResources(ProviderRegistry.SERVICES_RESOURCE);
+			while(urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				String location = locationOf(url);
+				if(sources.containsKey(location))
+					continue;
+				long[] stamp = stamp(url,location);
+				Source source = previous.get(location);
+				if(source==null||!source.isCurrent(stamp[0], stamp[1])) {
+					int failed = failures.size();
+					List<CatalogEntry> entries = scan(url,failures);
+					// A source which did not scan cleanly is rescanned by the next refresh
+					source = failures.size()==failed?new Source(location,stamp[0],stamp[1],entries):new Source(location,UNSTAMPED,0,entries);
+					rescanned++;
+				}
+				sources.put(location, source);
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.rescanned = rescanned;
+		this.failures = Collections.unmodifiableList(failures);
+		if(rescanned==0&&sources.keySet().equals(previous.keySet()))
+			return;
+		snapshot = new Snapshot(sources);
+		save(file,sources);
+	}
+	
+	/**
+	 * Returns the number of sources which were scanned by the last refresh, because they were new or had changed.
+	 */
+	public int getRescannedSourceCount() {
+		return rescanned;
+	}
+	
+	/**
+	 * Returns the errors of the providers which could not be instantiated or could not list their games, and of the games which could not be cataloged, by the last refresh.
+	 *  Those games are not cataloged.
+	 */
+	public List<ServiceConfigurationError> getFailures(){
+		return failures;
+	}
+	
+	/**
+	 * Returns the entry for the game with the given Unique Id, if it is cataloged. 
+	 *  If several providers list games with the same Id, the first one found by the ClassLoader is returned.
+	 */
+	public Optional<CatalogEntry> getById(UUID gameId){
+		return Optional.ofNullable(snapshot.byId.get(gameId));
+	}
+	
+	/**
+	 * Returns the entries for each game with the given name (case-sensitive), such as each version of a game. 
+	 *  Returns an empty list if no such game is cataloged.
+	 */
+	public List<CatalogEntry> getByName(String name){
+		List<CatalogEntry> entries = snapshot.byName.get(name);
+		return entries!=null?Collections.unmodifiableList(entries):Collections.emptyList();
+	}
+	
+	/**
+	 * Returns every entry in the catalog.
+	 */
+	public Collection<CatalogEntry> getEntries(){
+		return Collections.unmodifiableList(snapshot.entries);
+	}
+	
+	/**
+	 * Returns the location of the source which contains the services file at url. For a jar, this is the URL of the jar file.
+	 */
+	private static String locationOf(URL url) {
+		if(url.getProtocol().equals("jar")) {
+			String path = url.getPath();
+			int separator = path.indexOf("!/");
+			if(separator>=0)
+				return path.substring(0, separator);
+		}
+		return url.toString();
+	}
+	
+	/**
+	 * Returns the size and modification time of the source at location, which contains the services file at url.
+	 *  For a directory, these are the total size and latest modification time of the services file, and of the class files of the providers it lists.
+	 */
+	private static long[] stamp(URL url,String location) {
+		try {
+			if(url.getProtocol().equals("file"))
+				return stampDirectory(Paths.get(url.toURI()));
+			else if(!location.startsWith("file:"))
+				return new long[] {UNSTAMPED,0};
+			BasicFileAttributes attributes = Files.readAttributes(Paths.get(new URI(location)), BasicFileAttributes.class);
+			return new long[] {attributes.size(),attributes.lastModifiedTime().toMillis()};
+		}catch(IOException|URISyntaxException|IllegalArgumentException e) {
+			return new long[] {UNSTAMPED,0};
+		}
+	}
+	
+	/**
+	 * Stamps the directory which contains the services file at services, by the services file and the class files of the providers it lists.
+	 * @throws IOException if any of the files cannot be stamped, such as when a provider is not in the directory.
+	 */
+	private static long[] stampDirectory(Path services) throws IOException {
+		// META-INF/services/<service>
+		Path root = services.getParent().getParent().getParent();
+		BasicFileAttributes attributes = Files.readAttributes(services, BasicFileAttributes.class);
+		long size = attributes.size();
+		long modified = attributes.lastModifiedTime().toMillis();
+		for(String line:Files.readAllLines(services, StandardCharsets.UTF_8)) {
+			String[] fields = ProviderRegistry.parseServicesLine(line);
+			if(fields==null)
+				continue;
+			attributes = Files.readAttributes(root.resolve(fields[0].replace('.', '/')+".class"), BasicFileAttributes.class);
+			size += attributes.size();
+			modified = Math.max(modified, attributes.lastModifiedTime().toMillis());
+		}
+		return new long[] {size,modified};
+	}
+	
+	private static ServiceConfigurationError failure(String providerClass,String message,RuntimeException cause) {
+		return new ServiceConfigurationError(JEIServiceProvider.class.getName()+": Provider "+providerClass+" "+message,cause);
+	}
+	
+	private static String nameOf(Class<?> cl) {
+		return cl!=null?cl.getName():null;
+	}
+	
+	/**
+	 * Instantiates each provider listed by the services file at url, and catalogs their games. 
+	 *  Providers which cannot be instantiated or which throw, and games which cannot be cataloged, are skipped, and their errors are added to failures.
+	 */
+	private List<CatalogEntry> scan(URL url,List<ServiceConfigurationError> failures) throws IOException {
+		List<CatalogEntry> entries = new ArrayList<>();
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(),StandardCharsets.UTF_8))){
+			String line;
+			while((line = reader.readLine())!=null) {
+				String[] fields = ProviderRegistry.parseServicesLine(line);
+				if(fields==null)
+					continue;
+				JEIServiceProvider<?> provider;
+				try {
+					provider = ProviderRegistry.instantiate(fields[0], loader);
+				}catch(ServiceConfigurationError e) {
+					failures.add(e);
+					continue;
+				}
+				Collection<? extends IGameInfo<?>> games;
+				try {
+					games = provider.getInstalledGames();
+				}catch(UnsupportedOperationException e) {
+					continue;
+				}catch(RuntimeException e) {
+					failures.add(failure(fields[0],"could not list its games",e));
+					continue;
+				}
+				try {
+					String engineName = provider.getEngineName();
+					for(IGameInfo<?> game:games)
+						try {
+							entries.add(new CatalogEntry(game.getGameId(),game.getName(),game.getVersion(),nameOf(game.getGameClass()),
+									nameOf(game.getEngineInterfaceClass()),engineName,fields[0]));
+						}catch(RuntimeException e) {
+							failures.add(failure(fields[0],"listed a game which could not be cataloged",e));
+						}
+				}catch(RuntimeException e) {
+					failures.add(failure(fields[0],"could not list its games",e));
+				}
+			}
+		}
+		return entries;
+	}
+	
+	private static void writeNullable(DataOutputStream out,String value) throws IOException {
+		out.writeBoolean(value!=null);
+		if(value!=null)
+			out.writeUTF(value);
+	}
+	
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean()?in.readUTF():null;
+	}
+	
+	/**
+	 * Saves sources to file. The catalog is written to a temporary file in the same directory, which then replaces file,
+	 *  so that readers never see a partially written catalog.
+	 */
+	private static void save(Path file,Map<String,Source> sources) {
+		Path dir = file.toAbsolutePath().getParent();
+		try {
+			Files.createDirectories(dir);
+			Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+			try {
+				try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))){
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(sources.size());
+					for(Source source:sources.values()) {
+						out.writeUTF(source.location);
+						out.writeLong(source.size);
+						out.writeLong(source.modified);
+						out.writeInt(source.entries.size());
+						for(CatalogEntry entry:source.entries) {
+							out.writeLong(entry.getGameId().getMostSignificantBits());
+							out.writeLong(entry.getGameId().getLeastSignificantBits());
+							out.writeUTF(entry.getName());
+							writeNullable(out,entry.getVersion());
+							writeNullable(out,entry.getGameClassName());
+							writeNullable(out,entry.getEngineInterfaceClassName());
+							out.writeUTF(entry.getEngineName());
+							out.writeUTF(entry.getProviderClassName());
+						}
+					}
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}finally {
+				Files.deleteIfExists(tmp);
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Loads the sources saved in file, or returns no sources if file does not exist or is not a valid catalog.
+	 */
+	private static Map<String,Source> load(Path file) {
+		Map<String,Source> sources = new LinkedHashMap<>();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+			if(in.readInt()!=MAGIC||in.readInt()!=VERSION)
+				return Collections.emptyMap();
+			int count = in.readInt();
+			if(count<0)
+				return Collections.emptyMap();
+			for(int i = 0;i<count;i++) {
+				String location = in.readUTF();
+				long size = in.readLong();
+				long modified = in.readLong();
+				int entryCount = in.readInt();
+				if(entryCount<0)
+					return Collections.emptyMap();
+				List<CatalogEntry> entries = new ArrayList<>(Math.min(entryCount, 1024));
+				for(int j = 0;j<entryCount;j++) {
+					UUID gameId = new UUID(in.readLong(),in.readLong());
+					String name = in.readUTF();
+					String version = readNullable(in);
+					String gameClass = readNullable(in);
+					String engineInterfaceClass = readNullable(in);
+					String engineName = in.readUTF();
+					String providerClass = in.readUTF();
+					entries.add(new CatalogEntry(gameId,name,version,gameClass,engineInterfaceClass,engineName,providerClass));
+				}
+				sources.put(location, new Source(location,size,modified,entries));
+			}
+		}catch(IOException e) {
+			// A missing, truncated, or corrupt catalog is rebuilt
+			return Collections.emptyMap();
+		}
+		return sources;
+	}
+}
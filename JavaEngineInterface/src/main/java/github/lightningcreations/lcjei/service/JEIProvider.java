@@ -0,0 +1,33 @@
+package github.lightningcreations.lcjei.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a class as a {@link JEIServiceProvider}, so it can be indexed at build time.<br/>
+ * When the annotated class is compiled with this library on the annotation processor path, {@link JEIProviderProcessor} records
+ *  the engine name, game class, and provider class in {@value JEIProviderProcessor#INDEX_RESOURCE}.
+ *  {@link EngineLookup} reads that index, and only instantiates the provider that matches a lookup.<br/>
+ * The annotated class must be public, not abstract, implement {@link JEIServiceProvider}, and have a public no-args constructor.
+ *  The values of this annotation MUST be the values returned by {@link JEIServiceProvider#getEngineName()} and {@link JEIServiceProvider#getGameClass()}.
+ *  If they are not, the provider is still found, but only after every provider for that ClassLoader has been instantiated.<br/>
+ * An indexed provider does not also need to be listed in META-INF/services, though it is recommended for compatibility with older versions of this library.
+ * @author chorm
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JEIProvider {
+	/**
+	 * The name of the Engine, as returned by {@link JEIServiceProvider#getEngineName()}.
+	 */
+	String engineName();
+	/**
+	 * The type of games used by the Engine, as returned by {@link JEIServiceProvider#getGameClass()}.
+	 */
+	Class<?> gameClass();
+}
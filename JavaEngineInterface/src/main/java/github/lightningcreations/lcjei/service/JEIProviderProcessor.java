@@ -0,0 +1,171 @@
+package github.lightningcreations.lcjei.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation Processor which writes the provider index for classes annotated with {@link JEIProvider}.<br/>
+ * The index is a UTF-8 text resource named {@value #INDEX_RESOURCE}. Each line has the form
+ *  <code>engineName&lt;TAB&gt;gameClass&lt;TAB&gt;providerClass</code>, where both classes are binary names.
+ *  Blank lines and anything following a <code>#</code> are ignored.<br/>
+ * When only part of a project is recompiled, the entries of an existing index are kept as long as their provider class still exists.
+ * @author chorm
+ *
+ */
+public final class JEIProviderProcessor extends AbstractProcessor {
+	
+	/**
+	 * The name of the resource which contains the provider index.
+	 */
+	public static final String INDEX_RESOURCE = "META-INF/lcjei/providers.index";
+	
+	private final Map<String,String> entries = new TreeMap<>();
+	
+	/**
+	 * Constructs a new JEIProviderProcessor. This is invoked by the compiler.
+	 */
+	public JEIProviderProcessor() {
+	}
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(JEIProvider.class.getCanonicalName());
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if(roundEnv.processingOver()) {
+			if(!entries.isEmpty())
+				writeIndex();
+			return false;
+		}
+		for(Element e:roundEnv.getElementsAnnotatedWith(JEIProvider.class))
+			if(e.getKind()!=ElementKind.CLASS)
+				error(e,"@JEIProvider may only be applied to classes");
+			else
+				record((TypeElement)e);
+		return true;
+	}
+	
+	private void error(Element e,String msg) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e);
+	}
+	
+	private void record(TypeElement type) {
+		if(!type.getModifiers().contains(Modifier.PUBLIC)||type.getModifiers().contains(Modifier.ABSTRACT)) {
+			error(type,"A @JEIProvider class must be public and not abstract");
+			return;
+		}
+		if(type.getNestingKind().isNested()&&!type.getModifiers().contains(Modifier.STATIC)) {
+			error(type,"A @JEIProvider class must not be an inner class");
+			return;
+		}
+		TypeMirror providerType = processingEnv.getTypeUtils().erasure(
+				processingEnv.getElementUtils().getTypeElement(JEIServiceProvider.class.getCanonicalName()).asType());
+		if(!processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), providerType)) {
+			error(type,"A @JEIProvider class must implement JEIServiceProvider");
+			return;
+		}
+		boolean hasConstructor = false;
+		for(ExecutableElement ctor:ElementFilter.constructorsIn(type.getEnclosedElements()))
+			if(ctor.getParameters().isEmpty()&&ctor.getModifiers().contains(Modifier.PUBLIC))
+				hasConstructor = true;
+		if(!hasConstructor) {
+			error(type,"A @JEIProvider class must have a public no-args constructor");
+			return;
+		}
+		String engineName = null;
+		String gameClass = null;
+		for(AnnotationMirror mirror:type.getAnnotationMirrors()) {
+			if(!((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(JEIProvider.class.getCanonicalName()))
+				continue;
+			for(Map.Entry<? extends ExecutableElement,? extends AnnotationValue> value:mirror.getElementValues().entrySet()) {
+				String name = value.getKey().getSimpleName().toString();
+				if(name.equals("engineName"))
+					engineName = (String)value.getValue().getValue();
+				else if(name.equals("gameClass")) {
+					TypeMirror game = (TypeMirror)value.getValue().getValue();
+					if(game.getKind()!=TypeKind.DECLARED) {
+						error(type,"The gameClass of a @JEIProvider must be a class or interface type");
+						return;
+					}
+					gameClass = processingEnv.getElementUtils().getBinaryName((TypeElement)((DeclaredType)game).asElement()).toString();
+				}
+			}
+		}
+		if(engineName==null||gameClass==null)
+			return; // Already reported by the compiler
+		if(engineName.isEmpty()||engineName.indexOf('\t')>=0||engineName.indexOf('\n')>=0||engineName.indexOf('\r')>=0||engineName.indexOf('#')>=0) {
+			error(type,"The engineName of a @JEIProvider must be non-empty, and must not contain tabs, line breaks, or '#'");
+			return;
+		}
+		entries.put(processingEnv.getElementUtils().getBinaryName(type).toString(), engineName+'\t'+gameClass);
+	}
+	
+	private void readExistingIndex(Map<String,String> index) {
+		try {
+			FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+			try(BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(),StandardCharsets.UTF_8))){
+				String line;
+				while((line = reader.readLine())!=null) {
+					String[] fields = ProviderRegistry.parseIndexLine(line);
+					if(fields==null)
+						continue;
+					// Drop entries for providers which no longer exist
+					if(processingEnv.getElementUtils().getTypeElement(fields[2].replace('$', '.'))!=null)
+						index.put(fields[2], fields[0]+'\t'+fields[1]);
+				}
+			}
+		}catch(IOException|IllegalArgumentException e) {
+			// No existing index, start fresh
+		}
+	}
+	
+	private void writeIndex() {
+		Map<String,String> index = new TreeMap<>();
+		readExistingIndex(index);
+		index.putAll(entries);
+		try {
+			FileObject out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+			try(Writer writer = new OutputStreamWriter(out.openOutputStream(),StandardCharsets.UTF_8)){
+				writer.write("# Generated by "+JEIProviderProcessor.class.getName()+"\n");
+				for(Map.Entry<String,String> entry:index.entrySet())
+					writer.write(entry.getValue()+'\t'+entry.getKey()+'\n');
+			}
+		}catch(IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write "+INDEX_RESOURCE+": "+e);
+		}
+	}
+
+}
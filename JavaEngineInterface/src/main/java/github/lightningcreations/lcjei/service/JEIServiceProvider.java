@@ -1,8 +1,11 @@
 package github.lightningcreations.lcjei.service;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 
 import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.IGameInfo;
 
 /**
  * Provider type for the JaveEngineInterface
@@ -37,4 +40,13 @@ public interface JEIServiceProvider<GameType> {
 	 * @throws UnsupportedOperationException if this provider does not support obtaining an interface to an active engine.
 	 */
 	public Optional<IEngineInterface<GameType>> getActiveEngineInterface();
+	
+	/**
+	 * Returns information about each game which is installed for this engine, so that they can be listed in a {@link GameCatalog}.<br/>
+	 * This is an optional operation. By default it returns an empty collection.<br/>
+	 * This method should not construct any engines, and should be inexpensive, as it is called when the provider is first cataloged, and whenever it changes.
+	 */
+	public default Collection<IGameInfo<GameType>> getInstalledGames(){
+		return Collections.emptyList();
+	}
 }
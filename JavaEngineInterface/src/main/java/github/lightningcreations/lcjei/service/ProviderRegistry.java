@@ -0,0 +1,413 @@
+package github.lightningcreations.lcjei.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caches the JEI Providers visible from each ClassLoader, indexed by engine name and game class.<br/>
+ * Each index is built at most once per ClassLoader (until it is invalidated).<br/>
+ * ClassLoaders are only weakly referenced, but the providers cached for a ClassLoader refer to it through their classes,
+ *  so each index is only softly referenced. A plugin which is otherwise unreachable is unloaded once its index is cleared by the garbage collector,
+ *  or immediately after it is invalidated.<br/>
+ * Providers which cannot be instantiated are skipped by lookups, and their errors are recorded in the index.
+ * @author chorm
+ *
+ */
+final class ProviderRegistry {
+
+	/**
+	 * A provider listed in a build-time index, which is instantiated the first time it is needed.
+	 */
+	private static final class IndexedProvider {
+		private final String providerClass;
+		private final String engineName;
+		private final String gameClass;
+		private volatile JEIServiceProvider<?> provider;
+		private volatile ServiceConfigurationError failure;
+
+		IndexedProvider(String providerClass,String engineName,String gameClass){
+			this.providerClass = providerClass;
+			this.engineName = engineName;
+			this.gameClass = gameClass;
+		}
+
+		/**
+		 * Returns the provider, instantiating it from loader the first time, or null if it could not be instantiated.
+		 */
+		JEIServiceProvider<?> get(ClassLoader loader){
+			JEIServiceProvider<?> provider = this.provider;
+			if(provider==null&&failure==null)
+				synchronized(this) {
+					if((provider = this.provider)==null&&failure==null)
+						try {
+							this.provider = provider = instantiate(providerClass,loader);
+						}catch(ServiceConfigurationError e) {
+							failure = e;
+						}
+				}
+			return provider;
+		}
+	}
+
+	/**
+	 * The result of instantiating the providers of a ClassLoader which are not answered by its build-time index, or of every provider.
+	 */
+	private static final class ScanResult {
+		private final Map<String,JEIServiceProvider<?>> byName = new HashMap<>();
+		private final Map<Class<?>,JEIServiceProvider<?>> byClass = new HashMap<>();
+		private final List<ServiceConfigurationError> failures = new ArrayList<>();
+
+		void add(JEIServiceProvider<?> provider) {
+			byName.putIfAbsent(provider.getEngineName(), provider);
+			byClass.putIfAbsent(provider.getGameClass(), provider);
+		}
+
+		void addAll(ScanResult result) {
+			result.byName.forEach(byName::putIfAbsent);
+			result.byClass.forEach(byClass::putIfAbsent);
+			failures.addAll(result.failures);
+		}
+	}
+
+	/**
+	 * Index over the providers of a single ClassLoader.<br/>
+	 * Providers listed in a build-time index ({@value JEIProviderProcessor#INDEX_RESOURCE}) are indexed by name without being loaded,
+	 *  and are only instantiated when a lookup matches them.
+	 *  All other providers registered in META-INF/services are instantiated together, the first time a lookup is not answered by the build-time index,
+	 *  so a lookup which misses only instantiates those providers.
+	 *  Once an indexed provider is found not to match its entry, the build-time index is stale, and lookups which miss it instantiate every indexed provider as well.
+	 *  Each result is only published once fully built, so lookups do not lock once it has been.<br/>
+	 * The index does not refer to its ClassLoader, which is passed to each lookup instead.
+	 */
+	static final class ProviderIndex {
+		private final Map<String,IndexedProvider> indexedByName;
+		private final Map<String,IndexedProvider> indexedByGameClass;
+		private final List<IndexedProvider> indexed;
+		private final List<String> unindexed;
+		private volatile ScanResult scannedUnindexed;
+		private volatile ScanResult scanned;
+		private volatile boolean stale;
+
+		ProviderIndex(ClassLoader loader) {
+			Map<String,IndexedProvider> byProviderClass = new LinkedHashMap<>();
+			for(String[] fields:readResourceLines(loader,JEIProviderProcessor.INDEX_RESOURCE,ProviderRegistry::parseIndexLine))
+				byProviderClass.putIfAbsent(fields[2], new IndexedProvider(fields[2],fields[0],fields[1]));
+			Map<String,IndexedProvider> byName = new HashMap<>();
+			Map<String,IndexedProvider> byGameClass = new HashMap<>();
+			for(IndexedProvider provider:byProviderClass.values()) {
+				byName.putIfAbsent(provider.engineName, provider);
+				byGameClass.putIfAbsent(provider.gameClass, provider);
+			}
+			Set<String> unindexed = new LinkedHashSet<>();
+			for(String[] fields:readResourceLines(loader,SERVICES_RESOURCE,ProviderRegistry::parseServicesLine))
+				if(!byProviderClass.containsKey(fields[0]))
+					unindexed.add(fields[0]);
+			this.indexedByName = byName;
+			this.indexedByGameClass = byGameClass;
+			this.indexed = new ArrayList<>(byProviderClass.values());
+			this.unindexed = new ArrayList<>(unindexed);
+		}
+
+		/**
+		 * Instantiates the providers which are not in the build-time index.
+		 */
+		private ScanResult scanUnindexed(ClassLoader loader) {
+			ScanResult scanned = this.scannedUnindexed;
+			if(scanned==null)
+				synchronized(this) {
+					if((scanned = this.scannedUnindexed)==null) {
+						scanned = new ScanResult();
+						for(String name:unindexed)
+							try {
+								scanned.add(instantiate(name,loader));
+							}catch(ServiceConfigurationError e) {
+								scanned.failures.add(e);
+							}
+						this.scannedUnindexed = scanned;
+					}
+				}
+			return scanned;
+		}
+
+		/**
+		 * Instantiates every provider, indexed or not.
+		 */
+		private ScanResult scan(ClassLoader loader) {
+			ScanResult scanned = this.scanned;
+			if(scanned==null) {
+				ScanResult unindexed = scanUnindexed(loader);
+				synchronized(this) {
+					if((scanned = this.scanned)==null) {
+						scanned = new ScanResult();
+						// Indexed providers take precedence, and are included in case their index entry is stale
+						for(IndexedProvider indexedProvider:indexed) {
+							JEIServiceProvider<?> provider = indexedProvider.get(loader);
+							if(provider!=null)
+								scanned.add(provider);
+							else
+								scanned.failures.add(indexedProvider.failure);
+						}
+						scanned.addAll(unindexed);
+						this.scanned = scanned;
+					}
+				}
+			}
+			return scanned;
+		}
+
+		/**
+		 * Returns the providers to search for a lookup which the build-time index does not answer.
+		 */
+		private ScanResult fallback(ClassLoader loader) {
+			return stale?scan(loader):scanUnindexed(loader);
+		}
+
+		JEIServiceProvider<?> getByEngineName(String name,ClassLoader loader){
+			IndexedProvider candidate = indexedByName.get(name);
+			if(candidate!=null) {
+				JEIServiceProvider<?> provider = candidate.get(loader);
+				if(provider!=null&&provider.getEngineName().equals(name))
+					return provider;
+				else if(provider!=null)
+					stale = true;
+			}
+			return fallback(loader).byName.get(name);
+		}
+
+		JEIServiceProvider<?> getByGameClass(Class<?> type,ClassLoader loader){
+			IndexedProvider candidate = indexedByGameClass.get(type.getName());
+			if(candidate!=null) {
+				JEIServiceProvider<?> provider = candidate.get(loader);
+				if(provider!=null&&provider.getGameClass().equals(type))
+					return provider;
+				else if(provider!=null)
+					stale = true;
+			}
+			return fallback(loader).byClass.get(type);
+		}
+
+		/**
+		 * Returns the errors of the providers which could not be instantiated, instantiating every provider if they have not been.
+		 */
+		List<ServiceConfigurationError> getFailures(ClassLoader loader){
+			return Collections.unmodifiableList(scan(loader).failures);
+		}
+	}
+
+	/**
+	 * Weak, identity based key for a ClassLoader.
+	 */
+	private static final class LoaderKey extends WeakReference<ClassLoader> {
+		private final int hash;
+
+		LoaderKey(ClassLoader loader,ReferenceQueue<ClassLoader> queue){
+			super(loader,queue);
+			this.hash = System.identityHashCode(loader);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(o==this)
+				return true;
+			else if(!(o instanceof LoaderKey))
+				return false;
+			ClassLoader loader = get();
+			return loader!=null&&loader==((LoaderKey)o).get();
+		}
+	}
+
+	static final String SERVICES_RESOURCE = "META-INF/services/"+JEIServiceProvider.class.getName();
+
+	private static final ConcurrentHashMap<LoaderKey,SoftReference<ProviderIndex>> indexes = new ConcurrentHashMap<>();
+	private static final ReferenceQueue<ClassLoader> collected = new ReferenceQueue<>();
+
+	private ProviderRegistry() {
+	}
+
+	private static ClassLoader resolve(ClassLoader loader) {
+		return loader!=null?loader:ClassLoader.getSystemClassLoader();
+	}
+
+	private static void expungeCollected() {
+		Object ref;
+		while((ref = collected.poll())!=null)
+			indexes.remove(ref);
+	}
+
+	private static ProviderIndex build(ClassLoader loader) {
+		return new ProviderIndex(loader);
+	}
+
+	/**
+	 * Parses a line of a provider index into its engine name, game class, and provider class, or returns null if the line has no entry.
+	 * @throws IllegalArgumentException if the line is malformed
+	 */
+	static String[] parseIndexLine(String line) {
+		int comment = line.indexOf('#');
+		if(comment>=0)
+			line = line.substring(0, comment);
+		if(line.trim().isEmpty())
+			return null;
+		String[] fields = line.split("\t");
+		if(fields.length!=3)
+			throw new IllegalArgumentException("Malformed provider index entry: "+line);
+		fields[1] = fields[1].trim();
+		fields[2] = fields[2].trim();
+		return fields;
+	}
+
+	/**
+	 * Parses a line of a provider-configuration file, as used by {@link ServiceLoader}, or returns null if the line names no provider.
+	 */
+	static String[] parseServicesLine(String line) {
+		int comment = line.indexOf('#');
+		if(comment>=0)
+			line = line.substring(0, comment);
+		line = line.trim();
+		return line.isEmpty()?null:new String[] {line};
+	}
+
+	private static List<String[]> readResourceLines(ClassLoader loader,String resource,Function<String,String[]> parser){
+		List<String[]> result = new ArrayList<>();
+		try {
+			Enumeration<URL> urls = loader.getResources(resource);
+			while(urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				try(BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(),StandardCharsets.UTF_8))){
+					String line;
+					while((line = reader.readLine())!=null) {
+						String[] fields;
+						try {
+							fields = parser.apply(line);
+						}catch(IllegalArgumentException e) {
+							throw new ServiceConfigurationError(url+": "+e.getMessage(),e);
+						}
+						if(fields!=null)
+							result.add(fields);
+					}
+				}
+			}
+		}catch(IOException e) {
+			throw new ServiceConfigurationError("Error reading "+resource,e);
+		}
+		return result;
+	}
+
+	/**
+	 * Instantiates a provider in the same way as {@link ServiceLoader}.
+	 */
+	static JEIServiceProvider<?> instantiate(String providerClass,ClassLoader loader){
+		Class<?> cl;
+		try {
+			cl = Class.forName(providerClass, false, loader);
+		}catch(ClassNotFoundException e) {
+			throw new ServiceConfigurationError(JEIServiceProvider.class.getName()+": Provider "+providerClass+" not found",e);
+		}
+		if(!JEIServiceProvider.class.isAssignableFrom(cl))
+			throw new ServiceConfigurationError(JEIServiceProvider.class.getName()+": Provider "+providerClass+" not a subtype");
+		try {
+			return (JEIServiceProvider<?>)cl.newInstance();
+		}catch(ReflectiveOperationException|RuntimeException|LinkageError e) {
+			throw new ServiceConfigurationError(JEIServiceProvider.class.getName()+": Provider "+providerClass+" could not be instantiated",e);
+		}
+	}
+
+	/**
+	 * Returns the index for loader (which must already be resolved), building it if it is not cached or has been cleared.<br/>
+	 * The index is not built while holding any lock, as providers may themselves perform lookups when constructed.
+	 * If two threads race to build the same index, the first one published is kept.
+	 */
+	private static ProviderIndex get(ClassLoader loader) {
+		LoaderKey key = new LoaderKey(loader,null);
+		SoftReference<ProviderIndex> ref = indexes.get(key);
+		ProviderIndex index = ref!=null?ref.get():null;
+		if(index!=null)
+			return index;
+		expungeCollected();
+		index = build(loader);
+		SoftReference<ProviderIndex> built = new SoftReference<>(index);
+		while(true) {
+			ref = indexes.putIfAbsent(new LoaderKey(loader,collected), built);
+			if(ref==null)
+				return index;
+			ProviderIndex existing = ref.get();
+			if(existing!=null)
+				return existing;
+			else if(indexes.replace(key, ref, built))
+				return index;
+		}
+	}
+
+	/**
+	 * Returns the provider visible from loader with the given engine name, or null if there is none.
+	 */
+	static JEIServiceProvider<?> getByEngineName(String name,ClassLoader loader){
+		loader = resolve(loader);
+		return get(loader).getByEngineName(name, loader);
+	}
+
+	/**
+	 * Returns the provider visible from loader for the given game class, or null if there is none.
+	 */
+	static JEIServiceProvider<?> getByGameClass(Class<?> type,ClassLoader loader){
+		loader = resolve(loader);
+		return get(loader).getByGameClass(type, loader);
+	}
+
+	/**
+	 * Returns the errors of the providers visible from loader which could not be instantiated.
+	 */
+	static List<ServiceConfigurationError> getFailures(ClassLoader loader){
+		loader = resolve(loader);
+		return get(loader).getFailures(loader);
+	}
+
+	/**
+	 * Rebuilds the index for loader, replacing any cached index.
+	 */
+	static void refresh(ClassLoader loader) {
+		loader = resolve(loader);
+		expungeCollected();
+		indexes.put(new LoaderKey(loader,collected), new SoftReference<>(build(loader)));
+	}
+
+	/**
+	 * Drops the cached index for loader. It will be rebuilt on the next lookup.
+	 */
+	static void invalidate(ClassLoader loader) {
+		indexes.remove(new LoaderKey(resolve(loader),null));
+		expungeCollected();
+	}
+
+	/**
+	 * Drops every cached index.
+	 */
+	static void invalidateAll() {
+		indexes.clear();
+		expungeCollected();
+	}
+}
@@ -0,0 +1,251 @@
+package github.lightningcreations.lcjei.tick;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.ITickableEngine;
+
+/**
+ * Drives Guest Engines from the frame loop of a Host Engine.<br/>
+ * Guests are attached with {@link #attach(IEngineInterface)}. Guests which implement {@link ITickableEngine} are started with {@link ITickableEngine#runDriven()}, 
+ *  and are then updated and rendered each time the Host calls {@link #tick()}. Other Guests are started with {@link IEngineInterface#run()}, and run their own game loop as before.<br/>
+ * 
+ * In {@link Mode#FIXED fixed-step} mode, each tick advances every Guest by as many whole steps as have elapsed since the last tick (but at most a maximum number, so that a Host which falls behind does not fall further behind), 
+ *  and then renders it with the fraction of a step that remains. In {@link Mode#VARIABLE variable-step} mode, each tick advances every Guest by the time elapsed since the last tick, and renders it.<br/>
+ * 
+ * Within a tick, Guests are updated and rendered in parallel on a {@link ForkJoinPool}, which balances Guests of uneven cost by work-stealing. 
+ *  Unless another pool is given, this is a pool of daemon threads shared by every TickScheduler, with one thread per available processor,
+ *  so that ticks neither compete with nor are delayed by other work submitted to the common pool.
+ *  Each Guest is updated and rendered by one task, so its calls are never concurrent, and tick returns once every Guest has rendered, keeping the frames of every Guest aligned with the Host.
+ *  If ticks are called from a worker thread of the pool, that thread helps tick the Guests.<br/>
+ * Guests may be attached and detached from any thread, including during a tick. Ticks themselves must not be called concurrently, but successive ticks may be called from different threads.
+ *  The tick count may be read from any thread.
+ * @author chorm
+ *
+ */
+public final class TickScheduler {
+	
+	/**
+	 * How the time elapsed between ticks is divided into updates.
+	 */
+	public enum Mode {
+		/**
+		 * Guests are updated in whole steps of a fixed size.
+		 */
+		FIXED,
+		/**
+		 * Guests are updated once per tick, by the time elapsed since the last tick.
+		 */
+		VARIABLE
+	}
+	
+	/**
+	 * The default maximum number of fixed steps performed by a single tick.
+	 */
+	public static final int DEFAULT_MAXIMUM_STEPS = 5;
+	
+	private static final class TickTask extends RecursiveAction {
+		private static final long serialVersionUID = -4611707958307766812L;
+		
+		private final List<ITickableEngine<?>> guests;
+		private final int from;
+		private final int to;
+		private final int steps;
+		private final long stepNanos;
+		private final float interpolation;
+		private final List<RuntimeException> failures;
+		
+		TickTask(List<ITickableEngine<?>> guests,int from,int to,int steps,long stepNanos,float interpolation,List<RuntimeException> failures){
+			this.guests = guests;
+			this.from = from;
+			this.to = to;
+			this.steps = steps;
+			this.stepNanos = stepNanos;
+			this.interpolation = interpolation;
+			this.failures = failures;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int mid = (from+to)>>>1;
+				invokeAll(new TickTask(guests,from,mid,steps,stepNanos,interpolation,failures),new TickTask(guests,mid,to,steps,stepNanos,interpolation,failures));
+				return;
+			}
+			ITickableEngine<?> guest = guests.get(from);
+			try {
+				for(int i = 0;i<steps;i++)
+					guest.update(stepNanos);
+				guest.render(interpolation);
+			}catch(RuntimeException e) {
+				synchronized(failures) {
+					failures.add(e);
+				}
+			}
+		}
+	}
+	
+	private static final class DefaultHolder {
+		static final ForkJoinPool DEFAULT = createDefault();
+		
+		private static ForkJoinPool createDefault() {
+			ForkJoinWorkerThreadFactory factory = pool->{
+				ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				t.setName("lcjei-tick-"+t.getPoolIndex());
+				t.setDaemon(true);
+				return t;
+			};
+			return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),factory,null,false);
+		}
+	}
+	
+	private final Mode mode;
+	private final long stepNanos;
+	private final int maximumSteps;
+	private final ForkJoinPool pool;
+	private final CopyOnWriteArrayList<ITickableEngine<?>> driven = new CopyOnWriteArrayList<>();
+	private final CopyOnWriteArrayList<IEngineInterface<?>> undriven = new CopyOnWriteArrayList<>();
+	private volatile long lastTick;
+	private volatile long accumulated;
+	private volatile boolean started;
+	private volatile long ticks;
+	
+	/**
+	 * Constructs a new TickScheduler in variable-step mode, which ticks Guests on the shared tick pool.
+	 */
+	public TickScheduler() {
+		this(Mode.VARIABLE,0,DEFAULT_MAXIMUM_STEPS,DefaultHolder.DEFAULT);
+	}
+	
+	/**
+	 * Constructs a new TickScheduler in fixed-step mode, with steps of stepNanos nanoseconds, which ticks Guests on the shared tick pool.
+	 * @throws IllegalArgumentException if stepNanos is not positive.
+	 */
+	public TickScheduler(long stepNanos) {
+		this(Mode.FIXED,stepNanos,DEFAULT_MAXIMUM_STEPS,DefaultHolder.DEFAULT);
+	}
+	
+	/**
+	 * Constructs a new TickScheduler.
+	 * @param mode How the time elapsed between ticks is divided into updates.
+	 * @param stepNanos The size of each step in fixed-step mode, in nanoseconds. Ignored in variable-step mode.
+	 * @param maximumSteps The maximum number of steps performed by a single tick in fixed-step mode. Ignored in variable-step mode.
+	 * @param pool The pool which updates and renders Guests.
+	 * @throws NullPointerException if mode or pool is null.
+	 * @throws IllegalArgumentException if mode is fixed-step, and stepNanos or maximumSteps is not positive.
+	 */
+	public TickScheduler(Mode mode,long stepNanos,int maximumSteps,ForkJoinPool pool) {
+		this.mode = Objects.requireNonNull(mode);
+		this.pool = Objects.requireNonNull(pool);
+		if(mode==Mode.FIXED&&(stepNanos<=0||maximumSteps<=0))
+			throw new IllegalArgumentException("Fixed steps must be positive");
+		this.stepNanos = stepNanos;
+		this.maximumSteps = maximumSteps;
+	}
+	
+	/**
+	 * Starts guest, which must be initialized, and attaches it to this scheduler.<br/>
+	 * If guest implements {@link ITickableEngine}, it is started with {@link ITickableEngine#runDriven()}, and is updated and rendered by each subsequent tick.
+	 *  Otherwise, it is started with {@link IEngineInterface#run()}.
+	 * @return true if guest is driven by this scheduler, or false if it runs its own game loop.
+	 * @throws IllegalStateException if guest cannot be run, as specified by {@link IEngineInterface#run()}.
+	 */
+	public boolean attach(IEngineInterface<?> guest) {
+		if(guest instanceof ITickableEngine) {
+			ITickableEngine<?> tickable = (ITickableEngine<?>)guest;
+			tickable.runDriven();
+			driven.addIfAbsent(tickable);
+			return true;
+		}
+		guest.run();
+		undriven.addIfAbsent(guest);
+		return false;
+	}
+	
+	/**
+	 * Detaches guest from this scheduler, so that it is no longer updated or rendered. This does not suspend or destroy guest.<br/>
+	 * If a tick is in progress, guest may still be updated and rendered by that tick.
+	 */
+	public void detach(IEngineInterface<?> guest) {
+		driven.remove(guest);
+		undriven.remove(guest);
+	}
+	
+	/**
+	 * Returns the Guests attached to this scheduler, whether or not they are driven by it.
+	 */
+	public List<IEngineInterface<?>> getGuests(){
+		List<IEngineInterface<?>> guests = new ArrayList<>(driven);
+		guests.addAll(undriven);
+		return guests;
+	}
+	
+	/**
+	 * Updates and renders every driven Guest, as though by {@link #tick(long)} with the current value of {@link System#nanoTime()}.
+	 */
+	public void tick() {
+		tick(System.nanoTime());
+	}
+	
+	/**
+	 * Updates and renders every driven Guest, for the time elapsed between the last tick and nowNanos. The first tick renders Guests without updating them.<br/>
+	 * Returns once every Guest has been rendered. If any Guest throws an exception, the other Guests are still ticked, 
+	 *  and the exception is rethrown afterwards, with the exceptions thrown by any other Guests suppressed. Guests which throw remain attached.
+	 * @param nowNanos The current time, as given by {@link System#nanoTime()}, or any other monotonic clock in nanoseconds.
+	 */
+	public void tick(long nowNanos) {
+		long elapsed = started?Math.max(0, nowNanos-lastTick):0;
+		lastTick = nowNanos;
+		started = true;
+		ticks++;
+		int steps;
+		long step;
+		float interpolation;
+		if(mode==Mode.FIXED) {
+			accumulated += elapsed;
+			long due = accumulated/stepNanos;
+			steps = (int)Math.min(due, maximumSteps);
+			// Time beyond the maximum steps is dropped rather than carried over
+			accumulated = due>maximumSteps?0:accumulated-steps*stepNanos;
+			step = stepNanos;
+			interpolation = (float)((double)accumulated/stepNanos);
+		}else {
+			steps = elapsed>0?1:0;
+			step = elapsed;
+			interpolation = 0;
+		}
+		List<ITickableEngine<?>> guests = new ArrayList<>(driven);
+		if(guests.isEmpty())
+			return;
+		List<RuntimeException> failures = new ArrayList<>();
+		TickTask task = new TickTask(guests,0,guests.size(),steps,step,interpolation,failures);
+		pool.invoke(task);
+		if(!failures.isEmpty()) {
+			RuntimeException first = failures.get(0);
+			for(int i = 1;i<failures.size();i++)
+				first.addSuppressed(failures.get(i));
+			throw first;
+		}
+	}
+	
+	/**
+	 * Returns the number of ticks performed.
+	 */
+	public long getTickCount() {
+		return ticks;
+	}
+	
+	/**
+	 * Returns the mode of this scheduler.
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for driving Engines from the frame loop of another Engine.
+ */
+package github.lightningcreations.lcjei.tick;
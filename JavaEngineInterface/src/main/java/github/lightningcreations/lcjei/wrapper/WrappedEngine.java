@@ -3,22 +3,36 @@ package github.lightningcreations.lcjei.wrapper;
 import java.awt.Container;
 
 import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.IOffscreenEngine;
+import github.lightningcreations.lcjei.ITickableEngine;
+import github.lightningcreations.lcjei.lifecycle.EngineState;
+import github.lightningcreations.lcjei.lifecycle.LifecycleGuard;
+import github.lightningcreations.lcjei.lifecycle.Transition;
+import github.lightningcreations.lcjei.render.FrameBuffer;
 
 /**
  * Represents a Engine that can be used to insert a Game belonging to a different Engine, called the Guest Engine, into a Host Engine. <br/>
- * Most methods are forwarded to the Guest, possible gathering resources from the host.
+ * Most methods are forwarded to the Guest, possible gathering resources from the host.<br/>
+ * The lifecycle of the WrappedEngine is enforced with a {@link LifecycleGuard}, so calls which violate the contract of {@link IEngineInterface} 
+ *  throw an IllegalStateException without reaching the Guest, and lifecycle methods may be called from any thread without locking.
+ *  Updates and renders hold the WrappedEngine {@link EngineState#TICKING ticking}, so a call to suspend or destroy made while the Guest is being updated or rendered waits for the update or render to finish.<br/>
+ * If the Guest is an {@link ITickableEngine}, the Host can drive it through the WrappedEngine. Otherwise, {@link #runDriven()} runs the Guest with its own game loop, 
+ *  and updates and renders have no effect.<br/>
+ * Likewise, if the Guest is an {@link IOffscreenEngine}, the WrappedEngine can be initialized with a {@link FrameBuffer}, so that the Host can composite the frames of the Guest without AWT.
  * @author chorm
  *
  * @param <GuestGameType> The type of the Game used by the Guest Engine.
  * @param <HostGameType> The type of the Game used by the Host Engine.
  */
 public final class WrappedEngine<GuestGameType, HostGameType>
-		implements IEngineInterface<WrappedGame<GuestGameType, HostGameType>> {
+		implements ITickableEngine<WrappedGame<GuestGameType, HostGameType>>, IOffscreenEngine<WrappedGame<GuestGameType, HostGameType>> {
 	
 	private IEngineInterface<GuestGameType> guest;
 	private IEngineInterface<HostGameType> host;
 	private WrappedGame<GuestGameType,HostGameType> wrapped;
-	private Container drawContainer;
+	private volatile Container drawContainer;
+	private volatile FrameBuffer frameBuffer;
+	private final LifecycleGuard state = new LifecycleGuard();
 	/**
 	 * Constructs a new Wrapped Engine with a given guest engine, host engine, and host game.
 	 * @param guest The Interface to the Guest Engine.
@@ -31,8 +45,11 @@ public final class WrappedEngine<GuestGameType, HostGameType>
 		this.wrapped = new WrappedGame<>(guest,host,hostGame);
 	}
 	
-	@Override
-	public boolean initialize(Container c) throws IllegalStateException {
+	/**
+	 * Initializes the Guest to draw to c. Must be called while this WrappedEngine is initializing.
+	 */
+	private boolean initializeGuest(Container c) {
+		frameBuffer = null;
 		if(guest.initialize(c)) {
 			drawContainer = c;
 			return true;
@@ -40,6 +57,29 @@ public final class WrappedEngine<GuestGameType, HostGameType>
 			drawContainer = guest.getCurrentDrawContainer();
 		return false;
 	}
+	
+	@Override
+	public boolean initialize(Container c) throws IllegalStateException {
+		return state.perform(Transition.INITIALIZE, ()->initializeGuest(c));
+	}
+	
+	/**
+	 * Initializes the Guest to render to target, if it is an {@link IOffscreenEngine}. 
+	 *  Otherwise, initializes the Guest to draw to the host's current draw container, as though by {@link #initialize()}, and returns false.
+	 */
+	@Override
+	public boolean initializeOffscreen(FrameBuffer target) throws IllegalStateException {
+		return state.perform(Transition.INITIALIZE, ()->{
+			if(!(guest instanceof IOffscreenEngine)) {
+				initializeGuest(host.getCurrentDrawContainer());
+				return false;
+			}
+			boolean offscreen = ((IOffscreenEngine<GuestGameType>)guest).initializeOffscreen(target);
+			frameBuffer = offscreen?target:null;
+			drawContainer = offscreen?null:guest.getCurrentDrawContainer();
+			return offscreen;
+		});
+	}
 
 	/**
 	 * Initializes the guest to draw to the host's current draw container as though by {{@link #initialize(Container)}.
@@ -51,17 +91,50 @@ public final class WrappedEngine<GuestGameType, HostGameType>
 
 	@Override
 	public void destroy() throws IllegalStateException {
-		guest.destroy();
+		state.perform(Transition.DESTROY, ()->guest.destroy());
 	}
 
 	@Override
 	public void run() throws IllegalStateException {
-		guest.run();
+		state.perform(Transition.RUN, ()->guest.run());
+	}
+
+	/**
+	 * Runs the Guest without a game loop if it is an {@link ITickableEngine}, and otherwise runs it as though by {@link #run()}.
+	 */
+	@Override
+	public void runDriven() throws IllegalStateException {
+		state.perform(Transition.RUN, ()->{
+			if(guest instanceof ITickableEngine)
+				((ITickableEngine<GuestGameType>)guest).runDriven();
+			else
+				guest.run();
+		});
+	}
+
+	/**
+	 * Updates the Guest, if it is an {@link ITickableEngine} and this WrappedEngine is executing.
+	 *  The update is performed with {@link LifecycleGuard#tick(Runnable)}, so the Guest cannot be suspended or destroyed while it is being updated.
+	 */
+	@Override
+	public void update(long stepNanos) {
+		if(guest instanceof ITickableEngine)
+			state.tick(()->((ITickableEngine<GuestGameType>)guest).update(stepNanos));
+	}
+
+	/**
+	 * Renders the Guest, if it is an {@link ITickableEngine} and this WrappedEngine is executing.
+	 *  The render is performed with {@link LifecycleGuard#tick(Runnable)}, so the Guest cannot be suspended or destroyed while it is being rendered.
+	 */
+	@Override
+	public void render(float interpolation) {
+		if(guest instanceof ITickableEngine)
+			state.tick(()->((ITickableEngine<GuestGameType>)guest).render(interpolation));
 	}
 
 	@Override
 	public Container getCurrentDrawContainer() {
-		// TODO Auto-generated method stub
+		state.requireInitialized();
 		return drawContainer;
 	}
 
@@ -71,14 +144,27 @@ public final class WrappedEngine<GuestGameType, HostGameType>
 		return wrapped;
 	}
 
+	@Override
+	public FrameBuffer getCurrentFrameBuffer() {
+		state.requireInitialized();
+		return frameBuffer;
+	}
+
+	/**
+	 * Returns the current state of this WrappedEngine.
+	 */
+	public EngineState getState() {
+		return state.getState();
+	}
+
 	@Override
 	public void suspend() throws IllegalStateException {
-		guest.suspend();
+		state.perform(Transition.SUSPEND, ()->guest.suspend());
 	}
 
 	@Override
 	public void resume() throws IllegalStateException {
-		guest.resume();
+		state.perform(Transition.RESUME, ()->guest.resume());
 	}
 
 }
@@ -0,0 +1,148 @@
+package github.lightningcreations.lcjei.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits events to JDK Flight Recorder.<br/>
+ * This class is only present in the Java 11 version of a multi-release jar, and is loaded reflectively by {@link Metrics}.
+ *  Each event is only allocated if Flight Recorder is recording events of its type.
+ * @author chorm
+ *
+ */
+final class JfrEventSink implements EventSink {
+	
+	@Category({"LCJEI","Engine"})
+	@Name("github.lightningcreations.lcjei.Lifecycle")
+	@Label("Engine Lifecycle Transition")
+	@Description("A lifecycle method of an instrumented Engine")
+	static final class LifecycleEvent extends Event {
+		@Label("Engine Class")
+		String engine;
+		@Label("Method")
+		String method;
+		@Label("Succeeded")
+		boolean success;
+	}
+	
+	@Category({"LCJEI","Engine"})
+	@Name("github.lightningcreations.lcjei.EngineLookup")
+	@Label("Engine Lookup")
+	@Description("A lookup of a JEI Provider by EngineLookup")
+	static final class EngineLookupEvent extends Event {
+		@Label("Lookup")
+		String lookup;
+		@Label("Key")
+		String key;
+		@Label("Found")
+		boolean found;
+	}
+	
+	@Category({"LCJEI","Resources"})
+	@Name("github.lightningcreations.lcjei.ResourceLookup")
+	@Label("Resource Lookup")
+	@Description("A lookup in an instrumented ResourceSet")
+	static final class ResourceLookupEvent extends Event {
+		@Label("Resource Set")
+		String set;
+		@Label("Key")
+		String key;
+		@Label("Found")
+		boolean found;
+	}
+	
+	@Category({"LCJEI","Resources"})
+	@Name("github.lightningcreations.lcjei.ResourceRead")
+	@Label("Resource Read")
+	@Description("A read of a Resource from an instrumented ResourceSet, from when it was opened until it was closed")
+	static final class ResourceReadEvent extends Event {
+		@Label("Resource Set")
+		String set;
+		@Label("Key")
+		String key;
+		@Label("Bytes Read")
+		@DataAmount
+		long bytes;
+	}
+	
+	private static Span lifecycle() {
+		LifecycleEvent event = new LifecycleEvent();
+		event.begin();
+		return (subject,detail,bytes,success)->{
+			if(event.shouldCommit()) {
+				event.engine = subject;
+				event.method = detail;
+				event.success = success;
+				event.commit();
+			}
+		};
+	}
+	
+	private static Span engineLookup() {
+		EngineLookupEvent event = new EngineLookupEvent();
+		event.begin();
+		return (subject,detail,bytes,success)->{
+			if(event.shouldCommit()) {
+				event.lookup = subject;
+				event.key = detail;
+				event.found = success;
+				event.commit();
+			}
+		};
+	}
+	
+	private static Span resourceLookup() {
+		ResourceLookupEvent event = new ResourceLookupEvent();
+		event.begin();
+		return (subject,detail,bytes,success)->{
+			if(event.shouldCommit()) {
+				event.set = subject;
+				event.key = detail;
+				event.found = success;
+				event.commit();
+			}
+		};
+	}
+	
+	private static Span resourceRead() {
+		ResourceReadEvent event = new ResourceReadEvent();
+		event.begin();
+		return (subject,detail,bytes,success)->{
+			if(event.shouldCommit()) {
+				event.set = subject;
+				event.key = detail;
+				event.bytes = bytes;
+				event.commit();
+			}
+		};
+	}
+	
+	private final EventType lifecycle = EventType.getEventType(LifecycleEvent.class);
+	private final EventType engineLookup = EventType.getEventType(EngineLookupEvent.class);
+	private final EventType resourceLookup = EventType.getEventType(ResourceLookupEvent.class);
+	private final EventType resourceRead = EventType.getEventType(ResourceReadEvent.class);
+	
+	JfrEventSink() {
+	}
+
+	@Override
+	public Span begin(Kind kind) {
+		switch(kind) {
+		case LIFECYCLE:
+			return lifecycle.isEnabled()?lifecycle():NONE;
+		case ENGINE_LOOKUP:
+			return engineLookup.isEnabled()?engineLookup():NONE;
+		case RESOURCE_LOOKUP:
+			return resourceLookup.isEnabled()?resourceLookup():NONE;
+		case RESOURCE_READ:
+			return resourceRead.isEnabled()?resourceRead():NONE;
+		default:
+			return NONE;
+		}
+	}
+}
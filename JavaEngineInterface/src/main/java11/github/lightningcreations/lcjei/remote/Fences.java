@@ -0,0 +1,36 @@
+package github.lightningcreations.lcjei.remote;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Memory fences for memory which is shared with another process, such as a mapped file, where plain ByteBuffer accesses cannot be ordered by volatile fields.<br/>
+ * This version is only present in the Java 11 version of a multi-release jar, and uses the fences of {@link VarHandle}.
+ * @author chorm
+ *
+ */
+final class Fences {
+	
+	private Fences() {
+	}
+	
+	/**
+	 * Prevents reads which precede the fence from being reordered with reads and writes which follow it.
+	 */
+	static void acquire() {
+		VarHandle.acquireFence();
+	}
+	
+	/**
+	 * Prevents reads and writes which precede the fence from being reordered with writes which follow it.
+	 */
+	static void release() {
+		VarHandle.releaseFence();
+	}
+	
+	/**
+	 * Prevents reads and writes which precede the fence from being reordered with reads and writes which follow it.
+	 */
+	static void full() {
+		VarHandle.fullFence();
+	}
+}
@@ -0,0 +1,61 @@
+package github.lightningcreations.lcjei.assets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import github.lightningcreations.lcjei.resources.MemoryResourceSet;
+
+public class AssetLoaderTest {
+
+	private static final Executor THREAD = r->new Thread(r).start();
+	private static final Executor DIRECT = Runnable::run;
+
+	private static AssetLoader<String> loader(MemoryResourceSet set) {
+		AssetLoader<String> loader = new AssetLoader<>(set,1<<20,THREAD,DIRECT);
+		loader.register(String.class, AssetDecoders.text(StandardCharsets.UTF_8));
+		return loader;
+	}
+
+	@Test(timeout=10000)
+	public void invalidatedLoadIsNotCached() throws InterruptedException {
+		MemoryResourceSet set = new MemoryResourceSet();
+		set.put("a", "old");
+		AssetLoader<String> loader = loader(set);
+		CountDownLatch gate = set.hold();
+		CompletableFuture<Optional<String>> stale = loader.load("a", String.class);
+		set.awaitHeld();
+		set.put("a", "new");
+		loader.invalidate("a", String.class);
+		gate.countDown();
+		assertEquals("old", stale.join().get());
+		assertFalse(loader.getIfLoaded("a", String.class).isPresent());
+		assertEquals("new", loader.get("a", String.class).get());
+	}
+
+	@Test(timeout=10000)
+	public void staleLoadDoesNotReplaceFreshAsset() throws InterruptedException {
+		MemoryResourceSet set = new MemoryResourceSet();
+		set.put("a", "old");
+		AssetLoader<String> loader = loader(set);
+		CountDownLatch slow = set.hold();
+		CompletableFuture<Optional<String>> stale = loader.load("a", String.class);
+		set.awaitHeld();
+		loader.invalidateAll();
+		set.put("a", "new");
+		set.stopHolding();
+		assertEquals("new", loader.get("a", String.class).get());
+		long weight = loader.getWeight();
+		slow.countDown();
+		stale.join();
+		assertEquals("new", loader.getIfLoaded("a", String.class).get());
+		assertEquals(weight, loader.getWeight());
+	}
+}
@@ -0,0 +1,194 @@
+package github.lightningcreations.lcjei.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+public class EngineOrchestratorTest {
+
+	/**
+	 * An Engine which records when each of its transitions starts and ends in a log shared with other Engines.
+	 *  Each transition takes a little time, so that an Engine which started too early would be seen to overlap the transition it should have waited for.
+	 */
+	private static class StubEngine implements IEngineInterface<Object> {
+		final String name;
+		final List<String> log;
+		volatile CountDownLatch entered = new CountDownLatch(0);
+		volatile CountDownLatch release = new CountDownLatch(0);
+
+		StubEngine(String name,List<String> log){
+			this.name = name;
+			this.log = log;
+		}
+
+		void transition(String transition) {
+			log.add(name+" "+transition+" start");
+			entered.countDown();
+			try {
+				Thread.sleep(20);
+				release.await();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			log.add(name+" "+transition+" end");
+		}
+
+		@Override
+		public boolean initialize(Container c) {
+			transition("initialize");
+			return true;
+		}
+
+		@Override
+		public void initialize() {
+			transition("initialize");
+		}
+
+		@Override
+		public void destroy() {
+			transition("destroy");
+		}
+
+		@Override
+		public void run() {
+			transition("run");
+		}
+
+		@Override
+		public Container getCurrentDrawContainer() {
+			return null;
+		}
+
+		@Override
+		public Object getGameObject() {
+			return null;
+		}
+
+		@Override
+		public void suspend() {
+			transition("suspend");
+		}
+
+		@Override
+		public void resume() {
+			transition("resume");
+		}
+	}
+
+	private static void assertBefore(List<String> log,String first,String second) {
+		int i = log.indexOf(first);
+		int j = log.indexOf(second);
+		assertTrue(first+" was not logged", i>=0);
+		assertTrue(second+" was not logged", j>=0);
+		assertTrue(first+" was not before "+second+": "+log, i<j);
+	}
+
+	@Test(timeout=10000)
+	public void hostsInitializeBeforeGuestsAndDestroyAfter() {
+		List<String> log = Collections.synchronizedList(new ArrayList<>());
+		StubEngine host = new StubEngine("host",log);
+		StubEngine guest = new StubEngine("guest",log);
+		StubEngine nested = new StubEngine("nested",log);
+		EngineOrchestrator orchestrator = new EngineOrchestrator();
+		// Added guests first, so that the order comes from the dependencies rather than the order of addition
+		orchestrator.addDependency(nested, guest);
+		orchestrator.addDependency(guest, host);
+
+		orchestrator.initializeAll(5, TimeUnit.SECONDS);
+		assertEquals(6, log.size());
+		assertBefore(log, "host initialize end", "guest initialize start");
+		assertBefore(log, "guest initialize end", "nested initialize start");
+
+		log.clear();
+		orchestrator.destroyAll(5, TimeUnit.SECONDS);
+		assertEquals(6, log.size());
+		assertBefore(log, "nested destroy end", "guest destroy start");
+		assertBefore(log, "guest destroy end", "host destroy start");
+	}
+
+	@Test(timeout=10000)
+	public void independentEnginesTransitionConcurrently() {
+		List<String> log = Collections.synchronizedList(new ArrayList<>());
+		StubEngine first = new StubEngine("first",log);
+		StubEngine second = new StubEngine("second",log);
+		EngineOrchestrator orchestrator = new EngineOrchestrator();
+		orchestrator.add(first);
+		orchestrator.add(second);
+		// Each Engine waits until both have started, so this only completes if they run at the same time
+		CountDownLatch started = new CountDownLatch(2);
+		first.entered = started;
+		first.release = started;
+		second.entered = started;
+		second.release = started;
+		orchestrator.runAll(5, TimeUnit.SECONDS);
+		assertBefore(log, "first run start", "second run end");
+		assertBefore(log, "second run start", "first run end");
+	}
+
+	@Test(timeout=10000)
+	public void timedOutEngineFailsItsGuests() {
+		List<String> log = Collections.synchronizedList(new ArrayList<>());
+		StubEngine host = new StubEngine("host",log);
+		StubEngine guest = new StubEngine("guest",log);
+		StubEngine independent = new StubEngine("independent",log);
+		CountDownLatch release = new CountDownLatch(1);
+		host.release = release;
+		EngineOrchestrator orchestrator = new EngineOrchestrator();
+		orchestrator.addDependency(guest, host);
+		orchestrator.add(independent);
+		try {
+			orchestrator.initializeAll(200, TimeUnit.MILLISECONDS);
+			fail("Timed out engine did not fail the transition");
+		}catch(OrchestrationException e) {
+			assertSame(Transition.INITIALIZE, e.getTransition());
+			Map<IEngineInterface<?>,Throwable> failures = e.getFailures();
+			assertEquals(2, failures.size());
+			assertTrue(failures.get(host) instanceof TimeoutException);
+			assertTrue(failures.get(guest) instanceof OrchestrationException.DependencyFailedException);
+			assertFalse(failures.containsKey(independent));
+		}finally {
+			release.countDown();
+		}
+		assertFalse(log.contains("guest initialize start"));
+		assertTrue(log.contains("independent initialize end"));
+	}
+
+	@Test(timeout=10000)
+	public void failedEngineIsReported() {
+		List<String> log = Collections.synchronizedList(new ArrayList<>());
+		IllegalStateException failure = new IllegalStateException("Not initialized");
+		StubEngine host = new StubEngine("host",log) {
+			@Override
+			public void suspend() {
+				throw failure;
+			}
+		};
+		StubEngine guest = new StubEngine("guest",log);
+		EngineOrchestrator orchestrator = new EngineOrchestrator();
+		orchestrator.addDependency(guest, host);
+		try {
+			orchestrator.suspendAll(5, TimeUnit.SECONDS);
+			fail("Failed engine did not fail the transition");
+		}catch(OrchestrationException e) {
+			assertEquals(1, e.getFailures().size());
+			assertSame(failure, e.getFailures().get(host));
+		}
+		// Guests are suspended before their hosts, so the guest was unaffected
+		assertTrue(log.contains("guest suspend end"));
+	}
+}
@@ -0,0 +1,59 @@
+package github.lightningcreations.lcjei.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import github.lightningcreations.lcjei.resources.MemoryResourceSet;
+import github.lightningcreations.lcjei.resources.ResourceSet;
+
+public class InstrumentationTest {
+
+	private static final Executor DIRECT = Runnable::run;
+
+	@Before
+	public void enable() {
+		Metrics.reset();
+		Metrics.setEnabled(true);
+	}
+
+	@After
+	public void disable() {
+		Metrics.setEnabled(false);
+	}
+
+	@Test
+	public void failedLookupsAreMeasured() {
+		MemoryResourceSet delegate = new MemoryResourceSet();
+		delegate.fail("fail");
+		ResourceSet<String> set = Instrumentation.instrument(delegate, "failing");
+		try {
+			set.getResource("fail");
+			fail("Lookup did not throw");
+		}catch(IllegalStateException e) {
+			// Expected
+		}
+		assertEquals(1, Metrics.histogram("resources.failing.lookup").getCount());
+		assertEquals(0, Metrics.counter("resources.failing.hits").get());
+		assertEquals(0, Metrics.counter("resources.failing.misses").get());
+	}
+
+	@Test
+	public void asynchronousLookupsAreForwarded() {
+		MemoryResourceSet delegate = new MemoryResourceSet();
+		delegate.put("a", "a");
+		ResourceSet<String> set = Instrumentation.instrument(delegate, "async");
+		assertEquals(1, set.getResourceAsync("a", DIRECT).join().get().size());
+		assertEquals(1, set.getResources(Arrays.asList("a","b"), DIRECT).join().size());
+		assertEquals(3, delegate.getAsyncLookupCount());
+		assertEquals(2, Metrics.histogram("resources.async.lookup").getCount());
+		assertEquals(2, Metrics.counter("resources.async.hits").get());
+		assertEquals(1, Metrics.counter("resources.async.misses").get());
+	}
+}
@@ -0,0 +1,88 @@
+package github.lightningcreations.lcjei.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class MappedRingTest {
+	private static final int CAPACITY = 4096;
+	
+	@Test
+	public void pollReturnsFalseWhenEmpty() {
+		ByteBuffer shared = ByteBuffer.allocateDirect(MappedRing.regionSize(CAPACITY));
+		MappedRing ring = new MappedRing(shared,0,CAPACITY,()->true,null);
+		assertFalse(ring.poll((type,id,payload)->{}));
+	}
+	
+	@Test
+	public void messageIsReadAsWritten() {
+		ByteBuffer shared = ByteBuffer.allocateDirect(MappedRing.regionSize(CAPACITY));
+		MappedRing writer = new MappedRing(shared,0,CAPACITY,()->true,null);
+		MappedRing reader = new MappedRing(shared,0,CAPACITY,()->true,null);
+		writer.write(7, 99L, ByteBuffer.wrap(new byte[] {1,2}), ByteBuffer.wrap(new byte[] {3}));
+		assertTrue(reader.poll((type,id,payload)->{
+			assertEquals(7, type);
+			assertEquals(99L, id);
+			assertEquals(3, payload.remaining());
+			assertEquals(1, payload.get(0));
+			assertEquals(3, payload.get(2));
+		}));
+		assertFalse(reader.poll((type,id,payload)->{}));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void oversizedMessageIsRejected() {
+		ByteBuffer shared = ByteBuffer.allocateDirect(MappedRing.regionSize(CAPACITY));
+		MappedRing ring = new MappedRing(shared,0,CAPACITY,()->true,null);
+		ring.write(1, 0, ByteBuffer.allocate(ring.maximumPayload()+1));
+	}
+	
+	/**
+	 * Each message has a length and contents derived from its id, so the reader can check that no message is lost, reordered, or read before it is written.
+	 *  The ring is small relative to the messages, so that it wraps thousands of times, and is often full.
+	 */
+	@Test(timeout = 60000)
+	public void messagesSurviveConcurrentWrapping() throws InterruptedException {
+		int capacity = 16*CAPACITY;
+		ByteBuffer shared = ByteBuffer.allocateDirect(MappedRing.regionSize(capacity));
+		MappedRing writer = new MappedRing(shared,0,capacity,()->true,null);
+		MappedRing reader = new MappedRing(shared,0,capacity,()->true,null);
+		int count = 200000;
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread producer = new Thread(()->{
+			try {
+				byte[] bytes = new byte[300];
+				for(int id = 0;id<count;id++) {
+					int length = id%300;
+					for(int i = 0;i<length;i++)
+						bytes[i] = (byte)(id+i);
+					writer.write(id&0xFF, id, ByteBuffer.wrap(bytes, 0, length));
+				}
+			}catch(Throwable t) {
+				failure.set(t);
+			}
+		});
+		producer.start();
+		long[] expected = new long[1];
+		while(expected[0]<count&&failure.get()==null) {
+			reader.poll((type,id,payload)->{
+				assertEquals(expected[0], id);
+				assertEquals(id&0xFF, type);
+				assertEquals(id%300, payload.remaining());
+				for(int i = 0;i<payload.remaining();i++)
+					if(payload.get(i)!=(byte)(id+i))
+						throw new AssertionError("Message "+id+" has the wrong byte at "+i);
+				expected[0]++;
+			});
+		}
+		producer.join();
+		if(failure.get()!=null)
+			throw new AssertionError(failure.get());
+		assertEquals(count, expected[0]);
+	}
+}
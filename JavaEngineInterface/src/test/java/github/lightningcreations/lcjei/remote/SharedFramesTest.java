@@ -0,0 +1,97 @@
+package github.lightningcreations.lcjei.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SharedFramesTest {
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 32;
+	
+	private static SharedFrames newFrames(ByteBuffer shared) {
+		SharedFrames frames = new SharedFrames(shared,0,WIDTH,HEIGHT);
+		frames.reset();
+		return frames;
+	}
+	
+	@Test
+	public void latestIsNullBeforePublish() {
+		ByteBuffer shared = ByteBuffer.allocate((int)SharedFrames.regionSize(WIDTH, HEIGHT));
+		assertNull(newFrames(shared).latest());
+	}
+	
+	@Test
+	public void latestReturnsPublishedFrame() {
+		ByteBuffer shared = ByteBuffer.allocate((int)SharedFrames.regionSize(WIDTH, HEIGHT));
+		SharedFrames frames = newFrames(shared);
+		ByteBuffer frame = ByteBuffer.allocate(SharedFrames.frameSize(WIDTH, HEIGHT)).order(ByteOrder.nativeOrder());
+		while(frame.hasRemaining())
+			frame.putInt(42);
+		frame.flip();
+		frames.publish(frame);
+		ByteBuffer latest = frames.latest();
+		assertEquals(1, frames.getSequence());
+		assertEquals(42, latest.getInt(0));
+		assertEquals(42, latest.getInt(latest.limit()-4));
+	}
+	
+	/**
+	 * The producer fills every pixel of each frame with its sequence number, so a frame which is overwritten while it is read has mixed pixels.
+	 */
+	@Test(timeout = 60000)
+	public void framesAreNeverTorn() throws InterruptedException {
+		ByteBuffer shared = ByteBuffer.allocate((int)SharedFrames.regionSize(WIDTH, HEIGHT));
+		SharedFrames producerSide = newFrames(shared);
+		SharedFrames consumerSide = new SharedFrames(shared,0,WIDTH,HEIGHT);
+		int frameCount = 200000;
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread producer = new Thread(()->{
+			try {
+				ByteBuffer frame = ByteBuffer.allocate(SharedFrames.frameSize(WIDTH, HEIGHT)).order(ByteOrder.nativeOrder());
+				for(int sequence = 1;sequence<=frameCount;sequence++) {
+					frame.clear();
+					while(frame.hasRemaining())
+						frame.putInt(sequence);
+					frame.flip();
+					producerSide.publish(frame);
+				}
+			}catch(Throwable t) {
+				failure.set(t);
+			}finally {
+				done.set(true);
+			}
+		});
+		producer.start();
+		long lastSequence = 0;
+		long reads = 0;
+		while(!done.get()) {
+			ByteBuffer latest = consumerSide.latest();
+			if(latest==null)
+				continue;
+			IntBuffer pixels = latest.asIntBuffer();
+			int first = pixels.get(0);
+			for(int i = 1;i<pixels.limit();i++)
+				if(pixels.get(i)!=first)
+					throw new AssertionError("Torn frame: pixel "+i+" is "+pixels.get(i)+", pixel 0 is "+first);
+			assertEquals(consumerSide.getSequence(), first);
+			assertTrue("Sequence went backwards", first>=lastSequence);
+			lastSequence = first;
+			reads++;
+		}
+		producer.join();
+		if(failure.get()!=null)
+			throw new AssertionError(failure.get());
+		assertTrue(reads>0);
+		consumerSide.latest();
+		assertEquals(frameCount, consumerSide.getSequence());
+	}
+}
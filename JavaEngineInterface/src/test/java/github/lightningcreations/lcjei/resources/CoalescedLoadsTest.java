@@ -0,0 +1,45 @@
+package github.lightningcreations.lcjei.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+public class CoalescedLoadsTest {
+
+	private static final Executor THREAD = r->new Thread(r).start();
+
+	@Test(timeout=10000)
+	public void concurrentLookupsShareOneCall() {
+		MemoryResourceSet set = new MemoryResourceSet();
+		set.put("a", "a");
+		CountDownLatch release = set.hold();
+		CompletableFuture<Optional<Resource<String>>> first = set.getResourceAsync("a", THREAD);
+		CompletableFuture<Optional<Resource<String>>> second = set.getResourceAsync("a", THREAD);
+		assertNotSame(first, second);
+		release.countDown();
+		assertSame(first.join().get(), second.join().get());
+		assertEquals(1, set.getLookupCount());
+	}
+
+	@Test(timeout=10000)
+	public void cancellingOneCallerDoesNotAffectOthers() {
+		MemoryResourceSet set = new MemoryResourceSet();
+		set.put("a", "a");
+		CountDownLatch release = set.hold();
+		CompletableFuture<Optional<Resource<String>>> first = set.getResourceAsync("a", THREAD);
+		CompletableFuture<Optional<Resource<String>>> second = set.getResourceAsync("a", THREAD);
+		assertTrue(first.cancel(false));
+		assertFalse(second.isDone());
+		release.countDown();
+		assertTrue(second.join().isPresent());
+	}
+}
@@ -0,0 +1,126 @@
+package github.lightningcreations.lcjei.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static github.lightningcreations.lcjei.resources.MemoryResourceSet.read;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class DeduplicatingResourceSetTest {
+	
+	@Test
+	public void identicalContentsAreShared() {
+		ContentStore store = new ContentStore();
+		MemoryResourceSet host = new MemoryResourceSet();
+		MemoryResourceSet guest = new MemoryResourceSet();
+		host.put("shader", "identical");
+		guest.put("other/shader", "identical");
+		ByteBuffer a = new DeduplicatingResourceSet<>(host,store).getResource("shader").get().asReadOnlyByteBuffer();
+		ByteBuffer b = new DeduplicatingResourceSet<>(guest,store).getResource("other/shader").get().asReadOnlyByteBuffer();
+		assertEquals(1, store.getSharedCount());
+		assertEquals(a, b);
+	}
+	
+	/**
+	 * A manifest entry for contents which changed without changing size must not cause the new contents to be filed under the old digest.
+	 */
+	@Test
+	public void staleManifestDoesNotPoisonStore() {
+		ContentStore store = new ContentStore();
+		MemoryResourceSet set = new MemoryResourceSet();
+		set.put("a", "new contents");
+		ContentDigest stale = ContentDigest.of(ByteBuffer.wrap("old contents".getBytes(StandardCharsets.UTF_8)));
+		ContentManifest<String> manifest = new ContentManifest<>();
+		manifest.put("a", stale);
+		Resource<String> resource = new DeduplicatingResourceSet<>(set,store,manifest).getResource("a").get();
+		assertEquals("new contents", read(resource));
+		assertFalse(store.find(stale).isPresent());
+		ContentDigest actual = ContentDigest.of(resource.asReadOnlyByteBuffer());
+		assertTrue(store.find(actual).isPresent());
+		assertEquals(actual, manifest.get("a").get());
+		
+		MemoryResourceSet other = new MemoryResourceSet();
+		other.put("b", "old contents");
+		assertEquals("old contents", read(new DeduplicatingResourceSet<>(other,store).getResource("b").get()));
+	}
+	
+	/**
+	 * A file which is edited without changing its size must not be given the contents recorded for it before the edit.
+	 */
+	@Test
+	public void editedFileIsReadAgain() throws IOException {
+		Path root = Files.createTempDirectory("jei-dedup");
+		try {
+			Path file = root.resolve("a");
+			Files.write(file, "old contents".getBytes(StandardCharsets.UTF_8));
+			ContentStore store = new ContentStore();
+			ContentManifest<String> manifest = new ContentManifest<>();
+			DirectoryResourceSet directory = new DirectoryResourceSet(root);
+			Resource<String> old = new DeduplicatingResourceSet<>(directory,store,manifest).getResource("a").get();
+			assertEquals("old contents", read(old));
+			Files.write(file, "new contents".getBytes(StandardCharsets.UTF_8));
+			Files.setLastModifiedTime(file, FileTime.fromMillis(old.lastModified()+60000));
+			directory.reload();
+			Resource<String> edited = new DeduplicatingResourceSet<>(directory,store,manifest).getResource("a").get();
+			assertEquals("new contents", read(edited));
+			assertEquals(ContentDigest.of(edited.asReadOnlyByteBuffer()), manifest.get("a", edited.lastModified()).get());
+			assertFalse(manifest.get("a", old.lastModified()).isPresent());
+		}finally {
+			try(Stream<Path> paths = Files.walk(root)){
+				paths.sorted(Comparator.reverseOrder()).forEach(p->p.toFile().delete());
+			}
+		}
+	}
+	
+	@Test
+	public void manifestKeepsModificationTimes() throws IOException {
+		Path file = Files.createTempFile("jei-manifest", ".bin");
+		try {
+			ContentDigest digest = ContentDigest.of(ByteBuffer.wrap("contents".getBytes(StandardCharsets.UTF_8)));
+			ContentManifest<String> manifest = new ContentManifest<>();
+			manifest.put("a", digest, 1234);
+			manifest.save(file, k->k);
+			ContentManifest<String> loaded = ContentManifest.load(file, k->k);
+			assertEquals(digest, loaded.get("a", 1234).get());
+			assertFalse(loaded.get("a", 0).isPresent());
+		}finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void repeatedLookupsReturnTheSameResource() {
+		MemoryResourceSet set = new MemoryResourceSet();
+		set.put("a", "contents");
+		DeduplicatingResourceSet<String> dedup = new DeduplicatingResourceSet<>(set,new ContentStore());
+		Resource<String> first = dedup.getResource("a").get();
+		assertSame(first, dedup.getResource("a").get());
+	}
+	
+	@Test
+	public void unreferencedContentsAreNotPinned() throws InterruptedException {
+		ContentStore store = new ContentStore();
+		MemoryResourceSet set = new MemoryResourceSet();
+		set.put("a", "contents");
+		DeduplicatingResourceSet<String> dedup = new DeduplicatingResourceSet<>(set,store);
+		dedup.getResource("a").get();
+		assertEquals(1, store.getContentCount());
+		for(int i = 0;i<50&&store.getContentCount()>0;i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(0, store.getContentCount());
+		assertEquals("contents", read(dedup.getResource("a").get()));
+	}
+}
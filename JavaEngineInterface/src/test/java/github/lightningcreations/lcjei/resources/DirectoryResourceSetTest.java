@@ -0,0 +1,75 @@
+package github.lightningcreations.lcjei.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryResourceSetTest {
+
+	private Path root;
+
+	@Before
+	public void createRoot() throws IOException {
+		root = Files.createTempDirectory("jei-directory");
+	}
+
+	@After
+	public void deleteRoot() throws IOException {
+		try(Stream<Path> paths = Files.walk(root)){
+			paths.sorted(Comparator.reverseOrder()).forEach(p->p.toFile().delete());
+		}
+	}
+
+	private void replace(String name,String contents) throws IOException {
+		Path temp = Files.write(root.resolve(name+".tmp"), contents.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, root.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static String transfer(Resource<String> resource) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		resource.transferTo(Channels.newChannel(out));
+		return new String(out.toByteArray(),StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void sizeAgreesWithContentsOfReplacedFile() throws IOException {
+		replace("a", "short");
+		DirectoryResourceSet set = new DirectoryResourceSet(root);
+		Resource<String> resource = set.getResource("a").get();
+		replace("a", "much longer contents");
+		String read = StandardCharsets.UTF_8.decode(resource.asReadOnlyByteBuffer()).toString();
+		assertEquals("much longer contents", read);
+		assertEquals(read.length(), resource.size());
+		replace("a", "other");
+		assertEquals(read, transfer(resource));
+		assertEquals(read.length(), resource.size());
+	}
+
+	@Test(timeout=30000)
+	public void watchingStopsWhenRootIsRemoved() throws IOException, InterruptedException {
+		Path watched = Files.createDirectory(root.resolve("watched"));
+		Files.write(watched.resolve("a"), "a".getBytes(StandardCharsets.UTF_8));
+		DirectoryResourceSet set = new DirectoryResourceSet(watched);
+		set.startWatching();
+		assertTrue(set.isWatching());
+		Files.delete(watched.resolve("a"));
+		Files.delete(watched);
+		while(set.isWatching())
+			Thread.sleep(10);
+		assertFalse(set.getResource("a").isPresent());
+	}
+}
@@ -0,0 +1,52 @@
+package github.lightningcreations.lcjei.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static github.lightningcreations.lcjei.resources.MemoryResourceSet.read;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class MappedResourceSetTest {
+
+	private static final class CountingMapper implements ResourceKeyMapper<String,String> {
+		final AtomicInteger toHost = new AtomicInteger();
+
+		@Override
+		public String mapToHost(String guestKey) {
+			toHost.incrementAndGet();
+			return "host/"+guestKey;
+		}
+
+		@Override
+		public String mapToGuest(String hostKey) {
+			return hostKey.startsWith("host/")?hostKey.substring(5):null;
+		}
+	}
+
+	@Test
+	public void memoizingSetObservesHostChanges() {
+		MemoryResourceSet host = new MemoryResourceSet();
+		host.put("host/a", "first");
+		MappedResourceSet<String,String> set = new MappedResourceSet<>(host,new CountingMapper(),16);
+		assertEquals("first", read(set.getResource("a").get()));
+		host.put("host/a", "second");
+		assertEquals("second", read(set.getResource("a").get()));
+		host.clear();
+		assertFalse(set.getResource("a").isPresent());
+	}
+
+	@Test
+	public void recentlyUsedMappingsSurviveCapacity() {
+		MemoryResourceSet host = new MemoryResourceSet();
+		CountingMapper mapper = new CountingMapper();
+		MappedResourceSet<String,String> set = new MappedResourceSet<>(host,mapper,16);
+		for(int i = 0;i<1000;i++) {
+			set.getResource("hot");
+			set.getResource("cold"+i);
+		}
+		// Every cold key is mapped once, and the hot key only needs to be mapped once
+		assertEquals(1001, mapper.toHost.get());
+	}
+}
@@ -0,0 +1,142 @@
+package github.lightningcreations.lcjei.resources;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * A ResourceSet of {@link BufferResource}s held in memory, shared by the tests and benchmarks of the sets which wrap one, so that they do not measure or depend on I/O.<br/>
+ * Keys are listed in order. The set counts its lookups (cheaply enough not to disturb benchmarks), can be made to throw for given keys, and can hold lookups until a latch is counted down,
+ *  so that tests can control when a lookup completes. A held lookup reads the contents of the set before it waits.
+ *  The set is thread-safe.
+ * @author chorm
+ *
+ */
+public final class MemoryResourceSet implements ResourceSet<String> {
+	private final ConcurrentHashMap<String,Resource<String>> resources = new ConcurrentHashMap<>();
+	private final Set<String> failing = ConcurrentHashMap.newKeySet();
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder asyncLookups = new LongAdder();
+	private volatile CountDownLatch entered = new CountDownLatch(0);
+	private volatile CountDownLatch gate;
+
+	/**
+	 * Adds or replaces the resource named key, with the given contents.
+	 */
+	public void put(String key,byte[] contents) {
+		resources.put(key, new BufferResource<>(key,ByteBuffer.wrap(contents)));
+	}
+
+	/**
+	 * Adds or replaces the resource named key, with contents encoded in UTF-8.
+	 */
+	public void put(String key,String contents) {
+		put(key,contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Removes the resource named key, if it exists.
+	 */
+	public void remove(String key) {
+		resources.remove(key);
+	}
+
+	/**
+	 * Removes every resource.
+	 */
+	public void clear() {
+		resources.clear();
+	}
+
+	/**
+	 * Makes lookups of key throw an {@link IllegalStateException}.
+	 */
+	public void fail(String key) {
+		failing.add(key);
+	}
+
+	/**
+	 * Makes each lookup from now on wait until the returned latch is counted down, or until {@link #stopHolding()} is called, if it has not started waiting.
+	 */
+	public CountDownLatch hold() {
+		CountDownLatch gate = new CountDownLatch(1);
+		entered = new CountDownLatch(1);
+		this.gate = gate;
+		return gate;
+	}
+
+	/**
+	 * Waits until a lookup is held by the latch returned from the last call to {@link #hold()}.
+	 */
+	public void awaitHeld() throws InterruptedException {
+		entered.await();
+	}
+
+	/**
+	 * Stops holding new lookups. Lookups which are already held wait until their latch is counted down.
+	 */
+	public void stopHolding() {
+		gate = null;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #getResource(String)}, including those made by the asynchronous lookups.
+	 */
+	public int getLookupCount() {
+		return lookups.intValue();
+	}
+
+	/**
+	 * Returns the number of calls to {@link #getResourceAsync(String, Executor)}.
+	 */
+	public int getAsyncLookupCount() {
+		return asyncLookups.intValue();
+	}
+
+	@Override
+	public Optional<Resource<String>> getResource(String key) {
+		lookups.increment();
+		if(failing.contains(key))
+			throw new IllegalStateException("Lookup of "+key+" failed");
+		Resource<String> resource = resources.get(key);
+		CountDownLatch gate = this.gate;
+		if(gate!=null) {
+			entered.countDown();
+			try {
+				gate.await();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return Optional.ofNullable(resource);
+	}
+
+	@Override
+	public CompletableFuture<Optional<Resource<String>>> getResourceAsync(String key, Executor executor) {
+		asyncLookups.increment();
+		return ResourceSet.super.getResourceAsync(key, executor);
+	}
+
+	@Override
+	public Stream<String> keys() {
+		return resources.keySet().stream().sorted();
+	}
+
+	@Override
+	public void reload() {
+	}
+
+	/**
+	 * Returns the contents of resource, decoded as UTF-8.
+	 */
+	public static String read(Resource<?> resource) {
+		return StandardCharsets.UTF_8.decode(resource.asReadOnlyByteBuffer()).toString();
+	}
+}
@@ -0,0 +1,73 @@
+package github.lightningcreations.lcjei.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static github.lightningcreations.lcjei.resources.MemoryResourceSet.read;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class OverlayResourceSetTest {
+
+	private static final Executor DIRECT = Runnable::run;
+
+	@Test
+	public void higherLayersOverrideLowerLayers() {
+		MemoryResourceSet base = new MemoryResourceSet();
+		MemoryResourceSet mod = new MemoryResourceSet();
+		base.put("a", "base");
+		base.put("b", "base");
+		mod.put("b", "mod");
+		OverlayResourceSet<String> overlay = new OverlayResourceSet<>(Arrays.asList(base,mod));
+		assertEquals("base", read(overlay.getResource("a").get()));
+		assertEquals("mod", read(overlay.getResource("b").get()));
+		assertEquals("mod", read(overlay.getResourceAsync("b", DIRECT).join().get()));
+		assertEquals(1, overlay.getOwningLayer("b"));
+		assertEquals(Arrays.asList("a","b"), overlay.keys().sorted().collect(Collectors.toList()));
+		assertFalse(overlay.getResource("c").isPresent());
+		assertFalse(overlay.getResourceAsync("c", DIRECT).join().isPresent());
+	}
+
+	/**
+	 * When the owning layer loses a key without being reloaded through the overlay, both lookups fall back to the lower layer which shadowed it.
+	 */
+	@Test
+	public void shadowedKeyFallsBackWhenTopEntryDisappears() {
+		MemoryResourceSet base = new MemoryResourceSet();
+		MemoryResourceSet middle = new MemoryResourceSet();
+		MemoryResourceSet mod = new MemoryResourceSet();
+		base.put("a", "base");
+		mod.put("a", "mod");
+		middle.put("b", "middle");
+		OverlayResourceSet<String> overlay = new OverlayResourceSet<>(Arrays.asList(base,middle,mod));
+		mod.remove("a");
+		assertEquals(2, overlay.getOwningLayer("a"));
+		assertEquals("base", read(overlay.getResource("a").get()));
+		assertEquals("base", read(overlay.getResourceAsync("a", DIRECT).join().get()));
+		assertEquals(1, overlay.getResources(Arrays.asList("a"), DIRECT).join().size());
+		base.remove("a");
+		assertFalse(overlay.getResource("a").isPresent());
+		assertFalse(overlay.getResourceAsync("a", DIRECT).join().isPresent());
+	}
+
+	@Test
+	public void reloadLayerUpdatesOwnership() {
+		MemoryResourceSet base = new MemoryResourceSet();
+		MemoryResourceSet mod = new MemoryResourceSet();
+		base.put("a", "base");
+		mod.put("a", "mod");
+		OverlayResourceSet<String> overlay = new OverlayResourceSet<>(Arrays.asList(base,mod));
+		mod.remove("a");
+		mod.put("b", "mod");
+		overlay.reloadLayer(1);
+		assertEquals(0, overlay.getOwningLayer("a"));
+		assertEquals(1, overlay.getOwningLayer("b"));
+		mod.put("a", "mod");
+		overlay.reloadLayer(1);
+		assertEquals(1, overlay.getOwningLayer("a"));
+		assertEquals("mod", read(overlay.getResource("a").get()));
+	}
+}
@@ -0,0 +1,167 @@
+package github.lightningcreations.lcjei.resources;
+
+import static github.lightningcreations.lcjei.resources.PackFormat.CENTRAL_HEADER_SIGNATURE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.zip.ZipException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackResourceSetTest {
+
+	private Path file;
+
+	@Before
+	public void create() throws IOException {
+		file = Files.createTempFile("jei-pack", ".pak");
+	}
+
+	@After
+	public void delete() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	private static byte[] contents(int size) {
+		byte[] contents = new byte[size];
+		for(int i = 0;i<size;i++)
+			contents[i] = (byte)(i%251);
+		return contents;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try(InputStream stream = in){
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while((n = stream.read(buffer))>0)
+				out.write(buffer, 0, n);
+			return out.toByteArray();
+		}
+	}
+
+	private static void assertContents(byte[] expected,Resource<String> resource) throws IOException {
+		assertEquals(expected.length, resource.size());
+		assertArrayEquals(expected, readAll(resource.getReadStream()));
+		byte[] buffered = new byte[expected.length];
+		resource.asReadOnlyByteBuffer().get(buffered);
+		assertArrayEquals(expected, buffered);
+		try(SeekableByteChannel channel = resource.getReadChannel()){
+			assertEquals(expected.length, channel.size());
+			assertArrayEquals(expected, readAll(Channels.newInputStream(channel)));
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(expected.length, resource.transferTo(Channels.newChannel(out)));
+		assertArrayEquals(expected, out.toByteArray());
+	}
+
+	/**
+	 * Writes a pack with a stored entry "stored" and a deflated entry "deflated".
+	 */
+	private void writePack(byte[] stored,byte[] deflated) throws IOException {
+		try(PackWriter writer = new PackWriter(file)){
+			writer.addStored("stored", ByteBuffer.wrap(stored));
+			writer.addDeflated("deflated", new ByteArrayInputStream(deflated));
+		}
+	}
+
+	/**
+	 * Returns the offset of the central directory header of the n-th entry in the pack.
+	 */
+	private static int centralHeader(byte[] pack,int n) {
+		ByteBuffer buffer = ByteBuffer.wrap(pack).order(ByteOrder.LITTLE_ENDIAN);
+		for(int i = 0;i+4<=pack.length;i++)
+			if(buffer.getInt(i)==CENTRAL_HEADER_SIGNATURE&&n--==0)
+				return i;
+		throw new AssertionError("Central directory header not found");
+	}
+
+	private static void assertZipException(Runnable action) {
+		try {
+			action.run();
+			fail("Corrupt pack was accepted");
+		}catch(UncheckedIOException e) {
+			assertTrue(e.getCause() instanceof ZipException);
+		}
+	}
+
+	@Test
+	public void storedAndDeflatedEntriesRoundTrip() throws IOException {
+		byte[] stored = contents(10000);
+		byte[] deflated = contents(70000);
+		writePack(stored,deflated);
+		try(PackResourceSet set = new PackResourceSet(file)){
+			assertEquals(Arrays.asList("deflated","stored"), set.keys().collect(Collectors.toList()));
+			assertContents(stored, set.getResource("stored").get());
+			assertContents(deflated, set.getResource("deflated").get());
+			assertFalse(set.getResource("missing").isPresent());
+		}
+	}
+
+	@Test
+	public void emptyEntriesRoundTrip() throws IOException {
+		writePack(new byte[0],new byte[0]);
+		try(PackResourceSet set = new PackResourceSet(file)){
+			assertContents(new byte[0], set.getResource("stored").get());
+			assertContents(new byte[0], set.getResource("deflated").get());
+		}
+	}
+
+	/**
+	 * A compressed size in the central directory which extends past the central directory is rejected when the pack is opened.
+	 */
+	@Test
+	public void oversizedEntryIsRejected() throws IOException {
+		writePack(contents(100),contents(1000));
+		byte[] pack = Files.readAllBytes(file);
+		// Entries are written to the central directory in the order they were added
+		ByteBuffer.wrap(pack).order(ByteOrder.LITTLE_ENDIAN).putInt(centralHeader(pack,1)+20, 1000000);
+		Files.write(file, pack);
+		assertZipException(()->new PackResourceSet(file));
+	}
+
+	/**
+	 * A local header whose extra field extends the data of the entry past the end of the file is rejected when the entry is read.
+	 */
+	@Test
+	public void truncatedEntryIsRejected() throws IOException {
+		writePack(contents(100),contents(1000));
+		byte[] pack = Files.readAllBytes(file);
+		// The first entry starts at the beginning of the pack
+		ByteBuffer.wrap(pack).order(ByteOrder.LITTLE_ENDIAN).putShort(28, (short)0xffff);
+		Files.write(file, pack);
+		try(PackResourceSet set = new PackResourceSet(file)){
+			Resource<String> resource = set.getResource("stored").get();
+			assertZipException(resource::getReadStream);
+			assertZipException(resource::getReadChannel);
+			assertZipException(resource::asReadOnlyByteBuffer);
+			assertContents(contents(1000), set.getResource("deflated").get());
+		}
+	}
+
+	@Test
+	public void truncatedPackIsRejected() throws IOException {
+		writePack(contents(100),contents(1000));
+		byte[] pack = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(pack, pack.length/2));
+		assertZipException(()->new PackResourceSet(file));
+	}
+}
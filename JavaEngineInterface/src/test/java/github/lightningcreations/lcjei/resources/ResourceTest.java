@@ -0,0 +1,106 @@
+package github.lightningcreations.lcjei.resources;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+public class ResourceTest {
+
+	/**
+	 * A resource which only implements the required methods, so that it uses the default transferTo.
+	 */
+	private static final class ChannelResource implements Resource<String> {
+		private final BufferResource<String> contents;
+
+		ChannelResource(byte[] contents){
+			this.contents = new BufferResource<>("a",ByteBuffer.wrap(contents));
+		}
+
+		@Override
+		public InputStream getReadStream() {
+			return contents.getReadStream();
+		}
+
+		@Override
+		public SeekableByteChannel getReadChannel() {
+			return contents.getReadChannel();
+		}
+
+		@Override
+		public String getKey() {
+			return contents.getKey();
+		}
+	}
+
+	/**
+	 * A target which never accepts any bytes, as a full non-blocking channel would.
+	 */
+	private static final class StalledChannel implements WritableByteChannel {
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			return 0;
+		}
+	}
+
+	private static byte[] contents(int size) {
+		byte[] contents = new byte[size];
+		for(int i = 0;i<size;i++)
+			contents[i] = (byte)(i*31);
+		return contents;
+	}
+
+	@Test
+	public void defaultTransferCopiesEveryByte() {
+		for(int size:new int[] {0,1,65536,200000}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertEquals(size, new ChannelResource(contents(size)).transferTo(Channels.newChannel(out)));
+			assertArrayEquals(contents(size), out.toByteArray());
+		}
+	}
+
+	@Test(timeout=10000,expected=UncheckedIOException.class)
+	public void defaultTransferFailsWhenTargetStalls() {
+		new ChannelResource(contents(16)).transferTo(new StalledChannel());
+	}
+
+	@Test(timeout=10000,expected=UncheckedIOException.class)
+	public void bufferTransferFailsWhenTargetStalls() {
+		new BufferResource<>("a",ByteBuffer.wrap(contents(16))).transferTo(new StalledChannel());
+	}
+
+	@Test(timeout=10000)
+	public void fileTransferFailsWhenTargetStalls() throws IOException {
+		Path root = Files.createTempDirectory("jei-resource");
+		try {
+			Files.write(root.resolve("a"), contents(16));
+			new DirectoryResourceSet(root).getResource("a").get().transferTo(new StalledChannel());
+			throw new AssertionError("Transfer to a stalled channel returned");
+		}catch(UncheckedIOException e) {
+			// Expected
+		}finally {
+			Files.delete(root.resolve("a"));
+			Files.delete(root);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package github.lightningcreations.lcjei.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.lifecycle.EngineState;
+import github.lightningcreations.lcjei.lifecycle.GuardedEngineInterface;
+
+public class EnginePoolTest {
+
+	private static final Executor DIRECT = Runnable::run;
+
+	public static final class TestGame {
+	}
+
+	private static final class StubEngine implements IEngineInterface<TestGame> {
+		final TestGame game;
+		final AtomicInteger initializations = new AtomicInteger();
+		final AtomicInteger destructions = new AtomicInteger();
+
+		StubEngine(TestGame game){
+			this.game = game;
+		}
+
+		@Override
+		public boolean initialize(Container c) {
+			initializations.incrementAndGet();
+			return true;
+		}
+
+		@Override
+		public void initialize() {
+			initializations.incrementAndGet();
+		}
+
+		@Override
+		public void destroy() {
+			destructions.incrementAndGet();
+		}
+
+		@Override
+		public void run() {
+		}
+
+		@Override
+		public Container getCurrentDrawContainer() {
+			return null;
+		}
+
+		@Override
+		public TestGame getGameObject() {
+			return game;
+		}
+
+		@Override
+		public void suspend() {
+		}
+
+		@Override
+		public void resume() {
+		}
+	}
+
+	private static final class TestProvider implements JEIServiceProvider<TestGame> {
+		final List<StubEngine> engines = new ArrayList<>();
+
+		@Override
+		public Class<TestGame> getGameClass() {
+			return TestGame.class;
+		}
+
+		@Override
+		public String getEngineName() {
+			return "pool-test";
+		}
+
+		@Override
+		public synchronized IEngineInterface<TestGame> newEngine(TestGame game) {
+			StubEngine engine = new StubEngine(game);
+			engines.add(engine);
+			return engine;
+		}
+
+		@Override
+		public Optional<IEngineInterface<TestGame>> getActiveEngineInterface() {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * An Executor which holds tasks until they are run by the test.
+	 */
+	private static final class QueuedExecutor implements Executor {
+		final List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		void runAll() {
+			List<Runnable> tasks = new ArrayList<>(this.tasks);
+			this.tasks.clear();
+			tasks.forEach(Runnable::run);
+		}
+	}
+
+	@Test(timeout=10000)
+	public void acquireTimesOutWhenEveryEngineIsHandedOut() throws InterruptedException {
+		EnginePool<TestGame> pool = new EnginePool<>(new TestProvider(),TestGame::new,1,1);
+		GuardedEngineInterface<TestGame> engine = pool.acquire(1, TimeUnit.SECONDS).get();
+		assertFalse(pool.acquire(50, TimeUnit.MILLISECONDS).isPresent());
+		assertEquals(1, pool.getTimeoutCount());
+		assertEquals(1, pool.getActiveCount());
+		pool.release(engine);
+		assertTrue(pool.acquire(1, TimeUnit.SECONDS).isPresent());
+	}
+
+	@Test(timeout=10000)
+	public void releasedEngineIsReused() throws InterruptedException {
+		TestProvider provider = new TestProvider();
+		EnginePool<TestGame> pool = new EnginePool<>(provider,TestGame::new,2,1);
+		GuardedEngineInterface<TestGame> engine = pool.acquireInitialized(1, TimeUnit.SECONDS).get();
+		assertEquals(EngineState.INITIALIZED, engine.getState());
+		pool.release(engine);
+		assertEquals(1, provider.engines.get(0).destructions.get());
+		assertEquals(1, pool.getIdleCount());
+		GuardedEngineInterface<TestGame> reused = pool.acquire(1, TimeUnit.SECONDS).get();
+		assertSame(engine, reused);
+		assertEquals(EngineState.UNINITIALIZED, reused.getState());
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(1, pool.getIdleHitCount());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test(timeout=10000)
+	public void releasedEnginesBeyondMaximumIdleAreDiscarded() throws InterruptedException {
+		EnginePool<TestGame> pool = new EnginePool<>(new TestProvider(),TestGame::new,2,1);
+		GuardedEngineInterface<TestGame> first = pool.acquire(1, TimeUnit.SECONDS).get();
+		GuardedEngineInterface<TestGame> second = pool.acquire(1, TimeUnit.SECONDS).get();
+		pool.release(first);
+		pool.release(second);
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(1, pool.getDiscardedCount());
+	}
+
+	@Test(timeout=10000)
+	public void prewarmedEnginesDoNotExceedPrewarmed() throws InterruptedException {
+		TestProvider provider = new TestProvider();
+		QueuedExecutor warmer = new QueuedExecutor();
+		EnginePool<TestGame> pool = new EnginePool<>(provider,TestGame::new,4,4,2,warmer);
+		assertEquals(2, warmer.tasks.size());
+		// Engines which are still being warmed count towards prewarmed, so releases do not start more
+		pool.release(pool.acquire(1, TimeUnit.SECONDS).get());
+		assertEquals(2, warmer.tasks.size());
+		warmer.runAll();
+		assertEquals(2, pool.getWarmCount());
+		pool.release(pool.acquire(1, TimeUnit.SECONDS).get());
+		assertEquals(0, warmer.tasks.size());
+
+		GuardedEngineInterface<TestGame> engine = pool.acquireInitialized(1, TimeUnit.SECONDS).get();
+		assertEquals(EngineState.INITIALIZED, engine.getState());
+		assertEquals(1, pool.getWarmHitCount());
+		assertEquals(1, warmer.tasks.size());
+		warmer.runAll();
+		assertEquals(2, pool.getWarmCount());
+		// The replacement reused the idle engine
+		assertEquals(3, provider.engines.size());
+		pool.release(engine);
+		assertEquals(2, pool.getWarmCount());
+		assertEquals(0, warmer.tasks.size());
+	}
+
+	@Test(timeout=10000)
+	public void closeDestroysWarmEngines() {
+		TestProvider provider = new TestProvider();
+		EnginePool<TestGame> pool = new EnginePool<>(provider,TestGame::new,4,4,2,DIRECT);
+		assertEquals(2, pool.getWarmCount());
+		pool.close();
+		assertEquals(0, pool.getWarmCount());
+		assertEquals(2, pool.getDiscardedCount());
+		assertEquals(2, provider.engines.size());
+		for(StubEngine engine:provider.engines) {
+			assertEquals(1, engine.initializations.get());
+			assertEquals(1, engine.destructions.get());
+		}
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void acquireFromClosedPoolThrows() throws InterruptedException {
+		EnginePool<TestGame> pool = new EnginePool<>(new TestProvider(),TestGame::new,1,1);
+		pool.close();
+		pool.acquire(1, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,233 @@
+package github.lightningcreations.lcjei.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+import github.lightningcreations.lcjei.IGameInfo;
+
+public class GameCatalogTest {
+
+	public static final class TestGame {
+	}
+
+	public static final class TestProvider implements JEIServiceProvider<TestGame> {
+		static final UUID GAME_ID = UUID.fromString("5b0c3f52-3f0e-4a52-9a43-1f6c3c1d2e01");
+
+		@Override
+		public Class<TestGame> getGameClass() {
+			return TestGame.class;
+		}
+
+		@Override
+		public String getEngineName() {
+			return "catalog-test";
+		}
+
+		@Override
+		public IEngineInterface<TestGame> newEngine(TestGame game) {
+			return null;
+		}
+
+		@Override
+		public Optional<IEngineInterface<TestGame>> getActiveEngineInterface() {
+			return Optional.empty();
+		}
+
+		@Override
+		public Collection<IGameInfo<TestGame>> getInstalledGames() {
+			return Collections.singletonList(new IGameInfo<TestGame>() {
+				@Override
+				public Class<? extends TestGame> getGameClass() {
+					return TestGame.class;
+				}
+
+				@Override
+				public Class<? extends IEngineInterface<TestGame>> getEngineInterfaceClass() {
+					return null;
+				}
+
+				@Override
+				public String getName() {
+					return "Test Game";
+				}
+
+				@Override
+				public String getVersion() {
+					return "1";
+				}
+
+				@Override
+				public UUID getGameId() {
+					return GAME_ID;
+				}
+			});
+		}
+	}
+
+	public static final class ThrowingProvider implements JEIServiceProvider<TestGame> {
+		@Override
+		public Class<TestGame> getGameClass() {
+			return TestGame.class;
+		}
+
+		@Override
+		public String getEngineName() {
+			return "catalog-throwing";
+		}
+
+		@Override
+		public IEngineInterface<TestGame> newEngine(TestGame game) {
+			return null;
+		}
+
+		@Override
+		public Optional<IEngineInterface<TestGame>> getActiveEngineInterface() {
+			return Optional.empty();
+		}
+
+		@Override
+		public Collection<IGameInfo<TestGame>> getInstalledGames() {
+			throw new IllegalStateException("Cannot list games");
+		}
+	}
+
+	public static final class AnonymousGameProvider implements JEIServiceProvider<TestGame> {
+		@Override
+		public Class<TestGame> getGameClass() {
+			return TestGame.class;
+		}
+
+		@Override
+		public String getEngineName() {
+			return "catalog-anonymous";
+		}
+
+		@Override
+		public IEngineInterface<TestGame> newEngine(TestGame game) {
+			return null;
+		}
+
+		@Override
+		public Optional<IEngineInterface<TestGame>> getActiveEngineInterface() {
+			return Optional.empty();
+		}
+
+		@Override
+		public Collection<IGameInfo<TestGame>> getInstalledGames() {
+			return Collections.singletonList(new IGameInfo<TestGame>() {
+				@Override
+				public Class<? extends TestGame> getGameClass() {
+					return TestGame.class;
+				}
+
+				@Override
+				public Class<? extends IEngineInterface<TestGame>> getEngineInterfaceClass() {
+					return null;
+				}
+
+				@Override
+				public String getName() {
+					return null;
+				}
+
+				@Override
+				public String getVersion() {
+					return "1";
+				}
+
+				@Override
+				public UUID getGameId() {
+					return null;
+				}
+			});
+		}
+	}
+
+	private Path dir;
+	private Path classFile;
+
+	@Before
+	public void createSource() throws IOException {
+		dir = Files.createTempDirectory("jei-catalog");
+		// The provider is loaded from the parent loader, but its class file is also placed in the source so that it can be stamped
+		String name = TestProvider.class.getName().replace('.', '/')+".class";
+		classFile = dir.resolve(name);
+		Files.createDirectories(classFile.getParent());
+		try(InputStream in = getClass().getClassLoader().getResourceAsStream(name)){
+			Files.copy(in, classFile);
+		}
+	}
+
+	@After
+	public void deleteSource() throws IOException {
+		try(Stream<Path> paths = Files.walk(dir)){
+			paths.sorted(Comparator.reverseOrder()).forEach(p->p.toFile().delete());
+		}
+	}
+
+	private void writeServices(String... providers) throws IOException {
+		Path services = dir.resolve(ProviderRegistry.SERVICES_RESOURCE);
+		Files.createDirectories(services.getParent());
+		Files.write(services, Arrays.asList(providers), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void brokenProvidersAreSkipped() throws IOException {
+		writeServices("does.not.Exist",TestProvider.class.getName());
+		try(URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},getClass().getClassLoader())){
+			GameCatalog catalog = GameCatalog.open(dir.resolve("catalog.bin"), loader);
+			assertEquals(1, catalog.getFailures().size());
+			assertTrue(catalog.getById(TestProvider.GAME_ID).isPresent());
+			// The source is rescanned until it scans cleanly
+			catalog.refresh();
+			assertEquals(1, catalog.getRescannedSourceCount());
+		}
+	}
+
+	@Test
+	public void providersAndGamesWhichThrowAreSkipped() throws IOException {
+		writeServices(ThrowingProvider.class.getName(),AnonymousGameProvider.class.getName(),TestProvider.class.getName());
+		try(URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},getClass().getClassLoader())){
+			GameCatalog catalog = GameCatalog.open(dir.resolve("catalog.bin"), loader);
+			assertEquals(2, catalog.getFailures().size());
+			assertTrue(catalog.getById(TestProvider.GAME_ID).isPresent());
+			catalog.refresh();
+			assertEquals(1, catalog.getRescannedSourceCount());
+		}
+	}
+
+	@Test
+	public void changedProviderClassIsRescanned() throws IOException {
+		writeServices(TestProvider.class.getName());
+		try(URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},getClass().getClassLoader())){
+			GameCatalog catalog = GameCatalog.open(dir.resolve("catalog.bin"), loader);
+			assertEquals(0, catalog.getFailures().size());
+			catalog.refresh();
+			assertEquals(0, catalog.getRescannedSourceCount());
+			Files.setLastModifiedTime(classFile, FileTime.fromMillis(Files.getLastModifiedTime(classFile).toMillis()+60000));
+			catalog.refresh();
+			assertEquals(1, catalog.getRescannedSourceCount());
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package github.lightningcreations.lcjei.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import github.lightningcreations.lcjei.IEngineInterface;
+
+public class ProviderRegistryTest {
+
+	public static final class TestGame {
+	}
+
+	public static final class TestProvider implements JEIServiceProvider<TestGame> {
+		@Override
+		public Class<TestGame> getGameClass() {
+			return TestGame.class;
+		}
+
+		@Override
+		public String getEngineName() {
+			return "registry-test";
+		}
+
+		@Override
+		public IEngineInterface<TestGame> newEngine(TestGame game) {
+			return null;
+		}
+
+		@Override
+		public Optional<IEngineInterface<TestGame>> getActiveEngineInterface() {
+			return Optional.empty();
+		}
+	}
+
+	public static final class CountingGame {
+	}
+
+	public static final class CountingProvider implements JEIServiceProvider<CountingGame> {
+		static final AtomicInteger instances = new AtomicInteger();
+
+		public CountingProvider() {
+			instances.incrementAndGet();
+		}
+
+		@Override
+		public Class<CountingGame> getGameClass() {
+			return CountingGame.class;
+		}
+
+		@Override
+		public String getEngineName() {
+			return "counting-test";
+		}
+
+		@Override
+		public IEngineInterface<CountingGame> newEngine(CountingGame game) {
+			return null;
+		}
+
+		@Override
+		public Optional<IEngineInterface<CountingGame>> getActiveEngineInterface() {
+			return Optional.empty();
+		}
+	}
+
+	private Path dir;
+
+	@Before
+	public void writeServices() throws IOException {
+		dir = Files.createTempDirectory("jei-registry");
+		Path services = dir.resolve(ProviderRegistry.SERVICES_RESOURCE);
+		Files.createDirectories(services.getParent());
+		Files.write(services, Arrays.asList("does.not.Exist",TestProvider.class.getName()), StandardCharsets.UTF_8);
+	}
+
+	@After
+	public void deleteServices() throws IOException {
+		try(Stream<Path> paths = Files.walk(dir)){
+			paths.sorted(Comparator.reverseOrder()).forEach(p->p.toFile().delete());
+		}
+	}
+
+	/**
+	 * Lists CountingProvider in both the services file and the build-time index, under the given engine name.
+	 */
+	private void writeIndexed(String engineName) throws IOException {
+		Files.write(dir.resolve(ProviderRegistry.SERVICES_RESOURCE), Arrays.asList(CountingProvider.class.getName(),TestProvider.class.getName()), StandardCharsets.UTF_8);
+		Path index = dir.resolve(JEIProviderProcessor.INDEX_RESOURCE);
+		Files.createDirectories(index.getParent());
+		Files.write(index, Arrays.asList(engineName+"\t"+CountingGame.class.getName()+"\t"+CountingProvider.class.getName()), StandardCharsets.UTF_8);
+	}
+
+	private URLClassLoader newLoader() throws IOException {
+		return new URLClassLoader(new URL[] {dir.toUri().toURL()},getClass().getClassLoader());
+	}
+
+	@Test
+	public void brokenProvidersAreSkipped() throws IOException {
+		URLClassLoader loader = newLoader();
+		try {
+			assertSame(TestProvider.class, EngineLookup.getByEngineName("registry-test", loader).get().getClass());
+			assertSame(TestProvider.class, EngineLookup.getByEngineClass(TestGame.class, loader).get().getClass());
+			assertFalse(EngineLookup.getByEngineName("missing", loader).isPresent());
+			List<ServiceConfigurationError> failures = EngineLookup.getProviderFailures(loader);
+			assertEquals(1, failures.size());
+			assertTrue(failures.get(0).getMessage().contains("does.not.Exist"));
+		}finally {
+			EngineLookup.invalidate(loader);
+			loader.close();
+		}
+	}
+
+	@Test
+	public void missDoesNotInstantiateIndexedProviders() throws IOException {
+		writeIndexed("counting-test");
+		CountingProvider.instances.set(0);
+		URLClassLoader loader = newLoader();
+		try {
+			assertFalse(EngineLookup.getByEngineName("missing", loader).isPresent());
+			assertTrue(EngineLookup.getByEngineName("registry-test", loader).isPresent());
+			assertEquals(0, CountingProvider.instances.get());
+			assertTrue(EngineLookup.getByEngineName("counting-test", loader).isPresent());
+			assertEquals(1, CountingProvider.instances.get());
+		}finally {
+			EngineLookup.invalidate(loader);
+			loader.close();
+		}
+	}
+
+	@Test
+	public void staleIndexFallsBackToEveryProvider() throws IOException {
+		writeIndexed("renamed-test");
+		URLClassLoader loader = newLoader();
+		try {
+			assertFalse(EngineLookup.getByEngineName("renamed-test", loader).isPresent());
+			assertSame(CountingProvider.class, EngineLookup.getByEngineName("counting-test", loader).get().getClass());
+		}finally {
+			EngineLookup.invalidate(loader);
+			loader.close();
+		}
+	}
+
+	@Test
+	public void loadersAreNotPinned() throws IOException, InterruptedException {
+		URLClassLoader loader = newLoader();
+		assertTrue(EngineLookup.getByEngineName("registry-test", loader).isPresent());
+		WeakReference<ClassLoader> ref = new WeakReference<>(loader);
+		loader.close();
+		loader = null;
+		for(int i = 0;i<50&&ref.get()!=null;i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(ref.get());
+	}
+}
@@ -0,0 +1,145 @@
+package github.lightningcreations.lcjei.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Container;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import github.lightningcreations.lcjei.ITickableEngine;
+import github.lightningcreations.lcjei.lifecycle.EngineState;
+import github.lightningcreations.lcjei.render.FrameBuffer;
+
+public class WrappedEngineTest {
+
+	private static class StubEngine implements ITickableEngine<Object> {
+		final Object game = new Object();
+		final AtomicInteger updates = new AtomicInteger();
+		volatile CountDownLatch entered = new CountDownLatch(0);
+		volatile CountDownLatch release = new CountDownLatch(0);
+		Container container;
+
+		@Override
+		public boolean initialize(Container c) {
+			container = c;
+			return true;
+		}
+
+		@Override
+		public void initialize() {
+		}
+
+		@Override
+		public void destroy() {
+		}
+
+		@Override
+		public void run() {
+		}
+
+		@Override
+		public Container getCurrentDrawContainer() {
+			return container;
+		}
+
+		@Override
+		public Object getGameObject() {
+			return game;
+		}
+
+		@Override
+		public void suspend() {
+		}
+
+		@Override
+		public void resume() {
+		}
+
+		@Override
+		public void runDriven() {
+		}
+
+		@Override
+		public void update(long stepNanos) {
+			entered.countDown();
+			try {
+				release.await();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			updates.incrementAndGet();
+		}
+
+		@Override
+		public void render(float interpolation) {
+		}
+	}
+
+	@Test(timeout=10000)
+	public void lifecycleCallsWaitForTickToFinish() throws InterruptedException {
+		StubEngine guest = new StubEngine();
+		WrappedEngine<Object,Object> wrapped = new WrappedEngine<>(guest,new StubEngine(),new Object());
+		wrapped.initialize();
+		wrapped.runDriven();
+		guest.entered = new CountDownLatch(1);
+		guest.release = new CountDownLatch(1);
+		Thread ticker = new Thread(()->wrapped.update(1));
+		ticker.start();
+		guest.entered.await();
+		assertEquals(EngineState.TICKING, wrapped.getState());
+		Thread suspender = new Thread(wrapped::suspend);
+		suspender.start();
+		while(suspender.getState()!=Thread.State.WAITING)
+			Thread.sleep(1);
+		// Ticks are skipped while the suspend waits, and it waits until the tick in progress finishes
+		wrapped.update(1);
+		assertEquals(EngineState.TICKING, wrapped.getState());
+		guest.release.countDown();
+		ticker.join();
+		suspender.join();
+		assertEquals(EngineState.SUSPENDED, wrapped.getState());
+		wrapped.update(1);
+		assertEquals(1, guest.updates.get());
+	}
+	
+	@Test
+	public void lifecycleCallsFromTickAreRejected() {
+		AtomicReference<WrappedEngine<Object,Object>> self = new AtomicReference<>();
+		AtomicReference<RuntimeException> thrown = new AtomicReference<>();
+		StubEngine guest = new StubEngine() {
+			@Override
+			public void update(long stepNanos) {
+				try {
+					self.get().suspend();
+				}catch(RuntimeException e) {
+					thrown.set(e);
+				}
+			}
+		};
+		self.set(new WrappedEngine<>(guest,new StubEngine(),new Object()));
+		self.get().initialize();
+		self.get().runDriven();
+		self.get().update(1);
+		assertTrue(thrown.get() instanceof IllegalStateException);
+		assertEquals(EngineState.EXECUTING, self.get().getState());
+	}
+
+	@Test
+	public void offscreenFallbackDrawsToTheHostContainer() {
+		StubEngine guest = new StubEngine();
+		StubEngine host = new StubEngine();
+		host.container = new Container();
+		WrappedEngine<Object,Object> wrapped = new WrappedEngine<>(guest,host,new Object());
+		assertFalse(wrapped.initializeOffscreen(new FrameBuffer(4,4,FrameBuffer.Storage.DIRECT)));
+		assertSame(host.container, guest.container);
+		assertSame(host.container, wrapped.getCurrentDrawContainer());
+		assertNull(wrapped.getCurrentFrameBuffer());
+	}
+}